@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.*;
+
+import java.util.Properties;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocatorImpl;
+
+/**
+ * Creates and closes the loner cache used by the benchmarks.
+ */
+public final class BenchmarkCache {
+
+  public static final String OFF_HEAP_SIZE = "256m";
+
+  private BenchmarkCache() {
+  }
+
+  /**
+   * Creates a loner cache with off-heap memory available to regions that
+   * ask for it.
+   */
+  public static Cache create() {
+    return create(false);
+  }
+
+  /**
+   * Creates a loner cache. The PDX registry must be persistent when the
+   * cache holds persistent regions with PDX values.
+   */
+  public static Cache create(boolean pdxPersistent) {
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    props.setProperty(LOG_LEVEL, "warning");
+    props.setProperty(OFF_HEAP_MEMORY_SIZE, OFF_HEAP_SIZE);
+    return new CacheFactory(props).setPdxPersistent(pdxPersistent).create();
+  }
+
+  public static void close(Cache cache) {
+    if (cache != null && !cache.isClosed()) {
+      cache.close();
+    }
+    MemoryAllocatorImpl.freeOffHeapMemory();
+  }
+}
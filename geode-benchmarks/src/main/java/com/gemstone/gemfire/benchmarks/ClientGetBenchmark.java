@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.VersionTagHolder;
+import com.gemstone.gemfire.internal.cache.tier.sockets.Message;
+import com.gemstone.gemfire.internal.cache.tier.sockets.command.Get70;
+
+/**
+ * Measures the server side of a client get of a byte[] value. The value is
+ * looked up with {@link Get70} into the version tag holder and entry that a
+ * {@code ServerConnection} reuses, and the response is written to a discarding
+ * stream through a reused {@link Message}, the same way {@code Get70} writes it.
+ * Run it with {@code -Pjmh.include=ClientGetBenchmark -Pjmh.args="-prof gc"}:
+ * gc.alloc.rate.norm should stay close to zero bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClientGetBenchmark {
+
+  @Param({"REPLICATE", "PARTITION"})
+  public RegionShortcut shortcut;
+
+  @Param({"10000"})
+  public int keyCount;
+
+  private Cache cache;
+  private Region<Object, Object> region;
+  private Object[] keys;
+  private int nextKey;
+
+  private Get70 command;
+  private VersionTagHolder versionHolder;
+  private Get70.Entry entry;
+  private Message responseMsg;
+
+  @Setup(Level.Trial)
+  public void createRegion() throws IOException {
+    this.cache = BenchmarkCache.create();
+    this.region = this.cache.createRegionFactory(this.shortcut).create("benchmark");
+    // the keys are boxed up front so that looking them up does not allocate
+    this.keys = new Object[this.keyCount];
+    for (int i = 0; i < this.keyCount; i++) {
+      this.keys[i] = Integer.valueOf(i);
+      this.region.put(this.keys[i], ValueType.BYTE_ARRAY.createValue(i));
+    }
+
+    this.command = (Get70) Get70.getCommand();
+    this.versionHolder = new VersionTagHolder();
+    this.entry = new Get70.Entry();
+    this.responseMsg = new Message(1, Version.CURRENT);
+    this.responseMsg.setComms(new Socket(), null, new DiscardingOutputStream(),
+        ByteBuffer.allocate(32 * 1024), null);
+  }
+
+  @TearDown(Level.Trial)
+  public void closeCache() {
+    BenchmarkCache.close(this.cache);
+  }
+
+  @Benchmark
+  public Object get() throws IOException {
+    Object key = this.keys[this.nextKey];
+    this.nextKey = (this.nextKey + 1) % this.keyCount;
+
+    this.versionHolder.reset();
+    Get70.Entry result = this.command.getEntryRetained(this.region, key, null, null,
+        this.versionHolder, this.entry);
+    Get70.addResponseParts(this.responseMsg, result.value, null, result.isObject,
+        result.versionTag, result.keyNotPresent, 0);
+    this.responseMsg.send(true);
+    return result.value;
+  }
+
+  /**
+   * Stands in for the socket of the client connection.
+   */
+  private static class DiscardingOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.DataSerializer;
+
+/**
+ * A small domain object serialized with {@link DataSerializable}.
+ * It has the same shape as {@link PdxValue} so the two can be compared.
+ */
+public class DataSerializableValue implements DataSerializable {
+
+  private int id;
+  private long timestamp;
+  private double price;
+  private String name;
+  private String description;
+
+  public DataSerializableValue() {
+  }
+
+  public DataSerializableValue(int id) {
+    this.id = id;
+    this.timestamp = id * 1000L;
+    this.price = id * 1.5d;
+    this.name = "name-" + id;
+    this.description = "description of value " + id;
+  }
+
+  public int getId() {
+    return this.id;
+  }
+
+  @Override
+  public void toData(DataOutput out) throws IOException {
+    out.writeInt(this.id);
+    out.writeLong(this.timestamp);
+    out.writeDouble(this.price);
+    DataSerializer.writeString(this.name, out);
+    DataSerializer.writeString(this.description, out);
+  }
+
+  @Override
+  public void fromData(DataInput in) throws IOException, ClassNotFoundException {
+    this.id = in.readInt();
+    this.timestamp = in.readLong();
+    this.price = in.readDouble();
+    this.name = DataSerializer.readString(in);
+    this.description = DataSerializer.readString(in);
+  }
+}
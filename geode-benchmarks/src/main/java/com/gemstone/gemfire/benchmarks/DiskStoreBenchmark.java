@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.benchmarks.RegionBenchmark.KeySequence;
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+
+/**
+ * Measures updates and destroys on persistent regions, which are
+ * dominated by the {@code Oplog} writes done by {@code basicModify} and
+ * {@code basicRemove}. Both synchronous and asynchronous disk stores are
+ * covered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiskStoreBenchmark {
+
+  @Param({"REPLICATE_PERSISTENT", "PARTITION_PERSISTENT"})
+  public RegionShortcut shortcut;
+
+  @Param({"true", "false"})
+  public boolean diskSynchronous;
+
+  @Param({"false", "true"})
+  public boolean offHeap;
+
+  @Param({"DATA_SERIALIZABLE", "PDX"})
+  public ValueType valueType;
+
+  @Param({"10000"})
+  public int keyCount;
+
+  private File diskDir;
+  private Cache cache;
+  private Region<Integer, Object> region;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void createRegion() throws IOException {
+    this.diskDir = Files.createTempDirectory("DiskStoreBenchmark").toFile();
+    this.cache = BenchmarkCache.create(true);
+    this.cache.createDiskStoreFactory()
+        .setDiskDirs(new File[] {this.diskDir})
+        .create("benchmark");
+    this.region = this.cache.<Integer, Object> createRegionFactory(this.shortcut)
+        .setDiskStoreName("benchmark")
+        .setDiskSynchronous(this.diskSynchronous)
+        .setOffHeap(this.offHeap)
+        .create("benchmark");
+    this.values = new Object[this.keyCount];
+    for (int i = 0; i < this.keyCount; i++) {
+      this.values[i] = this.valueType.createValue(i);
+      this.region.put(i, this.values[i]);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeCache() throws IOException {
+    BenchmarkCache.close(this.cache);
+    FileUtils.deleteDirectory(this.diskDir);
+  }
+
+  @Benchmark
+  public Object put(KeySequence keys) {
+    int key = keys.next(this.keyCount);
+    return this.region.put(key, this.values[key]);
+  }
+
+  @Benchmark
+  public Object destroyAndCreate(KeySequence keys) {
+    int key = keys.next(this.keyCount);
+    this.region.destroy(key);
+    return this.region.put(key, this.values[key]);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import com.gemstone.gemfire.pdx.PdxReader;
+import com.gemstone.gemfire.pdx.PdxSerializable;
+import com.gemstone.gemfire.pdx.PdxWriter;
+
+/**
+ * A small domain object serialized with PDX.
+ * It has the same shape as {@link DataSerializableValue} so the two can be compared.
+ */
+public class PdxValue implements PdxSerializable {
+
+  private int id;
+  private long timestamp;
+  private double price;
+  private String name;
+  private String description;
+
+  public PdxValue() {
+  }
+
+  public PdxValue(int id) {
+    this.id = id;
+    this.timestamp = id * 1000L;
+    this.price = id * 1.5d;
+    this.name = "name-" + id;
+    this.description = "description of value " + id;
+  }
+
+  public int getId() {
+    return this.id;
+  }
+
+  @Override
+  public void toData(PdxWriter writer) {
+    writer.writeInt("id", this.id);
+    writer.writeLong("timestamp", this.timestamp);
+    writer.writeDouble("price", this.price);
+    writer.writeString("name", this.name);
+    writer.writeString("description", this.description);
+  }
+
+  @Override
+  public void fromData(PdxReader reader) {
+    this.id = reader.readInt("id");
+    this.timestamp = reader.readLong("timestamp");
+    this.price = reader.readDouble("price");
+    this.name = reader.readString("name");
+    this.description = reader.readString("description");
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+
+/**
+ * Measures {@link Region#put} and {@link Region#get} on replicated and
+ * partitioned regions in a loner cache. This covers the
+ * {@code LocalRegion} and {@code AbstractRegionMap.basicPut} paths for heap
+ * and off-heap entries and for the different {@link ValueType}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RegionBenchmark {
+
+  @Param({"REPLICATE", "PARTITION"})
+  public RegionShortcut shortcut;
+
+  @Param({"false", "true"})
+  public boolean offHeap;
+
+  @Param({"BYTE_ARRAY", "DATA_SERIALIZABLE", "PDX"})
+  public ValueType valueType;
+
+  @Param({"10000"})
+  public int keyCount;
+
+  private Cache cache;
+  private Region<Integer, Object> region;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void createRegion() {
+    this.cache = BenchmarkCache.create();
+    this.region = this.cache.<Integer, Object> createRegionFactory(this.shortcut)
+        .setOffHeap(this.offHeap)
+        .create("benchmark");
+    this.values = new Object[this.keyCount];
+    for (int i = 0; i < this.keyCount; i++) {
+      this.values[i] = this.valueType.createValue(i);
+      this.region.put(i, this.values[i]);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void closeCache() {
+    BenchmarkCache.close(this.cache);
+  }
+
+  @Benchmark
+  public Object put(KeySequence keys) {
+    int key = keys.next(this.keyCount);
+    return this.region.put(key, this.values[key]);
+  }
+
+  @Benchmark
+  public Object get(KeySequence keys) {
+    return this.region.get(keys.next(this.keyCount));
+  }
+
+  /**
+   * Hands out keys in order, one sequence per benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class KeySequence {
+    private int next;
+
+    int next(int keyCount) {
+      int key = this.next;
+      this.next = (key + 1) % keyCount;
+      return key;
+    }
+  }
+}
@@ -442,6 +442,14 @@ public interface QueryService {
    *          For index on secId field:
    *          indexExpression: "pos.secId"
    *          regionPath:      "/portfolio p, p.positions.values pos"
+   *
+   *          Query3: "Select * from /portfolio p where p.ID = 1 and p.status > 'a'"
+   *          For a composite index on the ID and status fields, which is
+   *          looked up once for equality on ID and a range on status:
+   *          indexExpression: "p.ID, p.status"
+   *          regionPath:      "/portfolio p"
+   *          A composite index needs a regionPath with a single iterator
+   *          over the region values and synchronous index maintenance.
    * @return the newly created Index
    * @throws QueryInvalidException if the argument query language strings have
    *           invalid syntax
@@ -454,8 +462,9 @@ public interface QueryService {
    * @throws RegionNotFoundException if the region referred to in the fromClause
    *           doesn't exist
    * @throws UnsupportedOperationException If Index is being created on a region
-   *           which does not support indexes.
-   * 
+   *           which does not support indexes, or a composite index on a
+   *           region or regionPath that does not support it.
+   *
    */
   public Index createIndex(String indexName, String indexedExpression,
       String regionPath) throws IndexInvalidException,
@@ -232,19 +232,23 @@ public abstract class AbstractGroupOrRangeJunction extends
    // and of the form var = constant. Also need for sorting will not arise
    // if there are only two operands
    
+   // The size of each operand is estimated once as an estimate may walk an
+   // index.
    List sortedList = new ArrayList(this._operands.length);
    int len = this._operands.length;
+   int[] sortedEstimates = new int[len];
    for (int i = 0; i < len; ++i) {
      Filter toSort = (Filter)this._operands[i];    
      int indxRsltToSort = toSort.getSizeEstimate(context);
      int sortedListLen = sortedList.size();
      int j = 0;
      for (; j < sortedListLen; ++j) {
-       Filter currSorted = (Filter)sortedList.get(j);
-       if (currSorted.getSizeEstimate(context) > indxRsltToSort) {
+       if (sortedEstimates[j] > indxRsltToSort) {
          break;
        }
      }
+     System.arraycopy(sortedEstimates, j, sortedEstimates, j + 1, sortedListLen - j);
+     sortedEstimates[j] = indxRsltToSort;
      sortedList.add(j, toSort);
    }
    return sortedList;
@@ -39,7 +39,9 @@ import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.pdx.PdxInstance;
 import com.gemstone.gemfire.pdx.PdxSerializationException;
 import com.gemstone.gemfire.pdx.internal.FieldNotFoundInPdxVersion;
+import com.gemstone.gemfire.pdx.internal.PdxField;
 import com.gemstone.gemfire.pdx.internal.PdxInstanceImpl;
+import com.gemstone.gemfire.pdx.internal.PdxType;
 import com.gemstone.gemfire.pdx.JSONFormatter;
 
 /**
@@ -53,12 +55,21 @@ public class AttributeDescriptor {
   private final String _name;
   /** cache for remembering the correct Member for a class and attribute */
   private static final ConcurrentMap _cache = new ConcurrentHashMap();
+  /**
+   * The field of this attribute in the PdxType read last, so that an
+   * attribute read from many PdxInstances of the same type is looked up once
+   */
+  private volatile PdxFieldResolution _pdxField;
   
   
   
   public AttributeDescriptor(String name) {
     _name = name;
   }
+
+  public String getName() {
+    return _name;
+  }
   
   
   
@@ -310,10 +321,11 @@ public class AttributeDescriptor {
       QueryInvocationTargetException {
     if (target instanceof PdxInstanceImpl) {
       PdxInstanceImpl pdxInstance = (PdxInstanceImpl) target;
+      PdxField field = resolvePdxField(pdxInstance.getPdxType());
       // if the field is present in the pdxinstance
-      if (pdxInstance.hasField(_name)) { 
+      if (field != null) { 
         // return PdxString if field is a String otherwise invoke readField
-        return pdxInstance.getRawField(_name);
+        return pdxInstance.getRawField(field);
       }
       else {
         // field not found in the pdx instance, look for the field in any of the
@@ -363,6 +375,31 @@ public class AttributeDescriptor {
     }
   }
   
+  /**
+   * Returns the field of this attribute in the given PdxType or null if the
+   * type does not have it. The last resolution is remembered since the
+   * values that a query reads an attribute from usually share a PdxType.
+   */
+  private PdxField resolvePdxField(PdxType pdxType) {
+    PdxFieldResolution resolution = _pdxField;
+    if (resolution == null || resolution.pdxType != pdxType) {
+      resolution = new PdxFieldResolution(pdxType, pdxType.getPdxField(_name));
+      _pdxField = resolution;
+    }
+    return resolution.field;
+  }
+
+  /** A PdxType and the field of an attribute in it */
+  private static class PdxFieldResolution {
+    final PdxType pdxType;
+    final PdxField field;
+
+    PdxFieldResolution(PdxType pdxType, PdxField field) {
+      this.pdxType = pdxType;
+      this.field = field;
+    }
+  }
+
   private Object readFieldFromDeserializedObject(PdxInstanceImpl pdxInstance,
       Object target) throws NameNotFoundException,
       QueryInvocationTargetException {
@@ -16,12 +16,14 @@
  */
 package com.gemstone.gemfire.cache.query.internal;
 
+import com.gemstone.gemfire.cache.query.Aggregator;
 import com.gemstone.gemfire.cache.query.AmbiguousNameException;
 import com.gemstone.gemfire.cache.query.FunctionDomainException;
 import com.gemstone.gemfire.cache.query.NameResolutionException;
 import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
 import com.gemstone.gemfire.cache.query.TypeMismatchException;
 import com.gemstone.gemfire.cache.query.internal.aggregate.AvgBucketNode;
+import com.gemstone.gemfire.cache.query.internal.aggregate.AvgBucketNodeCombiner;
 import com.gemstone.gemfire.cache.query.internal.aggregate.AvgDistinct;
 import com.gemstone.gemfire.cache.query.internal.aggregate.AvgDistinctPRQueryNode;
 import com.gemstone.gemfire.cache.query.internal.aggregate.AvgPRQueryNode;
@@ -31,6 +33,7 @@ import com.gemstone.gemfire.cache.query.internal.aggregate.CountDistinctPRQueryN
 import com.gemstone.gemfire.cache.query.internal.aggregate.SumDistinctPRQueryNode;
 import com.gemstone.gemfire.cache.query.internal.aggregate.CountPRQueryNode;
 import com.gemstone.gemfire.cache.query.internal.aggregate.DistinctAggregator;
+import com.gemstone.gemfire.cache.query.internal.aggregate.DistinctBucketNodeCombiner;
 import com.gemstone.gemfire.cache.query.internal.aggregate.MaxMin;
 import com.gemstone.gemfire.cache.query.internal.aggregate.Avg;
 import com.gemstone.gemfire.cache.query.internal.aggregate.Sum;
@@ -70,6 +73,9 @@ public class CompiledAggregateFunction extends AbstractCompiledValue {
   public Object evaluate(ExecutionContext context)
       throws FunctionDomainException, TypeMismatchException,
       NameResolutionException, QueryInvocationTargetException {
+    if (context.getIsBucketResultsCombiner()) {
+      return getBucketResultsCombiner();
+    }
     boolean isPRQueryNode = context.getIsPRQueryNode();
     boolean isBucketNode = context.getBucketList() != null;
     switch (this.aggFuncType) {
@@ -115,6 +121,38 @@ public class CompiledAggregateFunction extends AbstractCompiledValue {
 
   }
 
+  /**
+   * Returns an aggregator that takes the results of this function computed on
+   * bucket nodes and combines them into one result of the same form, so that
+   * a data node can send one partial result per group for all its buckets.
+   */
+  private Aggregator getBucketResultsCombiner() {
+    switch (this.aggFuncType) {
+
+    case OQLLexerTokenTypes.SUM:
+      return this.distinctOnly ? new DistinctBucketNodeCombiner() : new Sum();
+
+    case OQLLexerTokenTypes.MAX:
+      return new MaxMin(true);
+
+    case OQLLexerTokenTypes.MIN:
+      return new MaxMin(false);
+
+    case OQLLexerTokenTypes.AVG:
+      return this.distinctOnly ? new DistinctBucketNodeCombiner()
+          : new AvgBucketNodeCombiner();
+
+    case OQLLexerTokenTypes.COUNT:
+      return this.distinctOnly ? new DistinctBucketNodeCombiner()
+          : new CountPRQueryNode();
+
+    default:
+      throw new UnsupportedOperationException(
+          "Aggregate function not implemented");
+
+    }
+  }
+
   private String getStringRep() {
     switch (this.aggFuncType) {
 
@@ -30,6 +30,7 @@ import com.gemstone.gemfire.cache.query.QueryService;
 import com.gemstone.gemfire.cache.query.SelectResults;
 import com.gemstone.gemfire.cache.query.Struct;
 import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.index.CompactRangeIndex;
 import com.gemstone.gemfire.cache.query.internal.index.IndexData;
 import com.gemstone.gemfire.cache.query.internal.index.IndexProtocol;
 import com.gemstone.gemfire.cache.query.internal.index.IndexUtils;
@@ -49,6 +50,12 @@ import com.gemstone.gemfire.pdx.internal.PdxString;
 public class CompiledComparison extends AbstractCompiledValue implements
     Negatable, OQLLexerTokenTypes, Indexable {
 
+  /**
+   * An index lookup whose estimated size is at least this many times smaller
+   * than that of another is the better filter whatever the operators are.
+   */
+  static final int DECISIVE_SIZE_RATIO = 10;
+
   // persistent inst vars
   public final CompiledValue _left;
   public final CompiledValue _right;
@@ -326,6 +333,24 @@ public class CompiledComparison extends AbstractCompiledValue implements
 
   }
 
+  /**
+   * Returns true if the size estimate of this comparison is an exact count or
+   * comes from the key distribution of a compact range index.
+   */
+  boolean hasAccurateSizeEstimate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException
+  {
+    IndexInfo[] idxInfo = getIndexInfo(context);
+    if (idxInfo == null || !(idxInfo[0]._index instanceof CompactRangeIndex)) {
+      return false;
+    }
+    Object key = idxInfo[0].evaluateIndexKey(context);
+    int op = reflectOnOperator(idxInfo[0]._key());
+    return ((CompactRangeIndex)idxInfo[0]._index).hasAccurateSizeEstimate(key, op,
+        idxInfo[0]._matchLevel);
+  }
+
   /** **************** PRIVATE METHODS ************************** */
   /**
    * evaluate as a filter, involving a single iterator. Use an index if
@@ -373,6 +398,10 @@ public class CompiledComparison extends AbstractCompiledValue implements
     try {
       if( !createEmptySet) {
         observer.beforeIndexLookup(indexInfo._index, op, key);
+        if (QueryObserverHolder.hasObserver()) {
+          observer.afterIndexSizeEstimate(indexInfo._index,
+              indexInfo._index.getSizeEstimate(key, op, indexInfo._matchLevel));
+        }
         context.cachePut(CompiledValue.INDEX_INFO, indexInfo);
       }	
       // //////////////////////////////////////////////////////////
@@ -819,6 +848,22 @@ public class CompiledComparison extends AbstractCompiledValue implements
     if (context instanceof QueryExecutionContext && ((QueryExecutionContext)context).hasHints()) {
       return thisSize <= thatSize;
     }
+
+    // The rules below assume an equality is more selective than a range, which
+    // the estimates can show to be wrong. Follow the estimates when they
+    // differ by an order of magnitude, but only when both are exact counts or
+    // come from a key distribution; guessed range sizes are not good enough.
+    if (thatOperator != LITERAL_and && thisSize != Integer.MAX_VALUE
+        && thatSize != Integer.MAX_VALUE && comparedTo instanceof CompiledComparison
+        && hasAccurateSizeEstimate(context)
+        && ((CompiledComparison)comparedTo).hasAccurateSizeEstimate(context)) {
+      if ((long)thisSize * DECISIVE_SIZE_RATIO <= thatSize) {
+        return true;
+      }
+      if ((long)thatSize * DECISIVE_SIZE_RATIO <= thisSize) {
+        return false;
+      }
+    }
     
     //There may be some hard rules that give unoptimal selections based on these switch cases.
     if(this._operator == TOK_EQ || this._operator == TOK_NE || this._operator == TOK_NE_ALT) {
@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.AmbiguousNameException;
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.index.CompositeKey;
+import com.gemstone.gemfire.cache.query.internal.index.IndexManager;
+import com.gemstone.gemfire.cache.query.internal.index.IndexUtils;
+
+/**
+ * The conditions of a where clause that a composite index covers, combined
+ * into a single lookup on the index. For an index on "p.ID, p.status, p.type"
+ * the conditions "p.ID = $1 and p.status = $2 and p.type > $3" become the
+ * comparison of the path "p.ID, p.status, p.type" with a
+ * {@link CompositeRangeKey}, which evaluates to the
+ * {@link CompositeKey.Range} of the keys starting with ($1, $2) whose third
+ * field is greater than $3.
+ * <p>
+ * Outside of an index lookup it evaluates the conditions it replaces.
+ *
+ * @see com.gemstone.gemfire.cache.query.internal.index.CompositeRangeIndex
+ * @since Geode 1.0
+ */
+public class CompiledCompositeComparison extends CompiledComparison {
+
+  /** The conditions this replaces */
+  private final List<CompiledComparison> consumedOperands;
+
+  private final CompiledJunction consumedJunction;
+
+  CompiledCompositeComparison(CompiledCompositeKey path, CompositeRangeKey key,
+      List<CompiledComparison> consumedOperands) {
+    super(path, key, TOK_EQ);
+    this.consumedOperands = consumedOperands;
+    this.consumedJunction = new CompiledJunction(
+        consumedOperands.toArray(new CompiledValue[consumedOperands.size()]),
+        LITERAL_and);
+  }
+
+  @Override
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    return this.consumedJunction.evaluate(context);
+  }
+
+  @Override
+  public boolean isRangeEvaluatable() {
+    return false;
+  }
+
+  /**
+   * Returns the where clause with the comparisons on the first expressions of
+   * a composite index of the region replaced by a single
+   * CompiledCompositeComparison. Only the comparisons of a top level AND with
+   * constants are combined; the where clause is returned as is if there is no
+   * composite index covering at least two of them.
+   */
+  static CompiledValue combineOperands(CompiledValue whereClause,
+      ExecutionContext context) throws TypeMismatchException,
+      AmbiguousNameException, NameResolutionException {
+    if (!IndexUtils.indexesEnabled || !(whereClause instanceof CompiledJunction)
+        || ((CompiledJunction) whereClause).getOperator() != LITERAL_and) {
+      return whereClause;
+    }
+    if (!hasCompositeIndexes(context)) {
+      return whereClause;
+    }
+    List operands = ((CompiledJunction) whereClause).getOperands();
+
+    // the comparisons of a path with a constant, by the iterator of the path
+    Map<RuntimeIterator, List<Candidate>> candidates = null;
+    for (Object operand : operands) {
+      if (operand.getClass() != CompiledComparison.class) {
+        continue;
+      }
+      Candidate candidate = Candidate.create((CompiledComparison) operand,
+          context);
+      if (candidate == null) {
+        continue;
+      }
+      if (candidates == null) {
+        candidates = new LinkedHashMap<RuntimeIterator, List<Candidate>>();
+      }
+      List<Candidate> group = candidates.get(candidate.iterator);
+      if (group == null) {
+        group = new ArrayList<Candidate>();
+        candidates.put(candidate.iterator, group);
+      }
+      group.add(candidate);
+    }
+    if (candidates == null) {
+      return whereClause;
+    }
+
+    List newOperands = new ArrayList(operands);
+    boolean combined = false;
+    for (Map.Entry<RuntimeIterator, List<Candidate>> group : candidates.entrySet()) {
+      if (group.getValue().size() < 2) {
+        continue;
+      }
+      CompiledCompositeComparison composite = combine(group.getKey(),
+          group.getValue(), context);
+      if (composite == null) {
+        continue;
+      }
+      // the composite takes the place of the first condition it replaces
+      int index = newOperands.size();
+      for (CompiledComparison consumed : composite.consumedOperands) {
+        index = Math.min(index, newOperands.indexOf(consumed));
+      }
+      newOperands.set(index, composite);
+      newOperands.removeAll(composite.consumedOperands);
+      composite.computeDependencies(context);
+      combined = true;
+    }
+    if (!combined) {
+      return whereClause;
+    }
+    if (newOperands.size() == 1) {
+      return (CompiledValue) newOperands.get(0);
+    }
+    CompiledJunction junction = new CompiledJunction(
+        (CompiledValue[]) newOperands.toArray(new CompiledValue[newOperands.size()]),
+        LITERAL_and);
+    junction.computeDependencies(context);
+    return junction;
+  }
+
+  /**
+   * Returns the comparison for the composite index of the iterator's region
+   * that covers the most conditions of the group, or null if none covers two.
+   */
+  private static CompiledCompositeComparison combine(RuntimeIterator iterator,
+      List<Candidate> group, ExecutionContext context) {
+    Match best = null;
+    for (String[] components : getCompositeIndexComponents(iterator, context)) {
+      Match match = new Match(components, group);
+      if (match.size() >= 2 && (best == null || match.size() > best.size())) {
+        best = match;
+      }
+    }
+    return best == null ? null : best.toComparison();
+  }
+
+  /**
+   * Returns true if the region of an iterator of the current scope has a
+   * composite index, so that queries on regions without any do not pay for
+   * looking for conditions to combine.
+   */
+  private static boolean hasCompositeIndexes(ExecutionContext context) {
+    for (Object iterator : context.getCurrentIterators()) {
+      if (!getCompositeIndexComponents((RuntimeIterator) iterator, context).isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the expressions of the composite indexes of the region of an
+   * independent iterator of the current scope.
+   */
+  private static List<String[]> getCompositeIndexComponents(
+      RuntimeIterator iterator, ExecutionContext context) {
+    String regionPath = context.getRegionPathForIndependentRuntimeIterator(iterator);
+    if (regionPath == null || iterator.getScopeID() != context.currentScope().getScopeID()) {
+      return Collections.emptyList();
+    }
+    Region region = context.getCache().getRegion(regionPath);
+    IndexManager indexManager = IndexUtils.getIndexManager(region, false);
+    if (indexManager == null) {
+      return Collections.emptyList();
+    }
+    return indexManager.getCompositeIndexComponents();
+  }
+
+  /**
+   * A comparison of a path with a constant that may be part of a composite
+   * lookup.
+   */
+  private static class Candidate {
+    final CompiledComparison comparison;
+    final CompiledValue path;
+    final CompiledValue key;
+    /** the operator with the path on the left */
+    final int operator;
+    final String canonicalizedPath;
+    final RuntimeIterator iterator;
+
+    private Candidate(CompiledComparison comparison, CompiledValue path,
+        CompiledValue key, int operator, String canonicalizedPath,
+        RuntimeIterator iterator) {
+      this.comparison = comparison;
+      this.path = path;
+      this.key = key;
+      this.operator = operator;
+      this.canonicalizedPath = canonicalizedPath;
+      this.iterator = iterator;
+    }
+
+    static Candidate create(CompiledComparison comparison,
+        ExecutionContext context) throws TypeMismatchException,
+        AmbiguousNameException, NameResolutionException {
+      boolean isLeftDependent = context.isDependentOnCurrentScope(comparison._left);
+      boolean isRightDependent = context.isDependentOnCurrentScope(comparison._right);
+      if (isLeftDependent == isRightDependent) {
+        return null;
+      }
+      CompiledValue path = isLeftDependent ? comparison._left : comparison._right;
+      CompiledValue key = isLeftDependent ? comparison._right : comparison._left;
+      if (path instanceof MapIndexable) {
+        return null;
+      }
+      int operator = comparison.reflectOnOperator(key);
+      if (operator != TOK_EQ && operator != TOK_LT && operator != TOK_LE
+          && operator != TOK_GT && operator != TOK_GE) {
+        return null;
+      }
+      Set iterators = QueryUtils.getCurrentScopeUltimateRuntimeIteratorsIfAny(
+          path, context);
+      if (iterators.size() != 1) {
+        return null;
+      }
+      StringBuffer sb = new StringBuffer();
+      path.generateCanonicalizedExpression(sb, context);
+      return new Candidate(comparison, path, key, operator, sb.toString(),
+          (RuntimeIterator) iterators.iterator().next());
+    }
+
+    boolean isLowerBound() {
+      return this.operator == TOK_GT || this.operator == TOK_GE;
+    }
+
+    boolean isUpperBound() {
+      return this.operator == TOK_LT || this.operator == TOK_LE;
+    }
+  }
+
+  /**
+   * The conditions of a group that a composite index covers: equality on
+   * its first expressions and a range on the next one.
+   */
+  private static class Match {
+    final List<Candidate> equalities = new ArrayList<Candidate>();
+    Candidate lower;
+    Candidate upper;
+
+    Match(String[] components, List<Candidate> group) {
+      int i = 0;
+      for (; i < components.length; i++) {
+        Candidate equality = find(group, components[i], TOK_EQ);
+        if (equality == null) {
+          break;
+        }
+        this.equalities.add(equality);
+      }
+      if (i < components.length) {
+        for (Candidate candidate : group) {
+          if (!candidate.canonicalizedPath.equals(components[i])) {
+            continue;
+          }
+          if (this.lower == null && candidate.isLowerBound()) {
+            this.lower = candidate;
+          } else if (this.upper == null && candidate.isUpperBound()) {
+            this.upper = candidate;
+          }
+        }
+      }
+    }
+
+    private static Candidate find(List<Candidate> group, String path,
+        int operator) {
+      for (Candidate candidate : group) {
+        if (candidate.operator == operator
+            && candidate.canonicalizedPath.equals(path)) {
+          return candidate;
+        }
+      }
+      return null;
+    }
+
+    int size() {
+      return this.equalities.size() + (this.lower == null ? 0 : 1)
+          + (this.upper == null ? 0 : 1);
+    }
+
+    CompiledCompositeComparison toComparison() {
+      int numEqualities = this.equalities.size();
+      Candidate range = this.lower != null ? this.lower : this.upper;
+      CompiledValue[] paths = new CompiledValue[numEqualities
+          + (range == null ? 0 : 1)];
+      CompiledValue[] eqKeys = new CompiledValue[numEqualities];
+      for (int i = 0; i < numEqualities; i++) {
+        paths[i] = this.equalities.get(i).path;
+        eqKeys[i] = this.equalities.get(i).key;
+      }
+      if (range != null) {
+        paths[numEqualities] = range.path;
+      }
+      CompositeRangeKey key = new CompositeRangeKey(eqKeys,
+          this.lower == null ? null : this.lower.key,
+          this.lower == null ? 0 : this.lower.operator,
+          this.upper == null ? null : this.upper.key,
+          this.upper == null ? 0 : this.upper.operator);
+
+      List<CompiledComparison> consumed = new ArrayList<CompiledComparison>();
+      for (Candidate equality : this.equalities) {
+        consumed.add(equality.comparison);
+      }
+      if (this.lower != null) {
+        consumed.add(this.lower.comparison);
+      }
+      if (this.upper != null) {
+        consumed.add(this.upper.comparison);
+      }
+      return new CompiledCompositeComparison(new CompiledCompositeKey(paths),
+          key, consumed);
+    }
+  }
+
+  /**
+   * The constants a {@link CompiledCompositeComparison} compares its path
+   * with. It evaluates to the {@link CompositeKey.Range} of the index keys that
+   * satisfy the conditions, or to UNDEFINED if no key can.
+   */
+  static class CompositeRangeKey extends AbstractCompiledValue {
+
+    /** The values of the first fields */
+    private final CompiledValue[] eqKeys;
+
+    /** The lower bound of the next field, if any, and TOK_GT or TOK_GE */
+    private final CompiledValue lowerKey;
+    private final int lowerOperator;
+
+    /** The upper bound of the next field, if any, and TOK_LT or TOK_LE */
+    private final CompiledValue upperKey;
+    private final int upperOperator;
+
+    CompositeRangeKey(CompiledValue[] eqKeys, CompiledValue lowerKey,
+        int lowerOperator, CompiledValue upperKey, int upperOperator) {
+      this.eqKeys = eqKeys;
+      this.lowerKey = lowerKey;
+      this.lowerOperator = lowerOperator;
+      this.upperKey = upperKey;
+      this.upperOperator = upperOperator;
+    }
+
+    @Override
+    public List getChildren() {
+      List children = new ArrayList(Arrays.asList(this.eqKeys));
+      if (this.lowerKey != null) {
+        children.add(this.lowerKey);
+      }
+      if (this.upperKey != null) {
+        children.add(this.upperKey);
+      }
+      return children;
+    }
+
+    public int getType() {
+      return COMPOSITE_KEY_RANGE;
+    }
+
+    public Object evaluate(ExecutionContext context)
+        throws FunctionDomainException, TypeMismatchException,
+        NameResolutionException, QueryInvocationTargetException {
+      int prefixLength = this.eqKeys.length;
+      boolean hasRange = this.lowerKey != null || this.upperKey != null;
+      Object[] values = new Object[prefixLength + (hasRange ? 1 : 0)];
+      for (int i = 0; i < prefixLength; i++) {
+        values[i] = this.eqKeys[i].evaluate(context);
+        if (values[i] == QueryService.UNDEFINED) {
+          return QueryService.UNDEFINED;
+        }
+      }
+      if (!hasRange) {
+        return new CompositeKey.Range(CompositeKey.lowerBound(values),
+            CompositeKey.upperBound(values));
+      }
+
+      CompositeKey lower;
+      if (this.lowerKey != null) {
+        Object value = this.lowerKey.evaluate(context);
+        // a range condition is never true for null or UNDEFINED
+        if (value == null || value == QueryService.UNDEFINED) {
+          return QueryService.UNDEFINED;
+        }
+        values[prefixLength] = value;
+        lower = this.lowerOperator == TOK_GE ? CompositeKey.lowerBound(values)
+            : CompositeKey.upperBound(values);
+      } else {
+        // above the keys whose field is null or UNDEFINED
+        values[prefixLength] = null;
+        lower = CompositeKey.upperBound(values);
+      }
+
+      CompositeKey upper;
+      if (this.upperKey != null) {
+        Object value = this.upperKey.evaluate(context);
+        if (value == null || value == QueryService.UNDEFINED) {
+          return QueryService.UNDEFINED;
+        }
+        values[prefixLength] = value;
+        upper = this.upperOperator == TOK_LE ? CompositeKey.upperBound(values)
+            : CompositeKey.lowerBound(values);
+      } else {
+        upper = CompositeKey.upperBound(Arrays.copyOf(values, prefixLength));
+      }
+      return new CompositeKey.Range(lower, upper);
+    }
+
+    @Override
+    public Set computeDependencies(ExecutionContext context)
+        throws TypeMismatchException, AmbiguousNameException,
+        NameResolutionException {
+      for (Object child : getChildren()) {
+        context.addDependencies(this,
+            ((CompiledValue) child).computeDependencies(context));
+      }
+      return context.getDependencySet(this, true);
+    }
+  }
+}
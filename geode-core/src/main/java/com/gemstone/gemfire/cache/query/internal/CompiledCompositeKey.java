@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.gemstone.gemfire.cache.query.AmbiguousNameException;
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.index.CompositeKey;
+
+/**
+ * An ordered list of expressions whose values together form a
+ * {@link CompositeKey}. It is the indexed expression of a composite index,
+ * written as a comma separated list such as "p.ID, p.status", and the path
+ * of a comparison on the first fields of such an index.
+ *
+ * @since Geode 1.0
+ */
+public class CompiledCompositeKey extends AbstractCompiledValue {
+
+  /** Separates the components in the canonicalized expression */
+  public static final String SEPARATOR = ", ";
+
+  private final CompiledValue[] components;
+
+  public CompiledCompositeKey(CompiledValue[] components) {
+    this.components = components;
+  }
+
+  public CompiledValue[] getComponents() {
+    return this.components;
+  }
+
+  @Override
+  public List getChildren() {
+    return Arrays.asList(this.components);
+  }
+
+  public int getType() {
+    return COMPOSITE_KEY;
+  }
+
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    Object[] values = new Object[this.components.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = this.components[i].evaluate(context);
+    }
+    return new CompositeKey(values);
+  }
+
+  @Override
+  public Set computeDependencies(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException,
+      NameResolutionException {
+    for (CompiledValue component : this.components) {
+      context.addDependencies(this, component.computeDependencies(context));
+    }
+    return context.getDependencySet(this, true);
+  }
+
+  @Override
+  public void generateCanonicalizedExpression(StringBuffer clauseBuffer,
+      ExecutionContext context) throws AmbiguousNameException,
+      TypeMismatchException, NameResolutionException {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < this.components.length; i++) {
+      if (i > 0) {
+        sb.append(SEPARATOR);
+      }
+      StringBuffer component = new StringBuffer();
+      this.components[i].generateCanonicalizedExpression(component, context);
+      sb.append(component);
+    }
+    clauseBuffer.insert(0, sb);
+  }
+
+  /**
+   * Splits an indexed expression at the commas that are not inside quotes,
+   * parentheses or brackets. An expression without such a comma is returned
+   * as the only element.
+   */
+  public static String[] splitComponents(String expression) {
+    List<String> components = new ArrayList<String>();
+    int depth = 0;
+    boolean quoted = false;
+    int start = 0;
+    for (int i = 0; i < expression.length(); i++) {
+      char c = expression.charAt(i);
+      if (c == '\'') {
+        // a doubled quote inside a string literal toggles twice
+        quoted = !quoted;
+      } else if (quoted) {
+        continue;
+      } else if (c == '(' || c == '[') {
+        depth++;
+      } else if (c == ')' || c == ']') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        components.add(expression.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    if (components.isEmpty()) {
+      return new String[] { expression };
+    }
+    components.add(expression.substring(start).trim());
+    return components.toArray(new String[components.size()]);
+  }
+}
@@ -208,6 +208,28 @@ public class CompiledGroupBySelect extends CompiledSelect {
     return newResults;
   }
 
+  /**
+   * Combines the results of evaluating this query on each bucket of a data
+   * node, which hold a row of partial aggregates for every group found in the
+   * bucket, into one row per group. The results must be in group order, as
+   * produced by merging the sorted bucket results. The returned rows are in
+   * the same form as the bucket rows, so the query coordinator handles them
+   * like the results of a single bucket.
+   *
+   * @param context a context whose bucket list is set
+   */
+  public SelectResults combineBucketResults(SelectResults bucketResults,
+      ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    context.setIsBucketResultsCombiner(true);
+    try {
+      return applyAggregateAndGroupBy(bucketResults, context);
+    } finally {
+      context.setIsBucketResultsCombiner(false);
+    }
+  }
+
   private SelectResults createResultSet(ExecutionContext context,
       ObjectType elementType, boolean isStruct, boolean createOrderedResults) {
     elementType = createNewElementType(elementType, isStruct);
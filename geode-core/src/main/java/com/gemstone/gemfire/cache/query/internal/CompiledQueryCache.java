@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gemstone.gemfire.cache.query.internal.parse.GemFireAST;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.cache.CachePerfStats;
+
+/**
+ * A bounded cache of parsed queries keyed by query string. It is used by
+ * {@link DefaultQueryService#newQuery(String)} so that a query string that is
+ * seen over and over, for example one sent by clients or by the query
+ * coordinator of a partitioned region, is only parsed once.
+ * <p>
+ * Only the syntax tree returned by {@link QCompiler#parseQuery(String)} is
+ * cached. It is not modified when it is compiled, so it can be shared by
+ * threads. Each {@link DefaultQuery} compiles its own CompiledValue tree
+ * from it, since a compiled tree keeps state while it is evaluated.
+ * <p>
+ * The least recently used query is evicted once the cache holds
+ * {@link #MAX_SIZE} queries.
+ *
+ * @since Geode 1.0
+ */
+public class CompiledQueryCache {
+
+  /**
+   * The maximum number of parsed queries to keep. Zero disables the cache.
+   */
+  public static final int MAX_SIZE = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "Query.COMPILED_QUERY_CACHE_SIZE", 1000).intValue();
+
+  private final int maxSize;
+
+  private final CachePerfStats stats;
+
+  /** Access ordered so that the eldest entry is the least recently used. */
+  private final LinkedHashMap<String, GemFireAST> queries;
+
+  public CompiledQueryCache(final int maxSize, CachePerfStats stats) {
+    this.maxSize = maxSize;
+    this.stats = stats;
+    this.queries = new LinkedHashMap<String, GemFireAST>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, GemFireAST> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return this.maxSize > 0;
+  }
+
+  /**
+   * Returns the syntax tree of the given query string or null if it is not
+   * cached.
+   */
+  public GemFireAST get(String queryString) {
+    GemFireAST query;
+    synchronized (this.queries) {
+      query = this.queries.get(queryString);
+    }
+    if (query != null) {
+      this.stats.incCompiledQueryCacheHits();
+    } else {
+      this.stats.incCompiledQueryCacheMisses();
+    }
+    return query;
+  }
+
+  public void put(String queryString, GemFireAST query) {
+    synchronized (this.queries) {
+      this.queries.put(queryString, query);
+    }
+  }
+
+  /**
+   * Removes all the cached queries.
+   */
+  public void clear() {
+    synchronized (this.queries) {
+      this.queries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (this.queries) {
+      return this.queries.size();
+    }
+  }
+}
@@ -47,6 +47,7 @@ import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
 import com.gemstone.gemfire.cache.query.types.CollectionType;
 import com.gemstone.gemfire.cache.query.types.ObjectType;
 import com.gemstone.gemfire.cache.query.types.StructType;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.pdx.PdxInstance;
 import com.gemstone.gemfire.pdx.internal.PdxString;
@@ -69,7 +70,7 @@ public class CompiledSelect extends AbstractCompiledValue {
   private CompiledValue limit;
   //Shobhit: counts the no of results satisfying where condition for
   // count(*) non-distinct queries where no indexes are used.
-  private int countStartQueryResult = 0;
+  // The count is kept in the ExecutionContext, see getCountStartQueryResult.
   
   protected List<CompiledValue> groupBy = null;
   //Are not serialized and are recreated when compiling the query
@@ -80,6 +81,9 @@ public class CompiledSelect extends AbstractCompiledValue {
 
   //used as a key in a context to identify the scope of this CompiledSelect 
   private Object scopeID = new Object(); 
+
+  /** The key of the filter clause in the execution cache */
+  private final Object filterClauseKey = new Object();
   
   /*
    * Set in context for the where clause to signify that it has been evaluated at least one time
@@ -94,6 +98,16 @@ public class CompiledSelect extends AbstractCompiledValue {
    */
   private final static String CLAUSE_EVALUATED = "Evaluated";
 
+  /**
+   * The largest fraction of a region that a lookup on an index may be
+   * estimated to return for the index to be used when the where clause is a
+   * single comparison. Above it the region is iterated instead, which is
+   * cheaper than reading most of it through the index. The default of 1.0
+   * always uses the index.
+   */
+  static final double INDEX_SCAN_MAX_SELECTIVITY = Double.parseDouble(System.getProperty(
+      DistributionConfig.GEMFIRE_PREFIX + "Query.INDEX_SCAN_MAX_SELECTIVITY", "1.0"));
+
   public CompiledSelect(boolean distinct, boolean count, CompiledValue whereClause,
                         List iterators, List projAttrs,List<CompiledSortCriterion> orderByAttrs, CompiledValue limit,
                         List<String> hints, List<CompiledValue> groupByClause) {
@@ -473,8 +487,10 @@ public class CompiledSelect extends AbstractCompiledValue {
             this.evalCanonicalizedExpressionForCSC(csc, context, preferredIndexCondn);
             context.cachePut(PREF_INDEX_COND, preferredIndexCondn.toString());        
           }
+          // conditions covered by a composite index are combined
+          CompiledValue filterClause = getFilterClause(context);
           boolean unlock = true;
-          Object obj = context.cacheGet(this.whereClause);
+          Object obj = context.cacheGet(filterClause);
           if(obj != null && (obj instanceof IndexInfo[] || obj.equals(CLAUSE_EVALUATED))) {
             // if indexinfo is cached means the read lock 
             // is not being taken this time, so releasing 
@@ -483,12 +499,14 @@ public class CompiledSelect extends AbstractCompiledValue {
           }
           // see if we should evaluate as filters,
           // and count how many actual index lookups will be performed
-          PlanInfo planInfo = this.whereClause.getPlanInfo(context);
-          if (context.cacheGet(this.whereClause) == null) {
-            context.cachePut(this.whereClause, CLAUSE_EVALUATED);
+          PlanInfo planInfo = filterClause.getPlanInfo(context);
+          if (context.cacheGet(filterClause) == null) {
+            context.cachePut(filterClause, CLAUSE_EVALUATED);
           }
           try {
-            evalAsFilters = planInfo.evalAsFilter;
+            evalAsFilters = planInfo.evalAsFilter
+                && !isIndexLookupUnselective(filterClause, context, planInfo, numInd,
+                    limitValue);
             // let context know if there is exactly one index lookup
             context.setOneIndexLookup(planInfo.indexes.size() == 1);
             if (evalAsFilters) {
@@ -498,7 +516,7 @@ public class CompiledSelect extends AbstractCompiledValue {
               boolean canApplyOrderByAtIndex = false;
               if (limitValue >= 0
                   && numInd == 1
-                  && ((Filter) this.whereClause)
+                  && ((Filter) filterClause)
                       .isLimitApplicableAtIndexLevel(context)) {
                 context.cachePut(CAN_APPLY_LIMIT_AT_INDEX, Boolean.TRUE);
               }
@@ -512,7 +530,7 @@ public class CompiledSelect extends AbstractCompiledValue {
               boolean needsTopLevelOrdering = true;
               if (temp != null
                   && numInd == 1
-                  && ((Filter) this.whereClause)
+                  && ((Filter) filterClause)
                       .isOrderByApplicableAtIndexLevel(context, temp.toString())) {
                 context.cachePut(CAN_APPLY_ORDER_BY_AT_INDEX, Boolean.TRUE);
                 context.cachePut(ORDERBY_ATTRIB, this.orderByAttrs);
@@ -537,7 +555,7 @@ public class CompiledSelect extends AbstractCompiledValue {
 
               context.cachePut(RESULT_LIMIT, limitValue);
               if (numInd == 1
-                  && ((Filter) this.whereClause)
+                  && ((Filter) filterClause)
                       .isProjectionEvaluationAPossibility(context)
                   && (this.orderByAttrs == null || (canApplyOrderByAtIndex && !needsTopLevelOrdering))
                   && this.projAttrs != null) {
@@ -548,7 +566,7 @@ public class CompiledSelect extends AbstractCompiledValue {
               }
               
               
-              result = ((Filter) this.whereClause)
+              result = ((Filter) filterClause)
                   .filterEvaluate(context, null);
               if (!(context.cacheGet(RESULT_TYPE) instanceof Boolean)) {
                 QueryObserverHolder.getInstance()
@@ -611,7 +629,7 @@ public class CompiledSelect extends AbstractCompiledValue {
         if (this.count) {
           SelectResults res = (SelectResults) result;
           
-          if ((this.distinct || evalAsFilters || countStartQueryResult == 0)) {
+          if ((this.distinct || evalAsFilters || context.getCountStartQueryResult(this)[0] == 0)) {
             // Retrun results as it is as distinct is applied
             // at coordinator node for PR queries.
             if (context.getBucketList() != null && this.distinct) {
@@ -626,7 +644,7 @@ public class CompiledSelect extends AbstractCompiledValue {
             result = countResult;
 
           } else {
-            ((ResultsBag)res).addAndGetOccurence(countStartQueryResult);
+            ((ResultsBag)res).addAndGetOccurence(context.getCountStartQueryResult(this)[0]);
           }
         }
       }
@@ -696,6 +714,51 @@ public class CompiledSelect extends AbstractCompiledValue {
     return evaluateLimitValue(bindArguments);
   }
   
+  /**
+   * Returns the where clause to evaluate with indexes: the where clause with
+   * its conditions on the first expressions of a composite index combined
+   * into a single lookup, see {@link CompiledCompositeComparison}. It is
+   * worked out once for each execution of the query.
+   */
+  private CompiledValue getFilterClause(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException,
+      NameResolutionException {
+    if (this.hints != null) {
+      return this.whereClause;
+    }
+    CompiledValue filterClause = (CompiledValue) context.cacheGet(this.filterClauseKey);
+    if (filterClause == null) {
+      filterClause = CompiledCompositeComparison.combineOperands(
+          this.whereClause, context);
+      context.cachePut(this.filterClauseKey, filterClause);
+    }
+    return filterClause;
+  }
+
+  /**
+   * Returns true if the filter clause is a single comparison whose index
+   * lookup is estimated to return more than
+   * {@link #INDEX_SCAN_MAX_SELECTIVITY} of the region.
+   */
+  private boolean isIndexLookupUnselective(CompiledValue filterClause,
+      ExecutionContext context, PlanInfo planInfo, int numInd, int limitValue)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (INDEX_SCAN_MAX_SELECTIVITY >= 1.0 || numInd != 1
+        || planInfo.indexes.size() != 1 || limitValue >= 0
+        || this.orderByAttrs != null || this.hints != null
+        || !(filterClause instanceof CompiledComparison)) {
+      return false;
+    }
+    int regionSize = ((Index)planInfo.indexes.get(0)).getRegion().size();
+    if (regionSize == 0) {
+      return false;
+    }
+    int estimate = ((Filter)filterClause).getSizeEstimate(context);
+    return estimate != Integer.MAX_VALUE
+        && estimate > INDEX_SCAN_MAX_SELECTIVITY * regionSize;
+  }
+
   // returns null if result is UNDEFINED
   private SelectResults doIterationEvaluate(ExecutionContext context, boolean evaluateWhereClause)
       throws TypeMismatchException, FunctionDomainException, NameResolutionException,
@@ -843,7 +906,7 @@ public class CompiledSelect extends AbstractCompiledValue {
       if (this.whereClause == null && iterators.size() == 1 && isCount() && !isDistinct() && 
           sr instanceof QRegion) {
         QRegion qr = (QRegion)sr;
-        countStartQueryResult = qr.getRegion().size();
+        context.getCountStartQueryResult(this)[0] = qr.getRegion().size();
         return 1;
       }
 
@@ -952,8 +1015,29 @@ public class CompiledSelect extends AbstractCompiledValue {
     }
   }
 
+  /**
+   * For ORDER BY with a LIMIT only the first limit rows in sort order can be
+   * part of the result, so the bag drops the others as rows are added instead
+   * of sorting every matching row. Each bucket of a partitioned region then
+   * holds and returns at most limit rows, which are merged by
+   * NWayMergeResults on the data node and on the query coordinator.
+   */
+  private void boundSortedResults(SelectResults results, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    // the unmapped comparator keeps the sort criteria of every row it has seen
+    if (this.hasUnmappedOrderByCols) {
+      return;
+    }
+    int limitValue = evaluateLimitValue(context, this.limit);
+    if (limitValue > -1) {
+      ((SortedResultsBag)results).setMaxSize(limitValue);
+    }
+  }
+
   private SelectResults prepareEmptyResultSet(ExecutionContext context, boolean ignoreOrderBy)
-      throws TypeMismatchException, AmbiguousNameException
+      throws TypeMismatchException, AmbiguousNameException, FunctionDomainException,
+      NameResolutionException, QueryInvocationTargetException
  {
     // Asif:if no projection attributes or '*'as projection attribute
     // & more than one/RunTimeIterator then create a StrcutSet.
@@ -986,6 +1070,9 @@ public class CompiledSelect extends AbstractCompiledValue {
             results = this.distinct ? new SortedStructSet(comparator,
                 (StructTypeImpl) elementType) : new SortedStructBag(comparator,
                 (StructTypeImpl) elementType, nullValuesAtStart);
+            if (!this.distinct) {
+              boundSortedResults(results, context);
+            }
 
           }
         } else {
@@ -999,6 +1086,9 @@ public class CompiledSelect extends AbstractCompiledValue {
                 : new OrderByComparator(this.orderByAttrs, elementType, context);
             results = this.distinct ? new SortedResultSet(comparator)
                 : new SortedResultsBag(comparator, nullValuesAtStart);
+            if (!this.distinct) {
+              boundSortedResults(results, context);
+            }
           }
           results.setElementType(elementType);
         }
@@ -1030,7 +1120,7 @@ public class CompiledSelect extends AbstractCompiledValue {
                                                                      * value
                                                                      */,
           context.getCachePerfStats());
-      countStartQueryResult = 0;
+      context.getCountStartQueryResult(this)[0] = 0;
 
     }
    return results;   
@@ -1233,10 +1323,10 @@ public class CompiledSelect extends AbstractCompiledValue {
       // Shobhit: Add count value to the counter for this select expression.
       // Don't care about Order By for count(*).
       if (isCount() && !this.distinct) {
-        // Counter is local to CompileSelect and not available in ResultSet
+        // Counter is local to this evaluation and not available in ResultSet
         // until
         // the end of evaluate call to this CompiledSelect object.
-        this.countStartQueryResult++;
+        context.getCountStartQueryResult(this)[0]++;
         occurence = 1;
       } else {
         // if order by is present
@@ -29,6 +29,8 @@ import com.gemstone.gemfire.cache.execute.RegionFunctionContext;
 import com.gemstone.gemfire.cache.partition.PartitionRegionHelper;
 import com.gemstone.gemfire.cache.query.*;
 import com.gemstone.gemfire.cache.query.internal.cq.InternalCqQuery;
+import com.gemstone.gemfire.cache.query.internal.index.IndexManager;
+import com.gemstone.gemfire.cache.query.internal.parse.GemFireAST;
 import com.gemstone.gemfire.distributed.internal.DistributionConfig;
 import com.gemstone.gemfire.internal.NanoTimer;
 import com.gemstone.gemfire.internal.cache.*;
@@ -74,6 +76,16 @@ public class DefaultQuery implements Query {
 
   public static int TEST_COMPILED_QUERY_CLEAR_TIME = -1;
 
+  /**
+   * System property to make queries wait for the queued index updates of
+   * regions with asynchronous index maintenance to be applied before they
+   * run. It can also be set per query with
+   * {@link #setWaitForIndexMaintenance(boolean)}, which only applies on this
+   * member: the other members of a partitioned region use the property.
+   */
+  public static final boolean WAIT_FOR_INDEX_MAINTENANCE =
+      Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "Query.WAIT_FOR_INDEX_MAINTENANCE");
+
   // Use to represent null result.
   // Used while adding PR results to the results-queue, which is a blocking queue.
   public static final Object NULL_RESULT = new Object();
@@ -112,6 +124,8 @@ public class DefaultQuery implements Query {
   // to prevent objects from getting deserialized
   private boolean keepSerialized = false;
 
+  private boolean waitForIndexMaintenance = WAIT_FOR_INDEX_MAINTENANCE;
+
   public static final Set<String> reservedKeywords = new HashSet<String>();
 
   static {
@@ -245,9 +259,20 @@ public class DefaultQuery implements Query {
    * @see QueryService#newQuery
    */
   public DefaultQuery(String queryString, Cache cache, boolean isForRemote) {
+    this(queryString, QCompiler.parseQuery(queryString), cache, isForRemote);
+  }
+
+  /**
+   * Creates a query from the syntax tree of its query string, see
+   * {@link QCompiler#parseQuery}. Used for queries whose syntax tree comes
+   * from the {@link CompiledQueryCache}. The tree is compiled into a new
+   * CompiledValue tree for each query, since the compiled tree keeps state
+   * of its own, for example when a GROUP BY is transformed.
+   */
+  DefaultQuery(String queryString, GemFireAST parsedQuery, Cache cache, boolean isForRemote) {
     this.queryString = queryString;
     QCompiler compiler = new QCompiler();
-    this.compiledQuery = compiler.compileQuery(queryString);
+    this.compiledQuery = compiler.compileQuery(parsedQuery);
     CompiledSelect cs = this.getSimpleSelect();
     if(cs != null && !isForRemote && (cs.isGroupBy() || cs.isOrderBy())) {
       QueryExecutionContext ctx = new QueryExecutionContext(null, cache);
@@ -542,6 +567,9 @@ public class DefaultQuery implements Query {
       if (DefaultQuery.testHook != null) {
         DefaultQuery.testHook.doTestHook(6);
       }
+      if (this.waitForIndexMaintenance) {
+        waitForIndexMaintenance(context);
+      }
       try {
         // two-pass evaluation.
         // first pre-compute dependencies, cached in the context.
@@ -1072,6 +1100,47 @@ public class DefaultQuery implements Query {
     }
   }
 
+  public boolean isWaitForIndexMaintenance() {
+    return this.waitForIndexMaintenance;
+  }
+
+  /**
+   * Sets whether this query waits for the queued updates of indexes that are
+   * maintained asynchronously before it runs, so that it sees the writes made
+   * before it was executed.
+   */
+  public void setWaitForIndexMaintenance(boolean waitForIndexMaintenance) {
+    this.waitForIndexMaintenance = waitForIndexMaintenance;
+  }
+
+  /**
+   * Waits for the asynchronous index maintenance of the regions in this
+   * query. For a partitioned region, only of the buckets being queried.
+   */
+  private void waitForIndexMaintenance(ExecutionContext context) {
+    for (Object regionPath : getRegionsInQuery(context.getBindArguments())) {
+      Region region = this.cache.getRegion((String)regionPath);
+      if (region instanceof PartitionedRegion) {
+        PartitionedRegionDataStore dataStore = ((PartitionedRegion)region).getDataStore();
+        List<Integer> buckets = context.getBucketList();
+        if (dataStore != null && buckets != null) {
+          for (Integer bucketId : buckets) {
+            waitForIndexMaintenance(dataStore.getLocalBucketById(bucketId));
+          }
+        }
+      } else if (region instanceof LocalRegion) {
+        waitForIndexMaintenance((LocalRegion)region);
+      }
+    }
+  }
+
+  private static void waitForIndexMaintenance(LocalRegion region) {
+    IndexManager indexManager = region == null ? null : region.getIndexManager();
+    if (indexManager != null) {
+      indexManager.waitForAsyncMaintenance();
+    }
+  }
+
   public boolean isRemoteQuery() {
     return isRemoteQuery;
   }
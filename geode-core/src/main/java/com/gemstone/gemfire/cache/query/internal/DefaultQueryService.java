@@ -29,9 +29,11 @@ import com.gemstone.gemfire.cache.query.internal.cq.ClientCQ;
 import com.gemstone.gemfire.cache.query.internal.cq.CqService;
 import com.gemstone.gemfire.cache.query.internal.cq.InternalCqQuery;
 import com.gemstone.gemfire.cache.query.internal.index.*;
+import com.gemstone.gemfire.cache.query.internal.parse.GemFireAST;
 import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
 import com.gemstone.gemfire.distributed.internal.DistributionConfig;
 import com.gemstone.gemfire.internal.cache.ForceReattemptException;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.cache.InternalCache;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
 import com.gemstone.gemfire.internal.cache.PartitionedRegion;
@@ -94,10 +96,30 @@ public class DefaultQueryService implements QueryService {
     if (queryString.length() == 0)
         throw new QueryInvalidException(LocalizedStrings.DefaultQueryService_THE_QUERY_STRING_MUST_NOT_BE_EMPTY.toLocalizedString());
     ServerProxy serverProxy = pool == null ? null : new ServerProxy(pool);
+    CompiledQueryCache compiledQueries = null;
+    if (serverProxy == null && this.cache instanceof GemFireCacheImpl) {
+      compiledQueries = ((GemFireCacheImpl)this.cache).getCompiledQueryCache();
+    }
+    if (compiledQueries != null && compiledQueries.isEnabled()) {
+      return newLocalQuery(queryString, compiledQueries);
+    }
     DefaultQuery query = new DefaultQuery(queryString, this.cache, serverProxy != null);
     query.setServerProxy(serverProxy);
     return query;
   }
+
+  /**
+   * Creates a query that is executed in this member, reusing the syntax tree
+   * of an earlier query with the same string if there is one.
+   */
+  private Query newLocalQuery(String queryString, CompiledQueryCache compiledQueries) {
+    GemFireAST parsedQuery = compiledQueries.get(queryString);
+    if (parsedQuery == null) {
+      parsedQuery = QCompiler.parseQuery(queryString);
+      compiledQueries.put(queryString, parsedQuery);
+    }
+    return new DefaultQuery(queryString, parsedQuery, this.cache, false);
+  }
   
   public Query newQuery(String queryString,ProxyCache proxyCache){
     Query query = newQuery(queryString);
@@ -89,6 +89,13 @@ public class ExecutionContext {
   private boolean distinct = false;
   private Object currentProjectionField = null;
   private boolean isPRQueryNode = false;
+  private boolean isBucketResultsCombiner = false;
+  /**
+   * count(*) totals of the CompiledSelects evaluated with this context. Kept
+   * here instead of in the CompiledSelect so that a compiled query can be
+   * evaluated by several threads at once. Created on first use.
+   */
+  private Map<CompiledSelect, int[]> countStartQueryResults = null;
   /**
    * Param specialIteratorVar name of special variable to use to denote the
    * current iteration element. Used to implement the "this" var in the query
@@ -198,6 +205,10 @@ public class ExecutionContext {
     this.dependencyGraph = dependencyGraph;
   }
 
+  public Object[] getBindArguments() {
+    return this.bindArguments;
+  }
+
   public Object getBindArgument(int index) {
     if (index > this.bindArguments.length)
         throw new IllegalArgumentException(LocalizedStrings.ExecutionContext_TOO_FEW_QUERY_PARAMETERS.toLocalizedString());
@@ -645,6 +656,22 @@ public class ExecutionContext {
     return this.pr;
   }
 
+  /**
+   * Returns the one element array holding the count(*) total of the given
+   * select for this execution.
+   */
+  int[] getCountStartQueryResult(CompiledSelect select) {
+    if (this.countStartQueryResults == null) {
+      this.countStartQueryResults = new IdentityHashMap<CompiledSelect, int[]>(2);
+    }
+    int[] count = this.countStartQueryResults.get(select);
+    if (count == null) {
+      count = new int[1];
+      this.countStartQueryResults.put(select, count);
+    }
+    return count;
+  }
+
   // General purpose caching methods for data that is only valid for one
   // query execution
   void cachePut(Object key, Object value) {
@@ -730,5 +757,17 @@ public class ExecutionContext {
   public boolean getIsPRQueryNode() {
     return this.isPRQueryNode;
   }
+
+  /**
+   * Set while a data node combines the GROUP BY results of its buckets, see
+   * {@link CompiledGroupBySelect#combineBucketResults}.
+   */
+  public void setIsBucketResultsCombiner(boolean isBucketResultsCombiner) {
+    this.isBucketResultsCombiner = isBucketResultsCombiner;
+  }
+
+  public boolean getIsBucketResultsCombiner() {
+    return this.isBucketResultsCombiner;
+  }
   
 }
@@ -97,6 +97,20 @@ public class IndexTrackingQueryObserver extends QueryObserverAdapter {
     }
   }
   
+  /**
+   * records the estimated size of the lookup on the last index used
+   */
+  public void afterIndexSizeEstimate(Index index, int estimatedResults) {
+    Map indexMap = (Map)this.indexInfo.get();
+    if (indexMap != null) {
+      IndexInfo iInfo = (IndexInfo)indexMap.get(index.getName());
+      if (iInfo != null) {
+        iInfo.getEstimates().put(index.getRegion().getFullPath(),
+            Integer.valueOf(estimatedResults));
+      }
+    }
+  }
+
   /**
    * appends the size of the lookup to the last index name in the list
    */
@@ -159,10 +173,17 @@ public class IndexTrackingQueryObserver extends QueryObserverAdapter {
   public class IndexInfo{
     // A {RegionFullPath, results} map for an Index lookup on a Region.
     private Map<String, Integer> results = new Object2ObjectOpenHashMap();
+    // A {RegionFullPath, estimated results} map, only kept on the node that
+    // did the lookup.
+    private Map<String, Integer> estimates = new Object2ObjectOpenHashMap();
     
     public Map getResults() {
       return results;
     }
+
+    public Map getEstimates() {
+      return estimates;
+    }
     /**
      * Adds a results map (mostly a bucket index lookup results)
      * to the "this" IndexInfo.
@@ -187,10 +208,18 @@ public class IndexTrackingQueryObserver extends QueryObserverAdapter {
       for (Integer i: results.values()){
         total+=i.intValue();
       }
-      return "(Results: "+ total +")";
+      if (estimates.isEmpty()) {
+        return "(Results: "+ total +")";
+      }
+      long estimated = 0;
+      for (Integer i: estimates.values()){
+        estimated+=i.intValue();
+      }
+      return "(Estimated: "+ estimated +", Results: "+ total +")";
     }
     public void merge(IndexInfo src) {
       this.addResults(src.getResults());
+      this.estimates.putAll(src.getEstimates());
     }
   }
 
@@ -60,9 +60,20 @@ public class PathUtils {
   }
   
   public static Object evaluateAttribute(Object target, String attribute)
+  throws NameNotFoundException, QueryInvocationTargetException {
+    return evaluateAttribute(target, new AttributeDescriptor(attribute));
+  }
+
+  /**
+   * Same as {@link #evaluateAttribute(Object, String)} with a descriptor that
+   * the caller keeps between evaluations, so that what it resolves, like the
+   * field of a PdxType, is reused.
+   */
+  public static Object evaluateAttribute(Object target, AttributeDescriptor attributeDescriptor)
   throws NameNotFoundException, QueryInvocationTargetException {
     if(target instanceof Struct){
       Struct struct = (Struct)target;
+      String attribute = attributeDescriptor.getName();
       try{
         return struct.get(attribute);
       }catch(Exception e){
@@ -70,7 +81,7 @@ public class PathUtils {
       }
     }
     try {
-      return new AttributeDescriptor(attribute).read(target);
+      return attributeDescriptor.read(target);
     } catch (NameNotFoundException nfe) {
       if (DefaultQueryService.QUERY_HETEROGENEOUS_OBJECTS ||
           DefaultQueryService.TEST_QUERY_HETEROGENEOUS_OBJECTS) {
@@ -81,26 +92,6 @@ public class PathUtils {
     }
   }
 
-  /*
-   * This was added as part of CQ performance changes.
-   * The change is done to re-use the AttributeDescriptor object instead of creating
-   * it each time. 
-   */
-  /*
-  public static Object evaluateAttribute(Object target, String attribute, AttributeDescriptor attributeDescriptor)
-  throws NameNotFoundException, QueryInvocationTargetException {
-    if(target instanceof Struct){
-      Struct struct = (Struct)target;
-      try{
-        return struct.get(attribute);
-      }catch(Exception e){
-        throw new NameNotFoundException(attribute);
-      }
-    }
-    return attributeDescriptor.read(target);
-  }
-  */
-  
   /**
    * @param pathArray the path starting with an attribute on
    * the initial type.
@@ -77,6 +77,14 @@ public class QCompiler implements OQLLexerTokenTypes {
   /* compile the string into a Query (returns the root CompiledValue)
    */
   public CompiledValue compileQuery(String oqlSource) {  
+    return compileQuery(parseQuery(oqlSource));
+  }
+
+  /* parse the string into the syntax tree of a Query without compiling it.
+   * The tree is not modified by compileQuery(GemFireAST), so it can be
+   * compiled any number of times.
+   */
+  public static GemFireAST parseQuery(String oqlSource) {
     try {
       OQLLexer lexer = new OQLLexer (new StringReader (oqlSource));
       OQLParser parser = new OQLParser (lexer);
@@ -84,7 +92,17 @@ public class QCompiler implements OQLLexerTokenTypes {
       // operators in the grammer proper
       parser.setASTNodeClass ("com.gemstone.gemfire.cache.query.internal.parse.ASTUnsupported");
       parser.queryProgram ();
-      GemFireAST n = (GemFireAST)parser.getAST ();
+      return (GemFireAST)parser.getAST ();
+    } catch (Exception ex){ // This is to make sure that we are wrapping any antlr exception with GemFire Exception. 
+      throw new QueryInvalidException(LocalizedStrings.QCompiler_SYNTAX_ERROR_IN_QUERY_0.toLocalizedString(ex.getMessage()), ex);
+    }
+  }
+
+  /* compile a syntax tree returned by parseQuery into a Query (returns the
+   * root CompiledValue)
+   */
+  public CompiledValue compileQuery(GemFireAST n) {
+    try {
       n.compile(this);
     } catch (Exception ex){ // This is to make sure that we are wrapping any antlr exception with GemFire Exception. 
       throw new QueryInvalidException(LocalizedStrings.QCompiler_SYNTAX_ERROR_IN_QUERY_0.toLocalizedString(ex.getMessage()), ex);
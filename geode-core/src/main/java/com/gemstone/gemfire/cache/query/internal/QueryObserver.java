@@ -86,6 +86,16 @@ public interface QueryObserver {
    * @param oper The operation being attemped on the index. AbstractIndex
    */
   void beforeIndexLookup(Index index, int oper, Object key);
+
+  /**
+   * Called right after {@link #beforeIndexLookup(Index, int, Object)}, only
+   * while an observer is installed, with the number of results the index
+   * estimated the lookup would return.
+   * 
+   * @param index The index being used for the lookup
+   * @param estimatedResults The estimated size of the lookup results
+   */
+  void afterIndexSizeEstimate(Index index, int estimatedResults);
   
   /**
    * Called once right before the query subsystem has requested that the
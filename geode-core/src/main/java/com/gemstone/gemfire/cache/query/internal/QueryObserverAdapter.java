@@ -98,6 +98,17 @@ public class QueryObserverAdapter implements QueryObserver {
   public void beforeIndexLookup(Index index, int oper, Object key) {
   }
 
+  /**
+   * Called right after beforeIndexLookup, only while an observer is
+   * installed, with the number of results the index estimated the lookup
+   * would return.
+   * 
+   * @param index The index being used for the lookup
+   * @param estimatedResults The estimated size of the lookup results
+   */
+  public void afterIndexSizeEstimate(Index index, int estimatedResults) {
+  }
+
   /**
    * Called once right after the query subsystem has requested that the indexing
    * subsystem attempt an index lookup.
@@ -43,6 +43,12 @@ public class SortedResultsBag<E> extends Bag implements Ordered {
   private final Map<E, Integer> sortedMap;
   private final boolean orderedDataAddition;
   private final boolean emitNullAtStart; 
+  /**
+   * If not -1, the maximum number of elements kept by this bag. Elements that
+   * sort after the first maxSize elements are dropped as they are added. Only
+   * used for unordered input.
+   */
+  private int maxSize = -1;
 
   /**
    * Constructor for unordered input
@@ -147,6 +153,48 @@ public class SortedResultsBag<E> extends Bag implements Ordered {
     this.emitNullAtStart = nullAtStart;
   }
 
+  /**
+   * Keeps at most maxSize elements in this bag, the ones that come first in
+   * sort order. Used to evaluate ORDER BY ... LIMIT n without holding every
+   * matching row.
+   */
+  void setMaxSize(int maxSize) {
+    assert !this.orderedDataAddition;
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public boolean add(Object element) {
+    boolean added = super.add(element);
+    trimToMaxSize();
+    return added;
+  }
+
+  @Override
+  public int addAndGetOccurence(Object element) {
+    int occurence = super.addAndGetOccurence(element);
+    trimToMaxSize();
+    return occurence;
+  }
+
+  private void trimToMaxSize() {
+    while (this.maxSize > -1 && this.size > this.maxSize) {
+      // remove the element that would be returned last by the iterator
+      if ((!this.emitNullAtStart && this.numNulls > 0) || this.sortedMap.isEmpty()) {
+        this.numNulls--;
+      } else {
+        Map.Entry<E, Integer> last = ((TreeMap<E, Integer>)this.sortedMap).lastEntry();
+        int count = last.getValue();
+        if (count == 1) {
+          this.sortedMap.remove(last.getKey());
+        } else {
+          this.sortedMap.put(last.getKey(), count - 1);
+        }
+      }
+      this.size--;
+    }
+  }
+
   @Override
   public boolean isModifiable() {
     return false;
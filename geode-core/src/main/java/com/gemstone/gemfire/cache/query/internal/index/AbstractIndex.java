@@ -981,6 +981,14 @@ public abstract class AbstractIndex implements IndexProtocol
     public void incNumBucketIndexes(int delta) 
     {
     }
+
+    public void incNumKeyDistributionBuilds()
+    {
+    }
+
+    public void incKeyDistributionBuildTime(long delta)
+    {
+    }
   }
 
   /**
@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.gemstone.gemfire.cache.Cache;
 import com.gemstone.gemfire.cache.CacheException;
@@ -57,12 +59,12 @@ import com.gemstone.gemfire.cache.query.internal.StructImpl;
 import com.gemstone.gemfire.cache.query.internal.Support;
 import com.gemstone.gemfire.cache.query.internal.index.IndexManager.TestHook;
 import com.gemstone.gemfire.cache.query.internal.index.IndexStore.IndexStoreEntry;
-import com.gemstone.gemfire.cache.query.internal.index.MemoryIndexStore.MemoryIndexStoreEntry;
 import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
 import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
 import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
 import com.gemstone.gemfire.cache.query.types.ObjectType;
 import com.gemstone.gemfire.cache.query.types.StructType;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
 import com.gemstone.gemfire.internal.cache.RegionEntry;
 import com.gemstone.gemfire.internal.cache.RegionEntryContext;
@@ -92,6 +94,22 @@ public class CompactRangeIndex extends AbstractIndex {
   protected ThreadLocal<OldKeyValuePair> oldKeyValue;
  
   private IndexStore indexStore;
+
+  /**
+   * The distribution of the index keys used to estimate the size of range
+   * lookups. Built in the background on first use and rebuilt once it is
+   * stale, see getKeyDistribution.
+   */
+  private volatile KeyDistribution keyDistribution;
+
+  private final AtomicBoolean buildingKeyDistribution = new AtomicBoolean();
+
+  /**
+   * The number of updates of this index. The statistics can not be used to
+   * tell when the key distribution is stale as the bucket indexes of a
+   * partitioned region share them.
+   */
+  private final LongAdder numUpdates = new LongAdder();
   
   static boolean TEST_ALWAYS_UPDATE_IN_PROGRESS = false;
 
@@ -104,6 +122,10 @@ public class CompactRangeIndex extends AbstractIndex {
     if (IndexManager.IS_TEST_LDM) {
       indexStore = new MapIndexStore(((LocalRegion)region).getIndexMap(indexName, indexedExpression, origFromClause), region);
     }
+    else if (IndexManager.NUMERIC_INDEX_STORE
+        && !IndexManager.isObjectModificationInplace()) {
+      indexStore = new NumericIndexStore(region, internalIndexStats);
+    }
     else {
       indexStore = new MemoryIndexStore(region, internalIndexStats);
     }
@@ -131,8 +153,9 @@ public class CompactRangeIndex extends AbstractIndex {
   public void initializeIndex(boolean loadEntries) throws IMQException {
     long startTime = System.nanoTime();
     this.evaluator.initializeIndex(loadEntries);
-    this.internalIndexStats.incNumUpdates(((IMQEvaluator) this.evaluator)
-        .getTotalEntriesUpdated());
+    int entriesUpdated = ((IMQEvaluator) this.evaluator).getTotalEntriesUpdated();
+    this.internalIndexStats.incNumUpdates(entriesUpdated);
+    this.numUpdates.add(entriesUpdated);
     long endTime = System.nanoTime();
     this.internalIndexStats.incUpdateTime(endTime - startTime);
   }
@@ -140,6 +163,7 @@ public class CompactRangeIndex extends AbstractIndex {
   void addMapping(RegionEntry entry) throws IMQException {
     this.evaluator.evaluate(entry, true);
     this.internalIndexStats.incNumUpdates();
+    this.numUpdates.increment();
   }
 
   /**
@@ -165,6 +189,7 @@ public class CompactRangeIndex extends AbstractIndex {
       }
       this.evaluator.evaluate(entry, false);
       this.internalIndexStats.incNumUpdates();
+      this.numUpdates.increment();
     }
   }
   
@@ -173,9 +198,108 @@ public class CompactRangeIndex extends AbstractIndex {
   }
 
   public boolean clear() {
+    this.keyDistribution = null;
     return indexStore.clear();
   }
 
+  /**
+   * Returns the distribution of the keys of this index. If there is none yet
+   * or the index has changed too much since it was built, a new one is built
+   * on the cache's index task pool and the current one, which may be null, is
+   * returned until it is ready. Returns null if the index store can not be
+   * walked in key order.
+   */
+  KeyDistribution getKeyDistribution() {
+    KeyDistribution distribution = this.keyDistribution;
+    if (distribution != null && !distribution.isStale(this.numUpdates.sum())) {
+      return distribution;
+    }
+    if (!(this.indexStore instanceof MemoryIndexStore)
+        && !(this.indexStore instanceof NumericIndexStore)) {
+      return null;
+    }
+    // Only one build at a time; queries keep using the stale distribution.
+    if (this.buildingKeyDistribution.compareAndSet(false, true)) {
+      Runnable build = new Runnable() {
+        public void run() {
+          try {
+            buildKeyDistribution();
+          } finally {
+            buildingKeyDistribution.set(false);
+          }
+        }
+      };
+      Cache cache = this.region.getCache();
+      if (!(cache instanceof GemFireCacheImpl)
+          || !((GemFireCacheImpl)cache).executeIndexTask(build)) {
+        this.buildingKeyDistribution.set(false);
+      }
+    }
+    return distribution;
+  }
+
+  /**
+   * Builds the distribution of the keys of this index and makes it the
+   * current one. Package access for unit tests.
+   */
+  void buildKeyDistribution() {
+    long numUpdates = this.numUpdates.sum();
+    long start = System.nanoTime();
+    // each region entry has at most one key
+    KeyDistribution.Builder builder = new KeyDistribution.Builder(this.region.size(), numUpdates);
+    if (this.indexStore instanceof NumericIndexStore) {
+      ((NumericIndexStore)this.indexStore).addKeysTo(builder);
+    } else {
+      ((MemoryIndexStore)this.indexStore).addKeysTo(builder);
+    }
+    this.keyDistribution = builder.build();
+    this.internalIndexStats.incNumKeyDistributionBuilds();
+    this.internalIndexStats.incKeyDistributionBuildTime(System.nanoTime() - start);
+  }
+
+  /**
+   * Returns true if {@link #getSizeEstimate} counts the matching keys exactly
+   * or takes the count from the key distribution, rather than guessing it
+   * from the first and last keys of the index.
+   */
+  public boolean hasAccurateSizeEstimate(Object key, int operator, int matchLevel)
+      throws TypeMismatchException {
+    switch (operator) {
+    case OQLLexerTokenTypes.TOK_EQ:
+    case OQLLexerTokenTypes.TOK_NE_ALT:
+    case OQLLexerTokenTypes.TOK_NE:
+      return true;
+    case OQLLexerTokenTypes.TOK_LE:
+    case OQLLexerTokenTypes.TOK_LT:
+    case OQLLexerTokenTypes.TOK_GE:
+    case OQLLexerTokenTypes.TOK_GT:
+      return matchLevel <= 0 && key != null && key != IndexManager.NULL
+          && getSizeEstimateFromKeyDistribution(key, operator) >= 0;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Returns the estimated size of a range lookup from the key distribution,
+   * or -1 if there is no distribution or the key can not be compared with the
+   * index keys.
+   */
+  private int getSizeEstimateFromKeyDistribution(Object key, int operator)
+      throws TypeMismatchException {
+    KeyDistribution distribution = getKeyDistribution();
+    if (distribution == null) {
+      return -1;
+    }
+    key = TypeUtils.indexKeyFor(key);
+    key = getPdxStringForIndexedPdxKeys(key);
+    try {
+      return distribution.estimate(key, operator);
+    } catch (ClassCastException e) {
+      return -1;
+    }
+  }
+
   
   public List queryEquijoinCondition(IndexProtocol indx,
       ExecutionContext context) throws TypeMismatchException,
@@ -296,8 +420,7 @@ public class CompactRangeIndex extends AbstractIndex {
     CompactRangeIndex index = (CompactRangeIndex) indexInfo._getIndex();
     RuntimeIterator runtimeItr = index.getRuntimeIteratorForThisIndex(context, indexInfo);
     if (runtimeItr != null) {
-      runtimeItr.setCurrent(((MemoryIndexStoreEntry) entry)
-          .getDeserializedValue());
+      runtimeItr.setCurrent(entry.getDeserializedValue());
     }
     return evaluateEntry(indexInfo, context, keyVal);
   }
@@ -327,6 +450,13 @@ public class CompactRangeIndex extends AbstractIndex {
         break;
       case OQLLexerTokenTypes.TOK_LE:
       case OQLLexerTokenTypes.TOK_LT:
+        if (matchLevel <= 0 && key != IndexManager.NULL) {
+          int estimate = getSizeEstimateFromKeyDistribution(key, operator);
+          if (estimate >= 0) {
+            size = estimate;
+            break;
+          }
+        }
         if (matchLevel <= 0 && (key instanceof Number)) {
 
           int totalSize = indexStore.size();
@@ -391,6 +521,13 @@ public class CompactRangeIndex extends AbstractIndex {
 
       case OQLLexerTokenTypes.TOK_GE:
       case OQLLexerTokenTypes.TOK_GT:
+        if (matchLevel <= 0 && key != IndexManager.NULL) {
+          int estimate = getSizeEstimateFromKeyDistribution(key, operator);
+          if (estimate >= 0) {
+            size = estimate;
+            break;
+          }
+        }
         if (matchLevel <= 0 && (key instanceof Number)) {
           int totalSize = indexStore.size();
           if (CompactRangeIndex.testHook != null) {
@@ -567,10 +704,6 @@ public class CompactRangeIndex extends AbstractIndex {
     if (keysToRemove == null) {
       keysToRemove = new HashSet(0);
     }
-    key = TypeUtils.indexKeyFor(key);
-    if (key == null) {
-      key = IndexManager.NULL;
-    }
     boolean asc = true;
     if (applyOrderBy) {
       CompiledSortCriterion csc = (CompiledSortCriterion) orderByAttribs.get(0);
@@ -578,6 +711,32 @@ public class CompactRangeIndex extends AbstractIndex {
       multiColOrderBy = orderByAttribs.size() > 1;
     }
     CloseableIterator<IndexStoreEntry> iterator = null;
+    if (key instanceof CompositeKey.Range) {
+      // a lookup on a composite index: a single scan between the bounds
+      CompositeKey.Range range = (CompositeKey.Range) key;
+      try {
+        if (asc) {
+          iterator = indexStore.iterator(range.getLower(), false,
+              range.getUpper(), false, keysToRemove);
+        } else {
+          iterator = indexStore.descendingIterator(range.getLower(), false,
+              range.getUpper(), false, keysToRemove);
+        }
+        addToResultsFromEntries(range.getLower(), range.getUpper(),
+            OQLLexerTokenTypes.TOK_GT, OQLLexerTokenTypes.TOK_LT, iterator,
+            results, iterOps, runtimeItr, context, projAttrib,
+            intermediateResults, isIntersection, multiColOrderBy ? -1 : limit);
+      } finally {
+        if (iterator != null) {
+          iterator.close();
+        }
+      }
+      return;
+    }
+    key = TypeUtils.indexKeyFor(key);
+    if (key == null) {
+      key = IndexManager.NULL;
+    }
     try {
       switch (operator) {
       case OQLLexerTokenTypes.TOK_EQ:
@@ -1108,6 +1267,14 @@ public class CompactRangeIndex extends AbstractIndex {
       this.vsdStats.incReadLockCount(delta);
     }
 
+    public void incNumKeyDistributionBuilds() {
+      this.vsdStats.incNumKeyDistributionBuilds();
+    }
+
+    public void incKeyDistributionBuildTime(long delta) {
+      this.vsdStats.incKeyDistributionBuildTime(delta);
+    }
+
     /**
      * Returns the total amount of time (in nanoseconds) spent updating this
      * index.
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.NullToken;
+import com.gemstone.gemfire.cache.query.internal.Undefined;
+import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
+import com.gemstone.gemfire.pdx.internal.PdxString;
+
+/**
+ * The key of a {@link CompositeRangeIndex}: the values of its indexed
+ * expressions for one region value. Keys are ordered field by field, so all
+ * the keys that share a prefix are next to each other in the index.
+ * <p>
+ * A key can also be a bound that sorts just below or just above all the keys
+ * starting with its values, see {@link #lowerBound(Object[])} and
+ * {@link #upperBound(Object[])}. A lookup with equality on the first fields
+ * and a range on the next one is then a single scan between two bounds, see
+ * {@link Range}.
+ *
+ * @since Geode 1.0
+ */
+public final class CompositeKey implements Comparable {
+
+  private static final Comparator COMPARATOR = TypeUtils.getExtendedNumericComparator();
+
+  private final Object[] values;
+
+  /**
+   * 0 for the key of a region value, -1 for a bound below and 1 for a bound
+   * above all the keys starting with the values
+   */
+  private final int bound;
+
+  private CompositeKey(Object[] values, int bound) throws TypeMismatchException {
+    this.values = new Object[values.length];
+    for (int i = 0; i < values.length; i++) {
+      this.values[i] = indexKeyFor(values[i]);
+    }
+    this.bound = bound;
+  }
+
+  public CompositeKey(Object[] values) throws TypeMismatchException {
+    this(values, 0);
+  }
+
+  /**
+   * Returns a key that is lower than all the keys starting with the values
+   * and higher than all the other keys lower than them.
+   */
+  public static CompositeKey lowerBound(Object[] values) throws TypeMismatchException {
+    return new CompositeKey(values, -1);
+  }
+
+  /**
+   * Returns a key that is higher than all the keys starting with the values
+   * and lower than all the other keys higher than them.
+   */
+  public static CompositeKey upperBound(Object[] values) throws TypeMismatchException {
+    return new CompositeKey(values, 1);
+  }
+
+  private static Object indexKeyFor(Object value) throws TypeMismatchException {
+    if (value == null) {
+      return IndexManager.NULL;
+    }
+    if (value instanceof PdxString) {
+      // compare with the strings of the query
+      return value.toString();
+    }
+    return TypeUtils.indexKeyFor(value);
+  }
+
+  public int size() {
+    return this.values.length;
+  }
+
+  public Object get(int i) {
+    return this.values[i];
+  }
+
+  public int compareTo(Object o) {
+    if (o instanceof Undefined || o instanceof NullToken) {
+      // a value whose key could not be evaluated
+      return 1;
+    }
+    CompositeKey other = (CompositeKey)o;
+    int length = Math.min(this.values.length, other.values.length);
+    for (int i = 0; i < length; i++) {
+      int result = compareValues(this.values[i], other.values[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    if (this.values.length == other.values.length) {
+      return Integer.compare(this.bound, other.bound);
+    }
+    if (this.values.length < other.values.length) {
+      // a key sorts before the longer keys it is a prefix of
+      return this.bound == 0 ? -1 : this.bound;
+    }
+    return other.bound == 0 ? 1 : -other.bound;
+  }
+
+  /**
+   * Orders UNDEFINED before NULL and both before any other value, in either
+   * order of the arguments.
+   */
+  private static int compareValues(Object value, Object other) {
+    if (value instanceof Undefined) {
+      return other instanceof Undefined ? 0 : -1;
+    }
+    if (other instanceof Undefined) {
+      return 1;
+    }
+    if (value instanceof NullToken) {
+      return other instanceof NullToken ? 0 : -1;
+    }
+    if (other instanceof NullToken) {
+      return 1;
+    }
+    return COMPARATOR.compare(value, other);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CompositeKey)) {
+      return false;
+    }
+    CompositeKey other = (CompositeKey)o;
+    return this.bound == other.bound && Arrays.equals(this.values, other.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(this.values) + this.bound;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('(');
+    for (int i = 0; i < this.values.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(this.values[i]);
+    }
+    if (this.bound < 0) {
+      sb.append(", MIN");
+    } else if (this.bound > 0) {
+      sb.append(", MAX");
+    }
+    return sb.append(')').toString();
+  }
+
+  /**
+   * The keys between two bounds, neither of which is ever equal to the key of
+   * a region value. This is the lookup key the query engine passes to a
+   * {@link CompositeRangeIndex}.
+   */
+  public static final class Range {
+
+    private final CompositeKey lower;
+
+    private final CompositeKey upper;
+
+    public Range(CompositeKey lower, CompositeKey upper) {
+      this.lower = lower;
+      this.upper = upper;
+    }
+
+    public CompositeKey getLower() {
+      return this.lower;
+    }
+
+    public CompositeKey getUpper() {
+      return this.upper;
+    }
+
+    /**
+     * Returns true if the key, or a prefix of the key as long as the bounds,
+     * is between the bounds.
+     */
+    public boolean contains(Object key) {
+      if (!(key instanceof CompositeKey)) {
+        return false;
+      }
+      try {
+        return this.lower.compareTo(key) < 0 && this.upper.compareTo(key) > 0;
+      } catch (ClassCastException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return this.lower + " .. " + this.upper;
+    }
+  }
+}
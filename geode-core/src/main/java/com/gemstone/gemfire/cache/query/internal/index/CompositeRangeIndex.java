@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.AmbiguousNameException;
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.IndexStatistics;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.CompiledCompositeKey;
+import com.gemstone.gemfire.cache.query.internal.CompiledValue;
+import com.gemstone.gemfire.cache.query.internal.ExecutionContext;
+import com.gemstone.gemfire.cache.query.internal.IndexInfo;
+import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
+
+/**
+ * A range index on several expressions, created with a comma separated
+ * indexed expression such as "p.ID, p.status". Its keys are
+ * {@link CompositeKey}s ordered field by field.
+ * <p>
+ * The query engine uses it for the conditions of a where clause that compare
+ * its first expressions with constants: equality on a prefix of the
+ * expressions and at most a range on the next one. It combines them into a
+ * single lookup with a {@link CompositeKey.Range}, see
+ * {@link com.gemstone.gemfire.cache.query.internal.CompiledCompositeComparison}.
+ *
+ * @since Geode 1.0
+ */
+public class CompositeRangeIndex extends CompactRangeIndex {
+
+  /** The canonicalized expressions of the key fields, in order */
+  private final String[] components;
+
+  public CompositeRangeIndex(String indexName, Region region,
+      String fromClause, String indexedExpression,
+      String projectionAttributes, String origFromClause,
+      String origIndexExpr, String[] definitions, IndexStatistics stats) {
+    super(indexName, region, fromClause, indexedExpression,
+        projectionAttributes, origFromClause, origIndexExpr, definitions, stats);
+    this.components = CompiledCompositeKey.splitComponents(indexedExpression);
+  }
+
+  public String[] getCanonicalizedComponents() {
+    return this.components;
+  }
+
+  /**
+   * Matches the path of a composite condition on all the expressions of this
+   * index or on the first ones.
+   */
+  @Override
+  public boolean isMatchingWithIndexExpression(CompiledValue condnExpr,
+      String condnExprStr, ExecutionContext context)
+      throws AmbiguousNameException, TypeMismatchException,
+      NameResolutionException {
+    if (!(condnExpr instanceof CompiledCompositeKey)) {
+      return false;
+    }
+    return this.indexedExpression.equals(condnExprStr)
+        || this.indexedExpression.startsWith(condnExprStr
+            + CompiledCompositeKey.SEPARATOR);
+  }
+
+  @Override
+  protected boolean evaluateEntry(IndexInfo indexInfo,
+      ExecutionContext context, Object keyVal) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    Object key = keyVal;
+    if (key == null && indexInfo._key() != null) {
+      key = indexInfo._key().evaluate(context);
+    }
+    if (key instanceof CompositeKey.Range) {
+      return ((CompositeKey.Range) key).contains(indexInfo._path().evaluate(
+          context));
+    }
+    return super.evaluateEntry(indexInfo, context, keyVal);
+  }
+
+  @Override
+  public boolean hasAccurateSizeEstimate(Object key, int operator, int matchLevel)
+      throws TypeMismatchException {
+    if (!(key instanceof CompositeKey.Range)) {
+      return super.hasAccurateSizeEstimate(key, operator, matchLevel);
+    }
+    return getKeyDistribution() != null;
+  }
+
+  @Override
+  public int getSizeEstimate(Object key, int operator, int matchLevel)
+      throws TypeMismatchException {
+    if (!(key instanceof CompositeKey.Range)) {
+      return super.getSizeEstimate(key, operator, matchLevel);
+    }
+    CompositeKey.Range range = (CompositeKey.Range) key;
+    long start = updateIndexUseStats(false);
+    try {
+      KeyDistribution distribution = getKeyDistribution();
+      if (distribution == null) {
+        return Integer.MAX_VALUE;
+      }
+      int size = distribution.estimate(range.getUpper(), OQLLexerTokenTypes.TOK_LT)
+          - distribution.estimate(range.getLower(), OQLLexerTokenTypes.TOK_LE);
+      // a range within a bucket of non numeric keys may be estimated as empty
+      return Math.max(size, distribution.getNumValues() > 0 ? 1 : 0);
+    } catch (ClassCastException e) {
+      return Integer.MAX_VALUE;
+    } finally {
+      updateIndexUseEndStats(start, false);
+    }
+  }
+}
@@ -36,6 +36,7 @@ import com.gemstone.gemfire.cache.query.NameResolutionException;
 import com.gemstone.gemfire.cache.query.TypeMismatchException;
 import com.gemstone.gemfire.cache.query.internal.CompiledBindArgument;
 import com.gemstone.gemfire.cache.query.internal.CompiledComparison;
+import com.gemstone.gemfire.cache.query.internal.CompiledCompositeKey;
 import com.gemstone.gemfire.cache.query.internal.CompiledFunction;
 import com.gemstone.gemfire.cache.query.internal.CompiledID;
 import com.gemstone.gemfire.cache.query.internal.CompiledIndexOperation;
@@ -64,6 +65,7 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
   //If true means pattern is *, if false & still map type index that means 
   // more than 1 specific keys
   private boolean isAllKeys = false;
+  private boolean isCompositeIndex = false;
   
   ExecutionContext context = null;
   CompiledValue indexedExpr;
@@ -137,6 +139,11 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
   boolean isMapTypeIndex() {
     return this.isMapTypeIndex; 
   } 
+
+  @Override
+  boolean isCompositeIndex() {
+    return this.isCompositeIndex;
+  }
   
   boolean isAllKeys() {
     return this.isAllKeys;
@@ -440,16 +447,18 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
    */
   private void prepareIndexExpression(String indexedExpression)
       throws IndexInvalidException {
+    String[] components = CompiledCompositeKey.splitComponents(indexedExpression);
+    if (components.length > 1) {
+      prepareCompositeIndexExpression(indexedExpression, components);
+      return;
+    }
     CompiledValue expr = this.compiler.compileQuery(indexedExpression);
     //List indexedExprs = this.compiler.compileProjectionAttributes(indexedExpression);
     if (expr == null  ) {
       throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_INDEXED_EXPRESSION_0.toLocalizedString(indexedExpression)); 
     }
     
-    if (expr instanceof CompiledUndefined || expr instanceof CompiledLiteral
-        || expr instanceof CompiledComparison
-        || expr instanceof CompiledBindArgument
-        || expr instanceof CompiledNegation)
+    if (isInvalidIndexedExpression(expr))
         throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_INDEXED_EXPRESSION_0.toLocalizedString(indexedExpression));
     try {
       StringBuffer sb = new StringBuffer();
@@ -515,6 +524,51 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
     indexedExpr = expr;
   }
 
+  private static boolean isInvalidIndexedExpression(CompiledValue expr) {
+    return expr instanceof CompiledUndefined || expr instanceof CompiledLiteral
+        || expr instanceof CompiledComparison
+        || expr instanceof CompiledBindArgument
+        || expr instanceof CompiledNegation;
+  }
+
+  /**
+   * Prepares the indexed expression of a composite index, a comma separated
+   * list of expressions. Each of them must be a valid expression for a range
+   * index on its own; map keys like p.positions[*] are not supported.
+   */
+  private void prepareCompositeIndexExpression(String indexedExpression,
+      String[] components) throws IndexInvalidException {
+    CompiledValue[] exprs = new CompiledValue[components.length];
+    for (int i = 0; i < components.length; ++i) {
+      CompiledValue expr = components[i].length() == 0 ? null
+          : this.compiler.compileQuery(components[i]);
+      if (expr == null || isInvalidIndexedExpression(expr)
+          || (expr instanceof MapIndexable
+              && (((MapIndexable) expr).getIndexingKeys().size() != 1
+                  || ((MapIndexable) expr).getIndexingKeys().get(0) == CompiledValue.MAP_INDEX_ALL_KEYS))) {
+        throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_INDEXED_EXPRESSION_0.toLocalizedString(indexedExpression));
+      }
+      exprs[i] = expr;
+    }
+    CompiledCompositeKey expr = new CompiledCompositeKey(exprs);
+    try {
+      StringBuffer sb = new StringBuffer();
+      expr.generateCanonicalizedExpression(sb, context);
+      this.indexedExpression = sb.toString();
+      modifiedIndexExpr = expr;
+      if (!this.isFirstIteratorRegionEntry
+          && this.indexedExpression.indexOf(this.canonicalizedIteratorNames[0]) >= 0) {
+        modifiedIndexExpr = getModifiedDependentCompiledValue(context, -1,
+            expr, true);
+      }
+    }
+    catch (Exception e) {
+      throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_INDEXED_EXPRESSION_0.toLocalizedString(indexedExpression), e);
+    }
+    indexedExpr = expr;
+    this.isCompositeIndex = true;
+  }
+
   private void prepareProjectionAttributes(String projectionAttributes)
       throws IndexInvalidException {
     if (projectionAttributes != null && !projectionAttributes.equals("*")) { throw new IndexInvalidException(LocalizedStrings.FunctionalIndexCreationHelper_INVALID_PROJECTION_ATTRIBUTES_0.toLocalizedString(projectionAttributes)); }
@@ -692,6 +746,18 @@ class FunctionalIndexCreationHelper extends IndexCreationHelper {
         return cv;
       }
     }
+    else if (cv instanceof CompiledCompositeKey) {
+      CompiledValue[] components = ((CompiledCompositeKey) cv).getComponents();
+      CompiledValue[] newComponents = new CompiledValue[components.length];
+      for (int i = 0; i < components.length; ++i) {
+        StringBuffer sbuff = new StringBuffer();
+        components[i].generateCanonicalizedExpression(sbuff, context);
+        newComponents[i] = getModifiedDependentCompiledValue(context,
+            currItrID, components[i],
+            sbuff.toString().startsWith(this.canonicalizedIteratorNames[0]));
+      }
+      return new CompiledCompositeKey(newComponents);
+    }
     else if (cv instanceof CompiledIndexOperation) {
       CompiledIndexOperation co = (CompiledIndexOperation) cv;
       CompiledValue cv1 = co.getExpression();
@@ -104,6 +104,14 @@ public abstract class IndexCreationHelper {
   boolean isMapTypeIndex() {
    return false; 
   } 
+
+  /**
+   * Returns true if the indexed expression is a list of expressions whose
+   * values together are the index key, see {@link CompositeRangeIndex}.
+   */
+  boolean isCompositeIndex() {
+    return false;
+  }
   
   public abstract List getIterators();
   abstract CompiledValue getCompiledIndexedExpression();
@@ -37,6 +37,7 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -67,11 +68,25 @@ public class IndexManager  {
   private final ConcurrentMap indexes = new ConcurrentHashMap();
   //TODO Asif : Fix the appropriate size of the Map & the concurrency level
   private ConcurrentMap canonicalizedIteratorNameMap = new ConcurrentHashMap();
-  private IndexUpdaterThread updater;
+  /**
+   * The threads applying index updates when index maintenance is
+   * asynchronous. The updates of an entry always go to the same thread.
+   */
+  private IndexUpdaterThread[] updaters;
 
   // Threshold for Queue.
   private final int INDEX_MAINTENANCE_BUFFER = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "AsynchIndexMaintenanceThreshold", -1).intValue();
 
+  /**
+   * The number of threads applying the index updates of a region whose index
+   * maintenance is asynchronous. The updates of a bucket region are applied by
+   * a single thread as the buckets already spread the updates of a partitioned
+   * region over as many threads.
+   */
+  public static final int ASYNC_INDEX_MAINTENANCE_THREADS = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "index.ASYNC_INDEX_MAINTENANCE_THREADS",
+      Math.min(4, Runtime.getRuntime().availableProcessors())).intValue();
+
   public static boolean JOIN_OPTIMIZATION = !Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "index.DisableJoinOptimization");
   
   // Added for test purposes only.
@@ -99,6 +114,13 @@ public class IndexManager  {
   public static final boolean RANGEINDEX_ONLY =
       Boolean.valueOf(System.getProperty(DistributionConfig.GEMFIRE_PREFIX + "index.RANGEINDEX_ONLY", "false")).booleanValue();
 
+  /**
+   * System property to keep the numeric keys of compact range indexes in
+   * sorted primitive arrays. See {@link NumericIndexStore}.
+   */
+  public static final boolean NUMERIC_INDEX_STORE =
+      Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "index.NUMERIC_INDEX_STORE");
+
   /** For test purpose only */
   public static boolean TEST_RANGEINDEX_ONLY = false;
   public static final String INDEX_ELEMARRAY_THRESHOLD_PROP = "index_elemarray_threshold";
@@ -130,9 +152,18 @@ public class IndexManager  {
     if (!indexMaintenanceSynchronous) {
       final LoggingThreadGroup group =
         LoggingThreadGroup.createThreadGroup("QueryMonitor Thread Group", logger);
-      updater = new IndexUpdaterThread(group, this.INDEX_MAINTENANCE_BUFFER,
-                                       "OqlIndexUpdater:" + region.getFullPath());
-      updater.start();
+      int numUpdaters = region instanceof BucketRegion ? 1
+          : Math.max(1, ASYNC_INDEX_MAINTENANCE_THREADS);
+      updaters = new IndexUpdaterThread[numUpdaters];
+      for (int i = 0; i < numUpdaters; i++) {
+        String threadName = "OqlIndexUpdater:" + region.getFullPath();
+        if (numUpdaters > 1) {
+          threadName += "-" + i;
+        }
+        updaters[i] = new IndexUpdaterThread(group, this.INDEX_MAINTENANCE_BUFFER,
+                                             threadName);
+        updaters[i].start();
+      }
     }
   }
    
@@ -215,10 +246,47 @@ public class IndexManager  {
   }
 
   /**
-   * Used by tests to access the updater thread to determine its progress
+   * Returns the updater thread that applies the updates of the given entry.
+   */
+  private IndexUpdaterThread getUpdaterThread(RegionEntry entry) {
+    if (this.updaters.length == 1) {
+      return this.updaters[0];
+    }
+    int hash = entry.getKey().hashCode() & 0x7fffffff;
+    return this.updaters[hash % this.updaters.length];
+  }
+
+  /**
+   * Used by tests to determine if the updater threads have applied all the
+   * updates queued so far.
+   */
+  public boolean isAsyncMaintenanceDone() {
+    if (isIndexMaintenanceTypeSynchronous()) {
+      return true;
+    }
+    for (IndexUpdaterThread updater : this.updaters) {
+      if (!updater.isDone()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Waits until the updater threads have applied the index updates queued
+   * before this call. Returns at once if index maintenance is synchronous.
    */
-  public IndexUpdaterThread getUpdaterThread() {
-    return this.updater;
+  public void waitForAsyncMaintenance() {
+    if (isIndexMaintenanceTypeSynchronous()) {
+      return;
+    }
+    long[] queued = new long[this.updaters.length];
+    for (int i = 0; i < this.updaters.length; i++) {
+      queued[i] = this.updaters[i].getNumQueued();
+    }
+    for (int i = 0; i < this.updaters.length; i++) {
+      this.updaters[i].waitForProcessed(queued[i]);
+    }
   }
 
   // @todo need more specific list of exceptions
@@ -280,6 +348,11 @@ public class IndexManager  {
       } else {
         throw new AssertionError("Don't know how to set helper for " + indexType);
       }
+      if (helper.isCompositeIndex()
+          && (indexType != IndexType.FUNCTIONAL || !isCompactOrHash)) {
+        throw new UnsupportedOperationException("A composite index must be a functional index with a single iterator over the region values and synchronous index maintenance: "
+            + origIndexedExpression);
+      }
       if (!isCompactOrHash && indexType != IndexType.PRIMARY_KEY) {
         
         if (indexType == IndexType.HASH ) {
@@ -416,29 +489,19 @@ public class IndexManager  {
       return false;
     } 
     
-    // indexedExpression requirement
-    CompiledValue cv = helper.getCompiledIndexedExpression();
-    int nodeType;
-    do {
-      nodeType = cv.getType();
-      if (nodeType == CompiledValue.PATH) {
-        cv = ((CompiledPath)cv).getReceiver();
-      }
-    } while (nodeType == CompiledValue.PATH);
-    // end of path, nodeType at this point should be an Identifier
-    if (nodeType != OQLLexerTokenTypes.Identifier && nodeType != OQLLexerTokenTypes.METHOD_INV) {
-      if (nodeType == OQLLexerTokenTypes.TOK_LBRACK && !helper.isMapTypeIndex() && helper.modifiedIndexExpr instanceof MapIndexable) {
-        if (((MapIndexable)helper.modifiedIndexExpr).getIndexingKeys().size() == 1) {
-          
-        }
-        else {
+    // indexedExpression requirement, which each expression of a composite
+    // index has to meet
+    if (helper.isCompositeIndex()) {
+      CompiledValue[] components = ((CompiledCompositeKey)helper.getCompiledIndexedExpression()).getComponents();
+      CompiledValue[] modifiedComponents = ((CompiledCompositeKey)helper.modifiedIndexExpr).getComponents();
+      for (int i = 0; i < components.length; i++) {
+        if (!isCompactIndexedExpression(components[i], modifiedComponents[i], helper)) {
           return false;
         }
       }
-      else {
-        return false;
-      }
-    } 
+    } else if (!isCompactIndexedExpression(helper.getCompiledIndexedExpression(), helper.modifiedIndexExpr, helper)) {
+      return false;
+    }
     
     // fromClause requirement
     List iterators = helper.getIterators();
@@ -460,6 +523,36 @@ public class IndexManager  {
     return true;
   }
 
+  /**
+   * Returns true if the indexed expression is a path expression, as a
+   * CompactRangeIndex requires.
+   */
+  private boolean isCompactIndexedExpression(CompiledValue cv,
+      CompiledValue modifiedIndexExpr, FunctionalIndexCreationHelper helper) {
+    int nodeType;
+    do {
+      nodeType = cv.getType();
+      if (nodeType == CompiledValue.PATH) {
+        cv = ((CompiledPath)cv).getReceiver();
+      }
+    } while (nodeType == CompiledValue.PATH);
+    // end of path, nodeType at this point should be an Identifier
+    if (nodeType != OQLLexerTokenTypes.Identifier && nodeType != OQLLexerTokenTypes.METHOD_INV) {
+      if (nodeType == OQLLexerTokenTypes.TOK_LBRACK && !helper.isMapTypeIndex() && modifiedIndexExpr instanceof MapIndexable) {
+        if (((MapIndexable)modifiedIndexExpr).getIndexingKeys().size() == 1) {
+          
+        }
+        else {
+          return false;
+        }
+      }
+      else {
+        return false;
+      }
+    } 
+    return true;
+  }
+
   public Index getIndex(String indexName) {
     IndexTask indexTask = new IndexTask(indexName);
     Object ind = this.indexes.get(indexTask);
@@ -791,6 +884,33 @@ public class IndexManager  {
     return getIndexes(null);
   }
 
+  /**
+   * Returns the canonicalized expressions of each populated composite index,
+   * which the query engine matches with the conditions of a where clause.
+   */
+  public List<String[]> getCompositeIndexComponents() {
+    List<String[]> components = null;
+    for (Object ind : this.indexes.values()) {
+      // Check if the value is instance of FutureTask, this means
+      // the index is in create phase.
+      if (ind instanceof FutureTask || !((AbstractIndex)ind).isPopulated()) {
+        continue;
+      }
+      Object index = ind;
+      if (index instanceof PartitionedIndex) {
+        // all the bucket indexes have the same expression
+        index = ((PartitionedIndex)index).getBucketIndex();
+      }
+      if (index instanceof CompositeRangeIndex) {
+        if (components == null) {
+          components = new ArrayList<String[]>();
+        }
+        components.add(((CompositeRangeIndex)index).getCanonicalizedComponents());
+      }
+    }
+    return components == null ? Collections.<String[]>emptyList() : components;
+  }
+
   // @todo need more specific list of exceptions
   /**
    * Remove the specified index.
@@ -866,8 +986,19 @@ public class IndexManager  {
       recreateAllIndexesForRegion();
     }
     else {
-      //System.out.println("Aynchronous update");
-      updater.addTask(RECREATE_INDEX, null, IndexProtocol.OTHER_OP);
+      // Every updater thread must apply the updates queued before the clear
+      // before the indexes are recreated.
+      RecreateIndexesTask task = new RecreateIndexesTask(this.updaters.length);
+      int added = 0;
+      try {
+        for (IndexUpdaterThread updater : this.updaters) {
+          updater.addRecreateTask(task);
+          added++;
+        }
+      } finally {
+        // don't let the updaters that got the task wait for the others
+        task.skip(this.updaters.length - added);
+      }
     }
   }
 
@@ -966,8 +1097,7 @@ public class IndexManager  {
       processAction(entry, action, opCode);
     }
     else {
-      //System.out.println("Aynchronous update");
-      updater.addTask(action, entry, opCode);
+      getUpdaterThread(entry).addTask(action, entry, opCode);
     }
   }
 
@@ -1260,7 +1390,11 @@ public class IndexManager  {
    */
   public void destroy() throws QueryException {
     this.indexes.clear();
-    if (!isIndexMaintenanceTypeSynchronous()) updater.shutdown();
+    if (!isIndexMaintenanceTypeSynchronous()) {
+      for (IndexUpdaterThread updater : this.updaters) {
+        updater.shutdown();
+      }
+    }
   }
   
   /**
@@ -1368,6 +1502,17 @@ public class IndexManager  {
 
     private volatile BlockingQueue pendingTasks;
 
+    /** The number of tasks added to this thread */
+    private final AtomicLong numQueued = new AtomicLong();
+
+    /** The number of tasks this thread has run, only written by this thread */
+    private volatile long numProcessed;
+
+    /** The number of threads in {@link #waitForProcessed(long)} */
+    private final AtomicInteger numWaiting = new AtomicInteger();
+
+    private final Object processedLock = new Object();
+
     /**
      * Creates instance of IndexUpdaterThread
      * @param updateThreshold
@@ -1391,7 +1536,64 @@ public class IndexManager  {
       task[0] = Integer.valueOf(action);
       task[1] = entry;
       task[2] = Integer.valueOf(opCode);  // !!!:ezoerner:20081029 change to valueOf jdk 1.5+
-      pendingTasks.add(task);
+      addTask(task);
+    }
+
+    void addRecreateTask(RecreateIndexesTask recreateTask) {
+      Object[] task = new Object[3];
+      task[0] = Integer.valueOf(RECREATE_INDEX);
+      task[1] = recreateTask;
+      task[2] = Integer.valueOf(IndexProtocol.OTHER_OP);
+      addTask(task);
+    }
+
+    private void addTask(Object[] task) {
+      this.numQueued.incrementAndGet();
+      try {
+        pendingTasks.add(task);
+      } catch (IllegalStateException e) {
+        // the bounded queue is full
+        this.numQueued.decrementAndGet();
+        throw e;
+      }
+    }
+
+    long getNumQueued() {
+      return this.numQueued.get();
+    }
+
+    /**
+     * Waits until this thread has run the given number of tasks, or has
+     * stopped.
+     */
+    void waitForProcessed(long numTasks) {
+      if (this.numProcessed >= numTasks) {
+        return;
+      }
+      this.numWaiting.incrementAndGet();
+      try {
+        synchronized (this.processedLock) {
+          while (this.numProcessed < numTasks && this.running) {
+            boolean interrupted = Thread.interrupted();
+            try {
+              this.processedLock.wait(100);
+            }
+            catch (InterruptedException ie) {
+              interrupted = true;
+            }
+            finally {
+              if (interrupted) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            if (interrupted) {
+              return;
+            }
+          }
+        }
+      } finally {
+        this.numWaiting.decrementAndGet();
+      }
     }
 
     /**
@@ -1428,7 +1630,16 @@ public class IndexManager  {
             if (this.shutdownRequested) {
               break;
             }
-            updateIndexes(task);
+            try {
+              updateIndexes(task);
+            } finally {
+              this.numProcessed++;
+              if (this.numWaiting.get() > 0) {
+                synchronized (this.processedLock) {
+                  this.processedLock.notifyAll();
+                }
+              }
+            }
           }
           catch (InterruptedException ignore) {
             return; // give up (exit the thread)
@@ -1440,42 +1651,86 @@ public class IndexManager  {
       }
     }
 
-    private void updateIndexes(Object[] task) {
+    private void updateIndexes(Object[] task) throws InterruptedException {
       int action = ((Integer)task[0]).intValue();
+      if (action == RECREATE_INDEX) {
+        ((RecreateIndexesTask)task[1]).run();
+        return;
+      }
       RegionEntry entry = (RegionEntry)task[1];
       int opCode = ((Integer)task[2]).intValue();
       //System.out.println("entry = "+entry.getKey());
-      if (entry != null || action == RECREATE_INDEX) {
+      if (entry != null) {
         try {
-          if (action == RECREATE_INDEX) {
-            recreateAllIndexesForRegion();
-          } else {
-            if (entry != null) {
-              entry.setUpdateInProgress(true);
-            }
-            processAction(entry, action, opCode);
-          }
+          entry.setUpdateInProgress(true);
+          processAction(entry, action, opCode);
         }
         catch (Exception e) {
           e.printStackTrace();
         } finally {
-          if (entry != null && action != RECREATE_INDEX) {
-            entry.setUpdateInProgress(false);
-          }
+          entry.setUpdateInProgress(false);
         }
       }
     }
 
     /**
      * Used by tests to determine if the updater thread has finished updating
-     * its indexes. The list is cleared without synchronization, which makes
-     * this methods somewhat unsafe from a threading point of view.
+     * its indexes.
      */
-    public synchronized boolean isDone() {
-      return this.pendingTasks.size() == 0;
+    public boolean isDone() {
+      return this.numProcessed == this.numQueued.get();
     }
 
   }
+
+  /**
+   * Recreates the indexes of a region with asynchronous index maintenance
+   * after the region is cleared. It is added to every updater thread, and the
+   * last thread to run it recreates the indexes while the others wait, so
+   * that no update queued before the clear is applied to the new indexes.
+   * Threads it could not be added to are taken off the count with skip.
+   */
+  class RecreateIndexesTask {
+
+    private final AtomicInteger remaining;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    RecreateIndexesTask(int numUpdaters) {
+      this.remaining = new AtomicInteger(numUpdaters);
+    }
+
+    void run() throws InterruptedException {
+      if (this.remaining.decrementAndGet() > 0) {
+        this.done.await();
+        return;
+      }
+      recreate();
+    }
+
+    /**
+     * Accounts for the updater threads the task could not be added to, for
+     * example because their queue was full. If the task has already been run
+     * by all the others the indexes are recreated in the calling thread.
+     */
+    void skip(int numUpdaters) {
+      if (numUpdaters > 0 && this.remaining.addAndGet(-numUpdaters) == 0) {
+        recreate();
+      }
+    }
+
+    private void recreate() {
+      try {
+        recreateAllIndexesForRegion();
+      }
+      catch (Exception e) {
+        logger.warn("Could not recreate the indexes of region {} after it was cleared", region.getFullPath(), e);
+      }
+      finally {
+        this.done.countDown();
+      }
+    }
+  }
   
   /**
    * Index Task used to create the index. This is used along with the
@@ -1586,7 +1841,13 @@ public class IndexManager  {
       else {
         //boolean isCompact = !helper.isMapTypeIndex() && shouldCreateCompactIndex((FunctionalIndexCreationHelper)helper);
         if (this.isCompactOrHash || this.isLDM) {
-          if (indexType == IndexType.FUNCTIONAL && !helper.isMapTypeIndex()) {
+          if (indexType == IndexType.FUNCTIONAL && helper.isCompositeIndex()) {
+            index = new CompositeRangeIndex(indexName, region, fromClause,
+                indexedExpression,  projectionAttributes, origFromClause,
+                origIndexedExpression, definitions, stats);
+            logger.info("Using Composite Range index implementation for '{}' on region {}", indexName, region.getFullPath());
+          }
+          else if (indexType == IndexType.FUNCTIONAL && !helper.isMapTypeIndex()) {
             index = new CompactRangeIndex(indexName, region, fromClause,
                 indexedExpression,  projectionAttributes, origFromClause,
                 origIndexedExpression, definitions, stats);
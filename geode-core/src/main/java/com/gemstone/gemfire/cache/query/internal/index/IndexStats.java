@@ -42,6 +42,8 @@ public class IndexStats {
   private static final int readLockCountId;
   private static final int numMapIndexKeysId;
   private static final int numBucketIndexesId;
+  private static final int numKeyDistributionBuildsId;
+  private static final int keyDistributionBuildTimeId;
 
   /** The Statistics object that we delegate most behavior to */
   private final Statistics stats;
@@ -72,6 +74,8 @@ public class IndexStats {
         f.createIntGauge("readLockCount", "Current number of read locks taken.", "uses"),
         f.createLongGauge("numMapIndexKeys", "Number of keys in this Map index", "keys"),
         f.createIntGauge("numBucketIndexes", "Number of bucket indexes in the partitioned region", "indexes"),
+        f.createLongCounter("numKeyDistributionBuilds", "Number of times the key distribution used to estimate the size of range lookups was built", "operations"),
+        f.createLongCounter("keyDistributionBuildTime", "Total time spent building the key distribution of this index", "nanoseconds"),
       }
     );
 
@@ -87,6 +91,8 @@ public class IndexStats {
     readLockCountId = type.nameToId("readLockCount");
     numMapIndexKeysId = type.nameToId("numMapIndexKeys");
     numBucketIndexesId = type.nameToId("numBucketIndexes");
+    numKeyDistributionBuildsId = type.nameToId("numKeyDistributionBuilds");
+    keyDistributionBuildTimeId = type.nameToId("keyDistributionBuildTime");
   }
   
   ////////////////////////  Constructors  ////////////////////////
@@ -137,6 +143,10 @@ public class IndexStats {
      return stats.getInt(numBucketIndexesId);
    }
 
+   public long getNumKeyDistributionBuilds() {
+     return stats.getLong(numKeyDistributionBuildsId);
+   }
+
   //////////////////////  Updating Stats  //////////////////////
   
    public void incNumUpdates() {
@@ -187,7 +197,17 @@ public class IndexStats {
    
    public void incNumBucketIndexes(int delta) {
      this.stats.incInt(numBucketIndexesId, delta);
-   }   
+   }
+
+   public void incNumKeyDistributionBuilds() {
+     this.stats.incLong(numKeyDistributionBuildsId, 1);
+   }
+
+   public void incKeyDistributionBuildTime(long delta) {
+     if (CachePerfStats.enableClockStats) {
+       this.stats.incLong(keyDistributionBuildTimeId, delta);
+     }
+   }
   ////// Special Instance Methods /////
 
   /**
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
+import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
+
+/**
+ * An equi-depth histogram of the keys of an index. The query planner uses it
+ * to estimate how many values a range lookup on the index returns.
+ * <p>
+ * It is built by walking the keys of the index in order, see
+ * {@link Builder}. NULL and UNDEFINED keys are left out as range lookups never
+ * return them. A histogram is not updated with the index; the index builds a
+ * new one when it has changed enough, see {@link #isStale(long)}.
+ *
+ * @since Geode 1.0
+ */
+class KeyDistribution {
+
+  /** The number of buckets the builder aims for */
+  static final int NUM_BUCKETS = 64;
+
+  private final Comparator comparator = TypeUtils.getExtendedNumericComparator();
+
+  /** The lowest key of each bucket */
+  private final Object[] lowerKeys;
+
+  /** The highest key of each bucket */
+  private final Object[] upperKeys;
+
+  /** The number of values in the buckets before each bucket */
+  private final long[] valuesBefore;
+
+  /** The number of values in each bucket */
+  private final long[] values;
+
+  private final long numKeys;
+
+  private final long numValues;
+
+  /** The number of index updates when this was built */
+  private final long numUpdates;
+
+  private KeyDistribution(List<Object> lowerKeys, List<Object> upperKeys,
+      List<Long> values, long numKeys, long numUpdates) {
+    int numBuckets = values.size();
+    this.lowerKeys = lowerKeys.toArray();
+    this.upperKeys = upperKeys.toArray();
+    this.valuesBefore = new long[numBuckets];
+    this.values = new long[numBuckets];
+    long total = 0;
+    for (int i = 0; i < numBuckets; i++) {
+      this.valuesBefore[i] = total;
+      this.values[i] = values.get(i);
+      total += this.values[i];
+    }
+    this.numKeys = numKeys;
+    this.numValues = total;
+    this.numUpdates = numUpdates;
+  }
+
+  /**
+   * Returns the number of distinct keys, not counting NULL and UNDEFINED.
+   */
+  long getNumKeys() {
+    return this.numKeys;
+  }
+
+  /**
+   * Returns the number of values, not counting those of NULL and UNDEFINED.
+   */
+  long getNumValues() {
+    return this.numValues;
+  }
+
+  int getNumBuckets() {
+    return this.values.length;
+  }
+
+  /**
+   * Returns true if the index has had more updates than a tenth of its values
+   * since this was built.
+   */
+  boolean isStale(long currentNumUpdates) {
+    return currentNumUpdates - this.numUpdates > Math.max(100, this.numValues / 10);
+  }
+
+  /**
+   * Returns the estimated number of values whose key compares to the given
+   * key with the given operator, one of {@code <}, {@code <=}, {@code >} and
+   * {@code >=}.
+   */
+  int estimate(Object key, int operator) {
+    double estimate;
+    switch (operator) {
+    case OQLLexerTokenTypes.TOK_LT:
+      estimate = valuesBelow(key, false);
+      break;
+    case OQLLexerTokenTypes.TOK_LE:
+      estimate = valuesBelow(key, true);
+      break;
+    case OQLLexerTokenTypes.TOK_GT:
+      estimate = this.numValues - valuesBelow(key, true);
+      break;
+    case OQLLexerTokenTypes.TOK_GE:
+      estimate = this.numValues - valuesBelow(key, false);
+      break;
+    default:
+      throw new IllegalArgumentException("Unexpected operator " + operator);
+    }
+    return (int)Math.min(Integer.MAX_VALUE, Math.max(0, Math.round(estimate)));
+  }
+
+  /**
+   * Returns the estimated number of values with keys below the given key, or
+   * equal to it if inclusive. Within a bucket the values are assumed to be
+   * spread evenly between its lowest and highest keys if they are numbers,
+   * otherwise half of the bucket is counted.
+   */
+  private double valuesBelow(Object key, boolean inclusive) {
+    // find the first bucket whose highest key is not below the key
+    int low = 0;
+    int high = this.upperKeys.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this.comparator.compare(this.upperKeys[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    if (low == this.upperKeys.length) {
+      return this.numValues;
+    }
+    int bucket = low;
+    double below = this.valuesBefore[bucket];
+    int cmpLower = this.comparator.compare(key, this.lowerKeys[bucket]);
+    if (cmpLower < 0 || (cmpLower == 0 && !inclusive)) {
+      return below;
+    }
+    int cmpUpper = this.comparator.compare(key, this.upperKeys[bucket]);
+    if (cmpUpper == 0 && inclusive) {
+      return below + this.values[bucket];
+    }
+    Object lower = this.lowerKeys[bucket];
+    Object upper = this.upperKeys[bucket];
+    if (key instanceof Number && lower instanceof Number
+        && upper instanceof Number) {
+      double l = ((Number)lower).doubleValue();
+      double u = ((Number)upper).doubleValue();
+      if (u > l) {
+        double fraction = (((Number)key).doubleValue() - l) / (u - l);
+        return below + this.values[bucket] * Math.min(1.0, Math.max(0.0, fraction));
+      }
+    }
+    return below + this.values[bucket] / 2.0;
+  }
+
+  /**
+   * Builds a KeyDistribution from the keys of an index, which must be added in
+   * ascending order.
+   */
+  static class Builder {
+    private final Comparator comparator = TypeUtils.getExtendedNumericComparator();
+    private final long valuesPerBucket;
+    private final long numUpdates;
+    private final List<Object> lowerKeys = new ArrayList<Object>();
+    private final List<Object> upperKeys = new ArrayList<Object>();
+    private final List<Long> values = new ArrayList<Long>();
+    private Object lastKey;
+    private long bucketValues;
+    private long numKeys;
+
+    /**
+     * @param expectedValues the approximate number of values in the index
+     * @param numUpdates the number of updates the index has had
+     */
+    Builder(long expectedValues, long numUpdates) {
+      this.valuesPerBucket = Math.max(1, expectedValues / NUM_BUCKETS);
+      this.numUpdates = numUpdates;
+    }
+
+    void addKey(Object key, int numValues) {
+      if (numValues <= 0 || key == null || key == IndexManager.NULL
+          || key == QueryService.UNDEFINED) {
+        return;
+      }
+      if (this.lastKey != null && this.comparator.compare(this.lastKey, key) == 0) {
+        // the same key from another part of the index
+        this.bucketValues += numValues;
+        return;
+      }
+      if (this.bucketValues >= this.valuesPerBucket) {
+        closeBucket();
+      }
+      if (this.bucketValues == 0) {
+        this.lowerKeys.add(key);
+      }
+      this.bucketValues += numValues;
+      this.lastKey = key;
+      this.numKeys++;
+    }
+
+    private void closeBucket() {
+      this.upperKeys.add(this.lastKey);
+      this.values.add(this.bucketValues);
+      this.bucketValues = 0;
+    }
+
+    KeyDistribution build() {
+      if (this.bucketValues > 0) {
+        closeBucket();
+      }
+      return new KeyDistribution(this.lowerKeys, this.upperKeys, this.values,
+          this.numKeys, this.numUpdates);
+    }
+  }
+}
@@ -251,7 +251,7 @@ public class MemoryIndexStore implements IndexStore {
    * @return oldKey
    * @throws TypeMismatchException
    */
-  private Object getOldKey(Object newKey, RegionEntry entry)
+  Object getOldKey(Object newKey, RegionEntry entry)
       throws TypeMismatchException {
     for (Object mapEntry : valueToEntriesMap.entrySet()) {
       Object regionEntries = ((SimpleImmutableEntry) mapEntry).getValue();
@@ -586,6 +586,25 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
     return numIndexKeys.get();
   }
 
+  /**
+   * Adds the keys of this store, in ascending order, to the given builder
+   * along with their number of values.
+   */
+  void addKeysTo(KeyDistribution.Builder builder) {
+    for (Object o : this.valueToEntriesMap.entrySet()) {
+      Map.Entry mapEntry = (Map.Entry) o;
+      builder.addKey(mapEntry.getKey(), sizeOf(mapEntry.getValue()));
+    }
+  }
+
+  /**
+   * Returns the number of region entries in a value of the map.
+   */
+  static int sizeOf(Object regionEntries) {
+    return (regionEntries instanceof RegionEntry) ? 1
+        : ((Collection) regionEntries).size();
+  }
+
   /**
    * A bi-directional iterator over the CSL. Iterates over the entries of CSL
    * where entry is a mapping (value -> Collection) as well as over the
@@ -698,23 +717,27 @@ private Object convertToIndexKey(Object key, RegionEntry entry)
     public void close() {
       // do nothing
     }
+  }
 
-    public boolean removeFromKeysToRemove(Collection keysToRemove, Object key) {
-      Iterator iterator = keysToRemove.iterator();
-      while (iterator.hasNext()) {
-        try {
-          if (TypeUtils
-              .compare(key, iterator.next(), OQLLexerTokenTypes.TOK_EQ).equals(
-                  Boolean.TRUE)) {
-            iterator.remove();
-            return true;
-          }
-        } catch (TypeMismatchException e) {
-          // they are not equals, so we just continue iterating
+  /**
+   * Removes the key from keysToRemove and returns true if keysToRemove holds
+   * the key.
+   */
+  static boolean removeFromKeysToRemove(Collection keysToRemove, Object key) {
+    Iterator iterator = keysToRemove.iterator();
+    while (iterator.hasNext()) {
+      try {
+        if (TypeUtils
+            .compare(key, iterator.next(), OQLLexerTokenTypes.TOK_EQ).equals(
+                Boolean.TRUE)) {
+          iterator.remove();
+          return true;
         }
+      } catch (TypeMismatchException e) {
+        // they are not equals, so we just continue iterating
       }
-      return false;
     }
+    return false;
   }
   
   public String printAll() {
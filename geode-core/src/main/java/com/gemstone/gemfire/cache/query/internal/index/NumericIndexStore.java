@@ -0,0 +1,1045 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.NullToken;
+import com.gemstone.gemfire.cache.query.internal.Undefined;
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * An index store for numeric index keys that keeps most of its mappings in
+ * sorted primitive arrays instead of a skip list.
+ * <p>
+ * New mappings are added to a small {@link MemoryIndexStore} write buffer.
+ * Once the buffer holds {@link #WRITE_BUFFER_SIZE} mappings it is frozen and
+ * merged in the background into a new {@link Segment}: a sorted column of
+ * {@code long} or {@code double} keys and a parallel column of RegionEntries.
+ * Removing a mapping from the segment clears its slot, and the next merge drops
+ * the cleared slots. Lookups binary search the segment and merge its entries
+ * with those of the write buffers in index key order.
+ * <p>
+ * Only keys of one class go to the segment: the class of the first Integer,
+ * Long, Float or Double key added. Any other key, including NULL and
+ * UNDEFINED, is kept in an ordinary MemoryIndexStore.
+ * <p>
+ * {@link CompactRangeIndex} uses this store when
+ * {@link IndexManager#NUMERIC_INDEX_STORE} is set and in-place object
+ * modification is off.
+ *
+ * @since Geode 1.0
+ */
+public class NumericIndexStore implements IndexStore {
+
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The number of mappings the write buffer takes before it is merged into
+   * the segment.
+   */
+  public static final int WRITE_BUFFER_SIZE = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "index.NUMERIC_INDEX_STORE_BUFFER_SIZE", 65536).intValue();
+
+  /**
+   * Locks for removing mappings from a segment, striped by the position of the
+   * first mapping of the removed key.
+   */
+  private static final Object[] REMOVE_LOCKS = new Object[64];
+  static {
+    for (int i = 0; i < REMOVE_LOCKS.length; i++) {
+      REMOVE_LOCKS[i] = new Object();
+    }
+  }
+
+  private final Region region;
+  private final InternalIndexStatistics internalIndexStats;
+  private final Cache cache;
+  private final Comparator comparator = TypeUtils.getExtendedNumericComparator();
+
+  /** Mappings whose keys can not be stored in the segment */
+  private final MemoryIndexStore otherKeys;
+
+  /**
+   * Index maintenance holds the read lock while it uses the current state.
+   * Replacing the state takes the write lock.
+   */
+  private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+  private volatile State state;
+
+  /** The class of the keys kept in the segment and its write buffers */
+  private final AtomicReference<Class> segmentKeyClass = new AtomicReference<Class>();
+
+  private final AtomicInteger bufferedMappings = new AtomicInteger();
+  private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+  private final Object mergeLock = new Object();
+
+  /**
+   * [key, RegionEntry] pairs removed from the segment or the frozen buffer
+   * while they are being merged. They are removed from the new segment too.
+   */
+  private final Queue<Object[]> removedWhileMerging = new ConcurrentLinkedQueue<Object[]>();
+
+  public NumericIndexStore(Region region,
+      InternalIndexStatistics internalIndexStats) {
+    this(region, internalIndexStats, GemFireCacheImpl.getInstance());
+  }
+
+  public NumericIndexStore(Region region,
+      InternalIndexStatistics internalIndexStats, Cache cache) {
+    this.region = region;
+    this.internalIndexStats = internalIndexStats;
+    this.cache = cache;
+    this.otherKeys = new MemoryIndexStore(region, internalIndexStats, cache);
+    this.state = new State(Segment.EMPTY, null, newWriteBuffer());
+  }
+
+  private MemoryIndexStore newWriteBuffer() {
+    MemoryIndexStore buffer = new MemoryIndexStore(this.region, this.internalIndexStats, this.cache);
+    buffer.setIndexOnRegionKeys(this.otherKeys.isIndexOnRegionKeys());
+    buffer.setIndexOnValues(this.otherKeys.isIndexOnValues());
+    return buffer;
+  }
+
+  /**
+   * Returns true if the key goes to the segment, choosing the segment's key
+   * class if this is the first numeric key.
+   */
+  private boolean isSegmentKey(Object indexKey) {
+    if (indexKey == null) {
+      return false;
+    }
+    Class keyClass = indexKey.getClass();
+    if (keyClass != Integer.class && keyClass != Long.class
+        && keyClass != Float.class && keyClass != Double.class) {
+      return false;
+    }
+    return this.segmentKeyClass.compareAndSet(null, keyClass)
+        || this.segmentKeyClass.get() == keyClass;
+  }
+
+  /**
+   * Returns true if the key can be compared with the keys of the segment.
+   */
+  private static boolean isComparableWithSegment(Object key) {
+    return key instanceof Number || key instanceof NullToken
+        || key instanceof Undefined;
+  }
+
+  @Override
+  public void addMapping(Object indexKey, RegionEntry re) throws IMQException {
+    updateMapping(indexKey, null, re, null);
+  }
+
+  @Override
+  public void updateMapping(Object newKey, Object oldKey, RegionEntry entry,
+      Object oldValue) throws IMQException {
+    this.stateLock.readLock().lock();
+    try {
+      State s = this.state;
+      // Same as MemoryIndexStore, the value was modified in place if the old
+      // and new values are the same object.
+      if (oldValue != null && oldValue == getTargetObjectInVM(entry)) {
+        oldKey = getOldKey(s, newKey, entry);
+      }
+      Object indexKey = TypeUtils.indexKeyFor(newKey);
+      if (oldKey != null && oldKey.equals(indexKey)) {
+        return;
+      }
+      boolean segmentKey = isSegmentKey(indexKey);
+      MemoryIndexStore store = segmentKey ? s.active : this.otherKeys;
+      store.updateMapping(indexKey, null, entry, null);
+      if (oldKey != null) {
+        basicRemoveMapping(s, oldKey, entry, false);
+      }
+      if (segmentKey && this.bufferedMappings.incrementAndGet() >= WRITE_BUFFER_SIZE) {
+        scheduleMerge();
+      }
+    } catch (TypeMismatchException ex) {
+      throw new IMQException("Could not add object of type "
+          + newKey.getClass().getName(), ex);
+    } finally {
+      this.stateLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeMapping(Object indexKey, RegionEntry re)
+      throws IMQException {
+    this.stateLock.readLock().lock();
+    try {
+      basicRemoveMapping(this.state, indexKey, re, true);
+    } finally {
+      this.stateLock.readLock().unlock();
+    }
+  }
+
+  private boolean basicRemoveMapping(State s, Object key, RegionEntry entry,
+      boolean findOldKey) throws IMQException {
+    Object indexKey;
+    try {
+      indexKey = TypeUtils.indexKeyFor(key);
+    } catch (TypeMismatchException ex) {
+      throw new IMQException("Could not add object of type "
+          + key.getClass().getName(), ex);
+    }
+    boolean found;
+    if (indexKey != null && indexKey.getClass() == this.segmentKeyClass.get()) {
+      found = s.active.basicRemoveMapping(indexKey, entry, false);
+      if (!found && s.frozen != null) {
+        found = s.frozen.basicRemoveMapping(indexKey, entry, false);
+        if (found) {
+          this.removedWhileMerging.add(new Object[] {indexKey, entry});
+        }
+      }
+      if (!found) {
+        int removed = s.segment.remove(indexKey, entry, this.comparator);
+        found = removed != Segment.NOT_FOUND;
+        if (found) {
+          this.internalIndexStats.incNumValues(-1);
+          if (removed == Segment.REMOVED_KEY) {
+            this.internalIndexStats.incNumKeys(-1);
+          }
+          if (s.frozen != null) {
+            this.removedWhileMerging.add(new Object[] {indexKey, entry});
+          }
+        }
+      }
+    } else {
+      found = this.otherKeys.basicRemoveMapping(indexKey, entry, false);
+    }
+    if (!found && findOldKey && key != null) {
+      // The mapping may be under another key if the value was modified in
+      // place, find the old key by looking for the entry.
+      try {
+        Object oldKey = getOldKey(s, key, entry);
+        if (oldKey != key) {
+          found = basicRemoveMapping(s, oldKey, entry, false);
+        }
+      } catch (TypeMismatchException e) {
+        throw new IMQException("Could not find old key: "
+            + key.getClass().getName(), e);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns a key other than newKey that maps to the entry, or newKey if
+   * there is none. This looks at every mapping so it is only used when a
+   * value has been modified in place.
+   */
+  private Object getOldKey(State s, Object newKey, RegionEntry entry)
+      throws TypeMismatchException {
+    Object oldKey = this.otherKeys.getOldKey(newKey, entry);
+    if (oldKey == newKey) {
+      oldKey = s.active.getOldKey(newKey, entry);
+    }
+    if (oldKey == newKey && s.frozen != null) {
+      oldKey = s.frozen.getOldKey(newKey, entry);
+    }
+    if (oldKey == newKey) {
+      Object indexKey = TypeUtils.indexKeyFor(newKey);
+      Segment segment = s.segment;
+      for (int i = 0; i < segment.length(); i++) {
+        if (segment.entries.get(i) == entry) {
+          Object key = segment.keyAt(i);
+          if (!key.equals(indexKey)) {
+            return key;
+          }
+        }
+      }
+    }
+    return oldKey;
+  }
+
+  /**
+   * Merges the write buffer on the cache's index task pool. The buffer is
+   * left as it is if the cache is closing.
+   */
+  private void scheduleMerge() {
+    if (this.mergeScheduled.compareAndSet(false, true)) {
+      Runnable merge = new Runnable() {
+        public void run() {
+          try {
+            mergeWriteBuffer();
+          } finally {
+            mergeScheduled.set(false);
+          }
+        }
+      };
+      if (!(this.cache instanceof GemFireCacheImpl)
+          || !((GemFireCacheImpl)this.cache).executeIndexTask(merge)) {
+        this.mergeScheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Freezes the write buffer and merges it into a new segment. Queries keep
+   * reading the old segment and the frozen buffer until the new segment
+   * replaces them. Package access for unit tests.
+   */
+  void mergeWriteBuffer() {
+    synchronized (this.mergeLock) {
+      State s;
+      this.stateLock.writeLock().lock();
+      try {
+        s = this.state;
+        // The frozen buffer is still there if the last merge failed.
+        if (s.frozen == null) {
+          if (s.active.size() == 0) {
+            return;
+          }
+          s = new State(s.segment, s.active, newWriteBuffer());
+          this.state = s;
+          this.bufferedMappings.set(0);
+        }
+      } finally {
+        this.stateLock.writeLock().unlock();
+      }
+
+      Segment merged = Segment.merge(s.segment, s.frozen, this.segmentKeyClass.get(), this.comparator);
+
+      this.stateLock.writeLock().lock();
+      try {
+        if (this.state.frozen != s.frozen) {
+          // cleared while merging
+          return;
+        }
+        Object[] removed;
+        while ((removed = this.removedWhileMerging.poll()) != null) {
+          merged.remove(removed[0], (RegionEntry)removed[1], this.comparator);
+        }
+        // The segment counts each of its keys once, the buffers counted the
+        // keys they shared with the segment again.
+        this.internalIndexStats.incNumKeys(merged.numKeys.get()
+            - s.segment.numKeys.get() - s.frozen.size());
+        this.state = new State(merged, null, this.state.active);
+      } finally {
+        this.stateLock.writeLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> get(Object indexKey) {
+    State s = this.state;
+    List<CloseableIterator<IndexStoreEntry>> sources = new ArrayList<CloseableIterator<IndexStoreEntry>>(4);
+    sources.add(this.otherKeys.get(indexKey));
+    if (indexKey instanceof Number) {
+      sources.add(s.active.get(indexKey));
+      if (s.frozen != null) {
+        sources.add(s.frozen.get(indexKey));
+      }
+      addSegmentIterator(sources, s.segment, indexKey, true, indexKey, true, false);
+    }
+    return new NumericIndexStoreIterator(sources, false, null);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> iterator(final Object start,
+      final boolean startInclusive, final Object end, final boolean endInclusive,
+      Collection keysToRemove) {
+    return newIterator(new BufferIterator() {
+      public CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store) {
+        return store.iterator(start, startInclusive, end, endInclusive, null);
+      }
+    }, start, startInclusive, end, endInclusive, false, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> iterator(final Object start,
+      final boolean startInclusive, Collection keysToRemove) {
+    return newIterator(new BufferIterator() {
+      public CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store) {
+        return store.iterator(start, startInclusive, null);
+      }
+    }, start, startInclusive, null, false, false, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> iterator(Collection keysToRemove) {
+    return newIterator(new BufferIterator() {
+      public CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store) {
+        return store.iterator(null);
+      }
+    }, null, false, null, false, false, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> descendingIterator(
+      final Object start, final boolean startInclusive, Collection keysToRemove) {
+    return newIterator(new BufferIterator() {
+      public CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store) {
+        return store.descendingIterator(start, startInclusive, null);
+      }
+    }, start, startInclusive, null, false, true, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> descendingIterator(
+      Collection keysToRemove) {
+    return newIterator(new BufferIterator() {
+      public CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store) {
+        return store.descendingIterator(null);
+      }
+    }, null, false, null, false, true, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> descendingIterator(
+      final Object start, final boolean startInclusive, final Object end,
+      final boolean endInclusive, Collection keysToRemove) {
+    return newIterator(new BufferIterator() {
+      public CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store) {
+        return store.descendingIterator(start, startInclusive, end, endInclusive, null);
+      }
+    }, start, startInclusive, end, endInclusive, true, keysToRemove);
+  }
+
+  /**
+   * Returns the iterator over the same range of a write buffer or of the store
+   * for other keys.
+   */
+  private interface BufferIterator {
+    CloseableIterator<IndexStoreEntry> on(MemoryIndexStore store);
+  }
+
+  private CloseableIterator<IndexStoreEntry> newIterator(BufferIterator range,
+      Object start, boolean startInclusive, Object end, boolean endInclusive,
+      boolean descending, Collection keysToRemove) {
+    State s = this.state;
+    List<CloseableIterator<IndexStoreEntry>> sources = new ArrayList<CloseableIterator<IndexStoreEntry>>(4);
+    sources.add(range.on(this.otherKeys));
+    if ((start == null || isComparableWithSegment(start))
+        && (end == null || isComparableWithSegment(end))) {
+      sources.add(range.on(s.active));
+      if (s.frozen != null) {
+        sources.add(range.on(s.frozen));
+      }
+      addSegmentIterator(sources, s.segment, start, startInclusive, end, endInclusive, descending);
+    }
+    return new NumericIndexStoreIterator(sources, descending, keysToRemove);
+  }
+
+  private void addSegmentIterator(List<CloseableIterator<IndexStoreEntry>> sources,
+      Segment segment, Object start, boolean startInclusive, Object end,
+      boolean endInclusive, boolean descending) {
+    int from = start == null ? 0 : segment.lowerBound(start, startInclusive, this.comparator);
+    int to = end == null ? segment.length() : segment.lowerBound(end, !endInclusive, this.comparator);
+    if (from < to) {
+      sources.add(new SegmentIterator(segment, from, to, descending));
+    }
+  }
+
+  @Override
+  public int size(Object key) {
+    State s = this.state;
+    int size = this.otherKeys.size(key);
+    if (key instanceof Number) {
+      size += s.active.size(key);
+      if (s.frozen != null) {
+        size += s.frozen.size(key);
+      }
+      Segment segment = s.segment;
+      for (int i = segment.lowerBound(key, true, this.comparator); i < segment.length()
+          && segment.compareKeyAt(i, key, this.comparator) == 0; i++) {
+        if (segment.entries.get(i) != null) {
+          size++;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of keys. A key that is both in the segment and in a
+   * write buffer is counted twice until the buffer is merged.
+   */
+  @Override
+  public int size() {
+    State s = this.state;
+    return this.otherKeys.size() + s.active.size()
+        + (s.frozen == null ? 0 : s.frozen.size()) + s.segment.numKeys.get();
+  }
+
+  /**
+   * Adds the keys of this store, in ascending order, to the given builder
+   * along with their number of values. The keys of the other parts are
+   * gathered in a sorted map, which stays small as the write buffers are
+   * merged regularly, and are merged with the runs of the segment.
+   */
+  void addKeysTo(KeyDistribution.Builder builder) {
+    State s = this.state;
+    Segment segment = s.segment;
+    TreeMap<Object, Integer> others = new TreeMap<Object, Integer>(this.comparator);
+    addKeysTo(others, this.otherKeys);
+    addKeysTo(others, s.active);
+    if (s.frozen != null) {
+      addKeysTo(others, s.frozen);
+    }
+    Iterator<Map.Entry<Object, Integer>> othersIterator = others.entrySet().iterator();
+    Map.Entry<Object, Integer> other = othersIterator.hasNext() ? othersIterator.next() : null;
+    int i = 0;
+    while (i < segment.length()) {
+      int runEnd = i;
+      int live = 0;
+      while (runEnd < segment.length() && segment.sameKey(i, runEnd)) {
+        if (segment.entries.get(runEnd) != null) {
+          live++;
+        }
+        runEnd++;
+      }
+      if (live > 0) {
+        Object key = segment.keyAt(i);
+        while (other != null && this.comparator.compare(other.getKey(), key) < 0) {
+          builder.addKey(other.getKey(), other.getValue());
+          other = othersIterator.hasNext() ? othersIterator.next() : null;
+        }
+        builder.addKey(key, live);
+      }
+      i = runEnd;
+    }
+    while (other != null) {
+      builder.addKey(other.getKey(), other.getValue());
+      other = othersIterator.hasNext() ? othersIterator.next() : null;
+    }
+  }
+
+  private static void addKeysTo(Map<Object, Integer> keys, MemoryIndexStore store) {
+    for (Object o : store.valueToEntriesMap.entrySet()) {
+      Map.Entry mapEntry = (Map.Entry)o;
+      int size = MemoryIndexStore.sizeOf(mapEntry.getValue());
+      Integer previous = keys.get(mapEntry.getKey());
+      keys.put(mapEntry.getKey(), previous == null ? size : previous + size);
+    }
+  }
+
+  @Override
+  public boolean clear() {
+    this.stateLock.writeLock().lock();
+    try {
+      this.otherKeys.clear();
+      this.state = new State(Segment.EMPTY, null, newWriteBuffer());
+      this.segmentKeyClass.set(null);
+      this.bufferedMappings.set(0);
+      this.removedWhileMerging.clear();
+    } finally {
+      this.stateLock.writeLock().unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public String printAll() {
+    StringBuilder sb = new StringBuilder();
+    Iterator<IndexStoreEntry> iterator = iterator(null);
+    while (iterator.hasNext()) {
+      IndexStoreEntry entry = iterator.next();
+      sb.append("Key: ").append(entry.getDeserializedKey())
+          .append(" Value:").append(entry.getDeserializedValue()).append("\n");
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public boolean isIndexOnRegionKeys() {
+    return this.otherKeys.isIndexOnRegionKeys();
+  }
+
+  @Override
+  public void setIndexOnRegionKeys(boolean indexOnRegionKeys) {
+    this.stateLock.writeLock().lock();
+    try {
+      this.otherKeys.setIndexOnRegionKeys(indexOnRegionKeys);
+      this.state.active.setIndexOnRegionKeys(indexOnRegionKeys);
+      if (this.state.frozen != null) {
+        this.state.frozen.setIndexOnRegionKeys(indexOnRegionKeys);
+      }
+    } finally {
+      this.stateLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean isIndexOnValues() {
+    return this.otherKeys.isIndexOnValues();
+  }
+
+  @Override
+  public void setIndexOnValues(boolean indexOnValues) {
+    this.stateLock.writeLock().lock();
+    try {
+      this.otherKeys.setIndexOnValues(indexOnValues);
+      this.state.active.setIndexOnValues(indexOnValues);
+      if (this.state.frozen != null) {
+        this.state.frozen.setIndexOnValues(indexOnValues);
+      }
+    } finally {
+      this.stateLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Object getTargetObject(RegionEntry entry) {
+    return this.otherKeys.getTargetObject(entry);
+  }
+
+  @Override
+  public Object getTargetObjectInVM(RegionEntry entry) {
+    return this.otherKeys.getTargetObjectInVM(entry);
+  }
+
+  /**
+   * The parts of the store that hold segment keys. Replaced as a whole so that
+   * a query sees a consistent set of parts.
+   */
+  private static final class State {
+    final Segment segment;
+    /** The write buffer being merged into the segment, or null */
+    final MemoryIndexStore frozen;
+    final MemoryIndexStore active;
+
+    State(Segment segment, MemoryIndexStore frozen, MemoryIndexStore active) {
+      this.segment = segment;
+      this.frozen = frozen;
+      this.active = active;
+    }
+  }
+
+  /**
+   * Immutable sorted columns of keys and RegionEntries. A key with several
+   * entries is repeated. The slot of a removed entry is set to null.
+   */
+  static final class Segment {
+
+    static final Segment EMPTY = new Segment(null, new long[0], null,
+        new RegionEntry[0], 0);
+
+    static final int NOT_FOUND = 0;
+    static final int REMOVED = 1;
+    /** The removed entry was the last one for its key */
+    static final int REMOVED_KEY = 2;
+
+    final Class keyClass;
+    /** The keys if they are Integers or Longs */
+    final long[] longKeys;
+    /** The keys if they are Floats or Doubles */
+    final double[] doubleKeys;
+    final AtomicReferenceArray<RegionEntry> entries;
+    /** The number of keys that still have entries */
+    final AtomicInteger numKeys;
+
+    private Segment(Class keyClass, long[] longKeys, double[] doubleKeys,
+        RegionEntry[] entries, int numKeys) {
+      this.keyClass = keyClass;
+      this.longKeys = longKeys;
+      this.doubleKeys = doubleKeys;
+      this.entries = new AtomicReferenceArray<RegionEntry>(entries);
+      this.numKeys = new AtomicInteger(numKeys);
+    }
+
+    int length() {
+      return this.entries.length();
+    }
+
+    Object keyAt(int i) {
+      if (this.keyClass == Integer.class) {
+        return Integer.valueOf((int)this.longKeys[i]);
+      } else if (this.keyClass == Long.class) {
+        return Long.valueOf(this.longKeys[i]);
+      } else if (this.keyClass == Float.class) {
+        return Float.valueOf((float)this.doubleKeys[i]);
+      }
+      return Double.valueOf(this.doubleKeys[i]);
+    }
+
+    boolean sameKey(int i, int j) {
+      if (this.longKeys != null) {
+        return this.longKeys[i] == this.longKeys[j];
+      }
+      return Double.compare(this.doubleKeys[i], this.doubleKeys[j]) == 0;
+    }
+
+    /**
+     * Compares the key at i with the given key. Keys of the segment's class
+     * are compared without boxing.
+     */
+    int compareKeyAt(int i, Object key, Comparator comparator) {
+      if (key.getClass() == this.keyClass) {
+        if (this.longKeys != null) {
+          return Long.compare(this.longKeys[i], ((Number)key).longValue());
+        }
+        return Double.compare(this.doubleKeys[i], ((Number)key).doubleValue());
+      }
+      return comparator.compare(keyAt(i), key);
+    }
+
+    /**
+     * Returns the position of the first key that is greater than or equal to
+     * the given key, or greater than it if not inclusive.
+     */
+    int lowerBound(Object key, boolean inclusive, Comparator comparator) {
+      int low = 0;
+      int high = length();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compareKeyAt(mid, key, comparator);
+        if (cmp < 0 || (cmp == 0 && !inclusive)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    int remove(Object key, RegionEntry entry, Comparator comparator) {
+      if (length() == 0 || !(key instanceof Number)) {
+        return NOT_FOUND;
+      }
+      int first = lowerBound(key, true, comparator);
+      int last = first;
+      while (last < length() && compareKeyAt(last, key, comparator) == 0) {
+        last++;
+      }
+      for (int i = first; i < last; i++) {
+        if (this.entries.get(i) == entry) {
+          synchronized (REMOVE_LOCKS[first % REMOVE_LOCKS.length]) {
+            if (!this.entries.compareAndSet(i, entry, null)) {
+              return NOT_FOUND;
+            }
+            for (int j = first; j < last; j++) {
+              if (this.entries.get(j) != null) {
+                return REMOVED;
+              }
+            }
+            this.numKeys.decrementAndGet();
+            return REMOVED_KEY;
+          }
+        }
+      }
+      return NOT_FOUND;
+    }
+
+    /**
+     * Returns a new segment with the entries of the given segment and write
+     * buffer, which must only hold keys of the given class.
+     */
+    static Segment merge(Segment segment, MemoryIndexStore buffer,
+        Class keyClass, Comparator comparator) {
+      List<Number> bufferKeys = new ArrayList<Number>();
+      List<RegionEntry> bufferEntries = new ArrayList<RegionEntry>();
+      for (Object o : buffer.valueToEntriesMap.entrySet()) {
+        Map.Entry mapEntry = (Map.Entry)o;
+        Object value = mapEntry.getValue();
+        if (value instanceof RegionEntry) {
+          bufferKeys.add((Number)mapEntry.getKey());
+          bufferEntries.add((RegionEntry)value);
+        } else if (value instanceof Collection) {
+          for (Object re : (Collection)value) {
+            if (re != null) {
+              bufferKeys.add((Number)mapEntry.getKey());
+              bufferEntries.add((RegionEntry)re);
+            }
+          }
+        }
+      }
+
+      boolean integral = keyClass == Integer.class || keyClass == Long.class;
+      int capacity = segment.length() + bufferEntries.size();
+      long[] longKeys = integral ? new long[capacity] : null;
+      double[] doubleKeys = integral ? null : new double[capacity];
+      RegionEntry[] entries = new RegionEntry[capacity];
+      int numKeys = 0;
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      while (i < segment.length() || j < bufferEntries.size()) {
+        RegionEntry re = i < segment.length() ? segment.entries.get(i) : null;
+        if (i < segment.length() && re == null) {
+          i++;
+          continue;
+        }
+        if (j == bufferEntries.size() || (i < segment.length()
+            && segment.compareKeyAt(i, bufferKeys.get(j), comparator) <= 0)) {
+          if (integral) {
+            longKeys[size] = segment.longKeys[i];
+          } else {
+            doubleKeys[size] = segment.doubleKeys[i];
+          }
+          i++;
+        } else {
+          if (integral) {
+            longKeys[size] = bufferKeys.get(j).longValue();
+          } else {
+            doubleKeys[size] = bufferKeys.get(j).doubleValue();
+          }
+          re = bufferEntries.get(j);
+          j++;
+        }
+        entries[size] = re;
+        if (size == 0 || (integral ? longKeys[size] != longKeys[size - 1]
+            : Double.compare(doubleKeys[size], doubleKeys[size - 1]) != 0)) {
+          numKeys++;
+        }
+        size++;
+      }
+      if (size < capacity) {
+        entries = Arrays.copyOf(entries, size);
+        if (integral) {
+          longKeys = Arrays.copyOf(longKeys, size);
+        } else {
+          doubleKeys = Arrays.copyOf(doubleKeys, size);
+        }
+      }
+      return new Segment(keyClass, longKeys, doubleKeys, entries, numKeys);
+    }
+  }
+
+  /**
+   * Iterates over a range of a segment, skipping removed entries.
+   */
+  private class SegmentIterator implements CloseableIterator<IndexStoreEntry> {
+    private final Segment segment;
+    private final int end;
+    private final int step;
+    private int next;
+    private RegionEntry nextEntry;
+    private int lastKeyPosition = -1;
+    private Object lastKey;
+    private final NumericIndexStoreEntry currentEntry;
+
+    SegmentIterator(Segment segment, int from, int to, boolean descending) {
+      this.segment = segment;
+      this.step = descending ? -1 : 1;
+      this.next = descending ? to - 1 : from;
+      this.end = descending ? from - 1 : to;
+      this.currentEntry = new NumericIndexStoreEntry(
+          GemFireCacheImpl.getInstance().cacheTimeMillis());
+    }
+
+    public boolean hasNext() {
+      while (this.nextEntry == null && this.next != this.end) {
+        this.nextEntry = this.segment.entries.get(this.next);
+        if (this.nextEntry == null) {
+          this.next += this.step;
+        }
+      }
+      return this.nextEntry != null;
+    }
+
+    public IndexStoreEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      // entries with the same key share the boxed key
+      if (this.lastKeyPosition < 0 || !this.segment.sameKey(this.lastKeyPosition, this.next)) {
+        this.lastKey = this.segment.keyAt(this.next);
+        this.lastKeyPosition = this.next;
+      }
+      this.currentEntry.setEntry(this.lastKey, this.nextEntry);
+      this.nextEntry = null;
+      this.next += this.step;
+      return this.currentEntry;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      // do nothing
+    }
+  }
+
+  /**
+   * Merges the iterators of the segment, the write buffers and the store for
+   * other keys in index key order. The keys to remove are skipped here, not by
+   * the merged iterators, as each key to remove is taken out of the collection
+   * when it is found.
+   */
+  private class NumericIndexStoreIterator implements
+      CloseableIterator<IndexStoreEntry> {
+    private final List<CloseableIterator<IndexStoreEntry>> sources;
+    private final IndexStoreEntry[] heads;
+    private final boolean descending;
+    private final Collection keysToRemove;
+    private boolean started;
+    /** The source whose head was returned last and needs to be advanced */
+    private int returned = -1;
+    /** The source whose head is returned next, or -1 */
+    private int ready = -1;
+    private Object removedKey;
+
+    NumericIndexStoreIterator(List<CloseableIterator<IndexStoreEntry>> sources,
+        boolean descending, Collection keysToRemove) {
+      this.sources = sources;
+      this.heads = new IndexStoreEntry[sources.size()];
+      this.descending = descending;
+      this.keysToRemove = keysToRemove;
+    }
+
+    private void advance(int i) {
+      CloseableIterator<IndexStoreEntry> source = this.sources.get(i);
+      this.heads[i] = source.hasNext() ? source.next() : null;
+    }
+
+    public boolean hasNext() {
+      if (this.ready >= 0) {
+        return true;
+      }
+      if (!this.started) {
+        for (int i = 0; i < this.heads.length; i++) {
+          advance(i);
+        }
+        this.started = true;
+      } else if (this.returned >= 0) {
+        advance(this.returned);
+        this.returned = -1;
+      }
+      while (true) {
+        int best = -1;
+        for (int i = 0; i < this.heads.length; i++) {
+          if (this.heads[i] != null) {
+            if (best < 0) {
+              best = i;
+            } else {
+              int cmp = comparator.compare(this.heads[i].getDeserializedKey(),
+                  this.heads[best].getDeserializedKey());
+              if (this.descending ? cmp > 0 : cmp < 0) {
+                best = i;
+              }
+            }
+          }
+        }
+        if (best < 0) {
+          return false;
+        }
+        Object key = this.heads[best].getDeserializedKey();
+        if (this.keysToRemove != null) {
+          if (this.removedKey != null
+              && comparator.compare(key, this.removedKey) == 0) {
+            advance(best);
+            continue;
+          }
+          if (MemoryIndexStore.removeFromKeysToRemove(this.keysToRemove, key)) {
+            this.removedKey = key;
+            advance(best);
+            continue;
+          }
+        }
+        this.ready = best;
+        return true;
+      }
+    }
+
+    public IndexStoreEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      this.returned = this.ready;
+      this.ready = -1;
+      return this.heads[this.returned];
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      for (CloseableIterator<IndexStoreEntry> source : this.sources) {
+        source.close();
+      }
+    }
+  }
+
+  /**
+   * An entry of a segment. Same as MemoryIndexStore's entries.
+   */
+  class NumericIndexStoreEntry implements IndexStoreEntry {
+    private Object deserializedIndexKey;
+    private RegionEntry regionEntry;
+    private boolean updateInProgress;
+    private Object value;
+    private final long iteratorStartTime;
+
+    private NumericIndexStoreEntry(long iteratorStartTime) {
+      this.iteratorStartTime = iteratorStartTime;
+    }
+
+    void setEntry(Object deserializedIndexKey, RegionEntry regionEntry) {
+      this.deserializedIndexKey = deserializedIndexKey;
+      this.regionEntry = regionEntry;
+      this.updateInProgress = regionEntry.isUpdateInProgress();
+      this.value = getTargetObject(regionEntry);
+    }
+
+    @Override
+    public Object getDeserializedKey() {
+      return this.deserializedIndexKey;
+    }
+
+    @Override
+    public Object getDeserializedValue() {
+      return this.value;
+    }
+
+    @Override
+    public Object getDeserializedRegionKey() {
+      return this.regionEntry.getKey();
+    }
+
+    public RegionEntry getRegionEntry() {
+      return this.regionEntry;
+    }
+
+    @Override
+    public boolean isUpdateInProgress() {
+      return this.updateInProgress
+          || this.regionEntry.isUpdateInProgress()
+          || IndexManager.needsRecalculation(this.iteratorStartTime, this.regionEntry.getLastModified());
+    }
+  }
+}
@@ -56,11 +56,14 @@ public class ASTType extends GemFireAST {
     super.compile(compiler);
     
     Assert.assertTrue(this.javaType != null ^ this.typeName != null);
+    // the type name is resolved for each compilation since it depends on the
+    // imports of the query, and the tree may be compiled more than once
+    ObjectType type = this.javaType;
     if (this.typeName != null) {
-      this.javaType = compiler.resolveType(this.typeName);
+      type = compiler.resolveType(this.typeName);
     }    
     
-    compiler.push(this.javaType);
+    compiler.push(type);
   }
   
   
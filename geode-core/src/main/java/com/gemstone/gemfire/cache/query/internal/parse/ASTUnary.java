@@ -50,8 +50,11 @@ public class ASTUnary extends GemFireAST {
           || tokenType == OQLLexerTokenTypes.NUM_FLOAT
           || tokenType == OQLLexerTokenTypes.NUM_DOUBLE) {
         Support.Assert(child.getNextSibling() == null);
-        child.setText('-' + child.getText());
-        child.compile(compiler);
+        // compile a negated copy of the literal, the tree may be compiled
+        // more than once
+        ASTLiteral negated = new ASTLiteral();
+        negated.initialize(tokenType, '-' + child.getText());
+        negated.compile(compiler);
       } else {
         super.compile(compiler);
         compiler.unaryMinus();
@@ -17,6 +17,7 @@
 package com.gemstone.gemfire.internal;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import com.gemstone.gemfire.DataSerializer;
 
 /** NullDataOutputStream is an OutputStream that also implements DataOutput
@@ -29,7 +30,7 @@ import com.gemstone.gemfire.DataSerializer;
  * 
  */
 public final class NullDataOutputStream extends OutputStream implements
-    ObjToByteArraySerializer {
+    ObjToByteArraySerializer, ByteBufferWriter {
 
   private int size;
 
@@ -49,6 +50,11 @@ public final class NullDataOutputStream extends OutputStream implements
     this.size += len;
   }
 
+  /** counts the remaining bytes of the buffer without consuming them */
+  public final void write(ByteBuffer bb) {
+    this.size += bb.remaining();
+  }
+
   public final int size() {
     return this.size;
   }
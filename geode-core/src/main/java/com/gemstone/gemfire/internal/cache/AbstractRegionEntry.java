@@ -285,7 +285,9 @@ public abstract class AbstractRegionEntry implements RegionEntry,
     if (isTombstone()) {
       v = Token.TOMBSTONE;
     } else {
-      v = getValue(region); // OFFHEAP: need to incrc, copy bytes, decrc
+      ReferenceCountHelper.setReferenceCountOwner(dst);
+      v = getValueRetain(region); // OFFHEAP: kept in dst, see InitialImageOperation.Entry#release
+      ReferenceCountHelper.setReferenceCountOwner(null);
       if (v == null) {
         return false;
       }
@@ -301,6 +303,11 @@ public abstract class AbstractRegionEntry implements RegionEntry,
     else if (v == Token.TOMBSTONE) {
       dst.setTombstone();
     }
+    else if (v instanceof StoredObject && ((StoredObject) v).hasRefCount()) {
+      // sent from off-heap memory without a heap copy
+      dst.value = v;
+      dst.setSerialized(((StoredObject) v).isSerialized());
+    }
     else if (v instanceof CachedDeserializable) {
       // don't serialize here if it is not already serialized
       CachedDeserializable cd = (CachedDeserializable) v;
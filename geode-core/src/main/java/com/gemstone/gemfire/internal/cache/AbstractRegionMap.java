@@ -246,6 +246,9 @@ public abstract class AbstractRegionMap implements RegionMap {
 
   public final RegionEntry putEntryIfAbsent(Object key, RegionEntry re) {
     RegionEntry value = (RegionEntry)_getMap().putIfAbsent(key, re);
+    if (value == null) {
+      storeKeyOffHeap(re);
+    }
     if (value == null && (re instanceof OffHeapRegionEntry) 
         && _isOwnerALocalRegion() && _getOwner().isThisRegionBeingClosedOrDestroyed()) {
       // prevent orphan during concurrent destroy (#48068)
@@ -257,6 +260,17 @@ public abstract class AbstractRegionMap implements RegionMap {
     return value;
   }
 
+  /**
+   * Moves the key of an entry that was just added to the map off heap.
+   * This is done after the add so that entries that lose a putIfAbsent race
+   * and are dropped do not leak off-heap memory.
+   */
+  private static void storeKeyOffHeap(RegionEntry re) {
+    if (re instanceof OffHeapKeyRegionEntry) {
+      OffHeapRegionEntryHelper.storeKey((OffHeapKeyRegionEntry) re);
+    }
+  }
+
   @Override
   public final RegionEntry getOperationalEntryInVM(Object key) {
     RegionEntry re = (RegionEntry)_getMap().get(key);
@@ -620,6 +634,7 @@ public abstract class AbstractRegionMap implements RegionMap {
       _getOwner().getDiskRegion().replaceIncompatibleEntry((DiskEntry) oldRe, (DiskEntry) newRe);
     }
     _getMap().put(newRe.getKey(), newRe);
+    storeKeyOffHeap(newRe);
   }
 
   @Retained     // Region entry may contain an off-heap value
@@ -1185,6 +1200,9 @@ public abstract class AbstractRegionMap implements RegionMap {
                     continue;
                   }
                   re = (RegionEntry)_getMap().putIfAbsent(event.getKey(), newRe);
+                  if (re == null) {
+                    storeKeyOffHeap(newRe);
+                  }
                   if (re != null && re != tombstone) {
                     // concurrent change - try again
                     retry = true;
@@ -77,6 +77,8 @@ public class CachePerfStats {
   protected final static int queryResultsHashCollisionsId;
   protected final static int queryResultsHashCollisionProbeTimeId;
   protected final static int partitionedRegionQueryRetriesId;
+  protected final static int compiledQueryCacheHitsId;
+  protected final static int compiledQueryCacheMissesId;
 
   protected static final int txSuccessLifeTimeId;
   protected static final int txFailedLifeTimeId;
@@ -209,6 +211,8 @@ public class CachePerfStats {
     final String queryResultsHashCollisionsDesc= "Total number of times an hash code collision occurred when inserting an object into an OQL result set or rehashing it";
     final String queryResultsHashCollisionProbeTimeDesc= "Total time spent probing the hashtable in an OQL result set due to hash code collisions, includes reads, writes, and rehashes";
     final String partitionedRegionOQLQueryRetriesDesc = "Total number of times an OQL Query on a Partitioned Region had to be retried";
+    final String compiledQueryCacheHitsDesc = "Total number of times a new query reused a parsed query from the compiled query cache";
+    final String compiledQueryCacheMissesDesc = "Total number of times a new query string was not in the compiled query cache and had to be parsed";
     final String txSuccessLifeTimeDesc = "The total amount of time, in nanoseconds, spent in a transaction before a successful commit. The time measured starts at transaction begin and ends when commit is called.";
     final String txFailedLifeTimeDesc = "The total amount of time, in nanoseconds, spent in a transaction before a failed commit. The time measured starts at transaction begin and ends when commit is called.";
     final String txRollbackLifeTimeDesc = "The total amount of time, in nanoseconds, spent in a transaction before an explicit rollback. The time measured starts at transaction begin and ends when rollback is called.";
@@ -320,6 +324,8 @@ public class CachePerfStats {
         f.createIntCounter("queryResultsHashCollisions", queryResultsHashCollisionsDesc, "operations"),
         f.createLongCounter("queryResultsHashCollisionProbeTime", queryResultsHashCollisionProbeTimeDesc, "nanoseconds"),
         f.createLongCounter("partitionedRegionQueryRetries", partitionedRegionOQLQueryRetriesDesc, "retries"),
+        f.createLongCounter("compiledQueryCacheHits", compiledQueryCacheHitsDesc, "operations"),
+        f.createLongCounter("compiledQueryCacheMisses", compiledQueryCacheMissesDesc, "operations"),
 
         f.createIntCounter("txCommits", txCommitsDesc, "commits"), 
         f.createIntCounter("txCommitChanges", txCommitChangesDesc, "changes"), 
@@ -445,6 +451,8 @@ public class CachePerfStats {
     queryResultsHashCollisionsId = type.nameToId("queryResultsHashCollisions");
     queryResultsHashCollisionProbeTimeId = type.nameToId("queryResultsHashCollisionProbeTime");
     partitionedRegionQueryRetriesId = type.nameToId("partitionedRegionQueryRetries");
+    compiledQueryCacheHitsId = type.nameToId("compiledQueryCacheHits");
+    compiledQueryCacheMissesId = type.nameToId("compiledQueryCacheMisses");
 
     txSuccessLifeTimeId = type.nameToId("txSuccessLifeTime");
     txFailedLifeTimeId = type.nameToId("txFailedLifeTime");
@@ -1007,6 +1015,22 @@ public class CachePerfStats {
   public void incQueryResultsHashCollisions() {
     stats.incInt(queryResultsHashCollisionsId, 1);
   }
+
+  public void incCompiledQueryCacheHits() {
+    stats.incLong(compiledQueryCacheHitsId, 1);
+  }
+
+  public long getCompiledQueryCacheHits() {
+    return stats.getLong(compiledQueryCacheHitsId);
+  }
+
+  public void incCompiledQueryCacheMisses() {
+    stats.incLong(compiledQueryCacheMissesId, 1);
+  }
+
+  public long getCompiledQueryCacheMisses() {
+    return stats.getLong(compiledQueryCacheMissesId);
+  }
   
    public int getTxCommits() {
      return stats.getInt(txCommitsId);
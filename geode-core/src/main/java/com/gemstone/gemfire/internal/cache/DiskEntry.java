@@ -302,7 +302,7 @@ public interface DiskEntry extends RegionEntry {
         entry.setLastModified(mgr, de.getLastModified());
                               
         ReferenceCountHelper.setReferenceCountOwner(entry);
-        v = de._getValueRetain(context, true); // OFFHEAP copied to heap entry; todo allow entry to refer to offheap since it will be copied to network.
+        v = de._getValueRetain(context, true); // OFFHEAP: kept in entry, see InitialImageOperation.Entry#release
         ReferenceCountHelper.setReferenceCountOwner(null);
         if (v == null) {
           if (did == null) {
@@ -347,6 +347,10 @@ public interface DiskEntry extends RegionEntry {
       if (Token.isRemovedFromDisk(v)) {
         // fix for bug 31757
         return false;
+      } else if (v instanceof StoredObject && ((StoredObject) v).hasRefCount()) {
+        // sent from off-heap memory without a heap copy
+        entry.value = v;
+        entry.setSerialized(((StoredObject) v).isSerialized());
       } else if (v instanceof CachedDeserializable) {
         CachedDeserializable cd = (CachedDeserializable) v;
         try {
@@ -133,6 +133,35 @@ public class DiskStoreImpl implements DiskStore {
       DiskStoreImpl.RECOVER_VALUES_SYNC_PROPERTY_NAME, false);
   boolean FORCE_KRF_RECOVERY = getBoolean(
       DistributionConfig.GEMFIRE_PREFIX + "disk.FORCE_KRF_RECOVERY", false);
+
+  public static final String GROUP_COMMIT_PROPERTY_NAME = DistributionConfig.GEMFIRE_PREFIX + "disk.groupCommit";
+  /**
+   * If true then synchronous oplog writes are flushed by group commit. Each
+   * writer appends its record to the oplog buffer and then waits while a
+   * single writer flushes the buffer on behalf of all the writers that have
+   * appended since the last flush. Made non static so tests can set it.
+   */
+  boolean GROUP_COMMIT = getBoolean(GROUP_COMMIT_PROPERTY_NAME, false);
+
+  public static final String MMAP_READS_PROPERTY_NAME = DistributionConfig.GEMFIRE_PREFIX + "disk.mmapReads";
+  /**
+   * If true then the crf of an oplog that is no longer being appended to is
+   * mapped into memory and values are faulted in from the mapping without
+   * taking the oplog lock. Ignored on Windows, where a mapped file can not be
+   * deleted. Made non static so tests can set it.
+   */
+  boolean MMAP_READS = getBoolean(MMAP_READS_PROPERTY_NAME, false);
+
+  public static final String RECOVERY_THREADS_PROPERTY_NAME = DistributionConfig.GEMFIRE_PREFIX + "disk.recoveryThreads";
+  /**
+   * The number of threads used to read oplog files in parallel during
+   * recovery. Drfs are read and parsed concurrently. Crfs and krfs are still
+   * parsed one at a time, the other threads only read their files ahead of
+   * the recovering thread. A value of 1 recovers one oplog file at a time.
+   * Made non static so tests can set it.
+   */
+  int RECOVERY_THREADS = Integer.getInteger(RECOVERY_THREADS_PROPERTY_NAME,
+      Math.min(4, Runtime.getRuntime().availableProcessors())).intValue();
   
   public static boolean getBoolean(String sysProp, boolean def) {
     return Boolean.valueOf(System.getProperty(sysProp, Boolean.valueOf(def)
@@ -3592,6 +3621,11 @@ public class DiskStoreImpl implements DiskStore {
     private final LongOpenHashSet longs = new LongOpenHashSet(
         (int)INVALID_ID);
 
+    public void addAll(OplogEntryIdSet other) {
+      this.ints.addAll(other.ints);
+      this.longs.addAll(other.longs);
+    }
+
     public void add(long id) {
       if (id == 0) {
         throw new IllegalArgumentException();
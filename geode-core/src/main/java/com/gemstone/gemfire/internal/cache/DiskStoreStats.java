@@ -80,6 +80,13 @@ public class DiskStoreStats {
   private static final int backupsInProgress;
   private static final int backupsCompleted;
 
+  private static final int groupCommitsId;
+  private static final int groupCommitWritesId;
+
+  private static final int drfsToRecoverId;
+  private static final int crfsToRecoverId;
+  private static final int recoveryReadAheadBytesId;
+
   static {
     String statName = "DiskStoreStatistics";
     String statDescription =
@@ -172,6 +179,11 @@ public class DiskStoreStats {
          f.createIntGauge("uncreatedRecoveredRegions", "The current number of regions that have been recovered but have not yet been created.", "regions"),
          f.createIntGauge("backupsInProgress", backupsInProgressDesc, "backups"),
          f.createIntCounter("backupsCompleted", backupsCompletedDesc, "backups"),
+         f.createLongCounter("groupCommits", "The total number of times synchronous oplog writes were flushed to disk by a group commit.", "flushes"),
+         f.createLongCounter("groupCommitWrites", "The total number of synchronous oplog writes flushed to disk by group commits.", "writes"),
+         f.createIntGauge("drfsToRecover", "The current number of oplog drf files that the recovery in progress has not yet read.", "oplogs"),
+         f.createIntGauge("crfsToRecover", "The current number of oplog crf files that the recovery in progress has not yet read.", "oplogs"),
+         f.createLongCounter("recoveryReadAheadBytes", "The total number of bytes of oplog files read ahead of the thread recovering them.", "bytes"),
        });
 
     // Initialize id fields
@@ -220,6 +232,11 @@ public class DiskStoreStats {
     uncreatedRecoveredRegionsId = type.nameToId("uncreatedRecoveredRegions");
     backupsInProgress = type.nameToId("backupsInProgress");
     backupsCompleted= type.nameToId("backupsCompleted");
+    groupCommitsId = type.nameToId("groupCommits");
+    groupCommitWritesId = type.nameToId("groupCommitWrites");
+    drfsToRecoverId = type.nameToId("drfsToRecover");
+    crfsToRecoverId = type.nameToId("crfsToRecover");
+    recoveryReadAheadBytesId = type.nameToId("recoveryReadAheadBytes");
   }
 
   //////////////////////  Instance Fields  //////////////////////
@@ -365,6 +382,47 @@ public class DiskStoreStats {
     return this.stats.getLong(flushesId);
   }
 
+  /**
+   * Invoked after a group commit has flushed the given number of
+   * synchronous writes to disk.
+   */
+  public void incGroupCommits(long writes) {
+    this.stats.incLong(groupCommitsId, 1);
+    this.stats.incLong(groupCommitWritesId, writes);
+  }
+
+  public long getGroupCommits() {
+    return this.stats.getLong(groupCommitsId);
+  }
+
+  public long getGroupCommitWrites() {
+    return this.stats.getLong(groupCommitWritesId);
+  }
+
+  public void incDrfsToRecover(int delta) {
+    this.stats.incInt(drfsToRecoverId, delta);
+  }
+
+  public int getDrfsToRecover() {
+    return this.stats.getInt(drfsToRecoverId);
+  }
+
+  public void incCrfsToRecover(int delta) {
+    this.stats.incInt(crfsToRecoverId, delta);
+  }
+
+  public int getCrfsToRecover() {
+    return this.stats.getInt(crfsToRecoverId);
+  }
+
+  public void incRecoveryReadAheadBytes(long bytes) {
+    this.stats.incLong(recoveryReadAheadBytesId, bytes);
+  }
+
+  public long getRecoveryReadAheadBytes() {
+    return this.stats.getLong(recoveryReadAheadBytesId);
+  }
+
   /**
    * Invoked before data is read from disk.
    *
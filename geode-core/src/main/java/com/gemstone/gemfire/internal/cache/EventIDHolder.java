@@ -32,4 +32,18 @@ public class EventIDHolder extends EntryEventImpl {
     setEventId(id);
     disallowOffHeapValues();
   }
+
+  /**
+   * Clears the state that a server-side operation may have set on this
+   * holder so that it can be reused for the next event from the client.
+   * @param id the identity of the client's next event
+   */
+  public void reset(EventID id) {
+    setEventId(id);
+    setRegion(null);
+    setVersionTag(null);
+    setPossibleDuplicate(false);
+    isConcurrencyConflict(false);
+    setIsRedestroyedEntry(false);
+  }
 }
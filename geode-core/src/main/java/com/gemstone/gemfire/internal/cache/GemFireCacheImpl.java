@@ -127,6 +127,7 @@ import com.gemstone.gemfire.cache.client.internal.ClientRegionFactoryImpl;
 import com.gemstone.gemfire.cache.client.internal.PoolImpl;
 import com.gemstone.gemfire.cache.execute.FunctionService;
 import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.internal.CompiledQueryCache;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
 import com.gemstone.gemfire.cache.query.internal.DefaultQueryService;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
@@ -512,6 +513,9 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
 
   private final Object queryMonitorLock = new Object();
 
+  /** Parsed queries reused by the local query service */
+  private final CompiledQueryCache compiledQueryCache;
+
   private final PersistentMemberManager persistentMemberManager;
 
   private ClientMetadataService clientMetadatService = null;
@@ -839,6 +843,7 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
       // Create the CacheStatistics
       this.cachePerfStats = new CachePerfStats(system);
       CachePerfStats.enableClockStats = this.system.getConfig().getEnableTimeStatistics();
+      this.compiledQueryCache = new CompiledQueryCache(CompiledQueryCache.MAX_SIZE, this.cachePerfStats);
 
       this.txMgr = new TXManagerImpl(this.cachePerfStats, this);
       dm.addMembershipListener(this.txMgr);
@@ -2260,6 +2265,7 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
           this.queryMonitor.stopMonitoring();
         }
         stopDiskStoreTaskPool();        
+        stopIndexTaskPool();
 
       } finally {
         // NO DISTRIBUTED MESSAGING CAN BE DONE HERE!
@@ -2392,6 +2398,58 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
                                              compactThreadFactory);
   }
 
+  /**
+   * Used to guard access to indexTaskPool and set to true when cache is shutdown.
+   */
+  private final AtomicBoolean indexTaskSync = new AtomicBoolean(false);
+  /**
+   * Runs background index work, for example merging the write buffers of
+   * NumericIndexStores. Lazily initialized.
+   */
+  private ThreadPoolExecutor indexTaskPool = null;
+
+  private void createIndexTaskPool() {
+    final ThreadGroup indexThreadGroup = LoggingThreadGroup.createThreadGroup("Index Task Thread Group", logger);
+    final ThreadFactory indexThreadFactory = GemfireCacheHelper.CreateThreadFactory(indexThreadGroup, "Index Task");
+    this.indexTaskPool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                                                new LinkedBlockingQueue<Runnable>(),
+                                                indexThreadFactory);
+    this.indexTaskPool.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Runs the given index task in the background.
+   * @return false if the task was not accepted because the cache is closing
+   */
+  public boolean executeIndexTask(Runnable r) {
+    synchronized (this.indexTaskSync) {
+      if (!this.indexTaskSync.get()) {
+        if (this.indexTaskPool == null) {
+          createIndexTaskPool();
+        }
+        try {
+          this.indexTaskPool.execute(r);
+          return true;
+        } catch (RejectedExecutionException ex) {
+          if (logger.isDebugEnabled()) {
+            logger.debug("Ignored index task during shutdown", ex);
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void stopIndexTaskPool() {
+    synchronized (this.indexTaskSync) {
+      this.indexTaskSync.set(true);
+      // All the regions have already been closed so the indexes are gone too.
+      if (this.indexTaskPool != null) {
+        this.indexTaskPool.shutdownNow();
+      }
+    }
+  }
+
   private final ConcurrentMap<String, DiskStoreImpl> diskStores = new ConcurrentHashMap<String, DiskStoreImpl>();
   private final ConcurrentMap<String, DiskStoreImpl> regionOwnedDiskStores = new ConcurrentHashMap<String, DiskStoreImpl>();
   
@@ -4521,6 +4579,13 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
     return QUERY_MONITOR_DISABLED_FOR_LOW_MEM;
   }
   
+  /**
+   * Returns the cache of parsed queries used by the local query service.
+   */
+  public CompiledQueryCache getCompiledQueryCache() {
+    return this.compiledQueryCache;
+  }
+
   /**
    * Returns the QueryMonitor instance based on system property MAX_QUERY_EXECUTION_TIME.
    * @since GemFire 6.0
@@ -19,6 +19,7 @@ package com.gemstone.gemfire.internal.cache;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
@@ -49,6 +50,13 @@ import com.gemstone.gemfire.i18n.StringId;
  * The initial image target sends FlowControlPermitMessage to the image provider after
  * each processed chunk. Upon receiving the FlowControlPermit message, the provider
  * will increase the number of permits available.
+ * 
+ * The number of permits starts at {@link InitialImageOperation#CHUNK_PERMITS}.
+ * It grows, up to {@link InitialImageOperation#MAX_CHUNK_PERMITS}, while the
+ * provider is waiting for permits and the time it takes a chunk to be
+ * acknowledged stays close to the shortest time seen, which means that the
+ * chunks are limited by the latency of the network rather than queuing up at
+ * the target. It shrinks back when that time grows.
  *
  */
 public class InitialImageFlowControl implements MembershipListener {
@@ -56,8 +64,17 @@ public class InitialImageFlowControl implements MembershipListener {
   
   private static final ProcessorKeeper21 keeper = new ProcessorKeeper21(false);
   private int id;
-  private int maxPermits = InitialImageOperation.CHUNK_PERMITS;
+  private final int minPermits = InitialImageOperation.CHUNK_PERMITS;
+  private final int permitLimit = Math.max(minPermits, InitialImageOperation.MAX_CHUNK_PERMITS);
+  /** the current window, guarded by this */
+  private int maxPermits = minPermits;
   private final Semaphore permits = new Semaphore(maxPermits);
+  /** the nanoTime each chunk in flight was sent at, oldest first, guarded by this */
+  private final ArrayDeque<Long> sendTimes = new ArrayDeque<Long>();
+  /** the shortest time it took a chunk to be acknowledged, guarded by this */
+  private long minRoundTrip = Long.MAX_VALUE;
+  /** whether the provider had to wait for a permit since the window last grew, guarded by this */
+  private boolean windowFull;
   private final DM dm;
   private final InternalDistributedMember target;
   private final AtomicBoolean aborted = new AtomicBoolean();
@@ -74,14 +91,70 @@ public class InitialImageFlowControl implements MembershipListener {
     return control;
   }
 
-  private InitialImageFlowControl(DM dm, InternalDistributedMember target) {
+  InitialImageFlowControl(DM dm, InternalDistributedMember target) {
     this.dm = dm;
     this.target = target;
   }
-  
-  private void releasePermit() {
-    permits.release();
-    incMessagesInFlight(-1);
+
+  /** the clock the round trips of the chunks are measured with */
+  long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Called when the target acknowledges a chunk. Synchronized like abort so
+   * that a chunk is counted out of the messages in flight only once.
+   */
+  synchronized void releasePermit() {
+    int released = adjustWindow();
+    if (released > 0) {
+      permits.release(released);
+    }
+    if (!aborted.get()) {
+      // otherwise abort already counted this chunk out
+      incMessagesInFlight(-1);
+    }
+  }
+
+  /**
+   * Resizes the window on the acknowledgement of the oldest chunk in flight.
+   * @return the number of permits to release for it
+   */
+  private synchronized int adjustWindow() {
+    Long sendTime = sendTimes.poll();
+    if (sendTime == null || aborted.get()) {
+      return 1;
+    }
+    long roundTrip = nanoTime() - sendTime.longValue();
+    if (roundTrip < minRoundTrip) {
+      minRoundTrip = roundTrip;
+    }
+    if (windowFull && maxPermits < permitLimit && roundTrip <= minRoundTrip + minRoundTrip / 2) {
+      windowFull = false;
+      maxPermits++;
+      return 2;
+    }
+    if (maxPermits > minPermits && roundTrip > minRoundTrip * 3) {
+      maxPermits--;
+      return 0;
+    }
+    return 1;
+  }
+
+  private synchronized void permitAcquired() {
+    sendTimes.add(Long.valueOf(nanoTime()));
+  }
+
+  synchronized int getMaxPermits() {
+    return maxPermits;
+  }
+
+  int getAvailablePermits() {
+    return permits.availablePermits();
+  }
+
+  private synchronized void waitingForPermit() {
+    windowFull = true;
   }
   
   private void incMessagesInFlight(int val) {
@@ -94,6 +167,9 @@ public class InitialImageFlowControl implements MembershipListener {
    */
   public void acquirePermit() {
     long startWaitTime = System.currentTimeMillis();
+    if (permits.availablePermits() == 0) {
+      waitingForPermit();
+    }
     while (!aborted.get()) {
       checkCancellation();
 
@@ -114,6 +190,7 @@ public class InitialImageFlowControl implements MembershipListener {
     } // while
     if(!aborted.get()) {
       incMessagesInFlight(1);
+      permitAcquired();
     }
   }
   
@@ -169,8 +246,15 @@ public class InitialImageFlowControl implements MembershipListener {
   }
 
   private void abort() {
-    if(!aborted.getAndSet(true)) {
-      incMessagesInFlight(- (maxPermits - permits.availablePermits()));
+    int inFlight = -1;
+    synchronized (this) {
+      if (!aborted.getAndSet(true)) {
+        inFlight = maxPermits - permits.availablePermits();
+        sendTimes.clear();
+      }
+    }
+    if (inFlight >= 0) {
+      incMessagesInFlight(- inFlight);
       // Just in case java has issues with semaphores rolling over, set this
       // to half Integer.MAX_VALUE rather to release all of the waiters
       permits.release(Integer.MAX_VALUE / 2);
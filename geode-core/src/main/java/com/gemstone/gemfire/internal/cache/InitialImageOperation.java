@@ -46,6 +46,8 @@ import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+import com.gemstone.gemfire.internal.offheap.OffHeapHelper;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 import com.gemstone.gemfire.internal.offheap.annotations.Released;
 import com.gemstone.gemfire.internal.sequencelog.EntryLogger;
 import com.gemstone.gemfire.internal.sequencelog.RegionLogger;
@@ -54,6 +56,9 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -81,6 +86,20 @@ public class InitialImageOperation  {
   public static int CHUNK_PERMITS =
       Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "GetInitialImage.CHUNK_PERMITS", 16).intValue();
 
+  /**
+   * Allowed number of in flight GII chunks when the provider finds that
+   * the chunks are not queuing up at the recipient
+   */
+  public static int MAX_CHUNK_PERMITS =
+      Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "GetInitialImage.MAX_CHUNK_PERMITS", CHUNK_PERMITS * 4).intValue();
+
+  /**
+   * maximum number of series, each sent by its own thread, that a provider
+   * splits an image into
+   */
+  public static int MAX_SERIES =
+      Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "GetInitialImage.MAX_SERIES", 4).intValue();
+
   /**
    * maximum number of unfinished operations to be supported by delta GII
    */
@@ -1497,6 +1516,9 @@ public class InitialImageOperation  {
     /** The versions in which this message was modified */
     private static final Version[] dsfidVersions = null;
 
+    /** the number of entries that fit in a chunk at least */
+    private static final int MIN_ENTRIES_PER_CHUNK = 1000;
+
     @Override  
     public int getProcessorId() {
       return this.processorId;
@@ -1585,8 +1607,7 @@ public class InitialImageOperation  {
           }
         }
 
-        final int numSeries = 1; // @todo ericz parallelize using series
-        final int seriesNum = 0;
+        final int numSeries = getNumSeries(rgn, lclAbortTest);
         
         // chunkEntries returns false if didn't finish
         if (isGiiDebugEnabled) {
@@ -1654,44 +1675,14 @@ public class InitialImageOperation  {
               }
             }
             final RegionVersionHolder holderToSend = holderToSync;
-            boolean finished = chunkEntries(rgn, CHUNK_SIZE_IN_BYTES, !keysOnly, versionVector,
-                (HashSet)this.unfinishedKeys, flowControl, new ObjectIntProcedure() {
-              int msgNum = 0;
-
-              boolean last = false;
-              /**
-               * @param entList ArrayList of entries
-               * @param b positive if last chunk
-               * @return true to continue to next chunk
-               */
-              public boolean executeWith(Object entList, int b) {
-                if (rgn.getCache().isClosed()) {
-                  return false;
-                }
-                
-                if (this.last) {
-                  throw new InternalGemFireError(LocalizedStrings.InitialImageOperation_ALREADY_PROCESSED_LAST_CHUNK.toLocalizedString());
-                }
-
-                List entries = (List)entList;
-                this.last = b > 0 && !lclAbortTest; // if abortTest, then never send last flag set to true
-                try {
-                  boolean abort = rgn.isDestroyed();
-                  if (!abort) {
-                    int fid = flowControl.getId();
-                    Map<VersionSource, Long> gcVersions = null;
-                    if(this.last && rgn.getVersionVector() != null) {
-                      gcVersions = rgn.getVersionVector().getMemberToGCVersion();
-                    }
-                    replyWithData(dm, entries, seriesNum, msgNum++, numSeries, this.last, fid, versionVector!=null, holderToSend, gcVersions);
-                  }
-                  return !abort;
-                }
-                catch (CancelException e) {
-                  return false;
-                }
-              }
-            });
+            boolean finished;
+            if (numSeries == 1) {
+              finished = chunkEntries(rgn, CHUNK_SIZE_IN_BYTES, !keysOnly, versionVector,
+                  (HashSet)this.unfinishedKeys, flowControl,
+                  new ChunkSender(dm, rgn, 0, 1, new AtomicInteger(1), flowControl, lclAbortTest, holderToSend));
+            } else {
+              finished = chunkEntriesInSeries(dm, rgn, numSeries, flowControl, lclAbortTest, holderToSend);
+            }
 
 
             if (isGiiDebugEnabled) {
@@ -1782,6 +1773,214 @@ public class InitialImageOperation  {
     }
 
 
+    /**
+     * Sends the chunks of one series of the image to the requester
+     */
+    private class ChunkSender implements ObjectIntProcedure {
+      private final DistributionManager dm;
+      private final DistributedRegion rgn;
+      private final int seriesNum;
+      private final int numSeries;
+      /** number of series that have not sent their last chunk yet */
+      private final AtomicInteger seriesRemaining;
+      private final InitialImageFlowControl flowControl;
+      private final boolean lclAbortTest;
+      private final RegionVersionHolder holderToSend;
+
+      private int msgNum = 0;
+
+      private boolean last = false;
+
+      ChunkSender(DistributionManager dm, DistributedRegion rgn, int seriesNum, int numSeries,
+          AtomicInteger seriesRemaining, InitialImageFlowControl flowControl, boolean lclAbortTest,
+          RegionVersionHolder holderToSend) {
+        this.dm = dm;
+        this.rgn = rgn;
+        this.seriesNum = seriesNum;
+        this.numSeries = numSeries;
+        this.seriesRemaining = seriesRemaining;
+        this.flowControl = flowControl;
+        this.lclAbortTest = lclAbortTest;
+        this.holderToSend = holderToSend;
+      }
+
+      /**
+       * @param entList ArrayList of entries
+       * @param b positive if last chunk
+       * @return true to continue to next chunk
+       */
+      public boolean executeWith(Object entList, int b) {
+        if (rgn.getCache().isClosed()) {
+          return false;
+        }
+        
+        if (this.last) {
+          throw new InternalGemFireError(LocalizedStrings.InitialImageOperation_ALREADY_PROCESSED_LAST_CHUNK.toLocalizedString());
+        }
+
+        List entries = (List)entList;
+        this.last = b > 0 && !lclAbortTest; // if abortTest, then never send last flag set to true
+        try {
+          boolean abort = rgn.isDestroyed();
+          if (!abort) {
+            int fid = flowControl.getId();
+            Map<VersionSource, Long> gcVersions = null;
+            // the GC versions go with the last chunk of the series that finishes last
+            if(this.last && this.seriesRemaining.decrementAndGet() == 0 && rgn.getVersionVector() != null) {
+              gcVersions = rgn.getVersionVector().getMemberToGCVersion();
+            }
+            replyWithData(dm, entries, seriesNum, msgNum++, numSeries, this.last, fid, versionVector!=null, holderToSend, gcVersions);
+          }
+          return !abort;
+        }
+        catch (CancelException e) {
+          return false;
+        }
+      }
+    }
+
+    /**
+     * Returns the number of series to split the image of the given region
+     * into. Each series is sent by its own thread, so that serializing and
+     * sending the chunks of a large region is not limited to one thread.
+     */
+    private int getNumSeries(DistributedRegion rgn, boolean lclAbortTest) {
+      if (MAX_SERIES <= 1 || lclAbortTest || rgn instanceof HARegion) {
+        return 1;
+      }
+      // a series should have at least a chunk of small entries to send
+      int numSeries = rgn.entries.size() / MIN_ENTRIES_PER_CHUNK;
+      return Math.max(1, Math.min(MAX_SERIES, numSeries));
+    }
+
+    /**
+     * Sends the image as numSeries series that take their entries from the
+     * same region iterator. Series 0 is sent by the calling thread and the
+     * others by threads of the waiting pool. If a series stops early the
+     * others are stopped too.
+     * @return true if all the series were finished
+     */
+    private boolean chunkEntriesInSeries(final DistributionManager dm, final DistributedRegion rgn,
+        final int numSeries, final InitialImageFlowControl flowControl, final boolean lclAbortTest,
+        final RegionVersionHolder holderToSend) throws IOException
+    {
+      final boolean includeValues = !this.keysOnly;
+      final RegionVersionVector requesterRVV = this.versionVector;
+      final HashSet requesterUnfinishedKeys = (HashSet)this.unfinishedKeys;
+      final AtomicInteger seriesRemaining = new AtomicInteger(numSeries);
+      final SeriesSource source = new SeriesSource(getImageIterator(rgn, includeValues, requesterRVV));
+      final List<Set<VersionSource>> foundIds = new ArrayList<Set<VersionSource>>(numSeries);
+      if (internalDuringPackingImage != null && this.regionPath.endsWith(internalDuringPackingImage.getRegionName())) {
+        internalDuringPackingImage.run();
+      }
+
+      List<Future<Boolean>> otherSeries = new ArrayList<Future<Boolean>>(numSeries - 1);
+      boolean finished = false;
+      Throwable failure = null;
+      try {
+        for (int i = 1; i < numSeries; i++) {
+          final int seriesNum = i;
+          final Set<VersionSource> seriesIds = new HashSet<VersionSource>();
+          foundIds.add(seriesIds);
+          otherSeries.add(dm.getWaitingThreadPool().submit(new Callable<Boolean>() {
+            public Boolean call() throws IOException {
+              boolean seriesFinished = false;
+              try {
+                seriesFinished = chunkEntries(rgn, CHUNK_SIZE_IN_BYTES, includeValues, requesterRVV,
+                    requesterUnfinishedKeys, flowControl, source.newSeriesIterator(), seriesIds,
+                    new ChunkSender(dm, rgn, seriesNum, numSeries, seriesRemaining, flowControl,
+                        lclAbortTest, holderToSend));
+                return seriesFinished;
+              } finally {
+                if (!seriesFinished) {
+                  source.stop();
+                }
+              }
+            }
+          }));
+        }
+        Set<VersionSource> seriesIds = new HashSet<VersionSource>();
+        foundIds.add(seriesIds);
+        finished = chunkEntries(rgn, CHUNK_SIZE_IN_BYTES, includeValues, requesterRVV,
+            requesterUnfinishedKeys, flowControl, source.newSeriesIterator(), seriesIds,
+            new ChunkSender(dm, rgn, 0, numSeries, seriesRemaining, flowControl,
+                lclAbortTest, holderToSend));
+      } finally {
+        if (!finished) {
+          source.stop();
+        }
+        // wait for the other series even if this one failed, so that they
+        // have stopped sending before the request is answered
+        boolean interrupted = false;
+        for (Future<Boolean> series : otherSeries) {
+          for (;;) {
+            try {
+              if (!series.get()) {
+                finished = false;
+              }
+              break;
+            } catch (InterruptedException e) {
+              interrupted = true;
+            } catch (ExecutionException e) {
+              finished = false;
+              if (failure == null) {
+                failure = e.getCause();
+              }
+              break;
+            }
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failure != null) {
+        rethrowSeriesFailure(failure);
+      }
+      if (finished) {
+        Set<VersionSource> allIds = new HashSet<VersionSource>();
+        for (Set<VersionSource> ids : foundIds) {
+          allIds.addAll(ids);
+        }
+        removeOldMembers(rgn, allIds);
+      }
+      return finished;
+    }
+
+    private void rethrowSeriesFailure(Throwable failure) throws IOException {
+      if (failure instanceof IOException) {
+        throw (IOException)failure;
+      } else if (failure instanceof RuntimeException) {
+        throw (RuntimeException)failure;
+      } else if (failure instanceof Error) {
+        throw (Error)failure;
+      }
+      throw new InternalGemFireException(failure);
+    }
+
+    private Iterator getImageIterator(DistributedRegion rgn, boolean includeValues,
+        RegionVersionVector versionVector) {
+      if (versionVector != null) {
+        // deltaGII
+        return rgn.entries.regionEntries().iterator();
+      } else {
+        return rgn.getBestIterator(includeValues);
+      }
+    }
+
+    /**
+     * Removes the members that no entry was found for from the version
+     * vector of the region
+     */
+    private void removeOldMembers(DistributedRegion rgn, Set<VersionSource> foundIds) {
+      if (foundIds.size() > 0) {
+        RegionVersionVector vv = rgn.getVersionVector(); 
+        if (vv != null) {
+          vv.removeOldMembers(foundIds);
+        }
+      }
+    }
+
     /**
      * Serialize the entries into byte[] chunks, calling proc for each one. proc
      * args: the byte[] chunk and an int indicating whether it is the last chunk
@@ -1794,12 +1993,32 @@ public class InitialImageOperation  {
      */
     protected boolean chunkEntries(DistributedRegion rgn, int chunkSizeInBytes, boolean includeValues,
         RegionVersionVector versionVector, HashSet unfinishedKeys, InitialImageFlowControl flowControl, ObjectIntProcedure proc) throws IOException
+    {
+      Set<VersionSource> foundIds = new HashSet<VersionSource>();
+      if (internalDuringPackingImage != null && this.regionPath.endsWith(internalDuringPackingImage.getRegionName())) {
+        internalDuringPackingImage.run();
+      }
+      boolean finished = chunkEntries(rgn, chunkSizeInBytes, includeValues, versionVector, unfinishedKeys,
+          flowControl, null, foundIds, proc);
+      removeOldMembers(rgn, foundIds);
+      return finished;
+    }
+
+    /**
+     * Serializes the entries returned by the given iterator into chunks, see
+     * {@link #chunkEntries(DistributedRegion, int, boolean, RegionVersionVector, HashSet, InitialImageFlowControl, ObjectIntProcedure)}.
+     * @param it the entries to send, or null to send all the entries of the region
+     * @param foundIds collects the version members of the entries that were sent
+     */
+    private boolean chunkEntries(DistributedRegion rgn, int chunkSizeInBytes, boolean includeValues,
+        RegionVersionVector versionVector, HashSet unfinishedKeys, InitialImageFlowControl flowControl,
+        Iterator it, Set<VersionSource> foundIds, ObjectIntProcedure proc) throws IOException
     {
       boolean keepGoing = true;
       boolean sentLastChunk = false;
       int MAX_ENTRIES_PER_CHUNK = chunkSizeInBytes/100;
-      if (MAX_ENTRIES_PER_CHUNK < 1000) {
-        MAX_ENTRIES_PER_CHUNK = 1000;
+      if (MAX_ENTRIES_PER_CHUNK < MIN_ENTRIES_PER_CHUNK) {
+        MAX_ENTRIES_PER_CHUNK = MIN_ENTRIES_PER_CHUNK;
       }
 
       ByteArrayDataInput in = null;
@@ -1813,18 +2032,10 @@ public class InitialImageOperation  {
         in = new ByteArrayDataInput();
       }
       VersionSource myId = rgn.getVersionMember();
-      Set<VersionSource> foundIds = new HashSet<VersionSource>();
-      if (internalDuringPackingImage != null && this.regionPath.endsWith(internalDuringPackingImage.getRegionName())) {
-        internalDuringPackingImage.run();
-      }
       
       try {
-        Iterator it = null;
-        if (versionVector != null) {
-          // deltaGII
-          it = rgn.entries.regionEntries().iterator();
-        } else {
-          it = rgn.getBestIterator(includeValues);
+        if (it == null) {
+          it = getImageIterator(rgn, includeValues, versionVector);
         }
         do {
           flowControl.acquirePermit();
@@ -1904,29 +2115,36 @@ public class InitialImageOperation  {
 
           // send 1 for last message if no more data
           int lastMsg = it.hasNext() ? 0 : 1;
-          keepGoing = proc.executeWith(chunkEntries, lastMsg);
+          try {
+            keepGoing = proc.executeWith(chunkEntries, lastMsg);
+          } finally {
+            // the chunk has been serialized to the recipient
+            releaseEntries(chunkEntries);
+          }
           sentLastChunk = lastMsg == 1 && keepGoing;
           chunkEntries.clear();
 
           // if this region is destroyed while we are sending data, then abort.
         } while (keepGoing && it.hasNext());
 
-        if (foundIds.size() > 0) {
-          RegionVersionVector vv = rgn.getVersionVector(); 
-          if (vv != null) {
-            vv.removeOldMembers(foundIds);
-          }
-        }
         // return false if we were told to abort
         return sentLastChunk;
       }
       finally {
+        // entries of a chunk that was never sent
+        releaseEntries(chunkEntries);
         if( dr!=null ){
           dr.removeClearCountReference();
         }
       }
     }
 
+    private void releaseEntries(List chunkEntries) {
+      for (int i = 0; i < chunkEntries.size(); i++) {
+        ((InitialImageOperation.Entry) chunkEntries.get(i)).release();
+      }
+    }
+
     private void replyNoData(DistributionManager dm, boolean isDeltaGII, Map<VersionSource, Long> gcVersions) {
       ImageReplyMessage.send(getSender(), this.processorId, null, dm, null, 0, 0, 1, true,0, isDeltaGII, null, gcVersions);
     }
@@ -2601,6 +2819,62 @@ public class InitialImageOperation  {
 
   }
 
+  /**
+   * Hands out the entries of a region iterator to the series of an image
+   * that are sent by several threads. Each series reads the entries through
+   * its own iterator, and every entry goes to exactly one series.
+   */
+  static final class SeriesSource {
+    private final Iterator source;
+
+    private boolean stopped;
+
+    SeriesSource(Iterator source) {
+      this.source = source;
+    }
+
+    /** Returns the next entry, or null if there are no more or stop was called */
+    synchronized Object nextOrNull() {
+      if (this.stopped || !this.source.hasNext()) {
+        return null;
+      }
+      return this.source.next();
+    }
+
+    /** Ends all the series after the entries they have already taken */
+    synchronized void stop() {
+      this.stopped = true;
+    }
+
+    Iterator newSeriesIterator() {
+      return new Iterator() {
+        private Object next;
+
+        private boolean fetched;
+
+        public boolean hasNext() {
+          if (!this.fetched) {
+            this.next = nextOrNull();
+            this.fetched = true;
+          }
+          return this.next != null;
+        }
+
+        public Object next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          this.fetched = false;
+          return this.next;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+
   public static final class ImageReplyMessage extends ReplyMessage {
     /** the next entries in this chunk. Null means abort. */
     protected List entries;
@@ -2953,6 +3227,17 @@ public class InitialImageOperation  {
       }
     }
 
+    /**
+     * Releases the off-heap value that fillInValue may have left in this
+     * entry. Called once the entry has been sent.
+     */
+    void release() {
+      if (this.value instanceof StoredObject) {
+        OffHeapHelper.releaseAndTrackOwner(this.value, this);
+        this.value = null;
+      }
+    }
+
     public int calcSerializedSize() {
       NullDataOutputStream dos = new NullDataOutputStream();
       try {
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+/**
+ * An {@link OffHeapRegionEntry} whose key is also stored off heap.
+ * The key starts out on the heap and is serialized off heap once the entry
+ * has been added to the region map. While it is off heap it is deserialized
+ * each time {@link #getKey()} is called. Once the entry is removed the key
+ * is copied back to the heap and its off-heap memory is freed.
+ *
+ * @see com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper#storeKey(OffHeapKeyRegionEntry)
+ */
+public interface OffHeapKeyRegionEntry extends OffHeapRegionEntry {
+  /**
+   * OFF_HEAP_FIELD_READER
+   * @return OFF_HEAP_ADDRESS of the serialized key
+   */
+  public long getKeyAddress();
+  /**
+   * OFF_HEAP_FIELD_WRITER
+   * @param expectedAddr OFF_HEAP_ADDRESS
+   * @param newAddr OFF_HEAP_ADDRESS
+   * @return true if the key address was changed
+   */
+  public boolean setKeyAddress(long expectedAddr, long newAddr);
+  /**
+   * Returns the key if it is currently on the heap;
+   * null while the key is stored off heap.
+   */
+  public Object getHeapKey();
+  public void setHeapKey(Object key);
+}
@@ -35,6 +35,7 @@ import com.gemstone.gemfire.internal.cache.lru.NewLRUClockHand;
 import com.gemstone.gemfire.internal.cache.persistence.*;
 import com.gemstone.gemfire.internal.cache.versions.*;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
+import com.gemstone.gemfire.internal.lang.SystemUtils;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
@@ -57,8 +58,11 @@ import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -508,6 +512,42 @@ public final class Oplog implements CompactableOplog, Flushable {
   final Object lock = new Object();
   final ByteBuffer[] bbArray = new ByteBuffer[2];
 
+  /**
+   * The number of synchronous writes appended to this oplog while group
+   * commit is enabled. Guarded by {@link #lock}.
+   */
+  private long groupCommitAppended = 0;
+
+  /**
+   * The number of appended synchronous writes known to have been flushed.
+   * Guarded by {@link #groupCommitLock}.
+   */
+  private long groupCommitFlushed = 0;
+
+  /**
+   * True while a writer is flushing on behalf of the group. Guarded by
+   * {@link #groupCommitLock}.
+   */
+  private boolean groupCommitInProgress = false;
+
+  private final Object groupCommitLock = new Object();
+
+  /**
+   * A read only mapping of the flushed part of the crf. Only set once this
+   * oplog is done appending and {@link DiskStoreImpl#MMAP_READS} is enabled.
+   * Set back to null, and unmapped once its last reader is done, when this
+   * oplog is closed, its crf is deleted, or the disk store closes it to stay
+   * under {@link DiskStoreImpl#MAX_OPEN_INACTIVE_OPLOGS}. While it is set
+   * this oplog counts as open, just like when its crf file is open.
+   */
+  private volatile MappedCrf crfMap = null;
+
+  /**
+   * Set to true if mapping the crf failed so that we don't keep trying.
+   * Guarded by {@link #lock}.
+   */
+  private boolean crfMapFailed = false;
+
   private boolean lockedForKRFcreate = false;
 
   /**
@@ -2263,6 +2303,49 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  /**
+   * Reads through the file that {@link #recoverCrf} will recover this oplog
+   * from (the krf if it will be used, otherwise the crf) so that its pages are
+   * already cached by the os when recovery gets to this oplog. Nothing read
+   * here is interpreted; failures are left for recoverCrf to report.
+   * 
+   * @return the number of bytes read
+   */
+  long readAheadForRecovery(boolean recoverValuesSync) {
+    File crfFile = this.crf.f;
+    if (crfFile == null) {
+      return 0L;
+    }
+    File f = crfFile;
+    if (!recoverValuesSync && !(getParent().isOffline() && !getParent().FORCE_KRF_RECOVERY)) {
+      File krfFile = new File(crfFile.getParentFile(), oplogSet.getPrefix() + getParent().getName() + "_" + this.oplogId
+          + KRF_FILE_EXT);
+      if (krfFile.exists()) {
+        f = krfFile;
+      }
+    }
+    long bytesRead = 0L;
+    FileInputStream fis = null;
+    try {
+      fis = new FileInputStream(f);
+      byte[] buffer = new byte[64 * 1024];
+      int count;
+      while ((count = fis.read(buffer)) != -1) {
+        bytesRead += count;
+      }
+    } catch (IOException ignore) {
+      // recoverCrf will read the file again and report the problem
+    } finally {
+      if (fis != null) {
+        try {
+          fis.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+    return bytesRead;
+  }
+
   private boolean offlineCompactPhase2 = false;
 
   private boolean isPhase1() {
@@ -3268,6 +3351,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     flushAll();
     synchronized (this.lock/* crf */) {
       unpreblow(this.crf, getMaxCrfSize());
+      unmapCrf();
       if (!this.crf.RAFClosed) {
         try {
           this.crf.channel.close();
@@ -3540,6 +3624,8 @@ public final class Oplog implements CompactableOplog, Flushable {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    final boolean groupCommit = isGroupCommit(async);
+    long groupCommitTicket = 0;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
       System.out.println("basicCreate KRF_DEBUG");
@@ -3606,7 +3692,10 @@ public final class Oplog implements CompactableOplog, Flushable {
         id.setOplogId(getOplogId());
         // do the io while holding lock so that switch can set doneAppending
         // Write the data to the opLog for the synch mode
-        startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+        startPosForSynchOp = writeOpLogBytes(this.crf, async, !groupCommit);
+        if (groupCommit) {
+          groupCommitTicket = ++this.groupCommitAppended;
+        }
         // if (this.crf.currSize != startPosForSynchOp) {
         // assert false;
         // }
@@ -3664,6 +3753,9 @@ public final class Oplog implements CompactableOplog, Flushable {
       Assert.assertTrue(this != getOplogSet().getChild());
       getOplogSet().getChild().basicCreate(dr, entry, value, userBits, async);
     } else {
+      if (groupCommitTicket != 0) {
+        waitForGroupCommit(groupCommitTicket);
+      }
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -4578,6 +4670,8 @@ public final class Oplog implements CompactableOplog, Flushable {
     long startPosForSynchOp = -1L;
     int adjustment = 0;
     Oplog emptyOplog = null;
+    final boolean groupCommit = isGroupCommit(async);
+    long groupCommitTicket = 0;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
       System.out.println("basicModify KRF_DEBUG");
@@ -4606,7 +4700,10 @@ public final class Oplog implements CompactableOplog, Flushable {
           long oldOplogId;
           // do the io while holding lock so that switch can set doneAppending
           // Write the data to the opLog for the synch mode
-          startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.crf, async, !groupCommit);
+          if (groupCommit) {
+            groupCommitTicket = ++this.groupCommitAppended;
+          }
           this.crf.currSize = temp;
           startPosForSynchOp += getOpStateValueOffset();
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
@@ -4680,6 +4777,9 @@ public final class Oplog implements CompactableOplog, Flushable {
       Assert.assertTrue(getOplogSet().getChild() != this);
       getOplogSet().getChild().basicModify(dr, entry, value, userBits, async, calledByCompactor);
     } else {
+      if (groupCommitTicket != 0) {
+        waitForGroupCommit(groupCommitTicket);
+      }
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -5009,6 +5109,8 @@ public final class Oplog implements CompactableOplog, Flushable {
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
     Oplog emptyOplog = null;
+    final boolean groupCommit = isGroupCommit(async);
+    long groupCommitTicket = 0;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
       System.out.println("basicRemove KRF_DEBUG");
@@ -5053,7 +5155,10 @@ public final class Oplog implements CompactableOplog, Flushable {
           // before we flush the crf.
           // However we can't have removes by async if we are doing a sync write
           // because we might be killed right after we do this write.
-          startPosForSynchOp = writeOpLogBytes(this.drf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.drf, async, !groupCommit);
+          if (groupCommit) {
+            groupCommitTicket = ++this.groupCommitAppended;
+          }
           setHasDeletes(true);
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
             logger.debug("basicRemove: id=<{}> key=<{}> drId={} oplog#{}", abs(id.getKeyId()), entry.getKey(), dr.getId(),
@@ -5093,6 +5198,9 @@ public final class Oplog implements CompactableOplog, Flushable {
       Assert.assertTrue(getOplogSet().getChild() != this);
       getOplogSet().getChild().basicRemove(dr, entry, async, isClear);
     } else {
+      if (groupCommitTicket != 0) {
+        waitForGroupCommit(groupCommitTicket);
+      }
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -5278,8 +5386,74 @@ public final class Oplog implements CompactableOplog, Flushable {
     return startPos;
   }
 
+  /**
+   * Returns true if a synchronous write to this oplog should not flush
+   * itself but instead be made durable by {@link #waitForGroupCommit}.
+   */
+  private boolean isGroupCommit(boolean async) {
+    return !async && getParent().GROUP_COMMIT;
+  }
+
+  /**
+   * Waits until the synchronous write identified by <code>ticket</code> has
+   * been flushed. If no other writer is flushing then the calling thread
+   * becomes the leader and flushes the oplog buffers, which makes every write
+   * appended so far durable with one write (and force, if enabled) instead of
+   * one per writer. Must not be called while holding {@link #lock}.
+   * 
+   * @param ticket
+   *          the value of {@link #groupCommitAppended} after the write was
+   *          appended
+   */
+  private void waitForGroupCommit(long ticket) {
+    boolean interrupted = false;
+    try {
+      for (;;) {
+        synchronized (this.groupCommitLock) {
+          while (this.groupCommitInProgress && this.groupCommitFlushed < ticket) {
+            try {
+              this.groupCommitLock.wait();
+            } catch (InterruptedException ignore) {
+              // the write has already been appended so we must wait for it to
+              // be flushed
+              interrupted = true;
+            }
+          }
+          if (this.groupCommitFlushed >= ticket) {
+            return;
+          }
+          this.groupCommitInProgress = true;
+        }
+        long flushed = 0;
+        try {
+          long target;
+          synchronized (this.lock) {
+            target = this.groupCommitAppended;
+          }
+          // everything appended up to target is either in the write buffers
+          // or already written so this makes all of it durable
+          flushAll(false);
+          flushed = target;
+        } finally {
+          synchronized (this.groupCommitLock) {
+            if (flushed > this.groupCommitFlushed) {
+              getStats().incGroupCommits(flushed - this.groupCommitFlushed);
+              this.groupCommitFlushed = flushed;
+            }
+            this.groupCommitInProgress = false;
+            this.groupCommitLock.notifyAll();
+          }
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   boolean isRAFOpen() {
-    return !this.crf.RAFClosed; // volatile read
+    return !this.crf.RAFClosed || this.crfMap != null; // volatile read
   }
 
   private boolean okToReopen;
@@ -5292,9 +5466,9 @@ public final class Oplog implements CompactableOplog, Flushable {
         return false;
       if (!this.doneAppending)
         return false;
-      if (this.crf.RAFClosed) {
-        return false;
-      } else {
+      // unmap first so that the oplog is only counted as closed once
+      boolean result = unmapCrf();
+      if (!this.crf.RAFClosed) {
         try {
           this.crf.raf.close();
         } catch (IOException ignore) {
@@ -5302,8 +5476,9 @@ public final class Oplog implements CompactableOplog, Flushable {
         this.crf.RAFClosed = true;
         this.okToReopen = true;
         this.stats.decOpenOplogs();
-        return true;
+        result = true;
       }
+      return result;
     }
   }
 
@@ -5329,6 +5504,201 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  /**
+   * Reads the value from the mapped crf without taking the oplog lock.
+   * 
+   * @return the value, or null if the crf is not mapped or does not contain
+   *         the value, in which case the caller must read it from the file
+   */
+  private BytesAndBits attemptMappedGet(long offsetInOplog, int valueLength, byte userBits) {
+    MappedCrf map = this.crfMap;
+    if (map == null) {
+      // an unsynchronized read of doneAppending is ok since a stale value
+      // just means we read from the file this time
+      if (!this.doneAppending || !getParent().MMAP_READS) {
+        return null;
+      }
+      map = mapCrf();
+      if (map == null) {
+        return null;
+      }
+    }
+    if (!map.retain()) {
+      // unmapped by a concurrent close
+      return null;
+    }
+    byte[] valueBytes;
+    try {
+      if (offsetInOplog < 0 || (offsetInOplog + valueLength) > map.buffer.limit()) {
+        return null;
+      }
+      valueBytes = new byte[valueLength];
+      ByteBuffer view = map.buffer.duplicate();
+      view.position((int) offsetInOplog);
+      view.get(valueBytes);
+    } finally {
+      map.release();
+    }
+    this.stats.incOplogReads();
+    getOplogSet().inactiveAccessed(this);
+    BytesAndBits bb = new BytesAndBits(valueBytes, userBits);
+    // also set the product version for an older product
+    final Version version = getProductVersionIfOld();
+    if (version != null) {
+      bb.setVersion(version);
+    }
+    return bb;
+  }
+
+  /**
+   * Maps the flushed part of the crf of this oplog, which must be done
+   * appending, into memory.
+   * 
+   * @return the mapping or null if the crf could not be mapped
+   */
+  private MappedCrf mapCrf() {
+    boolean reopened = false;
+    try {
+      synchronized (this.lock/* crf */) {
+        if (this.crfMap != null || this.crfMapFailed || this.closed || !this.doneAppending) {
+          return this.crfMap;
+        }
+        if (this.crf.RAFClosed && !this.okToReopen) {
+          return null;
+        }
+        if (SystemUtils.isWindows()) {
+          this.crfMapFailed = true;
+          return null;
+        }
+        try {
+          flush(this.crf, false);
+          long size = this.crf.bytesFlushed;
+          if (size > Integer.MAX_VALUE) {
+            this.crfMapFailed = true;
+            return null;
+          }
+          // the mapping stays valid after the file is closed
+          RandomAccessFile raf = new RandomAccessFile(this.crf.f, "r");
+          try {
+            this.crfMap = new MappedCrf(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size));
+          } finally {
+            raf.close();
+          }
+          if (this.crf.RAFClosed) {
+            // the mapping takes the place of the closed file until closeRAF
+            // unmaps it
+            this.okToReopen = false;
+            this.stats.incOpenOplogs();
+            reopened = true;
+          }
+        } catch (IOException ex) {
+          if (logger.isDebugEnabled()) {
+            logger.debug("Could not map {} so values will be read from the file", this.crf.f, ex);
+          }
+          this.crfMapFailed = true;
+        }
+        return this.crfMap;
+      }
+    } finally {
+      if (reopened) {
+        getOplogSet().inactiveReopened(this);
+      }
+    }
+  }
+
+  /**
+   * Drops the mapping of the crf, which is unmapped as soon as no read is
+   * using it. Must be called while holding {@link #lock}.
+   * 
+   * @return true if this oplog was only open because of the mapping and is
+   *         now closed
+   */
+  private boolean unmapCrf() {
+    MappedCrf map = this.crfMap;
+    if (map == null) {
+      return false;
+    }
+    this.crfMap = null;
+    map.release();
+    if (this.crf.RAFClosed) {
+      this.okToReopen = true;
+      this.stats.decOpenOplogs();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Used by tests to confirm that reads are done from the mapped crf.
+   */
+  boolean isCrfMapped() {
+    return this.crfMap != null;
+  }
+
+  /**
+   * Used by tests to check that the mapped crf is unmapped.
+   */
+  MappedCrf getCrfMap() {
+    return this.crfMap;
+  }
+
+  /**
+   * A mapping of a crf that counts its readers so that it can be unmapped as
+   * soon as it is dropped, rather than holding on to the disk space of a
+   * deleted crf until it is garbage collected.
+   */
+  static final class MappedCrf {
+    final MappedByteBuffer buffer;
+
+    /** one reference for the oplog plus one for each read in progress */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    MappedCrf(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * @return false if the mapping has already been unmapped
+     */
+    boolean retain() {
+      for (;;) {
+        int count = this.refCount.get();
+        if (count == 0) {
+          return false;
+        }
+        if (this.refCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    void release() {
+      if (this.refCount.decrementAndGet() == 0) {
+        unmap();
+      }
+    }
+
+    boolean isUnmapped() {
+      return this.refCount.get() == 0;
+    }
+
+    private void unmap() {
+      try {
+        Method cleanerMethod = this.buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(this.buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      } catch (Exception e) {
+        // the mapping is released when it is garbage collected
+        if (logger.isDebugEnabled()) {
+          logger.debug("Could not unmap a crf, it will be unmapped when it is garbage collected", e);
+        }
+      }
+    }
+  }
+
   private BytesAndBits attemptGet(DiskRegionView dr, long offsetInOplog, boolean bitOnly, int valueLength, byte userBits)
       throws IOException {
     boolean didReopen = false;
@@ -5448,6 +5818,10 @@ public final class Oplog implements CompactableOplog, Flushable {
     } else {
       if (offsetInOplog == -1)
         return null;
+      bb = attemptMappedGet(offsetInOplog, valueLength, userBits);
+      if (bb != null) {
+        return bb;
+      }
       try {
         for (;;) {
           dr.getCancelCriterion().checkCancelInProgress(null);
@@ -5711,6 +6085,10 @@ public final class Oplog implements CompactableOplog, Flushable {
 
   private void deleteFile(final OplogFile olf) {
     synchronized (this.lock) {
+      if (olf == this.crf) {
+        // a mapping would keep the disk space of the deleted file in use
+        unmapCrf();
+      }
       if (olf.currSize != 0) {
         this.dirHolder.decrementTotalOplogSize(olf.currSize);
         olf.currSize = 0;
@@ -32,6 +32,7 @@ import com.gemstone.gemfire.internal.cache.PartitionedRegionQueryEvaluator.PRQue
 import com.gemstone.gemfire.internal.cache.execute.BucketMovedException;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import org.apache.logging.log4j.Logger;
 
 import java.io.DataInput;
@@ -39,16 +40,19 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * This class takes the responsibility of executing the query on a data store
- * for the buckets specified in bucketList. It contains a
- * <code>PRQueryExecutor</code> thread-pool executor that takes a
- * <code>Callable</code> task identified by <code>PartitionedRegion</code>,
- * queryString and bucketId.
+ * for the buckets specified in bucketList. Buckets are queried in parallel on
+ * the <code>PRQueryExecutor</code> pool. Each query submits up to
+ * {@link #MAX_PARALLELISM_PER_QUERY} <code>QueryTask</code>s, which take
+ * buckets from a queue shared by the query until it is empty, so a slow bucket
+ * only holds up the task that is querying it.
  * 
- * The QueryTasks add results directly to a results queue.
+ * The QueryTasks add the results of each bucket to the result collector as soon
+ * as the bucket is done.
  * The BucketQueryResult is used not only to indicate completion, and holds an exception if there one occurred while
  * processing a query.
  *
@@ -57,9 +61,20 @@ public class PRQueryProcessor
 {
   private static final Logger logger = LogService.getLogger();
   
-  final static int BUCKET_QUERY_TIMEOUT = 60;
+  /**
+   * The number of threads in the pool shared by all the queries in this
+   * member. Defaults to the number of processors. A value of 1 queries the
+   * buckets one at a time in the thread that executes the query.
+   */
+  public final static int NUM_THREADS = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.numThreads",
+      Runtime.getRuntime().availableProcessors()).intValue();
 
-  public final static int NUM_THREADS = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.numThreads", 1).intValue();
+  /**
+   * The maximum number of pool threads a single query uses, so that one
+   * query over many buckets does not hold up all the others.
+   */
+  public final static int MAX_PARALLELISM_PER_QUERY = Integer.getInteger(DistributionConfig.GEMFIRE_PREFIX + "PRQueryProcessor.maxParallelismPerQuery",
+      NUM_THREADS).intValue();
 
   /* For Test purpose */
   public static int TEST_NUM_THREADS = 0;
@@ -72,13 +87,14 @@ public class PRQueryProcessor
   private volatile int numBucketsProcessed = 0;
   private volatile ObjectType resultType = null; 
  
-  private boolean isIndexUsedForLocalQuery = false;
+  private volatile boolean isIndexUsedForLocalQuery = false;
 //  private List _failedBuckets;
 
   public PRQueryProcessor(PartitionedRegionDataStore prDS,
       DefaultQuery query, Object[] parameters, List<Integer> buckets) {
     Assert.assertTrue(!buckets.isEmpty(), "bucket list can not be empty. ");
     this._prds = prDS;
+    this.pr = prDS.getPartitionedRegion();
     this._bucketsToQuery = buckets;
     ((GemFireCacheImpl)prDS.partitionedRegion.getCache()).getLocalQueryService();
     this.query = query;
@@ -119,7 +135,7 @@ public class PRQueryProcessor
       //((IndexTrackingQueryObserver)observer).setIndexInfo(resultCollector.getIndexInfoMap());
     //}
     
-    if (NUM_THREADS > 1 || this.TEST_NUM_THREADS > 1) {  
+    if (useThreadPool()) {
       executeWithThreadPool(resultCollector);
     } else {
       executeSequentially(resultCollector, this._bucketsToQuery);
@@ -127,82 +143,148 @@ public class PRQueryProcessor
     return this.resultType.isStructType();
   }
   
+  /**
+   * Buckets are queried in parallel if there is more than one of them and the
+   * pool has more than one thread. Queries are executed in the calling thread
+   * while a QueryObserver is installed, for example to trace which indexes a
+   * query used, because observers keep their state in the calling thread.
+   */
+  private boolean useThreadPool() {
+    if (TEST_NUM_THREADS > 1) {
+      return true;
+    }
+    return NUM_THREADS > 1 && MAX_PARALLELISM_PER_QUERY > 1
+        && this._bucketsToQuery.size() > 1 && !QueryObserverHolder.hasObserver();
+  }
+
   private void executeWithThreadPool(Collection<Collection> resultCollector)
     throws QueryException, InterruptedException, ForceReattemptException {
     if (Thread.interrupted()) throw new InterruptedException();
-      
-    java.util.List callableTasks = buildCallableTaskList(resultCollector);
+
     ExecutorService execService = PRQueryExecutor.getExecutorService();
+    int parallelism = TEST_NUM_THREADS > 1 ? TEST_NUM_THREADS : MAX_PARALLELISM_PER_QUERY;
+    parallelism = Math.min(parallelism, this._bucketsToQuery.size());
+
+    BucketQueue buckets = new BucketQueue(this._bucketsToQuery, resultCollector);
+    // QueryMessage sets this in the thread that executes a remote query
+    boolean pdxReadSerialized = DefaultQuery.getPdxReadSerialized();
+    List<Future<QueryTask.BucketQueryResult>> futures = new ArrayList<Future<QueryTask.BucketQueryResult>>(parallelism);
+    for (int i = 0; i < parallelism; i++) {
+      futures.add(execService.submit(new QueryTask(this.query, this.parameters, buckets, resultCollector,
+          pdxReadSerialized)));
+    }
 
     boolean reattemptNeeded = false;
     ForceReattemptException fre = null;
-    
-    if (callableTasks != null && !callableTasks.isEmpty()) {
-      List futures = null;
-      try {
-        futures = execService.invokeAll(callableTasks, 300, TimeUnit.SECONDS);
-      }
-      catch (RejectedExecutionException rejectedExecutionEx) {
-        //this._prds.partitionedRegion.checkReadiness();
-        throw rejectedExecutionEx;
-      }
-      
-      if (futures != null) {
-        Iterator itr = futures.iterator();
-        while (itr.hasNext() && !execService.isShutdown() && !execService.isTerminated()) {
-          //this._prds.partitionedRegion.checkReadiness();
-          Future fut = (Future)itr.next();
-          QueryTask.BucketQueryResult bqr = null;
-          
-          try {
-            bqr = (QueryTask.BucketQueryResult)fut.get(BUCKET_QUERY_TIMEOUT, TimeUnit.SECONDS);
-            //if (retry.booleanValue()) {
-            //  reattemptNeeded = true;
-              //fre = (ForceReattemptException)bqr.getException();
-            //} else {
-              bqr.handleAndThrowException(); // handles an exception if there was one,
-              //  otherwise, the results have already been added to the resultQueue
-            //}
-            if (bqr.retry) {
-              reattemptNeeded = true;
-            }
-            
-          } catch (TimeoutException e) {
-            throw new InternalGemFireException(LocalizedStrings.PRQueryProcessor_TIMED_OUT_WHILE_EXECUTING_QUERY_TIME_EXCEEDED_0.toLocalizedString(
-                Integer.valueOf(BUCKET_QUERY_TIMEOUT)), e);
-          } catch (ExecutionException ee) {
-            Throwable cause = ee.getCause();
-            if (cause instanceof QueryException) {
-              throw (QueryException)cause;
-            }
-            else {
-              throw new InternalGemFireException(LocalizedStrings.PRQueryProcessor_GOT_UNEXPECTED_EXCEPTION_WHILE_EXECUTING_QUERY_ON_PARTITIONED_REGION_BUCKET.toLocalizedString(), 
-              cause);
-            }
+    QueryException qe = null;
+    RuntimeException re = null;
+    try {
+      for (Future<QueryTask.BucketQueryResult> fut : futures) {
+        QueryTask.BucketQueryResult bqr;
+        try {
+          bqr = fut.get();
+        } catch (ExecutionException ee) {
+          Throwable cause = ee.getCause();
+          if (re == null) {
+            re = new InternalGemFireException(LocalizedStrings.PRQueryProcessor_GOT_UNEXPECTED_EXCEPTION_WHILE_EXECUTING_QUERY_ON_PARTITIONED_REGION_BUCKET.toLocalizedString(),
+                cause);
           }
+          continue;
         }
-        
-        CompiledSelect cs = this.query.getSimpleSelect();
-       
-        if(cs != null && (cs.isOrderBy() || cs.isGroupBy())) {      
-          ExecutionContext context = new QueryExecutionContext(this.parameters, pr.getCache());
-          int limit = this.query.getLimit(parameters);
-          Collection mergedResults =coalesceOrderedResults(resultCollector, context, cs, limit);
-          resultCollector.clear();
-          resultCollector.add(mergedResults);
+        if (bqr.isReattemptNeeded()) {
+          reattemptNeeded = true;
+          fre = (ForceReattemptException)bqr.getException();
+        } else if (bqr.getException() instanceof QueryException) {
+          if (qe == null) {
+            qe = (QueryException)bqr.getException();
+          }
+        } else if (bqr.getException() instanceof RuntimeException) {
+          if (re == null) {
+            re = (RuntimeException)bqr.getException();
+          }
         }
       }
+    } catch (InterruptedException e) {
+      buckets.cancel();
+      for (Future<QueryTask.BucketQueryResult> fut : futures) {
+        fut.cancel(false);
+      }
+      throw e;
     }
-    
-    if (execService == null || execService.isShutdown()
-        || execService.isTerminated()) {
-      this._prds.partitionedRegion.checkReadiness();
+
+    if (execService.isShutdown() || execService.isTerminated()) {
+      this.pr.checkReadiness();
     }
-    
     if (reattemptNeeded) {
       throw fre;
     }
-    
+    if (qe != null) {
+      throw qe;
+    }
+    if (re != null) {
+      throw re;
+    }
+
+    CompiledSelect cs = this.query.getSimpleSelect();
+    if (cs != null && (cs.isOrderBy() || cs.isGroupBy())) {
+      ExecutionContext context = new QueryExecutionContext(this.parameters, pr.getCache());
+      context.setBucketList(this._bucketsToQuery);
+      int limit = this.query.getLimit(parameters);
+      Collection mergedResults = coalesceBucketResults(resultCollector, context, cs, limit);
+      resultCollector.clear();
+      resultCollector.add(mergedResults);
+    }
+  }
+
+  /**
+   * The buckets of one query that have not been queried yet, shared by the
+   * QueryTasks of that query. Also stops handing out buckets once the query
+   * has failed or a LIMIT has been reached.
+   */
+  private final class BucketQueue {
+    private final Queue<Integer> remaining;
+    private final Collection<Collection> resultCollector;
+    private final int limit;
+    private volatile boolean canceled = false;
+
+    BucketQueue(List<Integer> buckets, Collection<Collection> resultCollector)
+        throws QueryException {
+      this.remaining = new ConcurrentLinkedQueue<Integer>(buckets);
+      this.resultCollector = resultCollector;
+      CompiledSelect cs = query.getSimpleSelect();
+      // Only a plain select can stop early; the other kinds need the results
+      // of every bucket to be correct.
+      if (cs != null && !cs.isOrderBy() && !cs.isGroupBy() && !cs.isDistinct() && !cs.isCount()) {
+        this.limit = query.getLimit(parameters);
+      } else {
+        this.limit = -1;
+      }
+    }
+
+    /** Returns the next bucket to query or null if there are no more. */
+    Integer next() {
+      if (this.canceled || isLimitReached()) {
+        return null;
+      }
+      return this.remaining.poll();
+    }
+
+    void cancel() {
+      this.canceled = true;
+    }
+
+    private boolean isLimitReached() {
+      if (this.limit < 0) {
+        return false;
+      }
+      int size = 0;
+      synchronized (this.resultCollector) {
+        for (Collection results : this.resultCollector) {
+          size += results.size();
+        }
+      }
+      return size >= this.limit;
+    }
   }
 
   /**
@@ -330,7 +412,7 @@ public class PRQueryProcessor
         context.setBucketList(singleBucket);
         executeQueryOnBuckets(resultCollector, context);
       }     
-      Collection mergedResults =coalesceOrderedResults(resultCollector, context, cs, limit);
+      Collection mergedResults = coalesceBucketResults(resultCollector, context, cs, limit);
       resultCollector.clear();
       resultCollector.add(mergedResults);
       
@@ -340,6 +422,37 @@ public class PRQueryProcessor
     }
   }
   
+  /**
+   * Combines the results of the buckets queried separately on this node into
+   * one result. Ordered results are merged. For GROUP BY each bucket holds a
+   * row of partial aggregates per group, and these are combined into one row
+   * per group so that the coordinator gets a row per group from this node
+   * instead of one from each bucket.
+   */
+  private Collection coalesceBucketResults(Collection<Collection> results,
+      ExecutionContext context, CompiledSelect cs, int limit) throws QueryException {
+    if (!cs.isGroupBy()) {
+      return coalesceOrderedResults(results, context, cs, limit);
+    }
+    SelectResults bucketRows;
+    if (cs.isOrderBy()) {
+      bucketRows = (SelectResults)coalesceOrderedResults(results, context, cs, limit);
+    } else {
+      // aggregates without GROUP BY keys have at most one row per bucket
+      List<Collection> bucketResults = new ArrayList<Collection>(results.size());
+      for (Object o : results) {
+        if (o instanceof Collection) {
+          bucketResults.add((Collection)o);
+        }
+      }
+      List<CumulativeNonDistinctResults.Metadata> metadata = Collections.nCopies(bucketResults.size(),
+          CumulativeNonDistinctResults.getCollectionMetadata(false, false, true));
+      bucketRows = new CumulativeNonDistinctResults(bucketResults, -1,
+          cs.getElementTypeForOrderByQueries(), metadata);
+    }
+    return ((CompiledGroupBySelect)cs).combineBucketResults(bucketRows, context);
+  }
+
   private Collection coalesceOrderedResults(Collection<Collection> results, 
       ExecutionContext context, CompiledSelect cs, int limit) {
     List<Collection> sortedResults = new ArrayList<Collection>(results.size());
@@ -385,7 +498,9 @@ public class PRQueryProcessor
           resultCollector.add((SelectResults) results);
         //}
       }
-      isIndexUsedForLocalQuery =((QueryExecutionContext)context).isIndexUsed();
+      if (((QueryExecutionContext)context).isIndexUsed()) {
+        isIndexUsedForLocalQuery = true;
+      }
       
     } catch (BucketMovedException bme) {
       if (logger.isDebugEnabled()) {
@@ -408,16 +523,6 @@ public class PRQueryProcessor
     }
   }
 
-  private List buildCallableTaskList(Collection<Collection> resultsColl)
-  {
-    List callableTasks = new ArrayList();
-    for (Iterator itr = _bucketsToQuery.iterator(); itr.hasNext();) {
-      Integer bId = (Integer)itr.next();
-      callableTasks.add(new QueryTask(this.query, this.parameters, _prds, bId, resultsColl));
-    }
-    return callableTasks;
-  }
-  
   public boolean isIndexUsed() {
     return isIndexUsedForLocalQuery;
   }
@@ -433,10 +538,8 @@ public class PRQueryProcessor
   }
 
   /**
-   * A ThreadPool ( Fixed Size ) with an executor service to execute the query
-   * execution spread over buckets.
-   * 
-   * 
+   * The pool, shared by all the queries in this member, that queries buckets
+   * in parallel.
    */
   static class PRQueryExecutor {
 
@@ -471,8 +574,22 @@ public class PRQueryProcessor
     static synchronized void initializeExecutorService() {
       if (execService == null || execService.isShutdown()
           || execService.isTerminated()) {
-        int numThreads = (TEST_NUM_THREADS > 1 ? TEST_NUM_THREADS : NUM_THREADS);
-        execService = Executors.newFixedThreadPool(numThreads);
+        int numThreads = Math.max(TEST_NUM_THREADS > 1 ? TEST_NUM_THREADS : NUM_THREADS, 1);
+        final ThreadGroup group = LoggingThreadGroup.createThreadGroup("PRQueryProcessor Threads", logger);
+        ThreadFactory threadFactory = new ThreadFactory() {
+          private final AtomicInteger threadId = new AtomicInteger();
+          public Thread newThread(Runnable command) {
+            Thread thread = new Thread(group, command, "PRQueryProcessor Thread " + this.threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        };
+        // The QueryTasks of a query take their buckets from a shared queue,
+        // so a plain fixed pool keeps every thread busy.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        execService = pool;
       }
     }
   }
@@ -523,53 +640,56 @@ public class PRQueryProcessor
   }
   
   /**
-   * Implementation of call-able task to execute query on a bucket region. This
-   * task will be generated by the PRQueryProcessor.
+   * Implementation of call-able task that executes a query on the buckets it
+   * takes from a BucketQueue, one bucket at a time. This task will be
+   * generated by the PRQueryProcessor.
    * 
    */
   @SuppressWarnings("synthetic-access")
-  private final class QueryTask implements Callable {
+  private final class QueryTask implements Callable<QueryTask.BucketQueryResult> {
     private final DefaultQuery query;
     private final Object[] parameters;
-    private final PartitionedRegionDataStore _prDs;
-    private final Integer _bucketId;
+    private final BucketQueue buckets;
     private final Collection<Collection> resultColl;
+    private final boolean pdxReadSerialized;
     
-    public QueryTask(DefaultQuery query, Object[] parameters, PartitionedRegionDataStore prDS, 
-        Integer bucketId, final Collection<Collection> rColl) {
+    public QueryTask(DefaultQuery query, Object[] parameters, BucketQueue buckets,
+        final Collection<Collection> rColl, boolean pdxReadSerialized) {
       this.query = query;
-      this._prDs = prDS;
-      this._bucketId = bucketId;
+      this.buckets = buckets;
       this.resultColl = rColl;
       this.parameters = parameters;
+      this.pdxReadSerialized = pdxReadSerialized;
     }
     
-    public Object call() throws Exception {
-      BucketQueryResult bukResult = new BucketQueryResult(this._bucketId);
-      boolean retry = false;
+    public BucketQueryResult call() throws Exception {
+      Integer bId = this.buckets.next();
+      BucketQueryResult bukResult = new BucketQueryResult(bId == null ? -1 : bId.intValue());
+      // the pool thread reads PDX the same way as the thread that executes the query
+      boolean previousPdxReadSerialized = DefaultQuery.getPdxReadSerialized();
+      DefaultQuery.setPdxReadSerialized(this.pdxReadSerialized);
       try {
-        //Add indexInfo of this thread to result collector
-        QueryObserver observer = QueryObserverHolder.getInstance();
-        if (observer != null && observer instanceof IndexTrackingQueryObserver) {
-          //((IndexTrackingQueryObserver)observer).setIndexInfo(resultColl.getIndexInfoMap());
+        while (bId != null) {
+          bukResult = new BucketQueryResult(bId.intValue());
+          List<Integer> bucketList = Collections.singletonList(bId);
+          ExecutionContext context = new QueryExecutionContext(this.parameters, pr.getCache(), this.query);
+          context.setBucketList(bucketList);
+          executeQueryOnBuckets(this.resultColl, context);
+          bId = this.buckets.next();
         }
-        
-        final Integer bId = Integer.valueOf(this._bucketId);
-        List<Integer> bucketList = Collections.singletonList(bId);       
-        ExecutionContext context = new QueryExecutionContext(this.parameters, pr.getCache(), this.query);
-        context.setBucketList(bucketList);
-        executeQueryOnBuckets(this.resultColl, context);
-        //executeSequentially(this.resultColl, bucketList);
-        // success
-        //doBucketQuery(bId, this._prDs, this.query, this.parameters, this.resultColl);
       } catch (ForceReattemptException fre) {
         bukResult.setException(fre);
       } catch (QueryException e) {
         bukResult.setException(e);
       } catch (CacheRuntimeException cre) {
         bukResult.setException(cre);
+      } finally {
+        DefaultQuery.setPdxReadSerialized(previousPdxReadSerialized);
+      }
+      if (bukResult.exceptionOccured()) {
+        // no point in querying the rest of the buckets
+        this.buckets.cancel();
       }
-      // Exception
       return bukResult;
     }
     
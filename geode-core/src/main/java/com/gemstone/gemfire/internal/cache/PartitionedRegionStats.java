@@ -20,6 +20,7 @@ package com.gemstone.gemfire.internal.cache;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.gemstone.gemfire.StatisticDescriptor;
 import com.gemstone.gemfire.Statistics;
@@ -151,6 +152,11 @@ public class PartitionedRegionStats {
   private static final int recoveriesInProgressId;
   private static final int recoveriesCompletedId;
   private static final int recoveriesTimeId;
+  private static final int recoveryBucketsRemainingId;
+  private static final int recoveryBytesRemainingId;
+  private static final int recoveryBucketsCompletedId;
+  private static final int recoveryBytesCompletedId;
+  private static final int recoveryTimeRemainingId;
   private static final int bucketCreatesInProgressId;
   private static final int bucketCreatesCompletedId;
   private static final int bucketCreatesFailedId;
@@ -451,6 +457,26 @@ public class PartitionedRegionStats {
             "recoveryTime",
             "Total number time spent recovering redundancy.",
             "operations"),
+        f.createIntGauge(
+            "recoveryBucketsRemaining",
+            "Current number of redundant bucket copies that the redundancy recovery in progress for this region and its colocated regions still has to create.",
+            "buckets"),
+        f.createLongGauge(
+            "recoveryBytesRemaining",
+            "Current number of bytes that the redundancy recovery in progress for this region and its colocated regions still has to copy.",
+            "bytes"),
+        f.createIntCounter(
+            "recoveryBucketsCompleted",
+            "Total number of redundant bucket copies created by redundancy recovery of this region and its colocated regions.",
+            "buckets"),
+        f.createLongCounter(
+            "recoveryBytesCompleted",
+            "Total number of bytes copied by redundancy recovery of this region and its colocated regions.",
+            "bytes"),
+        f.createLongGauge(
+            "recoveryTimeRemaining",
+            "Estimated time until the redundancy recovery in progress for this region completes, based on its progress so far.",
+            "milliseconds"),
         f.createIntGauge(
             "bucketCreatesInProgress",
             "Current number of bucket create operations being performed for rebalancing.",
@@ -633,6 +659,11 @@ public class PartitionedRegionStats {
     recoveriesCompletedId = type.nameToId("recoveriesCompleted");
     recoveriesInProgressId = type.nameToId("recoveriesInProgress");
     recoveriesTimeId = type.nameToId("recoveryTime");
+    recoveryBucketsRemainingId = type.nameToId("recoveryBucketsRemaining");
+    recoveryBytesRemainingId = type.nameToId("recoveryBytesRemaining");
+    recoveryBucketsCompletedId = type.nameToId("recoveryBucketsCompleted");
+    recoveryBytesCompletedId = type.nameToId("recoveryBytesCompleted");
+    recoveryTimeRemainingId = type.nameToId("recoveryTimeRemaining");
     bucketCreatesInProgressId = type.nameToId("bucketCreatesInProgress");
     bucketCreatesCompletedId = type.nameToId("bucketCreatesCompleted");
     bucketCreatesFailedId = type.nameToId("bucketCreatesFailed");
@@ -684,6 +715,13 @@ public class PartitionedRegionStats {
    */
   private final Map startTimeMap;
 
+  /** nanoTime the recovery in progress started at, zero if none; guarded by this */
+  private long recoveryProgressStart;
+  /** bucket copies created by the recovery in progress; guarded by this */
+  private int recoveryProgressBuckets;
+  /** bytes copied by the recovery in progress; guarded by this */
+  private long recoveryProgressBytes;
+
   public static long startTime() {
     return CachePerfStats.getStatTime();
   }
@@ -1078,6 +1116,78 @@ type, name /* fixes bug 42343 */);
     }
     this.stats.incInt(recoveriesCompletedId, 1);
   }
+
+  /**
+   * Sets the redundant bucket copies that the recovery in progress still
+   * has to create. Called when the recovery starts and again when it
+   * replans after a membership change.
+   */
+  public synchronized void setRecoveryRemaining(int buckets, long bytes) {
+    if (this.recoveryProgressStart == 0) {
+      this.recoveryProgressStart = System.nanoTime();
+      this.recoveryProgressBuckets = 0;
+      this.recoveryProgressBytes = 0;
+    }
+    this.stats.setInt(recoveryBucketsRemainingId, buckets);
+    this.stats.setLong(recoveryBytesRemainingId, bytes);
+    updateRecoveryTimeRemaining();
+  }
+
+  /**
+   * Records a redundant bucket copy created by the recovery in progress,
+   * and updates the estimated time remaining from the rate of the copies so
+   * far.
+   */
+  public synchronized void endRecoveryBucket(long bytes) {
+    this.stats.incInt(recoveryBucketsCompletedId, 1);
+    this.stats.incLong(recoveryBytesCompletedId, bytes);
+    if (this.recoveryProgressStart == 0) {
+      return;
+    }
+    this.recoveryProgressBuckets++;
+    this.recoveryProgressBytes += bytes;
+    this.stats.setInt(recoveryBucketsRemainingId, Math.max(0, this.stats.getInt(recoveryBucketsRemainingId) - 1));
+    this.stats.setLong(recoveryBytesRemainingId, Math.max(0, this.stats.getLong(recoveryBytesRemainingId) - bytes));
+    updateRecoveryTimeRemaining();
+  }
+
+  /**
+   * Clears the progress of the recovery in progress once it is done.
+   */
+  public synchronized void endRecoveryProgress() {
+    this.recoveryProgressStart = 0;
+    this.stats.setInt(recoveryBucketsRemainingId, 0);
+    this.stats.setLong(recoveryBytesRemainingId, 0);
+    this.stats.setLong(recoveryTimeRemainingId, 0);
+  }
+
+  private void updateRecoveryTimeRemaining() {
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.recoveryProgressStart);
+    long bytesRemaining = this.stats.getLong(recoveryBytesRemainingId);
+    int bucketsRemaining = this.stats.getInt(recoveryBucketsRemainingId);
+    long estimate;
+    if (this.recoveryProgressBytes > 0 && bytesRemaining > 0) {
+      estimate = (long) ((double) elapsed * bytesRemaining / this.recoveryProgressBytes);
+    } else if (this.recoveryProgressBuckets > 0) {
+      estimate = (long) ((double) elapsed * bucketsRemaining / this.recoveryProgressBuckets);
+    } else {
+      // nothing to base an estimate on yet
+      estimate = 0;
+    }
+    this.stats.setLong(recoveryTimeRemainingId, estimate);
+  }
+
+  public int getRecoveryBucketsRemaining() {
+    return this.stats.getInt(recoveryBucketsRemainingId);
+  }
+
+  public long getRecoveryBytesRemaining() {
+    return this.stats.getLong(recoveryBytesRemainingId);
+  }
+
+  public long getRecoveryTimeRemaining() {
+    return this.stats.getLong(recoveryTimeRemainingId);
+  }
   
   public long startBucketCreate(boolean isRebalance) {
     this.stats.incInt(bucketCreatesInProgressId, 1);
@@ -30,6 +30,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -47,6 +55,7 @@ import com.gemstone.gemfire.internal.cache.persistence.OplogType;
 import com.gemstone.gemfire.internal.cache.versions.RegionVersionVector;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
 import com.gemstone.gemfire.internal.sequencelog.EntryLogger;
@@ -451,40 +460,16 @@ public class PersistentOplogSet implements OplogSet {
     }
     if (oplogSet.size() > 0) {
       long startOpLogRecovery = System.currentTimeMillis();
-      // first figure out all entries that have been destroyed
-      boolean latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        byteCount += oplog.recoverDrf(deletedIds,
-                                      this.alreadyRecoveredOnce.get(),
-                                      latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
-        }
-      }
-      parent.incDeadRecordCount(deletedIds.size());
-      // now figure out live entries
-      latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        long startOpLogRead = parent.getStats().startOplogRead();
-        long bytesRead = oplog.recoverCrf(deletedIds,
-                                          // @todo make recoverValues per region
-                                          recoverValues(),
-                                          recoverValuesSync(),
-                                          this.alreadyRecoveredOnce.get(),
-                                          oplogsNeedingValueRecovery, 
-                                          latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
-        }
-        byteCount += bytesRead;
-        parent.getStats().endOplogRead(startOpLogRead, bytesRead);
-        
-        //Callback to the disk regions to indicate the oplog is recovered
-        //Used for offline export
-        for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
-          drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+      ExecutorService recoveryPool = createRecoveryPool(oplogSet.size());
+      try {
+        // first figure out all entries that have been destroyed
+        byteCount += recoverDrfs(oplogSet, deletedIds, recoveryPool);
+        parent.incDeadRecordCount(deletedIds.size());
+        // now figure out live entries
+        byteCount += recoverCrfs(oplogSet, deletedIds, oplogsNeedingValueRecovery, recoveryPool);
+      } finally {
+        if (recoveryPool != null) {
+          recoveryPool.shutdownNow();
         }
       }
       long endOpLogRecovery = System.currentTimeMillis();
@@ -536,6 +521,184 @@ public class PersistentOplogSet implements OplogSet {
     return byteCount;
   }
 
+  /**
+   * Returns a pool used to read the oplogs being recovered in parallel, or
+   * null if they should be read one at a time by the recovering thread.
+   */
+  private ExecutorService createRecoveryPool(int oplogCount) {
+    int threads = Math.min(parent.RECOVERY_THREADS, oplogCount);
+    if (threads <= 1) {
+      return null;
+    }
+    final ThreadGroup recoveryThreadGroup = LoggingThreadGroup.createThreadGroup("Oplog Recovery Thread Group", logger);
+    final ThreadFactory recoveryThreadFactory = GemfireCacheHelper.CreateThreadFactory(recoveryThreadGroup, "Oplog Recovery");
+    return new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                                  new LinkedBlockingQueue<Runnable>(),
+                                  recoveryThreadFactory);
+  }
+
+  /**
+   * Reads the drf of every oplog into deletedIds. If a pool is given the drfs
+   * are read concurrently, each into its own set, and the results are merged
+   * in oplog order so the outcome is the same as reading them one at a time.
+   * 
+   * @return the number of bytes read
+   */
+  private long recoverDrfs(TreeSet<Oplog> oplogSet, OplogEntryIdSet deletedIds, ExecutorService recoveryPool) {
+    final boolean alreadyRecovered = this.alreadyRecoveredOnce.get();
+    final DiskStoreStats stats = parent.getStats();
+    long byteCount = 0;
+    int remaining = oplogSet.size();
+    stats.incDrfsToRecover(remaining);
+    try {
+      if (recoveryPool == null) {
+        boolean latestOplog = true;
+        for (Oplog oplog: oplogSet) {
+          byteCount += oplog.recoverDrf(deletedIds, alreadyRecovered, latestOplog);
+          latestOplog = false;
+          if (!alreadyRecovered) {
+            updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+          }
+          stats.incDrfsToRecover(-1);
+          remaining--;
+        }
+        return byteCount;
+      }
+      List<OplogEntryIdSet> oplogDeletedIds = new ArrayList<OplogEntryIdSet>(oplogSet.size());
+      List<Future<Long>> results = new ArrayList<Future<Long>>(oplogSet.size());
+      boolean latestOplog = true;
+      for (final Oplog oplog: oplogSet) {
+        final OplogEntryIdSet ids = new OplogEntryIdSet();
+        final boolean latest = latestOplog;
+        latestOplog = false;
+        oplogDeletedIds.add(ids);
+        results.add(recoveryPool.submit(new Callable<Long>() {
+          public Long call() {
+            EntryLogger.setSource(parent.getDiskStoreID(), "recovery");
+            try {
+              return oplog.recoverDrf(ids, alreadyRecovered, latest);
+            } finally {
+              EntryLogger.clearSource();
+            }
+          }
+        }));
+      }
+      int i = 0;
+      for (Oplog oplog: oplogSet) {
+        byteCount += waitForRecoveryTask(results.get(i));
+        deletedIds.addAll(oplogDeletedIds.get(i));
+        // let the worker's set be collected as soon as it is merged
+        oplogDeletedIds.set(i, null);
+        i++;
+        if (!alreadyRecovered) {
+          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+        }
+        stats.incDrfsToRecover(-1);
+        remaining--;
+      }
+      return byteCount;
+    } finally {
+      if (remaining > 0) {
+        stats.incDrfsToRecover(-remaining);
+      }
+    }
+  }
+
+  /**
+   * Recovers the live entries from the crf (or krf) of every oplog. The
+   * oplogs are parsed and applied one at a time in order, newest first,
+   * because recoverCrf applies each record straight to the recovery stores
+   * and skips entries that a newer oplog already recovered. Parsing them
+   * concurrently would let an older record win. So if a pool is given it is
+   * only used to read the files of the next few oplogs ahead of the one
+   * currently being parsed, which warms the os page cache but does not
+   * parse anything.
+   * 
+   * @return the number of bytes read
+   */
+  private long recoverCrfs(TreeSet<Oplog> oplogSet, OplogEntryIdSet deletedIds,
+      Set<Oplog> oplogsNeedingValueRecovery, ExecutorService recoveryPool) {
+    final DiskStoreStats stats = parent.getStats();
+    final boolean recoverValuesSync = recoverValuesSync();
+    final List<Oplog> oplogs = new ArrayList<Oplog>(oplogSet);
+    final int lookAhead = parent.RECOVERY_THREADS;
+    // the first oplog is read by recoverCrf straight away
+    int nextReadAhead = 1;
+    long byteCount = 0;
+    int remaining = oplogs.size();
+    stats.incCrfsToRecover(remaining);
+    try {
+      boolean latestOplog = true;
+      for (int i = 0; i < oplogs.size(); i++) {
+        if (recoveryPool != null) {
+          while (nextReadAhead < oplogs.size() && nextReadAhead <= i + lookAhead) {
+            final Oplog next = oplogs.get(nextReadAhead++);
+            recoveryPool.execute(new Runnable() {
+              public void run() {
+                stats.incRecoveryReadAheadBytes(next.readAheadForRecovery(recoverValuesSync));
+              }
+            });
+          }
+        }
+        Oplog oplog = oplogs.get(i);
+        long startOpLogRead = stats.startOplogRead();
+        long bytesRead = oplog.recoverCrf(deletedIds,
+                                          // @todo make recoverValues per region
+                                          recoverValues(),
+                                          recoverValuesSync,
+                                          this.alreadyRecoveredOnce.get(),
+                                          oplogsNeedingValueRecovery, 
+                                          latestOplog);
+        latestOplog = false;
+        if (!this.alreadyRecoveredOnce.get()) {
+          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+        }
+        byteCount += bytesRead;
+        stats.endOplogRead(startOpLogRead, bytesRead);
+        stats.incCrfsToRecover(-1);
+        remaining--;
+        
+        //Callback to the disk regions to indicate the oplog is recovered
+        //Used for offline export
+        for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
+          drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+        }
+      }
+      return byteCount;
+    } finally {
+      if (remaining > 0) {
+        stats.incCrfsToRecover(-remaining);
+      }
+    }
+  }
+
+  private long waitForRecoveryTask(Future<Long> result) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return result.get().longValue();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+          parent.getCancelCriterion().checkCancelInProgress(ex);
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error)cause;
+          }
+          throw new DiskAccessException("Failed recovering oplogs", cause, parent);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   protected boolean recoverValuesSync() {
     return parent.RECOVER_VALUES_SYNC;
   }
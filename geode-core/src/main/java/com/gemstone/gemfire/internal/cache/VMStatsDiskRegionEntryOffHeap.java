@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VMStatsDiskRegionEntryOffHeap extends VMStatsDiskRegionEntry implements OffHeapRegionEntry {
   public VMStatsDiskRegionEntryOffHeap(RegionEntryContext context, Object value) {
     super(context, value);
@@ -50,6 +52,9 @@ public abstract class VMStatsDiskRegionEntryOffHeap extends VMStatsDiskRegionEnt
           return new VMStatsDiskRegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VMStatsDiskRegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VMStatsDiskRegionEntryOffHeapObjectKey(context, key, value);
     }
 
@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VMStatsLRURegionEntryOffHeap extends VMStatsLRURegionEntry implements OffHeapRegionEntry {
   public VMStatsLRURegionEntryOffHeap(RegionEntryContext context, Object value) {
     super(context, value);
@@ -50,6 +52,9 @@ public abstract class VMStatsLRURegionEntryOffHeap extends VMStatsLRURegionEntry
           return new VMStatsLRURegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VMStatsLRURegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VMStatsLRURegionEntryOffHeapObjectKey(context, key, value);
     }
 
@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VMThinDiskLRURegionEntryOffHeap extends VMThinDiskLRURegionEntry implements OffHeapRegionEntry {
   public VMThinDiskLRURegionEntryOffHeap(RegionEntryContext context, Object value) {
     super(context, value);
@@ -50,6 +52,9 @@ public abstract class VMThinDiskLRURegionEntryOffHeap extends VMThinDiskLRURegio
           return new VMThinDiskLRURegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VMThinDiskLRURegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VMThinDiskLRURegionEntryOffHeapObjectKey(context, key, value);
     }
 
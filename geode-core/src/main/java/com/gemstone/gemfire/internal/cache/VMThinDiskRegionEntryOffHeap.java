@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VMThinDiskRegionEntryOffHeap extends VMThinDiskRegionEntry implements OffHeapRegionEntry {
   public VMThinDiskRegionEntryOffHeap(RegionEntryContext context, Object value) {
     super(context, value);
@@ -50,6 +52,9 @@ public abstract class VMThinDiskRegionEntryOffHeap extends VMThinDiskRegionEntry
           return new VMThinDiskRegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VMThinDiskRegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VMThinDiskRegionEntryOffHeapObjectKey(context, key, value);
     }
 
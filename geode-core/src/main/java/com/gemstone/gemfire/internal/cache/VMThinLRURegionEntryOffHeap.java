@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VMThinLRURegionEntryOffHeap extends VMThinLRURegionEntry implements OffHeapRegionEntry {
   public VMThinLRURegionEntryOffHeap(RegionEntryContext context, Object value) {
     super(context, value);
@@ -50,6 +52,9 @@ public abstract class VMThinLRURegionEntryOffHeap extends VMThinLRURegionEntry i
           return new VMThinLRURegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VMThinLRURegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VMThinLRURegionEntryOffHeapObjectKey(context, key, value);
     }
 
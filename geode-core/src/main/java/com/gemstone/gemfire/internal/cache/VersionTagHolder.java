@@ -31,4 +31,13 @@ public class VersionTagHolder extends EntryEventImpl {
   public VersionTagHolder() {
     this(null);
   }
+
+  /**
+   * Clears the state that a get may have set on this holder so that it can
+   * be reused for the next get.
+   */
+  public void reset() {
+    setVersionTag(null);
+    isConcurrencyConflict(false);
+  }
 }
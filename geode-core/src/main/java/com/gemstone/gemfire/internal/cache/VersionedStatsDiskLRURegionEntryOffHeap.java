@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VersionedStatsDiskLRURegionEntryOffHeap extends
     VersionedStatsDiskLRURegionEntry implements OffHeapRegionEntry {
   public VersionedStatsDiskLRURegionEntryOffHeap(RegionEntryContext context, Object value) {
@@ -51,6 +53,9 @@ public abstract class VersionedStatsDiskLRURegionEntryOffHeap extends
           return new VersionedStatsDiskLRURegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VersionedStatsDiskLRURegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VersionedStatsDiskLRURegionEntryOffHeapObjectKey(context, key, value);
     }
 
@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VersionedStatsDiskRegionEntryOffHeap extends
     VersionedStatsDiskRegionEntry implements OffHeapRegionEntry {
   public VersionedStatsDiskRegionEntryOffHeap(RegionEntryContext context, Object value) {
@@ -51,6 +53,9 @@ public abstract class VersionedStatsDiskRegionEntryOffHeap extends
           return new VersionedStatsDiskRegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VersionedStatsDiskRegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VersionedStatsDiskRegionEntryOffHeapObjectKey(context, key, value);
     }
 
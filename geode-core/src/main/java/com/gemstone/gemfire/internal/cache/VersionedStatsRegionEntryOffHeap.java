@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VersionedStatsRegionEntryOffHeap extends VersionedStatsRegionEntry implements OffHeapRegionEntry {
   public VersionedStatsRegionEntryOffHeap(RegionEntryContext context, Object value) {
     super(context, value);
@@ -50,6 +52,9 @@ public abstract class VersionedStatsRegionEntryOffHeap extends VersionedStatsReg
           return new VersionedStatsRegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VersionedStatsRegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VersionedStatsRegionEntryOffHeapObjectKey(context, key, value);
     }
 
@@ -18,6 +18,8 @@ package com.gemstone.gemfire.internal.cache;
 
 import java.util.UUID;
 
+import com.gemstone.gemfire.internal.offheap.OffHeapRegionEntryHelper;
+
 public abstract class VersionedThinDiskLRURegionEntryOffHeap extends
     VersionedThinDiskLRURegionEntry implements OffHeapRegionEntry {
   public VersionedThinDiskLRURegionEntryOffHeap(RegionEntryContext context, Object value) {
@@ -51,6 +53,9 @@ public abstract class VersionedThinDiskLRURegionEntryOffHeap extends
           return new VersionedThinDiskLRURegionEntryOffHeapUUIDKey(context, (UUID)key, value);
         }
       }
+      if (OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS) {
+        return new VersionedThinDiskLRURegionEntryOffHeapSerializedKey(context, key, value);
+      }
       return new VersionedThinDiskLRURegionEntryOffHeapObjectKey(context, key, value);
     }
 
@@ -34,6 +34,7 @@ import com.gemstone.gemfire.internal.cache.PartitionedRegion;
 import com.gemstone.gemfire.internal.cache.control.ResourceAdvisor.ResourceManagerProfile;
 import com.gemstone.gemfire.internal.cache.partitioned.LoadProbe;
 import com.gemstone.gemfire.internal.cache.partitioned.SizedBasedLoadProbe;
+import com.gemstone.gemfire.internal.cache.partitioned.rebalance.BucketRecoveryScheduler;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
@@ -78,6 +79,7 @@ public class InternalResourceManager implements ResourceManager {
   
   private final ResourceManagerStats stats;
   private final ResourceAdvisor resourceAdvisor;
+  private final BucketRecoveryScheduler bucketRecoveryScheduler;
   private boolean closed = true;
   
   private final Map<ResourceType, ResourceMonitor> resourceMonitors;
@@ -100,6 +102,7 @@ public class InternalResourceManager implements ResourceManager {
     this.cache = cache;
     this.resourceAdvisor = (ResourceAdvisor) cache.getDistributionAdvisor();
     this.stats = new ResourceManagerStats(cache.getDistributedSystem());
+    this.bucketRecoveryScheduler = new BucketRecoveryScheduler(cache.getCancelCriterion());
     
     // Create a new executor that other classes may use for handling resource
     // related tasks
@@ -519,6 +522,14 @@ public class InternalResourceManager implements ResourceManager {
     return this.loadProbe;
   }
 
+  /**
+   * Returns the scheduler that all the redundant bucket creations of this
+   * member go through.
+   */
+  public BucketRecoveryScheduler getBucketRecoveryScheduler() {
+    return this.bucketRecoveryScheduler;
+  }
+
   /**
    * This method is test purposes only.
    */
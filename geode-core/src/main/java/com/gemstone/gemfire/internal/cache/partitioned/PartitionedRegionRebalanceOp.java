@@ -186,6 +186,7 @@ public class PartitionedRegionRebalanceOp {
       }
 
       director.initialize(model);
+      setRecoveryRemaining(model);
       
       for(;;) {
         if(cancelled.get()) {
@@ -203,6 +204,7 @@ public class PartitionedRegionRebalanceOp {
           detailsMap = fetchDetails(cache);
           model = buildModel(parallelOperator, detailsMap, resourceManager);
           director.membershipChanged(model);
+          setRecoveryRemaining(model);
         }
 
         leaderRegion.checkClosed();
@@ -230,6 +232,9 @@ public class PartitionedRegionRebalanceOp {
 
       return Collections.<PartitionRebalanceInfo>unmodifiableSet(serialOperator.getDetailSet());
     } finally {
+      if(!simulate) {
+        leaderRegion.getPrStats().endRecoveryProgress();
+      }
       if(lock != null) {
         try {
           lock.unlock();
@@ -491,6 +496,44 @@ public class PartitionedRegionRebalanceOp {
     
   }
 
+  private void setRecoveryRemaining(PartitionedRegionLoadModel model) {
+    if(!simulate) {
+      leaderRegion.getPrStats().setRecoveryRemaining(model.getLowRedundancyCopies(),
+          model.getLowRedundancyBytes());
+    }
+  }
+
+  /**
+   * @return the scheduler that bucket creations of this operation must go
+   * through, or null if this operation is only a simulation.
+   */
+  public BucketRecoveryScheduler getRecoveryScheduler() {
+    if(simulate) {
+      return null;
+    }
+    return InternalResourceManager.getInternalResourceManager(leaderRegion.getCache()).getBucketRecoveryScheduler();
+  }
+
+  /**
+   * @return the number of redundant copies of the bucket that are online
+   */
+  public int getBucketRedundancy(int bucketId) {
+    return leaderRegion.getRegionAdvisor().getBucketRedundancy(bucketId);
+  }
+
+  /**
+   * Record a redundant bucket created by this operation in the recovery
+   * progress of the leader region.
+   * 
+   * @param bytes
+   *          the size of the bucket and its colocated buckets
+   */
+  public void bucketRecovered(long bytes) {
+    if(!simulate) {
+      leaderRegion.getPrStats().endRecoveryBucket(bytes);
+    }
+  }
+
   /**
    * Create a redundant bucket on the target member
    * 
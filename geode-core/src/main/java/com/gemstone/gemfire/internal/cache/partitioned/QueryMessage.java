@@ -168,7 +168,8 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
       throw new QueryExecutionLowMemoryException(reason);
     }
     
-    DefaultQuery query = new DefaultQuery(this.queryString, r.getCache(), false);
+    // The query service reuses the compiled form of query strings it has already seen
+    DefaultQuery query = (DefaultQuery)r.getGemFireCache().getLocalQueryService().newQuery(this.queryString);
     // Remote query, use the PDX types in serialized form.
     DefaultQuery.setPdxReadSerialized(r.getCache(), true);
     // In case of "select *" queries we can keep the results in serialized
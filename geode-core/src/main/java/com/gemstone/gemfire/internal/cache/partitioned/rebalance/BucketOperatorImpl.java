@@ -53,11 +53,25 @@ public class BucketOperatorImpl implements BucketOperator {
   public void createRedundantBucket(
       InternalDistributedMember targetMember, int bucketId,
       Map<String, Long> colocatedRegionBytes, Completion completion) {
+    long bytes = 0;
+    for(Long regionBytes : colocatedRegionBytes.values()) {
+      bytes += regionBytes;
+    }
+    BucketRecoveryScheduler scheduler = rebalanceOp.getRecoveryScheduler();
+    boolean acquired = false;
     boolean result = false;
     try {
+      if(scheduler != null) {
+        scheduler.acquire(rebalanceOp.getBucketRedundancy(bucketId), bytes);
+        acquired = true;
+      }
       result = rebalanceOp.createRedundantBucketForRegion(targetMember, bucketId);
     } finally {
+      if(acquired) {
+        scheduler.release();
+      }
       if(result) {
+        rebalanceOp.bucketRecovered(bytes);
         completion.onSuccess();
       } else {
         completion.onFailure();
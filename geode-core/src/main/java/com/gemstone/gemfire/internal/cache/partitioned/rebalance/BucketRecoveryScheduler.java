@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.partitioned.rebalance;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+
+/**
+ * Decides when the redundant bucket creations of all the rebalance and
+ * recovery operations of this member may start, so that restoring
+ * redundancy after the loss of a member does not swamp the network or the
+ * CPU.
+ * 
+ * A bucket creation starts only while all of the following hold:
+ * <ul>
+ * <li>fewer than {@link #MAX_PARALLEL_RECOVERIES} bucket creations are in
+ * progress on this member.
+ * <li>the bytes of the buckets started so far fit in
+ * {@link #MAX_BYTES_PER_SECOND}, if it is set. Each bucket reserves the time
+ * it takes to send its bytes at that rate.
+ * <li>the system load average is below {@link #MAX_CPU_LOAD_PERCENT} of the
+ * available processors, if it is set. A bucket may always start when no
+ * other creation is in progress.
+ * </ul>
+ * Waiting buckets start in order of risk: buckets with the fewest redundant
+ * copies left go first, and buckets with the same redundancy go in the order
+ * they were requested.
+ */
+public class BucketRecoveryScheduler {
+
+  /** maximum number of bucket creations in progress on this member */
+  public static final int MAX_PARALLEL_RECOVERIES = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "MAX_PARALLEL_BUCKET_RECOVERIES_PER_MEMBER", 16);
+
+  /** maximum rate, in bytes per second, of bucket creations; zero for no limit */
+  public static final long MAX_BYTES_PER_SECOND = Long.getLong(
+      DistributionConfig.GEMFIRE_PREFIX + "MAX_BUCKET_RECOVERY_BYTES_PER_SECOND", 0);
+
+  /**
+   * system load average, in percent of the available processors, above which
+   * no more bucket creations start; zero for no limit
+   */
+  public static final int MAX_CPU_LOAD_PERCENT = Integer.getInteger(
+      DistributionConfig.GEMFIRE_PREFIX + "MAX_BUCKET_RECOVERY_CPU_LOAD_PERCENT", 0);
+
+  /** how long a waiting bucket sleeps before checking the load and the cancel criterion again */
+  private static final long CHECK_INTERVAL_MS = 100;
+
+  private final CancelCriterion cancelCriterion;
+  private final int maxParallelRecoveries;
+  private final long maxBytesPerSecond;
+  private final int maxCpuLoadPercent;
+  private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+  /** the buckets waiting to start, riskiest first, guarded by this */
+  private final PriorityQueue<Waiter> waiters = new PriorityQueue<Waiter>();
+  /** number of bucket creations in progress, guarded by this */
+  private int inProgress;
+  /** the nanoTime before which the bytes of the started buckets exceed the rate, guarded by this */
+  private long nextStartTime = System.nanoTime();
+  /** guarded by this */
+  private long nextSequence;
+
+  public BucketRecoveryScheduler(CancelCriterion cancelCriterion) {
+    this(cancelCriterion, MAX_PARALLEL_RECOVERIES, MAX_BYTES_PER_SECOND, MAX_CPU_LOAD_PERCENT);
+  }
+
+  public BucketRecoveryScheduler(CancelCriterion cancelCriterion, int maxParallelRecoveries,
+      long maxBytesPerSecond, int maxCpuLoadPercent) {
+    this.cancelCriterion = cancelCriterion;
+    this.maxParallelRecoveries = Math.max(1, maxParallelRecoveries);
+    this.maxBytesPerSecond = maxBytesPerSecond;
+    this.maxCpuLoadPercent = maxCpuLoadPercent;
+  }
+
+  /**
+   * Waits until a bucket creation may start. Every successful call must be
+   * followed by a call to {@link #release()} once the creation is done.
+   * 
+   * @param redundancy the number of redundant copies of the bucket that are
+   * still online
+   * @param bytes the number of bytes of the bucket, including its colocated
+   * buckets
+   * @throws com.gemstone.gemfire.CancelException if the cache is closed
+   * while waiting
+   */
+  public synchronized void acquire(int redundancy, long bytes) {
+    Waiter waiter = new Waiter(redundancy, this.nextSequence++);
+    this.waiters.add(waiter);
+    boolean interrupted = false;
+    try {
+      for (;;) {
+        this.cancelCriterion.checkCancelInProgress(null);
+        long waitMs = CHECK_INTERVAL_MS;
+        if (this.waiters.peek() == waiter && this.inProgress < this.maxParallelRecoveries
+            && isCpuAvailable()) {
+          long now = System.nanoTime();
+          if (this.maxBytesPerSecond <= 0 || now - this.nextStartTime >= 0) {
+            if (this.maxBytesPerSecond > 0) {
+              this.nextStartTime = Math.max(now, this.nextStartTime)
+                  + (long) ((double) TimeUnit.SECONDS.toNanos(1) * bytes / this.maxBytesPerSecond);
+            }
+            this.inProgress++;
+            return;
+          }
+          waitMs = Math.min(waitMs, TimeUnit.NANOSECONDS.toMillis(this.nextStartTime - now) + 1);
+        }
+        try {
+          wait(waitMs);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      this.waiters.remove(waiter);
+      // the next waiter may be able to start now
+      notifyAll();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Ends a bucket creation that was started by {@link #acquire(int, long)}.
+   */
+  public synchronized void release() {
+    this.inProgress--;
+    notifyAll();
+  }
+
+  public synchronized int getInProgress() {
+    return this.inProgress;
+  }
+
+  public synchronized int getWaiting() {
+    return this.waiters.size();
+  }
+
+  private boolean isCpuAvailable() {
+    if (this.maxCpuLoadPercent <= 0 || this.inProgress == 0) {
+      return true;
+    }
+    double load = this.osBean.getSystemLoadAverage();
+    if (load < 0) {
+      // not available on this platform
+      return true;
+    }
+    return load * 100 < (double) this.maxCpuLoadPercent * this.osBean.getAvailableProcessors();
+  }
+
+  private static final class Waiter implements Comparable<Waiter> {
+    private final int redundancy;
+    private final long sequence;
+
+    Waiter(int redundancy, long sequence) {
+      this.redundancy = redundancy;
+      this.sequence = sequence;
+    }
+
+    public int compareTo(Waiter other) {
+      if (this.redundancy != other.redundancy) {
+        return this.redundancy < other.redundancy ? -1 : 1;
+      }
+      return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+    }
+  }
+}
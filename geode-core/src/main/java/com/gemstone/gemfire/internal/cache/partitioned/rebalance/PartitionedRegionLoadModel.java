@@ -100,6 +100,22 @@ public class PartitionedRegionLoadModel {
     }
   };
 
+  /**
+   * A comparator that is used to sort the buckets with low redundancy by
+   * risk - the buckets with the fewest online copies first, since they are
+   * the ones that the next member failure would lose, then in the order of
+   * {@link #REDUNDANCY_COMPARATOR}.
+   */
+  private static final Comparator<Bucket> RISK_COMPARATOR = new Comparator<Bucket>() {
+    public int compare(Bucket o1, Bucket o2) {
+      int result = o1.getOnlineRedundancy() - o2.getOnlineRedundancy();
+      if (result == 0) {
+        result = REDUNDANCY_COMPARATOR.compare(o1, o2);
+      }
+      return result;
+    }
+  };
+
   private static final long MEGABYTES = 1024 * 1024;
 
   /**
@@ -311,6 +327,30 @@ public class PartitionedRegionLoadModel {
     initLowRedundancyBuckets();
   }
   
+  /**
+   * @return the number of redundant bucket copies that still have to be
+   * created to satisfy redundancy.
+   */
+  public int getLowRedundancyCopies() {
+    int copies = 0;
+    for(BucketRollup b: this.lowRedundancyBuckets) {
+      copies += this.requiredRedundancy - b.getRedundancy();
+    }
+    return copies;
+  }
+
+  /**
+   * @return the number of bytes that still have to be copied to satisfy
+   * redundancy.
+   */
+  public long getLowRedundancyBytes() {
+    long bytes = 0;
+    for(BucketRollup b: this.lowRedundancyBuckets) {
+      bytes += (this.requiredRedundancy - b.getRedundancy()) * b.getBytes();
+    }
+    return bytes;
+  }
+
   public SortedSet<BucketRollup> getLowRedundancyBuckets() {
     return lowRedundancyBuckets;
   }
@@ -435,7 +475,7 @@ public class PartitionedRegionLoadModel {
   }
   
   private void initLowRedundancyBuckets() {
-    this.lowRedundancyBuckets = new TreeSet<BucketRollup>(REDUNDANCY_COMPARATOR);
+    this.lowRedundancyBuckets = new TreeSet<BucketRollup>(RISK_COMPARATOR);
     for(BucketRollup b: this.buckets) {
       if(b != null && b.getRedundancy() >= 0 && b.getRedundancy() < this.requiredRedundancy) {
         this.lowRedundancyBuckets.add(b);
@@ -678,6 +678,18 @@ public class AcceptorImpl extends Acceptor implements Runnable
    */
   @Deprecated
   private final static int DEPRECATED_SELECTOR_POOL_SIZE = Integer.getInteger("BridgeServer.SELECTOR_POOL_SIZE", 16).intValue();
+  /**
+   * The maximum number of messages a selector pool thread reads from one
+   * connection before handing it back to the selector. The thread only keeps
+   * the connection while the client's next request has already arrived.
+   * A value of 1 hands the connection back after every message.
+   * 
+   * This only prefetches the next header. Once a message has started to
+   * arrive the rest of it is still read with blocking reads, so a client that
+   * sends a message slowly holds a pool thread until it is complete. Reading
+   * whole messages on the selector thread is not implemented.
+   */
+  final static int SELECTOR_MESSAGES_PER_DISPATCH = Integer.getInteger("BridgeServer.SELECTOR_MESSAGES_PER_DISPATCH", 16).intValue();
   private final static int HANDSHAKE_POOL_SIZE = Integer.getInteger("BridgeServer.HANDSHAKE_POOL_SIZE", 4).intValue();
 
   @Override
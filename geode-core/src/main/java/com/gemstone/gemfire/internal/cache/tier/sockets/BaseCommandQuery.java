@@ -258,7 +258,7 @@ public abstract class BaseCommandQuery extends BaseCommand {
           // send it as a part of ObjectPartList
           if (hasSerializedObjects) {
             sendResultsAsObjectPartList(numberOfChunks, servConn,
-                selectResults.asList(), isStructs, collectionType,
+                selectResults, isStructs, collectionType,
                 queryString, cqQuery, sendCqResultsWithKey, sendResults);
           } else {
             sendResultsAsObjectArray(selectResults, numberOfChunks, servConn,
@@ -391,36 +391,39 @@ public abstract class BaseCommandQuery extends BaseCommand {
     }
   }
   
-  private static void sendResultsAsObjectArray(SelectResults selectResults,
+  /**
+   * Sends the results in chunks of {@link #maximumChunkSize} entries, walking
+   * the results with a single iterator. This avoids copying the whole result
+   * set into an array first, which for results gathered from the members of a
+   * partitioned region (see CumulativeNonDistinctResults) would also convert
+   * every row up front, and lets the first chunk go out as soon as it is full.
+   * <p>
+   * This only streams the results out of this member. The query has already
+   * gathered all of its results before the first chunk is written, chunks are
+   * written without waiting for the client to ask for them, and the client
+   * still collects every chunk before the query returns.
+   */
+  static void sendResultsAsObjectArray(SelectResults selectResults,
       int numberOfChunks, ServerConnection servConn, 
       boolean isStructs, CollectionType collectionType, String queryString, ServerCQ cqQuery, boolean sendCqResultsWithKey, boolean sendResults)
       throws IOException {
-    int resultIndex = 0;
-    // For CQ only as we dont want CQEntries which have null values.
-    int cqResultIndex = 0;
-    Object[] objs = selectResults.toArray();
-    for (int j = 0; j < numberOfChunks; j++) {
-      boolean incompleteArray = false;
+    Iterator iter = selectResults.iterator();
+    int j = 0;
+    do {
       if (logger.isTraceEnabled()) {
         logger.trace("{}: Creating chunk: {}", servConn.getName(), j);
       }
       Object[] results = new Object[maximumChunkSize];
-      for (int i = 0; i < maximumChunkSize; i++) {
-        if ((resultIndex) == selectResults.size()) {
-          incompleteArray = true;
-          break;
-        }
+      int i = 0;
+      while (i < maximumChunkSize && iter.hasNext()) {
+        Object obj = iter.next();
         if (logger.isTraceEnabled()) {
-            logger.trace("{}: Adding entry [{}] to query results: {}", servConn.getName(), resultIndex, objs[resultIndex]);
+            logger.trace("{}: Adding entry to query results: {}", servConn.getName(), obj);
         }
         if (cqQuery != null){
-          CqEntry e = (CqEntry)objs[resultIndex];
+          CqEntry e = (CqEntry)obj;
           // The value may have become null because of entry invalidation.
           if (e.getValue() == null) {
-            resultIndex++;
-            // i will get incremented anyway so we need to decrement it back so
-            // that results[i] is not null.
-            i--;
             continue;
           }    
           // Add the key into CQ results cache.
@@ -440,72 +443,63 @@ public abstract class BaseCommandQuery extends BaseCommand {
           }      
         } else {
           // instance check added to fix bug 40516.
-          if (isStructs && (objs[resultIndex] instanceof Struct)) {
-            results[i] = ((Struct) objs[resultIndex]).getFieldValues();
+          if (isStructs && (obj instanceof Struct)) {
+            results[i] = ((Struct) obj).getFieldValues();
           } else {
-            results[i] = objs[resultIndex];
+            results[i] = obj;
           }
         }
-        resultIndex++;
-        cqResultIndex++;
+        i++;
       }
       // Shrink array if necessary. This will occur if the number
       // of entries in the chunk does not divide evenly into the
       // number of entries in the result set.
-      if (incompleteArray) {
-        Object[] newResults;
-        if (cqQuery != null) {
-          newResults = new Object[cqResultIndex % maximumChunkSize];
-        } else {
-          newResults = new Object[resultIndex % maximumChunkSize];
-        }
-        for (int i = 0; i < newResults.length; i++) {
-          newResults[i] = results[i];
-        }
+      if (i < maximumChunkSize) {
+        Object[] newResults = new Object[i];
+        System.arraycopy(results, 0, newResults, 0, i);
         results = newResults;
       }
 
+      j++;
       if (sendResults) {
-        writeQueryResponseChunk(results, collectionType,
-            (resultIndex == selectResults.size()), servConn);
+        writeQueryResponseChunk(results, collectionType, !iter.hasNext(),
+            servConn);
         
         if (logger.isDebugEnabled()) {
           logger.debug("{}: Sent chunk ({} of {}) of query response for query: {}",
-              servConn.getName(), (j + 1), numberOfChunks, queryString);
+              servConn.getName(), j, numberOfChunks, queryString);
         }
       }
-      // If we have reached the last element of SelectResults then we should
-      // break out of loop here only.
-      if (resultIndex == selectResults.size()) {
-        break;
-      }
-    }
+    } while (iter.hasNext());
   }
 
-  private static void sendResultsAsObjectPartList(int numberOfChunks,
-      ServerConnection servConn, List objs, boolean isStructs,
+  /**
+   * Sends the results as {@link ObjectPartList}s of {@link #maximumChunkSize}
+   * entries, walking the results with a single iterator. The same limits as for
+   * {@link #sendResultsAsObjectArray} apply.
+   */
+  static void sendResultsAsObjectPartList(int numberOfChunks,
+      ServerConnection servConn, Collection objs, boolean isStructs,
       CollectionType collectionType, String queryString, ServerCQ cqQuery, boolean sendCqResultsWithKey, boolean sendResults)
       throws IOException {
-    int resultIndex = 0;
+    Iterator iter = objs.iterator();
     Object result = null;
-    for (int j = 0; j < numberOfChunks; j++) {
+    int j = 0;
+    do {
       if (logger.isTraceEnabled()) {
         logger.trace("{}: Creating chunk: {}", servConn.getName(), j);
       }
       ObjectPartList serializedObjs = new ObjectPartList(maximumChunkSize,
           false);
-      for (int i = 0; i < maximumChunkSize; i++) {
-        if ((resultIndex) == objs.size()) {
-          break;
-        }
+      for (int i = 0; i < maximumChunkSize && iter.hasNext(); i++) {
+        Object obj = iter.next();
         if (logger.isTraceEnabled()) {
-            logger.trace("{}: Adding entry [{}] to query results: {}", servConn.getName() , resultIndex, objs.get(resultIndex));
+            logger.trace("{}: Adding entry to query results: {}", servConn.getName(), obj);
         }
         if (cqQuery != null){
-          CqEntry e = (CqEntry)objs.get(resultIndex);
+          CqEntry e = (CqEntry)obj;
           // The value may have become null because of entry invalidation.
           if (e.getValue() == null) {
-            resultIndex++;
             continue;
           }    
           // Add the key into CQ results cache.
@@ -525,25 +519,25 @@ public abstract class BaseCommandQuery extends BaseCommand {
           }      
         }
         else {
-          result = objs.get(resultIndex);
+          result = obj;
         }
         if (sendResults) {
           addToObjectPartList(serializedObjs, result, collectionType, false,
               servConn, isStructs);
         }
-        resultIndex++;
       }
       
+      j++;
       if (sendResults) {
         writeQueryResponseChunk(serializedObjs, collectionType,
-            ((j + 1) == numberOfChunks), servConn);
+            !iter.hasNext(), servConn);
 
         if (logger.isDebugEnabled()) {
           logger.debug("{}: Sent chunk ({} of {}) of query response for query: {}",
-              servConn.getName(), (j + 1), numberOfChunks, queryString);
+              servConn.getName(), j, numberOfChunks, queryString);
         }
       }
-   }
+    } while (iter.hasNext());
   }
   
   private static void addToObjectPartList(ObjectPartList serializedObjs,
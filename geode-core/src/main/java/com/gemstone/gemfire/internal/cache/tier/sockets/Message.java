@@ -113,6 +113,11 @@ public class Message  {
   protected MessageStats msgStats = null;
   protected ServerConnection sc = null;
   private int maxIncomingMessageLength = -1;
+  /**
+   * Number of header bytes already read into the comm buffer by
+   * {@link #prefetchHeader()}; the next {@link #fetchHeader()} continues from here.
+   */
+  private int prefetchedHeaderBytes = 0;
   private Semaphore dataLimiter = null;
 //  private int MAX_MSGS = -1;
   private Semaphore msgLimiter = null;
@@ -624,6 +629,8 @@ public class Message  {
    */
   protected final void fetchHeader() throws IOException {
     final ByteBuffer cb = getCommBuffer();
+    final int prefetched = this.prefetchedHeaderBytes;
+    this.prefetchedHeaderBytes = 0;
     cb.clear();
     // msgType is invalidated here and can be used as an indicator
     // of problems reading the message
@@ -634,7 +641,8 @@ public class Message  {
     final int headerLength = getHeaderLength();
     if (this.sockCh != null) {
       cb.limit(headerLength);
-      do {
+      cb.position(prefetched);
+      while (cb.remaining() > 0) {
         int bytesRead = this.sockCh.read(cb);
         //System.out.println("DEBUG: fetchHeader read " + bytesRead + " bytes commBuffer=" + cb);
         if (bytesRead == -1) {
@@ -643,7 +651,7 @@ public class Message  {
         if (this.msgStats != null) {
           this.msgStats.incReceivedBytes(bytesRead);
         }
-      } while (cb.remaining() > 0);
+      }
       cb.flip();
     } else {
       do {
@@ -670,6 +678,34 @@ public class Message  {
     }
   }
 
+  /**
+   * Does a non-blocking read of whatever part of the next message header has
+   * already arrived on this message's channel. The channel must be in
+   * non-blocking mode. Any bytes read are kept in the comm buffer and are
+   * consumed by the next call to {@link #recv()}.
+   * 
+   * @return true if the next message has started to arrive or the
+   * connection has been closed; false if nothing is available
+   */
+  boolean prefetchHeader() throws IOException {
+    if (this.sockCh == null) {
+      return false;
+    }
+    final ByteBuffer cb = getCommBuffer();
+    cb.clear();
+    cb.limit(getHeaderLength());
+    int bytesRead = this.sockCh.read(cb);
+    if (bytesRead == -1) {
+      // let the next read report the closed connection
+      return true;
+    }
+    if (bytesRead > 0 && this.msgStats != null) {
+      this.msgStats.incReceivedBytes(bytesRead);
+    }
+    this.prefetchedHeaderBytes = cb.position();
+    return this.prefetchedHeaderBytes > 0;
+  }
+
   private void readHeaderAndPayload()
   throws IOException {
     //TODO:Hitesh ???
@@ -55,6 +55,14 @@ public class Part {
   /** Is the payload (<code>part</code>) a serialized object? */
   private byte typeCode;
 
+  /**
+   * Buffers reused by setInt and setLong so that adding an int or long part
+   * to a message that is sent over and over, like a ServerConnection's
+   * response message, does not allocate.
+   */
+  private byte[] intBytes;
+  private byte[] longBytes;
+
   public void init(byte[] v, byte tc) {
     if (tc == EMPTY_BYTEARRAY_CODE) {
       this.part = EMPTY_BYTE_ARRAY;
@@ -186,7 +194,11 @@ public class Part {
   }
 
   public void setInt(int v) {
-    byte[] bytes = new byte[4];
+    byte[] bytes = this.intBytes;
+    if (bytes == null) {
+      bytes = new byte[4];
+      this.intBytes = bytes;
+    }
     encodeInt(v, bytes);
     this.typeCode = BYTE_CODE;
     this.part = bytes;
@@ -208,7 +220,11 @@ public class Part {
   }
   
   public void setLong(long v) {
-    byte[] bytes = new byte[8];
+    byte[] bytes = this.longBytes;
+    if (bytes == null) {
+      bytes = new byte[8];
+      this.longBytes = bytes;
+    }
     bytes[0] = (byte) ((v & 0xFF00000000000000l) >> 56);
     bytes[1] = (byte) ((v & 0x00FF000000000000l) >> 48);
     bytes[2] = (byte) ((v & 0x0000FF0000000000l) >> 40);
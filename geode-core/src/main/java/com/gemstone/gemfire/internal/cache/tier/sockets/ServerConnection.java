@@ -51,7 +51,9 @@ import com.gemstone.gemfire.internal.Assert;
 import com.gemstone.gemfire.internal.HeapDataOutputStream;
 import com.gemstone.gemfire.internal.Version;
 import com.gemstone.gemfire.internal.cache.EventID;
+import com.gemstone.gemfire.internal.cache.EventIDHolder;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.VersionTagHolder;
 import com.gemstone.gemfire.internal.cache.tier.Acceptor;
 import com.gemstone.gemfire.internal.cache.tier.CachedRegionHelper;
 import com.gemstone.gemfire.internal.cache.tier.ClientHandShake;
@@ -59,6 +61,7 @@ import com.gemstone.gemfire.internal.cache.tier.Command;
 import com.gemstone.gemfire.internal.cache.tier.InternalClientMembership;
 import com.gemstone.gemfire.internal.cache.tier.MessageType;
 import com.gemstone.gemfire.internal.cache.tier.sockets.command.Default;
+import com.gemstone.gemfire.internal.cache.tier.sockets.command.Get70;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.InternalLogWriter;
 import com.gemstone.gemfire.internal.logging.LogService;
@@ -164,6 +167,12 @@ public class ServerConnection implements Runnable {
   private ChunkedMessage registerInterestResponseMsg = new ChunkedMessage(1, Version.CURRENT);
   private ChunkedMessage keySetResponseMsg = new ChunkedMessage(1, Version.CURRENT);
 
+  // Reused by the single key get and put commands, which only ever run one at
+  // a time on a connection, so that they do not create these for each request
+  private final VersionTagHolder versionTagHolder = new VersionTagHolder();
+  private final EventIDHolder eventIDHolder = new EventIDHolder(null);
+  private final Get70.Entry getEntry = new Get70.Entry();
+
   private final InternalLogWriter logWriter;
   private final InternalLogWriter securityLogWriter;
   final private AcceptorImpl acceptor;
@@ -1141,6 +1150,14 @@ public class ServerConnection implements Runnable {
         if (!isTerminated()) {
           Message.setTLCommBuffer(getAcceptor().takeCommBuffer());
           doOneMessage();
+          int messagesRead = 1;
+          while (messagesRead < AcceptorImpl.SELECTOR_MESSAGES_PER_DISPATCH
+              && this.processMessages && !(this.crHelper.isShutdown())
+              && !isTerminated() && isNextMessageAvailable()) {
+            this.unsetRequestSpecificTimeout();
+            doOneMessage();
+            messagesRead++;
+          }
           if (this.processMessages && !(this.crHelper.isShutdown())) {
             registerWithSelector(); // finished msg so reregister
             finishedMsg = true;
@@ -1214,6 +1231,25 @@ public class ServerConnection implements Runnable {
     getSelectableChannel().configureBlocking(false);
     getAcceptor().registerSC(this);
   }
+  /**
+   * Returns true if the client has already started sending its next request.
+   * Lets a selector pool thread keep serving a busy connection instead of
+   * handing it back to the selector after every message. The rest of the
+   * request is then read with blocking reads by this thread.
+   * Leaves the channel in blocking mode if true and non-blocking mode if false.
+   */
+  private boolean isNextMessageAvailable() throws IOException {
+    if (this.doHandshake) {
+      return false;
+    }
+    SelectableChannel c = getSelectableChannel();
+    c.configureBlocking(false);
+    if (this.requestMsg.prefetchHeader()) {
+      c.configureBlocking(true);
+      return true;
+    }
+    return false;
+  }
   public SelectableChannel getSelectableChannel() {
     return this.theSocket.getChannel();
   }
@@ -1565,6 +1601,32 @@ public class ServerConnection implements Runnable {
     return this.stats;
   }
 
+  /**
+   * @return the VersionTagHolder that gets on this connection reuse, reset
+   *         for the next get
+   */
+  public VersionTagHolder getVersionTagHolder() {
+    this.versionTagHolder.reset();
+    return this.versionTagHolder;
+  }
+
+  /**
+   * @return the EventIDHolder that puts on this connection reuse, reset to
+   *         hold the given event id
+   */
+  public EventIDHolder getEventIDHolder(EventID eventId) {
+    this.eventIDHolder.reset(eventId);
+    return this.eventIDHolder;
+  }
+
+  /**
+   * @return the Get70.Entry that gets on this connection reuse to return
+   *         their results
+   */
+  public Get70.Entry getGetEntry() {
+    return this.getEntry;
+  }
+
   /**    
    * @return The ReplyMessage associated with the ServerConnection
    */
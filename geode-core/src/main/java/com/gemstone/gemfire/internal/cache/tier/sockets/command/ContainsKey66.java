@@ -120,7 +120,7 @@ public class ContainsKey66 extends BaseCommand {
       return;
     }
 
-    GeodeSecurityUtil.authorizeRegionRead(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionRead(regionName, key);
 
     AuthorizeRequest authzRequest = servConn.getAuthzRequest();
     if (authzRequest != null) {
@@ -138,7 +138,7 @@ public class Destroy extends BaseCommand {
     EventID eventId = new EventID(servConn.getEventMemberIDByteArray(), threadId, sequenceId);
 
     // for integrated security
-    GeodeSecurityUtil.authorizeRegionWrite(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionWrite(regionName, key);
 
     try {
       AuthorizeRequest authzRequest = servConn.getAuthzRequest();
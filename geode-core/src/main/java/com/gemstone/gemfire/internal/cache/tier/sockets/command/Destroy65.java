@@ -200,7 +200,7 @@ public class Destroy65 extends BaseCommand {
     }
 
     // for integrated security
-    GeodeSecurityUtil.authorizeRegionWrite(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionWrite(regionName, key);
 
     // Destroy the entry
     ByteBuffer eventIdPartsBuffer = ByteBuffer.wrap(eventPart.getSerializedForm());
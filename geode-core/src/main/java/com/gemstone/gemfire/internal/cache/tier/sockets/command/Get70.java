@@ -145,7 +145,7 @@ public class Get70 extends BaseCommand {
     }
 
     // for integrated security
-    GeodeSecurityUtil.authorizeRegionRead(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionRead(regionName, key);
 
     Region region = crHelper.getRegion(regionName);
     if (region == null) {
@@ -241,6 +241,8 @@ public class Get70 extends BaseCommand {
     }
     finally {
       OffHeapHelper.release(originalData);
+      // the entry is reused by the next get on this connection
+      entry.value = null;
     }
 
     servConn.setAsTrue(RESPONDED);
@@ -307,7 +309,7 @@ public class Get70 extends BaseCommand {
 //      }
 //    } else {
       ClientProxyMembershipID id = servConn == null ? null : servConn.getProxyID();
-      VersionTagHolder versionHolder = new VersionTagHolder();
+      VersionTagHolder versionHolder = servConn == null ? new VersionTagHolder() : servConn.getVersionTagHolder();
       data  = ((LocalRegion) region).get(key, callbackArg, true, true, true, id, versionHolder, true);
 //    }
     versionTag = versionHolder.getVersionTag();
@@ -338,7 +340,7 @@ public class Get70 extends BaseCommand {
     else if (data instanceof byte[]) {
       isObject = false;
     }
-    Entry result = new Entry();
+    Entry result = servConn == null ? new Entry() : servConn.getGetEntry();
     result.value = data;
     result.isObject = isObject;
     result.keyNotPresent = !wasInvalid && (data == null || data == Token.TOMBSTONE);
@@ -352,12 +354,22 @@ public class Get70 extends BaseCommand {
   @Retained
   public Entry getEntryRetained(Region region, Object key,
       Object callbackArg, ServerConnection servConn) {
-
-//    Region.Entry entry;
-    String regionName = region.getFullPath();
-    if (servConn != null) {
-      servConn.setModificationInfo(true, regionName, key);
+    if (servConn == null) {
+      return getEntryRetained(region, key, callbackArg, null, new VersionTagHolder(), new Entry());
     }
+    servConn.setModificationInfo(true, region.getFullPath(), key);
+    return getEntryRetained(region, key, callbackArg, servConn.getProxyID(),
+        servConn.getVersionTagHolder(), servConn.getGetEntry());
+  }
+
+  /**
+   * Same as getEntryRetained but the version tag is read into the given
+   * holder, which must have been reset, and the result is returned in the
+   * given entry so that the get does not create either of them.
+   */
+  @Retained
+  public Entry getEntryRetained(Region region, Object key, Object callbackArg,
+      ClientProxyMembershipID id, VersionTagHolder versionHolder, Entry result) {
     VersionTag versionTag = null;
 //    LocalRegion lregion = (LocalRegion)region;
 
@@ -366,8 +378,6 @@ public class Get70 extends BaseCommand {
     boolean isObject = true;
     @Retained Object data = null;
 
-    ClientProxyMembershipID id = servConn == null ? null : servConn.getProxyID();
-    VersionTagHolder versionHolder = new VersionTagHolder();
     data = ((LocalRegion) region).getRetained(key, callbackArg, true, true, id, versionHolder, true);
     versionTag = versionHolder.getVersionTag();
     
@@ -392,7 +402,6 @@ public class Get70 extends BaseCommand {
         data = cd.getValue();
       }
     }
-    Entry result = new Entry();
     result.value = data;
     result.isObject = isObject;
     result.keyNotPresent = !wasInvalid && (data == null || data == Token.TOMBSTONE);
@@ -429,40 +438,8 @@ public class Get70 extends BaseCommand {
       Message origMsg, boolean isObject, VersionTag versionTag, boolean keyNotPresent, ServerConnection servConn)
       throws IOException {
     Message responseMsg = servConn.getResponseMessage();
-    responseMsg.setMessageType(MessageType.RESPONSE);
     responseMsg.setTransactionId(origMsg.getTransactionId());
-
-    int numParts = 2;
-    int flags = 0;
-    
-    if (callbackArg != null) {
-      numParts++;
-      flags |= GetOp.HAS_CALLBACK_ARG;
-    }
-    if (versionTag != null) {
-      numParts++;
-      flags |= GetOp.HAS_VERSION_TAG;
-    }
-    if (keyNotPresent) {
-      flags |= GetOp.KEY_NOT_PRESENT;
-    } else if (data == null  &&  isObject) {
-      flags |= GetOp.VALUE_IS_INVALID;
-    }
-//    logger.debug("returning flags " + Integer.toBinaryString(flags));
-    
-    responseMsg.setNumberOfParts(numParts);
-    
-    responseMsg.addPartInAnyForm(data, isObject);
-
-    responseMsg.addIntPart(flags);
-
-
-    if (callbackArg != null) {
-      responseMsg.addObjPart(callbackArg);
-    }
-    if (versionTag != null) {
-      responseMsg.addObjPart(versionTag);
-    }
+    addResponseParts(responseMsg, data, callbackArg, isObject, versionTag, keyNotPresent, 0);
     servConn.getCache().getCancelCriterion().checkCancelInProgress(null);
     responseMsg.send(servConn);
     origMsg.clearParts();
@@ -474,16 +451,18 @@ public class Get70 extends BaseCommand {
     throw new UnsupportedOperationException();
   }
 
-  private void writeResponseWithRefreshMetadata(@Unretained Object data,
-      Object callbackArg, Message origMsg, boolean isObject,
-      ServerConnection servConn, PartitionedRegion pr, byte nwHop,
-      VersionTag versionTag, boolean keyNotPresent) throws IOException {
-    Message responseMsg = servConn.getResponseMessage();
+  /**
+   * Adds the value, flags, callback argument and version tag of a get
+   * response to the given message.
+   * 
+   * @param extraParts
+   *          the number of parts the caller adds after these ones
+   */
+  public static void addResponseParts(Message responseMsg, @Unretained Object data, Object callbackArg,
+      boolean isObject, VersionTag versionTag, boolean keyNotPresent, int extraParts) {
     responseMsg.setMessageType(MessageType.RESPONSE);
-    responseMsg.setTransactionId(origMsg.getTransactionId());
-
-    int numParts = 3;
 
+    int numParts = 2 + extraParts;
     int flags = 0;
     
     if (callbackArg != null) {
@@ -502,17 +481,26 @@ public class Get70 extends BaseCommand {
 //    logger.debug("returning flags " + Integer.toBinaryString(flags));
     
     responseMsg.setNumberOfParts(numParts);
-
-    responseMsg.addPartInAnyForm(data, isObject);
     
+    responseMsg.addPartInAnyForm(data, isObject);
+
     responseMsg.addIntPart(flags);
-    
+
     if (callbackArg != null) {
       responseMsg.addObjPart(callbackArg);
     }
     if (versionTag != null) {
       responseMsg.addObjPart(versionTag);
     }
+  }
+
+  private void writeResponseWithRefreshMetadata(@Unretained Object data,
+      Object callbackArg, Message origMsg, boolean isObject,
+      ServerConnection servConn, PartitionedRegion pr, byte nwHop,
+      VersionTag versionTag, boolean keyNotPresent) throws IOException {
+    Message responseMsg = servConn.getResponseMessage();
+    responseMsg.setTransactionId(origMsg.getTransactionId());
+    addResponseParts(responseMsg, data, callbackArg, isObject, versionTag, keyNotPresent, 1);
 
     responseMsg.addBytesPart(new byte[]{pr.getMetadataVersion().byteValue(),nwHop});
     servConn.getCache().getCancelCriterion().checkCancelInProgress(null);
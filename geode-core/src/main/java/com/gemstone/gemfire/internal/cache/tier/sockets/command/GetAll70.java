@@ -221,7 +221,7 @@ public class GetAll70 extends BaseCommand {
         }
 
         try {
-          GeodeSecurityUtil.authorizeRegionRead(regionName, key.toString());
+          GeodeSecurityUtil.authorizeRegionRead(regionName, key);
         } catch (NotAuthorizedException ex) {
           logger.warn(LocalizedMessage.create(LocalizedStrings.GetAll_0_CAUGHT_THE_FOLLOWING_EXCEPTION_ATTEMPTING_TO_GET_VALUE_FOR_KEY_1, new Object[] {
             servConn.getName(),
@@ -134,7 +134,7 @@ public class Invalidate extends BaseCommand {
     VersionTag tag = null;
 
     // for integrated security
-    GeodeSecurityUtil.authorizeRegionWrite(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionWrite(regionName, key);
 
     try {
       AuthorizeRequest authzRequest = servConn.getAuthzRequest();
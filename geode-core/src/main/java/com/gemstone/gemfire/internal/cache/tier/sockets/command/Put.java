@@ -154,7 +154,7 @@ public class Put extends BaseCommand {
       return;
     }
 
-    GeodeSecurityUtil.authorizeRegionWrite(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionWrite(regionName, key);
 
     ByteBuffer eventIdPartsBuffer = ByteBuffer.wrap(eventPart.getSerializedForm());
     long threadId = EventID.readEventIdPartsFromOptmizedByteArray(eventIdPartsBuffer);
@@ -172,7 +172,7 @@ public class Put61 extends BaseCommand {
       return;
     }
 
-    GeodeSecurityUtil.authorizeRegionWrite(regionName, key.toString());
+    GeodeSecurityUtil.authorizeRegionWrite(regionName, key);
 
     // try {
     // this.eventId = (EventID)eventPart.getObject();
@@ -146,7 +146,7 @@ public class RegisterInterest extends BaseCommand {
       GeodeSecurityUtil.authorizeRegionRead(regionName);
     }
     else {
-      GeodeSecurityUtil.authorizeRegionRead(regionName, key.toString());
+      GeodeSecurityUtil.authorizeRegionRead(regionName, key);
     }
 
 
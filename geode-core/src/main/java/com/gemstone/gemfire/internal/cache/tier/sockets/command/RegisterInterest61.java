@@ -179,7 +179,7 @@ public class RegisterInterest61 extends BaseCommand {
       GeodeSecurityUtil.authorizeRegionRead(regionName);
     }
     else {
-      GeodeSecurityUtil.authorizeRegionRead(regionName, key.toString());
+      GeodeSecurityUtil.authorizeRegionRead(regionName, key);
     }
 
     // input key not null
@@ -104,7 +104,7 @@ public class UnregisterInterest extends BaseCommand {
     if (interestType == InterestType.REGULAR_EXPRESSION) {
       GeodeSecurityUtil.authorizeRegionRead(regionName);
     } else {
-      GeodeSecurityUtil.authorizeRegionRead(regionName, key.toString());
+      GeodeSecurityUtil.authorizeRegionRead(regionName, key);
     }
 
     AuthorizeRequest authzRequest = servConn.getAuthzRequest();
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
+
+/**
+ * Periodically checks how much of the free off-heap memory has ended up in
+ * free chunks instead of fragments and, once that passes a threshold,
+ * merges adjacent free chunks while allocations continue. This keeps
+ * allocations from having to wait for a full defragmentation when memory
+ * is nearly exhausted.
+ * 
+ * @since Geode 1.0
+ */
+class BackgroundDefragmenter implements Runnable {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The percentage of free memory that has to be in free chunks before a
+   * background defragmentation is done. Zero, the default, disables background defragmentation.
+   */
+  public static final String THRESHOLD_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "OFF_HEAP_BACKGROUND_DEFRAGMENTATION_THRESHOLD";
+  /**
+   * How many milliseconds to wait between checks of the free memory.
+   */
+  public static final String INTERVAL_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "OFF_HEAP_BACKGROUND_DEFRAGMENTATION_INTERVAL";
+  /**
+   * The most free chunks merged by one background defragmentation.
+   */
+  static final int MAX_CHUNKS = 1024 * 1024;
+
+  private final MemoryAllocatorImpl ma;
+  private final int threshold;
+  private final long interval;
+  private volatile boolean stopped;
+  private Thread thread;
+  /**
+   * The fragmented free memory the last time a background defragmentation
+   * was not able to merge any chunks. Until more memory than this is fragmented
+   * another background defragmentation is unlikely to do any better.
+   */
+  private long unmergeableFreeMemory;
+
+  BackgroundDefragmenter(MemoryAllocatorImpl ma, int threshold, long interval) {
+    if (threshold <= 0 || threshold > 100) {
+      throw new IllegalArgumentException(THRESHOLD_PROPERTY + " must be > 0 and <= 100 but it was " + threshold);
+    }
+    this.ma = ma;
+    this.threshold = threshold;
+    this.interval = interval;
+  }
+
+  /**
+   * Starts a background defragmenter for the given allocator if one is
+   * configured and returns it; otherwise returns null.
+   */
+  static BackgroundDefragmenter start(MemoryAllocatorImpl ma) {
+    int threshold = Integer.getInteger(THRESHOLD_PROPERTY, 0);
+    if (threshold <= 0) {
+      return null;
+    }
+    BackgroundDefragmenter result = new BackgroundDefragmenter(ma, threshold, Long.getLong(INTERVAL_PROPERTY, 1000));
+    ThreadGroup group = LoggingThreadGroup.createThreadGroup("OffHeap Defragmenter Threads", logger);
+    Thread t = new Thread(group, result, "OffHeap Background Defragmenter");
+    t.setDaemon(true);
+    result.thread = t;
+    t.start();
+    return result;
+  }
+
+  /**
+   * Stops the defragmenter and waits for it to finish any
+   * defragmentation it is doing.
+   */
+  void stop() {
+    this.stopped = true;
+    Thread t = this.thread;
+    if (t != null) {
+      t.interrupt();
+      try {
+        t.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    while (!this.stopped) {
+      try {
+        Thread.sleep(this.interval);
+      } catch (InterruptedException e) {
+        // stop() interrupts us
+        continue;
+      }
+      try {
+        defragmentIfNeeded();
+      } catch (RuntimeException e) {
+        logger.warn("Background defragmentation of off-heap memory failed", e);
+      }
+    }
+  }
+
+  /**
+   * Does a background defragmentation if enough of the free memory is in free chunks.
+   * 
+   * @return true if a background defragmentation was done
+   */
+  boolean defragmentIfNeeded() {
+    final FreeListManager freeList = this.ma.getFreeListManager();
+    final long fragmented = freeList.getFragmentedFreeMemory();
+    this.ma.getStats().setFragmentedFreeMemory(fragmented);
+    final long free = freeList.getFreeMemory();
+    if (free <= 0 || fragmented < FreeListManager.BACKGROUND_DEFRAGMENTATION_MIN_FRAGMENT) {
+      return false;
+    }
+    if (fragmented * 100 / free < this.threshold || fragmented <= this.unmergeableFreeMemory) {
+      return false;
+    }
+    if (freeList.backgroundDefragment(MAX_CHUNKS) == 0) {
+      this.unmergeableFreeMemory = fragmented;
+    } else {
+      this.unmergeableFreeMemory = 0;
+    }
+    return true;
+  }
+}
@@ -21,6 +21,7 @@ import com.gemstone.gemfire.distributed.internal.DistributionConfig;
 import com.gemstone.gemfire.internal.logging.LogService;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -80,6 +81,11 @@ public class FreeListManager {
         return f;
       }
     }
+    for (Fragment f: this.threadLocalFragments) {
+      if (addr >= (f.getAddress() + f.getFreeIndex()) && addr < (f.getAddress() + f.getSize())) {
+        return f;
+      }
+    }
     return null;
   }
   public long getUsedMemory() {
@@ -96,6 +102,12 @@ public class FreeListManager {
         result += freeSpace;
       }
     }
+    for (Fragment f: this.threadLocalFragments) {
+      int freeSpace = f.freeSpace();
+      if (freeSpace >= OffHeapStoredObject.MIN_CHUNK_SIZE) {
+        result += freeSpace;
+      }
+    }
     return result;
   }
   long getFreeTinyMemory() {
@@ -106,6 +118,9 @@ public class FreeListManager {
         tinyFree += cl.computeTotalSize();
       }
     }
+    for (ThreadAllocationBuffer tab: this.threadAllocationBuffers) {
+      tinyFree += tab.computeTotalFreeSize();
+    }
     return tinyFree;
   }
   long getFreeHugeMemory() {
@@ -123,9 +138,39 @@ public class FreeListManager {
   private final CopyOnWriteArrayList<Fragment> fragmentList;
   private final MemoryAllocatorImpl ma;
 
+  /**
+   * The number of bytes each thread carves out of the fragments for its
+   * thread local allocation buffer. Zero if thread local allocation is disabled.
+   */
+  private final int threadLocalBufferSize;
+  /**
+   * The fragments currently owned by a thread local allocation buffer.
+   * They are kept apart from fragmentList so that other threads do not allocate
+   * from them but can still be found when walking or defragmenting the slabs.
+   */
+  private final CopyOnWriteArrayList<Fragment> threadLocalFragments = new CopyOnWriteArrayList<Fragment>();
+  /**
+   * Every thread local allocation buffer created by this manager.
+   * Buffers of threads that have died are removed by defragmentation.
+   */
+  private final CopyOnWriteArrayList<ThreadAllocationBuffer> threadAllocationBuffers = new CopyOnWriteArrayList<ThreadAllocationBuffer>();
+  private final ThreadLocal<ThreadAllocationBuffer> threadAllocationBuffer = new ThreadLocal<ThreadAllocationBuffer>() {
+    @Override
+    protected ThreadAllocationBuffer initialValue() {
+      ThreadAllocationBuffer result = new ThreadAllocationBuffer();
+      threadAllocationBuffers.add(result);
+      return result;
+    }
+  };
+
   public FreeListManager(MemoryAllocatorImpl ma, final Slab[] slabs) {
+    this(ma, slabs, OffHeapStorage.calcThreadLocalBufferSize());
+  }
+
+  FreeListManager(MemoryAllocatorImpl ma, final Slab[] slabs, int threadLocalBufferSize) {
     this.ma = ma;
     this.slabs = slabs;
+    this.threadLocalBufferSize = threadLocalBufferSize;
     long total = 0;
     Fragment[] tmp = new Fragment[slabs.length];
     for (int i=0; i < slabs.length; i++) {
@@ -194,6 +239,9 @@ public class FreeListManager {
       // If useSlabs is false then the incoming size has already
       // been adjusted.
       size += OffHeapStoredObject.HEADER_SIZE;
+      if (isThreadLocal(size)) {
+        return allocateThreadLocal(size);
+      }
     }
     if (size <= MAX_TINY) {
       return allocateTiny(size, useSlabs);
@@ -238,6 +286,22 @@ public class FreeListManager {
     logFragmentState(lw);
     logTinyState(lw);
     logHugeState(lw);
+    logThreadLocalState(lw);
+  }
+
+  private void logThreadLocalState(Logger lw) {
+    for (Fragment f: this.threadLocalFragments) {
+      int freeSpace = f.freeSpace();
+      if (freeSpace > 0) {
+        lw.info("Thread local fragment at " + f.getAddress() + " of size " + f.getSize() + " has " + freeSpace + " bytes free.");
+      }
+    }
+    for (ThreadAllocationBuffer tab: this.threadAllocationBuffers) {
+      long freeSize = tab.computeTotalFreeSize();
+      if (freeSize > 0) {
+        lw.info("Thread local free chunks of " + freeSize + " bytes.");
+      }
+    }
   }
 
   private void logHugeState(Logger lw) {
@@ -295,6 +359,18 @@ public class FreeListManager {
     verifyHugeMultiple(HUGE_MULTIPLE);
   }
   public final static int MAX_TINY = TINY_MULTIPLE*TINY_FREE_LIST_COUNT;
+  /**
+   * The size classes, by largest chunk size in bytes, of the chunks that
+   * can be allocated from a thread local allocation buffer.
+   * Larger chunks are always allocated from the shared free lists and fragments.
+   */
+  public final static int[] THREAD_LOCAL_SIZE_CLASSES = {64, 128, 256, 512, 1024};
+  public final static int MAX_THREAD_LOCAL = Math.min(THREAD_LOCAL_SIZE_CLASSES[THREAD_LOCAL_SIZE_CLASSES.length-1], MAX_TINY);
+  /**
+   * How many freed chunks of one size a thread returns to the shared free list at once.
+   * A thread keeps up to twice this many.
+   */
+  final static int THREAD_LOCAL_FREE_BATCH = 32;
   
   /**
    * Return true if the two chunks have been combined into one.
@@ -498,6 +574,157 @@ public class FreeListManager {
    */
   protected void afterDefragmentationCountFetched() {
   }
+
+  /**
+   * Merged free chunks at least this big are turned into fragments by
+   * a background defragmentation. Fragments with less free space than this
+   * are given up by a background defragmentation so their free space can be
+   * merged with the free chunks next to it.
+   */
+  static final int BACKGROUND_DEFRAGMENTATION_MIN_FRAGMENT = 64 * 1024;
+
+  /**
+   * Returns the number of bytes of free memory that can not be allocated
+   * by simply bumping the free index of a fragment because it is
+   * in free chunks on the free lists.
+   */
+  long getFragmentedFreeMemory() {
+    long fragmentFree = 0;
+    for (Fragment f: this.fragmentList) {
+      fragmentFree += f.freeSpace();
+    }
+    for (Fragment f: this.threadLocalFragments) {
+      fragmentFree += f.freeSpace();
+    }
+    long result = getFreeMemory() - fragmentFree;
+    return result > 0 ? result : 0;
+  }
+
+  /**
+   * Merges adjacent free chunks while other threads keep allocating.
+   * Unlike {@link #defragment(int)} this does not take away the free space
+   * of the fragments that allocations are being carved from, so only an
+   * allocation that can not be satisfied at all has to wait for it.
+   * At most about maxChunks free chunks are merged by one call so that
+   * such a wait is bounded.
+   * 
+   * @return the number of free chunks that were merged into an adjacent one
+   */
+  long backgroundDefragment(int maxChunks) {
+    final OffHeapMemoryStats stats = this.ma.getStats();
+    final long start = stats.startBackgroundDefragmentation();
+    long coalesced = 0;
+    try {
+      synchronized (this) {
+        ResizableLongArray chunks = new ResizableLongArray();
+        collectBackgroundDefragmentationChunks(chunks, maxChunks);
+        if (chunks.size() > 1) {
+          Arrays.sort(chunks.data, 0, chunks.size());
+          long addr = chunks.get(0);
+          boolean merged = false;
+          for (int i=1; i < chunks.size(); i++) {
+            long nextAddr = chunks.get(i);
+            if (combineIfAdjacentAndSmallEnough(addr, nextAddr)) {
+              coalesced++;
+              merged = true;
+            } else {
+              releaseDefragmentedChunk(addr, merged);
+              addr = nextAddr;
+              merged = false;
+            }
+          }
+          releaseDefragmentedChunk(addr, merged);
+        } else if (chunks.size() == 1) {
+          releaseDefragmentedChunk(chunks.get(0), false);
+        }
+        // Let any thread waiting to do a defragmentation retry its allocation first.
+        this.defragmentationCount.incrementAndGet();
+      } // sync
+      int largestFragment = 0;
+      for (Fragment f: this.fragmentList) {
+        if (f.freeSpace() > largestFragment) {
+          largestFragment = f.freeSpace();
+        }
+      }
+      stats.setLargestFragment(largestFragment);
+      stats.setFragments(this.fragmentList.size());
+      stats.setFragmentation(getFragmentation());
+      stats.setFragmentedFreeMemory(getFragmentedFreeMemory());
+    } finally {
+      stats.endBackgroundDefragmentation(start, coalesced);
+    }
+    return coalesced;
+  }
+
+  /**
+   * Takes free chunks, until at least maxChunks have been taken, off the free lists
+   * and the free space of fragments that are nearly used up.
+   */
+  private void collectBackgroundDefragmentationChunks(ResizableLongArray result, int maxChunks) {
+    ArrayList<Fragment> usedUp = new ArrayList<Fragment>();
+    for (Fragment f: this.fragmentList) {
+      if (f.freeSpace() < BACKGROUND_DEFRAGMENTATION_MIN_FRAGMENT) {
+        long addr = claimFreeSpace(f);
+        if (addr != 0L) {
+          new OffHeapStoredObject(addr, OffHeapStoredObject.getSize(addr)).readyForFree();
+          result.add(addr);
+        }
+        usedUp.add(f);
+      }
+    }
+    this.fragmentList.removeAll(usedUp);
+    OffHeapStoredObject huge = null;
+    while (result.size() < maxChunks && (huge = this.hugeChunkSet.pollFirst()) != null) {
+      result.add(huge.getAddress());
+    }
+    for (int i=0; i < this.tinyFreeLists.length() && result.size() < maxChunks; i++) {
+      OffHeapStoredObjectAddressStack cl = this.tinyFreeLists.get(i);
+      if (cl != null) {
+        addAll(cl.clear(), result);
+      }
+    }
+    ArrayList<LongStack> threadLocalChunks = new ArrayList<LongStack>();
+    for (ThreadAllocationBuffer tab: this.threadAllocationBuffers) {
+      if (result.size() >= maxChunks) {
+        break;
+      }
+      tab.collectFreeChunks(threadLocalChunks);
+    }
+    for (LongStack l: threadLocalChunks) {
+      for (long addr = l.poll(); addr != 0L; addr = l.poll()) {
+        result.add(addr);
+      }
+    }
+  }
+
+  private static void addAll(long addr, ResizableLongArray result) {
+    while (addr != 0L) {
+      result.add(addr);
+      addr = OffHeapStoredObject.getNext(addr);
+    }
+  }
+
+  /**
+   * Makes a chunk taken by a background defragmentation available for allocation
+   * again. Large merged chunks become fragments; everything else goes back
+   * on to a free list.
+   */
+  private void releaseDefragmentedChunk(long addr, boolean merged) {
+    int size = OffHeapStoredObject.getSize(addr);
+    if (merged && size >= BACKGROUND_DEFRAGMENTATION_MIN_FRAGMENT) {
+      Fragment f = createFragment(addr, size);
+      if (this.validateMemoryWithFill) {
+        f.fill();
+      }
+      this.fragmentList.add(f);
+    } else {
+      if (merged && this.validateMemoryWithFill) {
+        // the headers of the chunks merged into this one are no longer filled
+        OffHeapStoredObject.fill(addr);
+      }
+      free(addr, false);
+    }
+  }
   
   static void verifyOffHeapAlignment(int tinyMultiple) {
     if (tinyMultiple <= 0 || (tinyMultiple & 3) != 0) {
@@ -551,6 +778,7 @@ public class FreeListManager {
     collectFreeFragmentChunks(l);
     collectFreeHugeChunks(l);
     collectFreeTinyChunks(l);
+    collectFreeThreadLocalChunks(l);
   }
   List<Fragment> getFragmentList() {
     return this.fragmentList;
@@ -584,6 +812,53 @@ public class FreeListManager {
       l.add(result);
     }
   }
+  /**
+   * Takes the free space of every thread local fragment and every chunk
+   * freed to a thread local allocation buffer. The owning threads will find
+   * their fragment full and their free lists empty and start over.
+   */
+  private void collectFreeThreadLocalChunks(List<LongStack> l) {
+    OffHeapStoredObjectAddressStack result = new OffHeapStoredObjectAddressStack();
+    // Only remove the fragments we claimed; a thread may be adding a new one concurrently.
+    ArrayList<Fragment> claimed = new ArrayList<Fragment>(this.threadLocalFragments);
+    for (Fragment f: claimed) {
+      long chunkAddr = claimFreeSpace(f);
+      if (chunkAddr != 0L) {
+        result.offer(chunkAddr);
+      }
+    }
+    this.threadLocalFragments.removeAll(claimed);
+    if (!result.isEmpty()) {
+      l.add(result);
+    }
+    for (ThreadAllocationBuffer tab: this.threadAllocationBuffers) {
+      tab.collectFreeChunks(l);
+      if (!tab.isOwnerAlive()) {
+        this.threadAllocationBuffers.remove(tab);
+      }
+    }
+  }
+  /**
+   * Allocates all the remaining free space of the given fragment
+   * and returns it as a chunk whose size has been set.
+   * Returns 0 if the fragment has no free space left.
+   */
+  private long claimFreeSpace(Fragment f) {
+    int offset;
+    int diff;
+    do {
+      offset = f.getFreeIndex();
+      diff = f.getSize() - offset;
+    } while (diff >= OffHeapStoredObject.MIN_CHUNK_SIZE && !f.allocate(offset, offset+diff));
+    if (diff < OffHeapStoredObject.MIN_CHUNK_SIZE) {
+      // Allocations from a fragment never leave less than MIN_CHUNK_SIZE at its end.
+      assert diff == 0;
+      return 0L;
+    }
+    long chunkAddr = f.getAddress()+offset;
+    OffHeapStoredObject.setSize(chunkAddr, diff);
+    return chunkAddr;
+  }
   private void collectFreeTinyChunks(List<LongStack> l) {
     for (int i=0; i < this.tinyFreeLists.length(); i++) {
       OffHeapStoredObjectAddressStack cl = this.tinyFreeLists.get(i);
@@ -653,6 +928,88 @@ public class FreeListManager {
     return null; // did not find enough free space in this fragment
   }
 
+  /**
+   * Returns true if a chunk of the given size, which includes the header,
+   * should be allocated from and freed to the calling thread's allocation buffer.
+   */
+  private boolean isThreadLocal(int chunkSize) {
+    return this.threadLocalBufferSize > 0 && chunkSize <= MAX_THREAD_LOCAL;
+  }
+  /**
+   * Returns the index into THREAD_LOCAL_SIZE_CLASSES of the size class
+   * that a chunk of the given size belongs to.
+   */
+  static int getThreadLocalSizeClass(int chunkSize) {
+    int result = 0;
+    while (chunkSize > THREAD_LOCAL_SIZE_CLASSES[result]) {
+      result++;
+    }
+    return result;
+  }
+  private OffHeapStoredObject allocateThreadLocal(int size) {
+    final int idx = getNearestTinyMultiple(size);
+    final int chunkSize = (idx+1)*TINY_MULTIPLE;
+    final ThreadAllocationBuffer tab = this.threadAllocationBuffer.get();
+    long memAddr = tab.poll(idx);
+    if (memAddr == 0L) {
+      OffHeapStoredObject result = basicAllocate(idx, TINY_MULTIPLE, 0, this.tinyFreeLists, false);
+      if (result != null) {
+        return result;
+      }
+      result = tab.allocateFromFragment(this, chunkSize);
+      if (result == null) {
+        // No fragment had room for a new buffer so fall back to the shared fragments.
+        return allocateFromFragments(chunkSize);
+      }
+      checkDataIntegrity(result);
+      this.ma.getStats().incThreadLocalAllocations(getThreadLocalSizeClass(chunkSize));
+      return result;
+    }
+    OffHeapStoredObject result = new OffHeapStoredObject(memAddr);
+    checkDataIntegrity(result);
+    result.readyForAllocation();
+    this.ma.getStats().incThreadLocalAllocations(getThreadLocalSizeClass(chunkSize));
+    return result;
+  }
+  /**
+   * Carves a new thread local allocation buffer out of the fragments.
+   * Unlike allocateFromFragments this will not defragment or report
+   * running out of memory; it returns null if no fragment has room.
+   */
+  private Fragment allocateThreadLocalFragment() {
+    OffHeapStoredObject chunk = null;
+    final int lastAllocationId = this.lastFragmentAllocation.get();
+    for (int i=lastAllocationId; chunk == null && i < this.fragmentList.size(); i++) {
+      chunk = allocateFromFragment(i, this.threadLocalBufferSize);
+    }
+    for (int i=0; chunk == null && i < lastAllocationId; i++) {
+      chunk = allocateFromFragment(i, this.threadLocalBufferSize);
+    }
+    if (chunk == null) {
+      return null;
+    }
+    Fragment result = createFragment(chunk.getAddress(), chunk.getSize());
+    if (this.validateMemoryWithFill) {
+      // the chunk may have come from a free list so its header was not filled
+      result.fill();
+    }
+    this.threadLocalFragments.add(result);
+    this.ma.getStats().incThreadLocalBufferRefills();
+    return result;
+  }
+  /**
+   * Gives back the free space left in a thread local fragment
+   * that is no longer used by its thread.
+   */
+  private void retireThreadLocalFragment(Fragment f) {
+    long chunkAddr = claimFreeSpace(f);
+    if (chunkAddr != 0L) {
+      new OffHeapStoredObject(chunkAddr, OffHeapStoredObject.getSize(chunkAddr)).readyForFree();
+      free(chunkAddr, false);
+    }
+    this.threadLocalFragments.remove(f);
+  }
+
   private int round(int multiple, int value) {
     return (int) ((((long)value + (multiple-1)) / multiple) * multiple);
   }
@@ -740,6 +1097,11 @@ public class FreeListManager {
       stats.incUsedMemory(-cSize);
       stats.incFreeMemory(cSize);
       this.ma.notifyListeners();
+      if (isThreadLocal(cSize)) {
+        this.threadAllocationBuffer.get().offer(this, addr, getNearestTinyMultiple(cSize));
+        stats.incThreadLocalFrees(getThreadLocalSizeClass(cSize));
+        return;
+      }
     }
     if (cSize <= MAX_TINY) {
       freeTiny(addr, cSize);
@@ -763,6 +1125,19 @@ public class FreeListManager {
       }
     }
   }
+  /**
+   * Pushes the linked chunks from firstAddr to lastAddr on to the tiny free list at idx.
+   */
+  private void basicFreeBatch(long firstAddr, long lastAddr, int idx) {
+    OffHeapStoredObjectAddressStack clq = this.tinyFreeLists.get(idx);
+    if (clq == null) {
+      clq = createFreeListForEmptySlot(this.tinyFreeLists, idx);
+      if (!this.tinyFreeLists.compareAndSet(idx, null, clq)) {
+        clq = this.tinyFreeLists.get(idx);
+      }
+    }
+    clq.offerAll(firstAddr, lastAddr);
+  }
   /**
    * Tests override this method to simulate concurrent modification
    */
@@ -777,6 +1152,7 @@ public class FreeListManager {
   List<MemoryBlock> getOrderedBlocks() {
     final List<MemoryBlock> value = new ArrayList<MemoryBlock>();
     addBlocksFromFragments(this.fragmentList, value); // unused fragments
+    addBlocksFromFragments(this.threadLocalFragments, value); // unused thread local fragments
     addBlocksFromChunks(getLiveChunks(), value); // used chunks
     addBlocksFromChunks(this.hugeChunkSet, value);    // huge free chunks
     addMemoryBlocks(getTinyFreeBlocks(), value);           // tiny free chunks
@@ -818,6 +1194,9 @@ public class FreeListManager {
         addr = OffHeapStoredObject.getNext(addr);
       }
     }
+    for (ThreadAllocationBuffer tab: this.threadAllocationBuffers) {
+      tab.addFreeBlocks(sma, value);
+    }
     return value;
   }
   List<MemoryBlock> getAllocatedBlocks() {
@@ -914,6 +1293,121 @@ public class FreeListManager {
     }
   }
 
+  /**
+   * The chunks a single thread allocates from and frees to without
+   * contending with other threads. New chunks are carved out of a fragment
+   * owned by the thread. Freed chunks are kept on a per size free list
+   * and returned to the shared tiny free lists in batches.
+   * <p>
+   * Only the owning thread allocates and frees using a buffer but
+   * defragmentation and memory inspection may access it from other threads,
+   * so all access to the free lists is synchronized on the buffer.
+   */
+  private static final class ThreadAllocationBuffer {
+    private final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+    private final long[] freeLists = new long[(MAX_THREAD_LOCAL-1)/TINY_MULTIPLE + 1];
+    private final int[] freeCounts = new int[this.freeLists.length];
+    /** Only accessed by the owning thread */
+    private Fragment fragment;
+
+    synchronized long poll(int idx) {
+      long result = this.freeLists[idx];
+      if (result != 0L) {
+        this.freeLists[idx] = OffHeapStoredObject.getNext(result);
+        this.freeCounts[idx]--;
+      }
+      return result;
+    }
+
+    synchronized void offer(FreeListManager flm, long addr, int idx) {
+      OffHeapStoredObject.setNext(addr, this.freeLists[idx]);
+      this.freeLists[idx] = addr;
+      this.freeCounts[idx]++;
+      if (this.freeCounts[idx] >= 2*THREAD_LOCAL_FREE_BATCH) {
+        // give a batch of the oldest chunks back to the shared free list
+        long lastKept = addr;
+        for (int i=1; i < THREAD_LOCAL_FREE_BATCH; i++) {
+          lastKept = OffHeapStoredObject.getNext(lastKept);
+        }
+        long first = OffHeapStoredObject.getNext(lastKept);
+        long last = first;
+        for (int i=1; i < this.freeCounts[idx] - THREAD_LOCAL_FREE_BATCH; i++) {
+          last = OffHeapStoredObject.getNext(last);
+        }
+        OffHeapStoredObject.setNext(lastKept, 0L);
+        this.freeCounts[idx] = THREAD_LOCAL_FREE_BATCH;
+        flm.basicFreeBatch(first, last, idx);
+        flm.ma.getStats().incThreadLocalFreeFlushes();
+      }
+    }
+
+    /**
+     * Allocates a chunk of chunkSize from this thread's fragment, replacing
+     * the fragment with a new one if it does not have room.
+     * Returns null if no new fragment could be allocated.
+     */
+    OffHeapStoredObject allocateFromFragment(FreeListManager flm, int chunkSize) {
+      Fragment f = this.fragment;
+      while (true) {
+        if (f != null) {
+          int oldOffset = f.getFreeIndex();
+          int fragmentSize = f.getSize();
+          if (fragmentSize - oldOffset >= chunkSize) {
+            int newOffset = oldOffset + chunkSize;
+            if (fragmentSize - newOffset < OffHeapStoredObject.MIN_CHUNK_SIZE) {
+              // include the last few bytes of the fragment in this chunk
+              newOffset = fragmentSize;
+            }
+            // only fails if a defragmentation took the rest of the fragment
+            if (f.allocate(oldOffset, newOffset)) {
+              return new OffHeapStoredObject(f.getAddress()+oldOffset, newOffset-oldOffset);
+            }
+            continue;
+          }
+          flm.retireThreadLocalFragment(f);
+        }
+        f = flm.allocateThreadLocalFragment();
+        this.fragment = f;
+        if (f == null) {
+          return null;
+        }
+      }
+    }
+
+    boolean isOwnerAlive() {
+      Thread t = this.owner.get();
+      return t != null && t.isAlive();
+    }
+
+    synchronized void collectFreeChunks(List<LongStack> l) {
+      for (int i=0; i < this.freeLists.length; i++) {
+        if (this.freeLists[i] != 0L) {
+          l.add(new OffHeapStoredObjectAddressStack(this.freeLists[i]));
+          this.freeLists[i] = 0L;
+          this.freeCounts[i] = 0;
+        }
+      }
+    }
+
+    synchronized long computeTotalFreeSize() {
+      long result = 0;
+      for (int i=0; i < this.freeLists.length; i++) {
+        result += (long)this.freeCounts[i] * (i+1) * TINY_MULTIPLE;
+      }
+      return result;
+    }
+
+    synchronized void addFreeBlocks(MemoryAllocatorImpl ma, List<MemoryBlock> value) {
+      for (int i=0; i < this.freeLists.length; i++) {
+        long addr = this.freeLists[i];
+        while (addr != 0L) {
+          value.add(new MemoryBlockNode(ma, new TinyMemoryBlock(addr, i)));
+          addr = OffHeapStoredObject.getNext(addr);
+        }
+      }
+    }
+  }
+
   long getTotalMemory() {
     return this.totalSlabSize;
   }
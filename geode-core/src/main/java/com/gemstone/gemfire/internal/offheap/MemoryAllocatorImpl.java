@@ -58,6 +58,8 @@ public class MemoryAllocatorImpl implements MemoryAllocator {
 
   private MemoryInspector memoryInspector;
 
+  private final BackgroundDefragmenter backgroundDefragmenter;
+
   private volatile MemoryUsageListener[] memoryUsageListeners = new MemoryUsageListener[0];
   
   private static MemoryAllocatorImpl singleton = null;
@@ -197,6 +199,8 @@ public class MemoryAllocatorImpl implements MemoryAllocator {
 
     this.stats.incMaxMemory(this.freeList.getTotalMemory());
     this.stats.incFreeMemory(this.freeList.getTotalMemory());
+
+    this.backgroundDefragmenter = BackgroundDefragmenter.start(this);
   }
   
   public List<OffHeapStoredObject> getLostChunks() {
@@ -356,6 +360,9 @@ public class MemoryAllocatorImpl implements MemoryAllocator {
   private void realClose() {
     // Removing this memory immediately can lead to a SEGV. See 47885.
     if (setClosed()) {
+      if (this.backgroundDefragmenter != null) {
+        this.backgroundDefragmenter.stop();
+      }
       this.freeList.freeSlabs();
       this.stats.close();
       singleton = null;
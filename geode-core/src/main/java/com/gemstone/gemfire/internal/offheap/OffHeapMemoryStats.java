@@ -35,6 +35,13 @@ public interface OffHeapMemoryStats {
   public long startDefragmentation();
   public void endDefragmentation(long start);
   public void setFragmentation(int value);
+  public void incThreadLocalAllocations(int sizeClass);
+  public void incThreadLocalFrees(int sizeClass);
+  public void incThreadLocalBufferRefills();
+  public void incThreadLocalFreeFlushes();
+  public long startBackgroundDefragmentation();
+  public void endBackgroundDefragmentation(long start, long coalescedChunks);
+  public void setFragmentedFreeMemory(long value);
   
   public long getFreeMemory();
   public long getMaxMemory();
@@ -46,6 +53,14 @@ public interface OffHeapMemoryStats {
   public int getLargestFragment();
   public int getFragmentation();
   public long getDefragmentationTime();
+  public long getThreadLocalAllocations(int sizeClass);
+  public long getThreadLocalFrees(int sizeClass);
+  public long getThreadLocalBufferRefills();
+  public long getThreadLocalFreeFlushes();
+  public int getBackgroundDefragmentations();
+  public long getBackgroundDefragmentationTime();
+  public long getCoalescedChunks();
+  public long getFragmentedFreeMemory();
   
   public Statistics getStats();
   public void close();
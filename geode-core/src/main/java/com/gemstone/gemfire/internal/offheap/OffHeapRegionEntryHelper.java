@@ -16,17 +16,23 @@
  */
 package com.gemstone.gemfire.internal.offheap;
 
+import java.io.IOException;
+
+import com.gemstone.gemfire.SerializationException;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
 import com.gemstone.gemfire.internal.DSCODE;
 import com.gemstone.gemfire.internal.cache.CachedDeserializableFactory;
 import com.gemstone.gemfire.internal.cache.DiskEntry;
 import com.gemstone.gemfire.internal.cache.DiskId;
 import com.gemstone.gemfire.internal.cache.EntryEventImpl;
+import com.gemstone.gemfire.internal.cache.OffHeapKeyRegionEntry;
 import com.gemstone.gemfire.internal.cache.OffHeapRegionEntry;
 import com.gemstone.gemfire.internal.cache.RegionEntryContext;
 import com.gemstone.gemfire.internal.cache.Token;
 import com.gemstone.gemfire.internal.offheap.annotations.Released;
 import com.gemstone.gemfire.internal.offheap.annotations.Retained;
 import com.gemstone.gemfire.internal.offheap.annotations.Unretained;
+import com.gemstone.gemfire.internal.util.BlobHelper;
 
 /**
  * The class just has static methods
@@ -38,6 +44,13 @@ import com.gemstone.gemfire.internal.offheap.annotations.Unretained;
  */
 public class OffHeapRegionEntryHelper {
 
+  /**
+   * If true then region keys that can not be inlined into the entry
+   * are serialized into off-heap memory instead of being referenced
+   * from the entry. See {@link OffHeapKeyRegionEntry}.
+   */
+  public static boolean OFF_HEAP_REGION_KEYS = Boolean.getBoolean(DistributionConfig.GEMFIRE_PREFIX + "OFF_HEAP_REGION_KEYS");
+
   protected static final long NULL_ADDRESS = 0L<<1;
   protected static final long INVALID_ADDRESS = 1L<<1;
   protected static final long LOCAL_INVALID_ADDRESS = 2L<<1;
@@ -187,7 +200,11 @@ public class OffHeapRegionEntryHelper {
     final long newAddress = objectToAddress(Token.REMOVED_PHASE2);
     if (re.setAddress(oldAddress, newAddress) || re.getAddress() != newAddress) {
       releaseAddress(oldAddress);
-    } /*else {
+    }
+    if (re instanceof OffHeapKeyRegionEntry) {
+      releaseKey((OffHeapKeyRegionEntry) re);
+    }
+    /*else {
       if (!calledSetValue || re.getAddress() != newAddress) {
         expectedValue.release();
       }
@@ -336,6 +353,9 @@ public class OffHeapRegionEntryHelper {
     ReferenceCountHelper.setReferenceCountOwner(re);
     releaseAddress(oldAddress);
     ReferenceCountHelper.setReferenceCountOwner(null);
+    if (v == Token.REMOVED_PHASE2 && re instanceof OffHeapKeyRegionEntry) {
+      releaseKey((OffHeapKeyRegionEntry) re);
+    }
   }
  
   public static Token getValueAsToken(@Unretained OffHeapRegionEntry re) {
@@ -398,6 +418,174 @@ public class OffHeapRegionEntryHelper {
   
  
 
+  /**
+   * Serializes a region key into off-heap memory.
+   * Keys whose serialized form fits in an address are encoded into it
+   * and do not use any off-heap memory.
+   * 
+   * @return the OFF_HEAP_ADDRESS of the serialized key or NULL_ADDRESS if the key
+   * can not be stored off heap. PDX keys are never stored off heap because
+   * deserializing them may not produce an instance equal to the original key.
+   */
+  @Retained
+  static long allocateKey(Object key) {
+    byte[] bytes;
+    try {
+      bytes = BlobHelper.serializeToBlob(key);
+    } catch (IOException | SerializationException e) {
+      return NULL_ADDRESS;
+    }
+    if (bytes.length == 0 || bytes[0] == DSCODE.PDX) {
+      return NULL_ADDRESS;
+    }
+    return MemoryAllocatorImpl.getAllocator().allocateAndInitialize(bytes, true, false).getAddress();
+  }
+
+  /**
+   * Moves the heap key of 're' off heap.
+   * Must only be called once 're' has been added to the region map;
+   * entries that are never added keep their key on the heap so dropping
+   * them does not leak off-heap memory.
+   * If the key can not be serialized it stays on the heap.
+   */
+  public static void storeKey(@Unretained OffHeapKeyRegionEntry re) {
+    synchronized (re) {
+      if (re.getKeyAddress() != NULL_ADDRESS || re.getValueAsToken() == Token.REMOVED_PHASE2) {
+        return;
+      }
+      final Object key = re.getHeapKey();
+      if (key == null) {
+        return;
+      }
+      @Retained long addr = allocateKey(key);
+      if (addr == NULL_ADDRESS) {
+        return;
+      }
+      // publish the address before dropping the heap key; see getKey
+      re.setKeyAddress(NULL_ADDRESS, addr);
+      re.setHeapKey(null);
+    }
+  }
+
+  /**
+   * Returns a heap copy of the key of 're'.
+   * This does not sync on 're' so it retains the off-heap key while reading it.
+   */
+  public static Object getKey(@Unretained OffHeapKeyRegionEntry re) {
+    int retryCount = 0;
+    for (;;) {
+      long addr = re.getKeyAddress();
+      if (isOffHeap(addr)) {
+        if (OffHeapStoredObject.retain(addr)) {
+          try {
+            if (addr == re.getKeyAddress()) {
+              return new OffHeapStoredObject(addr).getValueAsDeserializedHeapObject();
+            }
+          } finally {
+            OffHeapStoredObject.release(addr);
+          }
+        }
+        // releaseKey copied the key back to the heap; spin around and read it.
+      } else if (addr != NULL_ADDRESS) {
+        return decodeAddressToObject(addr);
+      } else {
+        Object key = re.getHeapKey();
+        if (key != null || re.getKeyAddress() == NULL_ADDRESS) {
+          return key;
+        }
+        // storeKey moved the key off heap; spin around and read it.
+      }
+      retryCount++;
+      if (retryCount > 100) {
+        throw new IllegalStateException("reading the off-heap key failed 100 times addr=" + addr);
+      }
+    }
+  }
+
+  /**
+   * Returns true if 'k' is equal to the key of 're'.
+   * An off-heap key is compared to the serialized form of 'k' so that a
+   * lookup does not deserialize it. Only if the bytes differ and 'k' could
+   * still be equal to a key with another serialized form is the key
+   * deserialized and compared with equals.
+   */
+  public static boolean isKeyEqual(@Unretained OffHeapKeyRegionEntry re, Object k) {
+    byte[] bytes = null;
+    int retryCount = 0;
+    for (;;) {
+      long addr = re.getKeyAddress();
+      if (addr == NULL_ADDRESS) {
+        Object key = re.getHeapKey();
+        if (key != null || re.getKeyAddress() == NULL_ADDRESS) {
+          return k.equals(key);
+        }
+        // storeKey moved the key off heap; spin around and compare it.
+      } else {
+        if (bytes == null) {
+          try {
+            bytes = BlobHelper.serializeToBlob(k);
+          } catch (IOException | SerializationException e) {
+            return k.equals(getKey(re));
+          }
+        }
+        if (!isOffHeap(addr)) {
+          if (encodeDataAsAddress(bytes, true, false) == addr) {
+            return true;
+          }
+          break;
+        }
+        if (OffHeapStoredObject.retain(addr)) {
+          try {
+            if (addr == re.getKeyAddress()) {
+              if (new OffHeapStoredObject(addr).checkDataEquals(bytes)) {
+                return true;
+              }
+              break;
+            }
+          } finally {
+            OffHeapStoredObject.release(addr);
+          }
+        }
+        // releaseKey copied the key back to the heap; spin around and compare it.
+      }
+      retryCount++;
+      if (retryCount > 100) {
+        throw new IllegalStateException("comparing the off-heap key failed 100 times");
+      }
+    }
+    return !hasCanonicalForm(k) && k.equals(getKey(re));
+  }
+
+  /**
+   * Returns true if every instance equal to 'k' serializes to the same bytes,
+   * so a key with other serialized bytes can not be equal to it.
+   */
+  private static boolean hasCanonicalForm(Object k) {
+    Class<?> c = k.getClass();
+    return c == String.class || c == Integer.class || c == Long.class
+        || c == Short.class || c == Byte.class || c == Character.class
+        || c == Boolean.class;
+  }
+
+  /**
+   * Copies the key of 're' back to the heap and then frees its off-heap memory.
+   * Called once the entry has been removed since other threads
+   * may still be holding on to it and asking for its key.
+   */
+  public static void releaseKey(@Released OffHeapKeyRegionEntry re) {
+    synchronized (re) {
+      final long addr = re.getKeyAddress();
+      if (addr == NULL_ADDRESS) {
+        return;
+      }
+      // publish the heap key before clearing the address; see getKey
+      re.setHeapKey(getKey(re));
+      if (re.setKeyAddress(addr, NULL_ADDRESS)) {
+        releaseAddress(addr);
+      }
+    }
+  }
+
   public static boolean isSerialized(long address) {
     return (address & SERIALIZED_BIT) != 0;
   }
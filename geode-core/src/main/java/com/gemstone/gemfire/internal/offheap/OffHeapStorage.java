@@ -28,6 +28,8 @@ import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Enables off-heap storage by creating a MemoryAllocator.
@@ -36,6 +38,11 @@ import java.lang.reflect.Method;
  */
 public class OffHeapStorage implements OffHeapMemoryStats {
   public static final String STAY_CONNECTED_ON_OUTOFOFFHEAPMEMORY_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "offheap.stayConnectedOnOutOfOffHeapMemory";
+  /**
+   * The size of the buffer each thread allocates small objects from.
+   * Specified like off-heap-memory-size but defaults to bytes. Zero, the default, disables thread local allocation.
+   */
+  public static final String THREAD_LOCAL_BUFFER_SIZE_PROPERTY = DistributionConfig.GEMFIRE_PREFIX + "OFF_HEAP_THREAD_LOCAL_BUFFER_SIZE";
   
   // statistics type
   private static final StatisticsType statsType;
@@ -56,6 +63,14 @@ public class OffHeapStorage implements OffHeapMemoryStats {
   private static final int largestFragmentId;
   private static final int defragmentationTimeId;
   private static final int fragmentationId;
+  private static final int[] threadLocalAllocationsIds;
+  private static final int[] threadLocalFreesIds;
+  private static final int threadLocalBufferRefillsId;
+  private static final int threadLocalFreeFlushesId;
+  private static final int backgroundDefragmentationsId;
+  private static final int backgroundDefragmentationTimeId;
+  private static final int coalescedChunksId;
+  private static final int fragmentedFreeMemoryId;
   // NOTE!!!! When adding new stats make sure and update the initialize method on this class
   
   // creates and registers the statistics type
@@ -83,22 +98,44 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     final String objects = "objects";
     final String reads = "reads";
     final String maxMemory = "maxMemory";
-    
+    final String threadLocalBufferRefills = "threadLocalBufferRefills";
+    final String threadLocalFreeFlushes = "threadLocalFreeFlushes";
+    final String backgroundDefragmentations = "backgroundDefragmentations";
+    final String backgroundDefragmentationTime = "backgroundDefragmentationTime";
+    final String coalescedChunks = "coalescedChunks";
+    final String fragmentedFreeMemory = "fragmentedFreeMemory";
+
+    final int[] sizeClasses = FreeListManager.THREAD_LOCAL_SIZE_CLASSES;
+    final String[] threadLocalAllocations = new String[sizeClasses.length];
+    final String[] threadLocalFrees = new String[sizeClasses.length];
+    final List<StatisticDescriptor> descriptors = new ArrayList<StatisticDescriptor>();
+    descriptors.add(f.createLongGauge(usedMemory, usedMemoryDesc, "bytes"));
+    descriptors.add(f.createIntCounter(defragmentations, defragmentationDesc, "defragmentations"));
+    descriptors.add(f.createLongCounter(defragmentationTime, defragmentationTimeDesc, "nanoseconds", false));
+    descriptors.add(f.createIntGauge(fragmentation, fragmentationDesc, "percentage"));
+    descriptors.add(f.createLongGauge(fragments, fragmentsDesc, "fragments"));
+    descriptors.add(f.createLongGauge(freeMemory, freeMemoryDesc, "bytes"));
+    descriptors.add(f.createIntGauge(largestFragment, largestFragmentDesc, "bytes"));
+    descriptors.add(f.createIntGauge(objects, objectsDesc, "objects"));
+    descriptors.add(f.createLongCounter(reads, readsDesc, "operations"));
+    descriptors.add(f.createLongGauge(maxMemory, maxMemoryDesc, "bytes"));
+    for (int i=0; i < sizeClasses.length; i++) {
+      threadLocalAllocations[i] = "threadLocalAllocations" + sizeClasses[i];
+      threadLocalFrees[i] = "threadLocalFrees" + sizeClasses[i];
+      descriptors.add(f.createLongCounter(threadLocalAllocations[i], "The total number of objects of at most " + sizeClasses[i] + " bytes allocated from a thread local allocation buffer.", "operations"));
+      descriptors.add(f.createLongCounter(threadLocalFrees[i], "The total number of objects of at most " + sizeClasses[i] + " bytes freed to a thread local allocation buffer.", "operations"));
+    }
+    descriptors.add(f.createLongCounter(threadLocalBufferRefills, "The total number of times a thread carved a new thread local allocation buffer out of off-heap memory.", "operations"));
+    descriptors.add(f.createLongCounter(threadLocalFreeFlushes, "The total number of times a thread returned a batch of freed objects from its thread local allocation buffer to the shared free lists.", "operations"));
+    descriptors.add(f.createIntCounter(backgroundDefragmentations, "The total number of times free off-heap memory has been defragmented in the background while allocations continued.", "defragmentations"));
+    descriptors.add(f.createLongCounter(backgroundDefragmentationTime, "The total time spent defragmenting off-heap memory in the background.", "nanoseconds", false));
+    descriptors.add(f.createLongCounter(coalescedChunks, "The total number of free off-heap chunks merged into an adjacent free chunk by background defragmentation.", "chunks"));
+    descriptors.add(f.createLongGauge(fragmentedFreeMemory, "The amount of free off-heap memory, in bytes, that is in free chunks instead of fragments. Updated every time the background defragmenter checks it.", "bytes"));
+
     statsType = f.createType(
         statsTypeName,
         statsTypeDescription,
-        new StatisticDescriptor[] {
-            f.createLongGauge(usedMemory, usedMemoryDesc, "bytes"),
-            f.createIntCounter(defragmentations, defragmentationDesc, "defragmentations"),
-            f.createLongCounter(defragmentationTime, defragmentationTimeDesc, "nanoseconds", false),
-            f.createIntGauge(fragmentation, fragmentationDesc, "percentage"),
-            f.createLongGauge(fragments, fragmentsDesc, "fragments"),
-            f.createLongGauge(freeMemory, freeMemoryDesc, "bytes"),
-            f.createIntGauge(largestFragment, largestFragmentDesc, "bytes"),
-            f.createIntGauge(objects, objectsDesc, "objects"),
-            f.createLongCounter(reads, readsDesc, "operations"),
-            f.createLongGauge(maxMemory, maxMemoryDesc, "bytes"),
-        }
+        descriptors.toArray(new StatisticDescriptor[descriptors.size()])
     );
     
     usedMemoryId = statsType.nameToId(usedMemory);
@@ -111,6 +148,18 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     objectsId = statsType.nameToId(objects);
     readsId = statsType.nameToId(reads);
     maxMemoryId = statsType.nameToId(maxMemory);
+    threadLocalAllocationsIds = new int[sizeClasses.length];
+    threadLocalFreesIds = new int[sizeClasses.length];
+    for (int i=0; i < sizeClasses.length; i++) {
+      threadLocalAllocationsIds[i] = statsType.nameToId(threadLocalAllocations[i]);
+      threadLocalFreesIds[i] = statsType.nameToId(threadLocalFrees[i]);
+    }
+    threadLocalBufferRefillsId = statsType.nameToId(threadLocalBufferRefills);
+    threadLocalFreeFlushesId = statsType.nameToId(threadLocalFreeFlushes);
+    backgroundDefragmentationsId = statsType.nameToId(backgroundDefragmentations);
+    backgroundDefragmentationTimeId = statsType.nameToId(backgroundDefragmentationTime);
+    coalescedChunksId = statsType.nameToId(coalescedChunks);
+    fragmentedFreeMemoryId = statsType.nameToId(fragmentedFreeMemory);
   }
 
   public static long parseOffHeapMemorySize(String value) {
@@ -141,6 +190,22 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     return result;
   }
   
+  /**
+   * Returns the size of the thread local allocation buffers configured with
+   * {@link #THREAD_LOCAL_BUFFER_SIZE_PROPERTY} or zero if they are disabled.
+   */
+  public static int calcThreadLocalBufferSize() {
+    final long result = parseLongWithUnits(System.getProperty(THREAD_LOCAL_BUFFER_SIZE_PROPERTY), 0L, 1);
+    if (result <= 0) {
+      return 0;
+    }
+    if (result < MIN_THREAD_LOCAL_BUFFER_SIZE || result > MAX_SLAB_SIZE) {
+      throw new IllegalArgumentException(THREAD_LOCAL_BUFFER_SIZE_PROPERTY + " must be 0 or between " + MIN_THREAD_LOCAL_BUFFER_SIZE + " and " + MAX_SLAB_SIZE + " but it was set to " + result);
+    }
+    // keep the chunks carved out of the buffer aligned
+    return (int) (result - (result % FreeListManager.TINY_MULTIPLE));
+  }
+
   /**
    * Validates that the running VM is compatible with off heap storage.  Throws a
    * {@link CacheException} if incompatible.
@@ -199,6 +264,7 @@ public class OffHeapStorage implements OffHeapMemoryStats {
   
   private static final long MAX_SLAB_SIZE = Integer.MAX_VALUE;
   static final long MIN_SLAB_SIZE = 1024;
+  static final long MIN_THREAD_LOCAL_BUFFER_SIZE = 4 * FreeListManager.MAX_THREAD_LOCAL;
 
   // non-private for unit test access
   static int calcSlabCount(long maxSlabSize, long offHeapMemorySize) {
@@ -332,6 +398,85 @@ public class OffHeapStorage implements OffHeapMemoryStats {
   public int getFragmentation() {
     return this.stats.getInt(fragmentationId);
   }
+
+  @Override
+  public void incThreadLocalAllocations(int sizeClass) {
+    this.stats.incLong(threadLocalAllocationsIds[sizeClass], 1);
+  }
+
+  @Override
+  public long getThreadLocalAllocations(int sizeClass) {
+    return this.stats.getLong(threadLocalAllocationsIds[sizeClass]);
+  }
+
+  @Override
+  public void incThreadLocalFrees(int sizeClass) {
+    this.stats.incLong(threadLocalFreesIds[sizeClass], 1);
+  }
+
+  @Override
+  public long getThreadLocalFrees(int sizeClass) {
+    return this.stats.getLong(threadLocalFreesIds[sizeClass]);
+  }
+
+  @Override
+  public void incThreadLocalBufferRefills() {
+    this.stats.incLong(threadLocalBufferRefillsId, 1);
+  }
+
+  @Override
+  public long getThreadLocalBufferRefills() {
+    return this.stats.getLong(threadLocalBufferRefillsId);
+  }
+
+  @Override
+  public void incThreadLocalFreeFlushes() {
+    this.stats.incLong(threadLocalFreeFlushesId, 1);
+  }
+
+  @Override
+  public long getThreadLocalFreeFlushes() {
+    return this.stats.getLong(threadLocalFreeFlushesId);
+  }
+
+  @Override
+  public long startBackgroundDefragmentation() {
+    return DistributionStats.getStatTime();
+  }
+
+  @Override
+  public void endBackgroundDefragmentation(long start, long coalescedChunks) {
+    this.stats.incInt(backgroundDefragmentationsId, 1);
+    this.stats.incLong(coalescedChunksId, coalescedChunks);
+    if (DistributionStats.enableClockStats) {
+      this.stats.incLong(backgroundDefragmentationTimeId, DistributionStats.getStatTime()-start);
+    }
+  }
+
+  @Override
+  public int getBackgroundDefragmentations() {
+    return this.stats.getInt(backgroundDefragmentationsId);
+  }
+
+  @Override
+  public long getBackgroundDefragmentationTime() {
+    return this.stats.getLong(backgroundDefragmentationTimeId);
+  }
+
+  @Override
+  public long getCoalescedChunks() {
+    return this.stats.getLong(coalescedChunksId);
+  }
+
+  @Override
+  public void setFragmentedFreeMemory(long value) {
+    this.stats.setLong(fragmentedFreeMemoryId, value);
+  }
+
+  @Override
+  public long getFragmentedFreeMemory() {
+    return this.stats.getLong(fragmentedFreeMemoryId);
+  }
   
   public Statistics getStats() {
     return this.stats;
@@ -354,6 +499,16 @@ public class OffHeapStorage implements OffHeapMemoryStats {
     setLargestFragment(oldStats.getLargestFragment());
     setDefragmentationTime(oldStats.getDefragmentationTime());
     setFragmentation(oldStats.getFragmentation());
+    for (int i=0; i < threadLocalAllocationsIds.length; i++) {
+      this.stats.setLong(threadLocalAllocationsIds[i], oldStats.getThreadLocalAllocations(i));
+      this.stats.setLong(threadLocalFreesIds[i], oldStats.getThreadLocalFrees(i));
+    }
+    this.stats.setLong(threadLocalBufferRefillsId, oldStats.getThreadLocalBufferRefills());
+    this.stats.setLong(threadLocalFreeFlushesId, oldStats.getThreadLocalFreeFlushes());
+    this.stats.setInt(backgroundDefragmentationsId, oldStats.getBackgroundDefragmentations());
+    this.stats.setLong(backgroundDefragmentationTimeId, oldStats.getBackgroundDefragmentationTime());
+    this.stats.setLong(coalescedChunksId, oldStats.getCoalescedChunks());
+    setFragmentedFreeMemory(oldStats.getFragmentedFreeMemory());
     
     oldStats.close();
   }
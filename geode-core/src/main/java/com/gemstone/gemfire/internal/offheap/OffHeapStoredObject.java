@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.internal.ByteBufferWriter;
 import com.gemstone.gemfire.internal.DSCODE;
 import com.gemstone.gemfire.internal.HeapDataOutputStream;
 import com.gemstone.gemfire.internal.InternalDataSerializer;
@@ -283,18 +284,23 @@ import com.gemstone.gemfire.internal.offheap.annotations.Unretained;
     public ByteBuffer createDirectByteBuffer() {
       return AddressableMemoryManager.createDirectByteBuffer(getBaseDataAddress(), getDataSize());
     }
+    /**
+     * Writers that accept a ByteBuffer, like HeapDataOutputStream and the
+     * MsgStreamer that serializes messages to peers, are given a direct
+     * ByteBuffer on this object's memory instead of a heap copy of its bytes.
+     */
     @Override
     public void sendTo(DataOutput out) throws IOException {
-      if (!this.isCompressed() && out instanceof HeapDataOutputStream) {
+      if (!this.isCompressed() && out instanceof ByteBufferWriter) {
         ByteBuffer bb = createDirectByteBuffer();
         if (bb != null) {
-          HeapDataOutputStream hdos = (HeapDataOutputStream) out;
+          ByteBufferWriter bbw = (ByteBufferWriter) out;
           if (this.isSerialized()) {
-            hdos.write(bb);
+            bbw.write(bb);
           } else {
-            hdos.writeByte(DSCODE.BYTE_ARRAY);
-            InternalDataSerializer.writeArrayLength(bb.remaining(), hdos);
-            hdos.write(bb);
+            out.writeByte(DSCODE.BYTE_ARRAY);
+            InternalDataSerializer.writeArrayLength(bb.remaining(), out);
+            bbw.write(bb);
           }
           return;
         }
@@ -304,12 +310,11 @@ import com.gemstone.gemfire.internal.offheap.annotations.Unretained;
     
     @Override
     public void sendAsByteArray(DataOutput out) throws IOException {
-      if (!isCompressed() && out instanceof HeapDataOutputStream) {
+      if (!isCompressed() && out instanceof ByteBufferWriter) {
         ByteBuffer bb = createDirectByteBuffer();
         if (bb != null) {
-          HeapDataOutputStream hdos = (HeapDataOutputStream) out;
-          InternalDataSerializer.writeArrayLength(bb.remaining(), hdos);
-          hdos.write(bb);
+          InternalDataSerializer.writeArrayLength(bb.remaining(), out);
+          ((ByteBufferWriter) out).write(bb);
           return;
         }
       }
@@ -48,6 +48,20 @@ public class OffHeapStoredObjectAddressStack implements LongStack {
       this.topAddr = e;
     }
   }
+  /**
+   * Pushes the chain of addresses linked from firstAddr to lastAddr
+   * on to this stack with a single synchronization.
+   * The caller must own all the addresses in the chain.
+   */
+  public void offerAll(long firstAddr, long lastAddr) {
+    assert firstAddr != 0 && lastAddr != 0;
+    MemoryAllocatorImpl.validateAddress(firstAddr);
+    MemoryAllocatorImpl.validateAddress(lastAddr);
+    synchronized (this) {
+      OffHeapStoredObject.setNext(lastAddr, this.topAddr);
+      this.topAddr = firstAddr;
+    }
+  }
   @Override
   public long poll() {
     long result;
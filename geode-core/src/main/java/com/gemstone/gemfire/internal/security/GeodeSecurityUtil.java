@@ -212,24 +212,42 @@ public class GeodeSecurityUtil {
     authorize("DATA", "MANAGE", regionName);
   }
 
-  public static void authorizeRegionManage(String regionName, String key) {
-    authorize("DATA", "MANAGE", regionName, key);
+  /**
+   * The key is only converted to a String if security is enabled.
+   */
+  public static void authorizeRegionManage(String regionName, Object key) {
+    if (!isSecured()) {
+      return;
+    }
+    authorize("DATA", "MANAGE", regionName, key == null ? null : key.toString());
   }
 
   public static void authorizeRegionWrite(String regionName) {
     authorize("DATA", "WRITE", regionName);
   }
 
-  public static void authorizeRegionWrite(String regionName, String key) {
-    authorize("DATA", "WRITE", regionName, key);
+  /**
+   * The key is only converted to a String if security is enabled.
+   */
+  public static void authorizeRegionWrite(String regionName, Object key) {
+    if (!isSecured()) {
+      return;
+    }
+    authorize("DATA", "WRITE", regionName, key == null ? null : key.toString());
   }
 
   public static void authorizeRegionRead(String regionName) {
     authorize("DATA", "READ", regionName);
   }
 
-  public static void authorizeRegionRead(String regionName, String key) {
-    authorize("DATA", "READ", regionName, key);
+  /**
+   * The key is only converted to a String if security is enabled.
+   */
+  public static void authorizeRegionRead(String regionName, Object key) {
+    if (!isSecured()) {
+      return;
+    }
+    authorize("DATA", "READ", regionName, key == null ? null : key.toString());
   }
 
   public static void authorize(String resource, String operation) {
@@ -270,6 +288,10 @@ public class GeodeSecurityUtil {
   }
 
   private static boolean isSecured() {
+    Boolean enabled = securityEnabled;
+    if (enabled != null) {
+      return enabled;
+    }
     try {
       SecurityUtils.getSecurityManager();
     }
@@ -279,6 +301,14 @@ public class GeodeSecurityUtil {
     return true;
   }
 
+  /**
+   * Remembers whether initSecurity installed a security manager so that
+   * isSecured does not have to ask Shiro on every client operation.
+   * Shiro throws an exception when no security manager is installed.
+   * Null if initSecurity has not been called.
+   */
+  private static volatile Boolean securityEnabled;
+
   private static PostProcessor postProcessor;
   private static SecurityManager securityManager;
 
@@ -306,6 +336,7 @@ public class GeodeSecurityUtil {
 
       org.apache.shiro.mgt.SecurityManager securityManager = factory.getInstance();
       SecurityUtils.setSecurityManager(securityManager);
+      securityEnabled = Boolean.TRUE;
     }
 
     // only set up shiro realm if user has implemented SecurityManager
@@ -315,9 +346,11 @@ public class GeodeSecurityUtil {
       Realm realm = new CustomAuthRealm(securityManager);
       org.apache.shiro.mgt.SecurityManager shiroManager = new DefaultSecurityManager(realm);
       SecurityUtils.setSecurityManager(shiroManager);
+      securityEnabled = Boolean.TRUE;
     }
     else {
       SecurityUtils.setSecurityManager(null);
+      securityEnabled = Boolean.FALSE;
     }
 
     // this initializes the post processor
@@ -332,6 +365,7 @@ public class GeodeSecurityUtil {
   }
 
   public static void close() {
+    securityEnabled = null;
     if (securityManager != null) {
       securityManager.close();
       securityManager = null;
@@ -1176,7 +1176,7 @@ public class Connection implements Runnable {
         LocalizedStrings.Connection_CONNECTION_FAILED_CONSTRUCTION_FOR_PEER_0
           .toLocalizedString(remoteAddr));
     }
-    if (preserveOrder && BATCH_SENDS) {
+    if (preserveOrder && sharedResource && BATCH_SENDS) {
       conn.createBatchSendBuffer();
     }
     conn.finishedConnecting = true;
@@ -1307,20 +1307,28 @@ public class Connection implements Runnable {
   }
 
   /**
-   * Batch sends currently should not be turned on because:
-   *  1. They will be used for all sends (instead of just no-ack)
-   *     and thus will break messages that wait for a response (or kill perf).
-   *  2. The buffer is not properly flushed and closed on shutdown.
-   *     The code attempts to do this but must not be doing it  correctly.
+   * If true the messages sent on a shared ordered connection are copied
+   * into a batch buffer that a flusher thread writes to the socket, so that
+   * the messages of concurrent senders are written with one socket write.
+   * The messages keep their own headers so the receiver reads them in the
+   * order they were batched.
+   * The batch is written as soon as a message that waits for a reply is
+   * added to it, once more than half of its buffer is used, or at the latest
+   * p2p.batchFlushTime milliseconds after the last write.
+   * BATCH_SENDS and BATCH_FLUSH_MS are not final so that tests can change
+   * them.
    */
-  private static final boolean BATCH_SENDS = Boolean.getBoolean("p2p.batchSends");
+  public static volatile boolean BATCH_SENDS = Boolean.getBoolean("p2p.batchSends");
   protected static final int BATCH_BUFFER_SIZE = Integer.getInteger("p2p.batchBufferSize", 1024*1024).intValue();
-  protected static final int BATCH_FLUSH_MS = Integer.getInteger("p2p.batchFlushTime", 50).intValue();
+  public static volatile int BATCH_FLUSH_MS = Integer.getInteger("p2p.batchFlushTime", 50).intValue();
   protected Object batchLock;
   protected ByteBuffer fillBatchBuffer;
   protected ByteBuffer sendBatchBuffer;
   private BatchBufferFlusher batchFlusher;
 
+  /** how long closing a connection waits for its batch to be written */
+  private static final int BATCH_CLOSE_WAIT_MS = 500;
+
   private void createBatchSendBuffer() {
     // batch send buffer isn't needed if old-io is being used
     if (!this.useNIO) {
@@ -1335,6 +1343,7 @@ public class Connection implements Runnable {
       this.sendBatchBuffer = ByteBuffer.allocate(BATCH_BUFFER_SIZE);
     }
     this.batchFlusher = new BatchBufferFlusher();
+    this.batchFlusher.setName("P2P Batch Flusher for " + this.remoteAddr);
     this.batchFlusher.start();
   }
 
@@ -1369,9 +1378,13 @@ public class Connection implements Runnable {
           // Wait for the flusher thread
           while (bb == fillBatchBuffer) {
             Connection.this.owner.getConduit().getCancelCriterion().checkCancelInProgress(null);
+            if (this.timeToStop && !isAlive()) {
+              // the connection was closed, batchSend will notice
+              return;
+            }
             boolean interrupted = Thread.interrupted();
             try {
-              batchLock.wait();  // spurious wakeup ok
+              batchLock.wait(BATCH_FLUSH_MS);  // spurious wakeup ok
             } 
             catch (InterruptedException ex) {
               interrupted = true;
@@ -1388,64 +1401,93 @@ public class Connection implements Runnable {
       }
     }
 
+    /**
+     * Called when a message writer wants the current fillBatchBuffer
+     * written without waiting for it
+     */
+    public void requestFlush() {
+      synchronized (this) {
+        this.flushNeeded = true;
+        this.notify();
+      }
+    }
+
+    /**
+     * Stops the flusher once it has written what is in the batch buffers.
+     * Waits a bit for that unless called by the flusher itself.
+     */
     public void close() {
       synchronized (this) {
         this.timeToStop = true;
         this.flushNeeded = true;
         this.notify();
       }
+      if (Thread.currentThread() != this) {
+        try {
+          join(BATCH_CLOSE_WAIT_MS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
     }
 
     @Override
     public void run() {
       try {
-        synchronized (this) {
-          while (!timeToStop) {
+        while (!this.timeToStop) {
+          // only hold the lock while waiting so that requestFlush does not
+          // wait for a socket write
+          synchronized (this) {
             if (!this.flushNeeded && fillBatchBuffer.position() <= (BATCH_BUFFER_SIZE/2)) {
               wait(BATCH_FLUSH_MS); // spurious wakeup ok
             }
-            if (this.flushNeeded || fillBatchBuffer.position() > (BATCH_BUFFER_SIZE/2)) {
-              final long start = DistributionStats.getStatTime();
-              synchronized (batchLock) {
-                // This is the only block of code that will swap
-                // the buffer references
-                this.flushNeeded = false;
-                ByteBuffer tmp = fillBatchBuffer;
-                fillBatchBuffer = sendBatchBuffer;
-                sendBatchBuffer = tmp;
-                batchLock.notifyAll();
-              }
-              // We now own the sendBatchBuffer
-              if (sendBatchBuffer.position() > 0) {
-                final boolean origSocketInUse = socketInUse;
-                socketInUse = true;
-                try {
-                  sendBatchBuffer.flip();
-                  SocketChannel channel = getSocket().getChannel();
-                  nioWriteFully(channel, sendBatchBuffer, false, null);
-                  sendBatchBuffer.clear();
-                } catch (IOException ex) {
-                  logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0,ex));
-                  readerShuttingDown = true;
-                  requestClose(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0.toLocalizedString(ex));
-                } catch (ConnectionException ex) {
-                  logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0,ex));
-                  readerShuttingDown = true;
-                  requestClose(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0.toLocalizedString(ex));
-                } finally {
-                  accessed();
-                  socketInUse = origSocketInUse;
-                }
-              }
-              this.stats.incBatchFlushTime(start);
-            }
+            this.flushNeeded = false;
           }
+          flushBatch();
         }
+        // write what was batched before the connection was closed
+        flushBatch();
       } catch (InterruptedException ex) {
         // time for this thread to shutdown
 //        Thread.currentThread().interrupt();
       }
     }
+
+    private void flushBatch() {
+      final long start = DistributionStats.getStatTime();
+      synchronized (batchLock) {
+        if (fillBatchBuffer.position() == 0) {
+          return;
+        }
+        // This is the only block of code that will swap
+        // the buffer references
+        ByteBuffer tmp = fillBatchBuffer;
+        fillBatchBuffer = sendBatchBuffer;
+        sendBatchBuffer = tmp;
+        batchLock.notifyAll();
+      }
+      // We now own the sendBatchBuffer
+      final boolean origSocketInUse = socketInUse;
+      socketInUse = true;
+      try {
+        sendBatchBuffer.flip();
+        SocketChannel channel = getSocket().getChannel();
+        nioWriteFully(channel, sendBatchBuffer, false, null);
+      } catch (IOException ex) {
+        logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0,ex));
+        readerShuttingDown = true;
+        requestClose(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0.toLocalizedString(ex));
+      } catch (ConnectionException ex) {
+        logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0,ex));
+        readerShuttingDown = true;
+        requestClose(LocalizedStrings.Connection_EXCEPTION_FLUSHING_BATCH_SEND_BUFFER_0.toLocalizedString(ex));
+      } finally {
+        sendBatchBuffer.clear();
+        accessed();
+        socketInUse = origSocketInUse;
+      }
+      this.stats.incBatchFlushTime(start);
+    }
   }
 
   private void closeBatchBuffer() {
@@ -1459,7 +1501,12 @@ public class Connection implements Runnable {
    */
   private static final boolean SOCKET_WRITE_DISABLED = Boolean.getBoolean("p2p.disableSocketWrite");
 
-  private void batchSend(ByteBuffer src) throws IOException {
+  /**
+   * Adds a message to the batch of this connection.
+   * @param flushNow true if the batch should be written without waiting
+   *        for more messages, for example because a reply is expected
+   */
+  private void batchSend(ByteBuffer src, boolean flushNow) throws IOException {
     if (SOCKET_WRITE_DISABLED) {
       return;
     }
@@ -1468,19 +1515,26 @@ public class Connection implements Runnable {
       ByteBuffer dst = null;
       Assert.assertTrue(src.remaining() <= BATCH_BUFFER_SIZE , "Message size(" + src.remaining() + ") exceeded BATCH_BUFFER_SIZE(" + BATCH_BUFFER_SIZE + ")");
       do {
+        if (!this.connected) {
+          throw new ConnectionException(LocalizedStrings.Connection_NOT_CONNECTED_TO_0.toLocalizedString(this.remoteAddr));
+        }
         synchronized (this.batchLock) {
           dst = this.fillBatchBuffer;
           if (src.remaining() <= dst.remaining()) {
             final long copyStart = DistributionStats.getStatTime();
             dst.put(src);
             this.owner.getConduit().stats.incBatchCopyTime(copyStart);
-            return;
+            flushNow |= dst.position() > (BATCH_BUFFER_SIZE/2);
+            break;
           }
         }
         // If we got this far then we do not have room in the current
         // buffer and need the flusher thread to flush before we can fill it
         this.batchFlusher.flushBuffer(dst);
       } while (true);
+      if (flushNow) {
+        this.batchFlusher.requestFlush();
+      }
     } finally {
       this.owner.getConduit().stats.incBatchSendTime(start);
     }
@@ -1534,6 +1588,11 @@ public class Connection implements Runnable {
       return;
     }
     if (!onlyCleanup) {
+    if (this.connected) {
+      // write the batched messages before the socket is closed. This waits
+      // for the flusher, so it is not done while holding the sync on this.
+      closeBatchBuffer();
+    }
     synchronized (this) {
       this.stopped = true;
       if (this.connected) {
@@ -2514,7 +2573,11 @@ public class Connection implements Runnable {
       throw new ConnectionException(LocalizedStrings.Connection_NOT_CONNECTED_TO_0.toLocalizedString(this.remoteAddr));
     }
     if (this.batchFlusher != null) {
-      batchSend(buffer);
+      // chunks of large messages (msg == null) are not worth waiting for
+      batchSend(buffer, msg == null || msg.getProcessorId() != 0);
+      if (cacheContentChanges) {
+        messagesSent++;
+      }
       return;
     }
     final boolean origSocketInUse = this.socketInUse;
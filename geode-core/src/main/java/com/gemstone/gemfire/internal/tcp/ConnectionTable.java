@@ -22,6 +22,7 @@ import java.lang.ref.WeakReference;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -90,6 +91,30 @@ public class ConnectionTable  {
    * and receiving acks, will be put in this map.
    */
   protected final Map orderedConnectionMap = new ConcurrentHashMap();
+
+  /**
+   * The number of shared ordered connections to each member. Threads that
+   * share sockets are spread over them by thread id, so each thread always
+   * sends its ordered messages on the same connection and they stay in order,
+   * while a large message only delays the threads that use its connection.
+   */
+  static final int ORDERED_CONNECTIONS_PER_MEMBER = Math.max(1,
+      Integer.getInteger("p2p.orderedConnectionsPerMember", 1).intValue());
+
+  /**
+   * The number of shared ordered connections this table keeps to each
+   * member, ORDERED_CONNECTIONS_PER_MEMBER unless created for a test.
+   */
+  private final int orderedConnectionsPerMember;
+
+  /**
+   * The shared ordered connections to each member beyond the one in
+   * orderedConnectionMap, when orderedConnectionsPerMember is more than 1.
+   * The value is an array of Connection or PendingConnection indexed by
+   * lane - 1, see {@link #getOrderedLane()}. Accesses to the array must be
+   * synchronized on it.
+   */
+  private final ConcurrentMap orderedLaneMap = new ConcurrentHashMap();
   
   /**
    * ordered connections local to this thread.  Note that accesses to
@@ -219,8 +244,9 @@ public class ConnectionTable  {
 //   private static boolean TRACK_SERVER_CONNECTIONS =
 //       System.getProperty("p2p.bidirectional", "true").equals("true");
 
-  private ConnectionTable(TCPConduit c) throws IOException {
+  private ConnectionTable(TCPConduit c, int orderedConnectionsPerMember) throws IOException {
     this.owner = c;
+    this.orderedConnectionsPerMember = orderedConnectionsPerMember;
     this.idleConnTimer = (this.owner.idleConnectionTimeout != 0) 
         ? new SystemTimer(c.getDM().getSystem(), true)
         : null;
@@ -669,7 +695,9 @@ public class ConnectionTable  {
     }
     Connection result = null;
     boolean threadOwnsResources = threadOwnsResources();
-    if (!preserveOrder || !threadOwnsResources) {
+    if (preserveOrder && !threadOwnsResources && getOrderedLane() > 0) {
+      result = getOrderedLaneConnection(id, getOrderedLane(), startTime, ackTimeout, ackSATimeout);
+    } else if (!preserveOrder || !threadOwnsResources) {
       result = getUnorderedOrConserveSockets(id, threadOwnsResources, preserveOrder, startTime, ackTimeout, ackSATimeout);
     } else {
       result = getOrderedAndOwned(id, startTime, ackTimeout, ackSATimeout);
@@ -680,6 +708,147 @@ public class ConnectionTable  {
     return result;
   }
   
+  /**
+   * Returns the shared ordered connection that the current thread uses,
+   * 0 being the one in orderedConnectionMap.
+   */
+  private int getOrderedLane() {
+    return getOrderedLane(Thread.currentThread().getId());
+  }
+
+  /**
+   * Returns the shared ordered connection that the thread with the given
+   * id uses.
+   */
+  int getOrderedLane(long threadId) {
+    if (this.orderedConnectionsPerMember == 1) {
+      return 0;
+    }
+    return (int)(threadId % this.orderedConnectionsPerMember);
+  }
+
+  /**
+   * Returns one of the additional shared ordered connections to a member,
+   * creating it if needed.
+   * 
+   * @param id the DistributedMember on which we are creating a connection
+   * @param lane the connection to return, from 1 to orderedConnectionsPerMember - 1
+   * @param startTime the ms clock start time for the operation
+   * @param ackTimeout the ms ack-wait-threshold, or zero
+   * @param ackSATimeout the ms ack-severe-alert-threshold, or zero
+   * @return the Connection, or null if the member was removed while connecting
+   * @throws IOException if unable to create the connection
+   * @throws DistributedSystemDisconnectedException
+   */
+  private Connection getOrderedLaneConnection(DistributedMember id, int lane,
+      long startTime, long ackTimeout, long ackSATimeout)
+      throws IOException, DistributedSystemDisconnectedException
+  {
+    Object[] lanes = (Object[])this.orderedLaneMap.get(id);
+    if (lanes == null) {
+      lanes = new Object[this.orderedConnectionsPerMember - 1];
+      Object[] existing = (Object[])this.orderedLaneMap.putIfAbsent(id, lanes);
+      if (existing != null) {
+        lanes = existing;
+      }
+    }
+
+    // the lanes are only locked to look up and update their entries, never
+    // while connecting, so that removing the member does not wait for it
+    PendingConnection pc = null;
+    Object entry = null;
+    synchronized (lanes) {
+      entry = lanes[lane - 1];
+      if (entry instanceof Connection) {
+        Connection existingCon = (Connection)entry;
+        if (!existingCon.connected || existingCon.isClosing()) {
+          entry = null;
+        }
+      }
+      if (entry == null) {
+        pc = new PendingConnection(true, id, lane);
+        lanes[lane - 1] = pc;
+      }
+    }
+    if (pc == null) {
+      if (entry instanceof PendingConnection) {
+        return ((PendingConnection)entry).waitForConnect(
+            this.owner.getMembershipManager(), startTime,
+            ackTimeout, ackSATimeout);
+      }
+      return (Connection)entry;
+    }
+
+    Connection result = null;
+    try {
+      result = Connection.createSender(owner.getMembershipManager(), this, true,
+                                       id, true,
+                                       startTime, ackTimeout, ackSATimeout);
+      this.owner.stats.incSenders(true, true);
+    }
+    finally {
+      if (result == null) {
+        this.owner.stats.incFailedConnect();
+        synchronized (lanes) {
+          if (lanes[lane - 1] == pc) {
+            lanes[lane - 1] = null;
+          }
+        }
+        pc.notifyWaiters(null);
+      }
+    }
+    boolean cancelled;
+    synchronized (lanes) {
+      // the member was removed or the lane closed while we were connecting
+      cancelled = lanes[lane - 1] != pc || this.orderedLaneMap.get(id) != lanes;
+      if (!cancelled) {
+        lanes[lane - 1] = result;
+      }
+    }
+    if (cancelled) {
+      result.requestClose(LocalizedStrings.ConnectionTable_PENDING_CONNECTION_CANCELLED.toLocalizedString());
+      result = null;
+    }
+    pc.notifyWaiters(result);
+    return result;
+  }
+
+  /** closes the additional shared ordered connections to a member */
+  private void closeOrderedLanes(String reason, Object lanes) {
+    if (lanes == null) {
+      return;
+    }
+    Object[] cons;
+    synchronized (lanes) {
+      cons = ((Object[])lanes).clone();
+      Arrays.fill((Object[])lanes, null);
+    }
+    for (int i = 0; i < cons.length; i++) {
+      closeCon(reason, cons[i]);
+    }
+  }
+
+  /**
+   * Adds a shared ordered connection to a member, as if the threads of the
+   * given lane had created it.
+   */
+  void addOrderedConnectionForTest(DistributedMember id, int lane, Connection c) {
+    if (lane == 0) {
+      synchronized (this.orderedConnectionMap) {
+        this.orderedConnectionMap.put(id, c);
+      }
+      return;
+    }
+    Object[] lanes = new Object[this.orderedConnectionsPerMember - 1];
+    Object[] existing = (Object[])this.orderedLaneMap.putIfAbsent(id, lanes);
+    if (existing != null) {
+      lanes = existing;
+    }
+    synchronized (lanes) {
+      lanes[lane - 1] = c;
+    }
+  }
+
   protected synchronized void fileDescriptorsExhausted() {
     if (!ulimitWarningIssued) {
       ulimitWarningIssued = true;
@@ -745,6 +914,10 @@ public class ConnectionTable  {
       }
       this.orderedConnectionMap.clear();
     }
+    for (Iterator it=this.orderedLaneMap.values().iterator(); it.hasNext(); ) {
+      closeOrderedLanes(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_BEING_DESTROYED.toLocalizedString(), it.next());
+    }
+    this.orderedLaneMap.clear();
     synchronized (this.unorderedConnectionMap) {
       for (Iterator it=this.unorderedConnectionMap.values().iterator(); it.hasNext(); ) {
         closeCon(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_BEING_DESTROYED.toLocalizedString(), it.next());
@@ -865,6 +1038,9 @@ public class ConnectionTable  {
           needsRemoval = true;
       }
     }
+    if (!needsRemoval) {
+      needsRemoval = this.orderedLaneMap.get(memberID) != null;
+    }
     if (!needsRemoval) {
       ConcurrentMap cm = this.threadConnectionMap;
       if (cm != null) {
@@ -882,6 +1058,7 @@ public class ConnectionTable  {
         }
         closeCon(reason, c);
       }
+      closeOrderedLanes(reason, this.orderedLaneMap.remove(memberID));
       synchronized (this.unorderedConnectionMap) {
         Object c = this.unorderedConnectionMap.remove(memberID);
         if (remoteAddress == null && (c instanceof Connection)) {
@@ -1015,6 +1192,22 @@ public class ConnectionTable  {
       synchronized (this.orderedConnectionMap) {
         if (this.orderedConnectionMap.get(stub) == c) {
           closeCon(reason, this.orderedConnectionMap.remove(stub));
+          return;
+        }
+      }
+      Object[] lanes = (Object[])this.orderedLaneMap.get(stub);
+      if (lanes != null) {
+        boolean removed = false;
+        synchronized (lanes) {
+          for (int i = 0; i < lanes.length; i++) {
+            if (lanes[i] == c) {
+              lanes[i] = null;
+              removed = true;
+            }
+          }
+        }
+        if (removed) {
+          closeCon(reason, c);
         }
       }
     } else {
@@ -1081,7 +1274,8 @@ public class ConnectionTable  {
 
   /**
    * records the current outgoing message count on all thread-owned
-   * ordered connections.  This does not synchronize or stop new connections
+   * ordered connections, and on the shared ordered connections when there
+   * are several per member.  This does not synchronize or stop new connections
    * from being formed or new messages from being sent
    * @since GemFire 5.1
    */
@@ -1105,6 +1299,27 @@ public class ConnectionTable  {
         }
       }
     }
+    if (this.orderedConnectionsPerMember > 1) {
+      // messages sent by different threads on different shared ordered
+      // connections can be received out of order, so they are tracked like
+      // the thread-owned ones
+      Object c = this.orderedConnectionMap.get(member);
+      if (c instanceof Connection) {
+        Connection conn = (Connection)c;
+        result.put(Long.valueOf(conn.getUniqueId()), Long.valueOf(conn.getMessagesSent()));
+      }
+      Object[] lanes = (Object[])this.orderedLaneMap.get(member);
+      if (lanes != null) {
+        synchronized (lanes) {
+          for (int i = 0; i < lanes.length; i++) {
+            if (lanes[i] instanceof Connection) {
+              Connection conn = (Connection)lanes[i];
+              result.put(Long.valueOf(conn.getUniqueId()), Long.valueOf(conn.getMessagesSent()));
+            }
+          }
+        }
+      }
+    }
   }
   
   /**
@@ -1237,14 +1452,43 @@ public class ConnectionTable  {
      * the stub we are connecting to
      */
     private final DistributedMember id;
+
+    /**
+     * the lane of the shared ordered connection, or 0 if the connection goes
+     * in orderedConnectionMap or unorderedConnectionMap
+     */
+    private final int lane;
     
     private final Thread connectingThread;
     
     public PendingConnection(boolean preserveOrder, DistributedMember id) {
+      this(preserveOrder, id, 0);
+    }
+
+    public PendingConnection(boolean preserveOrder, DistributedMember id, int lane) {
       this.preserveOrder = preserveOrder;
       this.id = id;
+      this.lane = lane;
       this.connectingThread = Thread.currentThread();
     }
+
+    /**
+     * Returns what is currently registered where this connection goes.
+     */
+    private Object getRegisteredEntry() {
+      if (this.lane == 0) {
+        final Map m = this.preserveOrder ? orderedConnectionMap
+            : unorderedConnectionMap;
+        return m.get(this.id);
+      }
+      Object[] lanes = (Object[])orderedLaneMap.get(this.id);
+      if (lanes == null) {
+        return null;
+      }
+      synchronized (lanes) {
+        return lanes[this.lane - 1];
+      }
+    }
     
     /**
      * Synchronously set the connection and notify waiters that we are ready.
@@ -1280,9 +1524,6 @@ public class ConnectionTable  {
         throw new ReenteredConnectException("This thread is already trying to connect");
       }
       
-      final Map m = this.preserveOrder ? orderedConnectionMap
-          : unorderedConnectionMap;
-
       boolean severeAlertIssued = false;
       boolean suspected = false;
       DistributedMember targetMember = null;
@@ -1330,10 +1571,7 @@ public class ConnectionTable  {
           }
         }
         
-        Object e;
-        //synchronized (m) {
-          e = m.get(this.id);
-        //}
+        Object e = getRegisteredEntry();
         if (e == this) {
           if (logger.isDebugEnabled()) {
             logger.debug("Waiting for pending connection to complete: {} connection to {}; {}",
@@ -1393,7 +1631,12 @@ public class ConnectionTable  {
   }
 
   public static ConnectionTable create(TCPConduit conduit) throws IOException {
-    ConnectionTable ct = new ConnectionTable(conduit);
+    return create(conduit, ORDERED_CONNECTIONS_PER_MEMBER);
+  }
+
+  static ConnectionTable create(TCPConduit conduit, int orderedConnectionsPerMember)
+      throws IOException {
+    ConnectionTable ct = new ConnectionTable(conduit, orderedConnectionsPerMember);
     lastInstance.set(ct);  
     return ct;
   }
@@ -589,6 +589,11 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
     return super.readField(fieldName);
   }
 
+  @Override
+  public synchronized Object readField(PdxField ft) {
+    return super.readField(ft);
+  }
+
   @Override
   protected synchronized Object basicGetObject() {
     DMStats stats = InternalDataSerializer.getDMStats(null);
@@ -627,6 +632,20 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
   public Object getRawField(String fieldName){
     return getUnmodifiableReader(fieldName).readRawField(fieldName);
   }
+
+  /**
+   * Same as {@link #getRawField(String)} for a field that the caller has
+   * already looked up in {@link #getPdxType()}. This saves looking up the
+   * field by name for each instance of the same PdxType.
+   */
+  public Object getRawField(PdxField ft){
+    PdxReaderImpl ur = getUnmodifiableReader(ft.getFieldName());
+    if (ur != this) {
+      // a modified field of a WritablePdxInstance
+      return ur.readRawField(ft.getFieldName());
+    }
+    return readRawField(ft);
+  }
   
   
  public Object getDefaultValueIfFieldExistsInAnyPdxVersions(String fieldName,
@@ -626,6 +626,14 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
     if (ft == null) {
       return null;
     }
+    return readField(ft);
+  }
+
+  /**
+   * Reads the value of a field of this reader's PdxType.
+   * @param ft a field obtained from {@link #getPdxType()}
+   */
+  public Object readField(PdxField ft) {
     switch (ft.getFieldType()) {
     case CHAR:
       return readChar(ft);
@@ -869,11 +877,20 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
     if (ft == null) {
       return null;
     }
+    return readRawField(ft);
+  }
+
+  /**
+   * 
+   * @param ft a field obtained from {@link #getPdxType()}
+   * @return PdxString if field is a String otherwise invokes {@link #readField(PdxField)}
+   */
+  public Object readRawField(PdxField ft){
     if (ft.getFieldType() == FieldType.STRING) {
       return readPdxString(ft);
     }
     else{
-      return readField(field);
+      return readField(ft);
     }
   }
   
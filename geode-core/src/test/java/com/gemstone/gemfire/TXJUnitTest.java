@@ -6290,8 +6290,8 @@ public class TXJUnitTest {
     assertEquals(3, index0.getStatistics().getNumberOfKeys());
     assertEquals(3, index0.getStatistics().getNumberOfValues());
     aIregion.put("qkey2", val2);
-    final IndexManager.IndexUpdaterThread upThread = ((AbstractRegion) aIregion).getIndexManager().getUpdaterThread();
-    while(!upThread.isDone()) {
+    final IndexManager indexManager = ((AbstractRegion) aIregion).getIndexManager();
+    while(!indexManager.isAsyncMaintenanceDone()) {
       pause(20);
     }
     // @todo asif: for some reason the value returned by getNumberOfKeys is unstable.
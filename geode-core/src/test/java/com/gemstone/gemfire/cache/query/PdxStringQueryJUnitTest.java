@@ -265,6 +265,32 @@ public class PdxStringQueryJUnitTest {
     r.clear();
   }
 
+  @Test
+  public void testQueriesPdxInstancesOfSeveralTypes() throws Exception {
+    // the fields are in a different order in each type and only one has secId
+    for (int i = 0; i < 10; i++) {
+      PdxInstanceFactory pf = PdxInstanceFactoryImpl.newCreator("Portfolio", false);
+      if (i % 2 == 0) {
+        pf.writeInt("ID", i);
+        pf.writeString("status", i % 4 == 0 ? "active" : "inactive");
+      } else {
+        pf.writeString("secId", "IBM");
+        pf.writeString("status", i % 4 == 1 ? "active" : "inactive");
+        pf.writeInt("ID", i);
+      }
+      r.put(i, pf.create());
+    }
+    Query query = qs.newQuery("select p.ID from /exampleRegion p where p.status = 'active'");
+    for (int i = 0; i < 2; i++) {
+      SelectResults res = (SelectResults) query.execute();
+      assertEquals(new HashSet(Arrays.asList(0, 1, 4, 5, 8, 9)), new HashSet(res.asList()));
+    }
+    SelectResults res = (SelectResults) qs.newQuery(
+        "select p.ID from /exampleRegion p where p.secId = 'IBM' and p.ID < 5").execute();
+    assertEquals(new HashSet(Arrays.asList(1, 3)), new HashSet(res.asList()));
+    r.clear();
+  }
+
   public void putPdxInstances() throws Exception {
     PdxInstanceFactory pf = PdxInstanceFactoryImpl.newCreator("Portfolio",
         false);
@@ -796,6 +796,35 @@ public abstract class NonDistinctOrderByTestImplementation {
   }
   
 
+  @Test
+  public void testOrderByWithLimitReturnsLeadingRowsOfFullOrder() throws Exception {
+    String orderBys[] = {
+        "ID desc",
+        "status, ID",
+        "shortID desc, ID",
+        "status",
+    };
+    Region r1 = this.createRegion("portfolio1", Portfolio.class);
+    for (int i = 1; i < 200; ++i) {
+      Portfolio pf = new Portfolio(i);
+      pf.shortID = (short) ((short) i / 5);
+      r1.put("" + i, pf);
+    }
+    QueryService qs = CacheUtils.getQueryService();
+    for (String orderBy : orderBys) {
+      String queryString = "select ID, status, shortID from /portfolio1 order by " + orderBy;
+      List all = ((SelectResults) qs.newQuery(queryString).execute()).asList();
+      for (int limit : new int[] { 0, 1, 7, 250 }) {
+        List limited = ((SelectResults) qs.newQuery(queryString + " limit " + limit).execute()).asList();
+        assertEquals(queryString + " limit " + limit, all.subList(0, Math.min(limit, all.size())), limited);
+      }
+    }
+    String queryString = "select status from /portfolio1 order by status";
+    List all = ((SelectResults) qs.newQuery(queryString).execute()).asList();
+    List limited = ((SelectResults) qs.newQuery(queryString + " limit 150").execute()).asList();
+    assertEquals(all.subList(0, 150), limited);
+  }
+
   @Test
   public void testOrderByWithNullValues() throws Exception {
     // IN ORDER BY NULL values are treated as smallest. E.g For an ascending
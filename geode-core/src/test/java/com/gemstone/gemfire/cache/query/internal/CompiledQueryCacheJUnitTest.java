@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.CacheUtils;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.Query;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.internal.cache.CachePerfStats;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class CompiledQueryCacheJUnitTest {
+
+  private static final String QUERY = "select * from /portfolios where ID > 2";
+
+  private Region region;
+  private QueryService qs;
+  private CompiledQueryCache compiledQueries;
+  private CachePerfStats stats;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    GemFireCacheImpl cache = (GemFireCacheImpl)CacheUtils.getCache();
+    this.compiledQueries = cache.getCompiledQueryCache();
+    this.stats = cache.getCachePerfStats();
+    this.region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < 10; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void newQueryReusesParsedQuery() throws Exception {
+    long misses = this.stats.getCompiledQueryCacheMisses();
+    long hits = this.stats.getCompiledQueryCacheHits();
+
+    DefaultQuery q1 = (DefaultQuery)this.qs.newQuery(QUERY);
+    DefaultQuery q2 = (DefaultQuery)this.qs.newQuery(QUERY);
+
+    assertEquals(misses + 1, this.stats.getCompiledQueryCacheMisses());
+    assertEquals(hits + 1, this.stats.getCompiledQueryCacheHits());
+    // each query compiles its own tree from the shared syntax tree
+    assertNotSame(q1.getSimpleSelect(), q2.getSimpleSelect());
+    assertEquals(7, ((SelectResults)q1.execute()).size());
+    assertEquals(7, ((SelectResults)q2.execute()).size());
+  }
+
+  @Test
+  public void sharedCountQueriesKeepSeparateCounts() throws Exception {
+    Query all = this.qs.newQuery("select count(*) from /portfolios");
+    Query some = this.qs.newQuery("select count(*) from /portfolios p where p.ID > 4");
+    Query someAgain = this.qs.newQuery("select count(*) from /portfolios p where p.ID > 4");
+
+    assertEquals(10, ((SelectResults)all.execute()).asList().get(0));
+    assertEquals(5, ((SelectResults)some.execute()).asList().get(0));
+    assertEquals(5, ((SelectResults)someAgain.execute()).asList().get(0));
+  }
+
+  @Test
+  public void sharedGroupByQueriesAreTransformedSeparately() throws Exception {
+    String queryString = "select p.status, count(*) from /portfolios p group by p.status";
+    DefaultQuery q1 = (DefaultQuery)this.qs.newQuery(queryString);
+    DefaultQuery q2 = (DefaultQuery)this.qs.newQuery(queryString);
+
+    assertEquals(2, ((SelectResults)q1.execute()).size());
+    assertEquals(2, ((SelectResults)q2.execute()).size());
+    assertEquals(2, ((SelectResults)q1.execute()).size());
+  }
+
+  @Test
+  public void negativeLiteralIsNotNegatedAgain() throws Exception {
+    String queryString = "select * from /portfolios p where p.ID > -1";
+
+    assertEquals(10, ((SelectResults)this.qs.newQuery(queryString).execute()).size());
+    assertEquals(10, ((SelectResults)this.qs.newQuery(queryString).execute()).size());
+  }
+
+  @Test
+  public void indexCreatedAfterParsingIsUsed() throws Exception {
+    this.qs.newQuery(QUERY);
+    assertEquals(1, this.compiledQueries.size());
+
+    Index index = this.qs.createIndex("idIndex", "ID", "/portfolios");
+    DefaultQuery query = (DefaultQuery)this.qs.newQuery(QUERY);
+
+    assertEquals(1, this.compiledQueries.size());
+    assertEquals(7, ((SelectResults)query.execute()).size());
+    assertEquals(1, index.getStatistics().getTotalUses());
+  }
+
+  @Test
+  public void leastRecentlyUsedQueryIsEvicted() {
+    CompiledQueryCache cache = new CompiledQueryCache(2, this.stats);
+    cache.put("select * from /portfolios", QCompiler.parseQuery("select * from /portfolios"));
+    cache.put(QUERY, QCompiler.parseQuery(QUERY));
+    assertNotNull(cache.get("select * from /portfolios"));
+
+    cache.put("select ID from /portfolios", QCompiler.parseQuery("select ID from /portfolios"));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get(QUERY));
+    assertNotNull(cache.get("select * from /portfolios"));
+    assertNotNull(cache.get("select ID from /portfolios"));
+  }
+}
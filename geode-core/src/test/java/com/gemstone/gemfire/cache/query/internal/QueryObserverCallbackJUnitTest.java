@@ -275,6 +275,9 @@ public class QueryObserverCallbackJUnitTest{
       if(j == 3)j = 0;
     }
 
+    public void afterIndexSizeEstimate(Index index, int estimatedResults) {
+    }
+
     
     public void startQuery(Query query) {
     
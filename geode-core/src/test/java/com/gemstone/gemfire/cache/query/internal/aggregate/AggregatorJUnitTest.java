@@ -187,6 +187,31 @@ public class AggregatorJUnitTest {
     assertEquals(expected, ((Number)adpqn.terminate()).floatValue(), 0);
   }
   
+  @Test
+  public void testBucketNodeCombiners() throws Exception {
+    AvgBucketNodeCombiner avgCombiner = new AvgBucketNodeCombiner();
+    avgCombiner.accumulate(new Object[]{new Integer(7), new Double(43)});
+    avgCombiner.accumulate(new Object[]{new Integer(5), new Integer(20)});
+    Object[] arr = (Object[]) avgCombiner.terminate();
+    assertEquals(12, ((Integer)arr[0]).intValue());
+    assertEquals(63, ((Number)arr[1]).intValue());
+
+    DistinctBucketNodeCombiner distinctCombiner = new DistinctBucketNodeCombiner();
+    Set<Integer> set1 = new HashSet<Integer>();
+    set1.add(1);
+    set1.add(2);
+    Set<Integer> set2 = new HashSet<Integer>();
+    set2.add(2);
+    set2.add(3);
+    distinctCombiner.accumulate(set1);
+    distinctCombiner.accumulate(set2);
+    Set<Integer> expected = new HashSet<Integer>();
+    expected.add(1);
+    expected.add(2);
+    expected.add(3);
+    assertEquals(expected, distinctCombiner.terminate());
+  }
+
   @Test
   public void testMaxMin() throws Exception {
     MaxMin max = new MaxMin(true);
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.MCAST_PORT;
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionFactory;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests index maintenance of a region whose indexes are updated
+ * asynchronously by several updater threads.
+ */
+@Category(IntegrationTest.class)
+public class AsyncIndexMaintenanceJUnitTest {
+
+  private Cache cache;
+  private Region region;
+
+  @Before
+  public void setUp() throws Exception {
+    this.cache = new CacheFactory().set(MCAST_PORT, "0").create();
+    RegionFactory rf = this.cache.createRegionFactory(RegionShortcut.REPLICATE);
+    rf.setIndexMaintenanceSynchronous(false);
+    this.region = rf.create("portfolios");
+    this.cache.getQueryService().createIndex("idIndex", "ID", "/portfolios");
+    this.cache.getQueryService().createIndex("statusIndex", "status", "/portfolios");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.close();
+  }
+
+  @Test
+  public void testQueryWaitingForIndexMaintenanceSeesAllPuts() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    assertEquals(500, executeWaitingForIndexMaintenance("select * from /portfolios where ID >= 500"));
+    assertEquals(500, executeWaitingForIndexMaintenance("select * from /portfolios where status = 'active'"));
+  }
+
+  @Test
+  public void testUpdatesOfAnEntryAreAppliedInOrder() throws Exception {
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 100; i++) {
+        this.region.put(i, new Portfolio(round * 100 + i));
+      }
+    }
+    assertEquals(100, executeWaitingForIndexMaintenance("select * from /portfolios where ID >= 900"));
+    assertEquals(0, executeWaitingForIndexMaintenance("select * from /portfolios where ID < 900"));
+  }
+
+  @Test
+  public void testIndexesAreRecreatedAfterClear() throws Exception {
+    for (int i = 0; i < 200; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    this.region.clear();
+    for (int i = 0; i < 10; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    assertEquals(10, executeWaitingForIndexMaintenance("select * from /portfolios where ID >= 0"));
+    IndexManager indexManager = ((LocalRegion)this.region).getIndexManager();
+    assertTrue(indexManager.isAsyncMaintenanceDone());
+  }
+
+  private int executeWaitingForIndexMaintenance(String queryString) throws Exception {
+    DefaultQuery query = (DefaultQuery)this.cache.getQueryService().newQuery(queryString);
+    query.setWaitForIndexMaintenance(true);
+    return ((SelectResults)query.execute()).size();
+  }
+}
@@ -43,6 +43,7 @@ import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery.TestHook;
 import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
 import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+import com.jayway.awaitility.Awaitility;
 
 @Category(IntegrationTest.class)
 public class CompactRangeIndexJUnitTest  {
@@ -502,6 +503,25 @@ public class CompactRangeIndexJUnitTest  {
     return results;
   }
   
+  @Test
+  public void testKeyDistributionIsRebuiltInTheBackground() throws Exception {
+    CompactRangeIndex idIndex = (CompactRangeIndex)utils.createIndex("idIndex", "ID", "/exampleRegion");
+    Region region = utils.getCache().getRegion("exampleRegion");
+    for (int i = 0; i < 1000; i++) {
+      region.put("key-" + i, new Portfolio(i));
+    }
+    Awaitility.await().atMost(60, TimeUnit.SECONDS).until(() -> idIndex.getKeyDistribution() != null);
+    KeyDistribution distribution = idIndex.getKeyDistribution();
+
+    for (int i = 1000; i < 1200; i++) {
+      region.put("key-" + i, new Portfolio(i));
+    }
+    // the stale distribution is used until the new one is ready
+    assertSame(distribution, idIndex.getKeyDistribution());
+    Awaitility.await().atMost(60, TimeUnit.SECONDS).until(() -> idIndex.getKeyDistribution() != distribution);
+    assertEquals(1200, idIndex.getKeyDistribution().getNumValues());
+  }
+
   @After
   public void tearDown() throws Exception{
     utils.closeCache();
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.MCAST_PORT;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionFactory;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.cache.query.internal.QueryObserverAdapter;
+import com.gemstone.gemfire.cache.query.internal.QueryObserverHolder;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests queries using an index on several fields of the region values.
+ */
+@Category(IntegrationTest.class)
+public class CompositeRangeIndexJUnitTest {
+
+  private static final String[] QUERIES = {
+    "select p.ID from /portfolios p where p.status = 'active' and p.type = 'type1'",
+    "select p.ID from /portfolios p where p.type = 'type1' and p.status = 'active' and p.ID >= 100 and p.ID < 200",
+    "select p.ID from /portfolios p where p.status = 'inactive' and p.type > 'type0'",
+    "select p.ID from /portfolios p where p.status = 'inactive' and p.type <= 'type1' and p.pkid <> '7'",
+    "select p.ID from /portfolios p where p.status = 'active' and p.type = 'type2' and p.ID > 250",
+    "select p.ID from /portfolios p where p.status = 'active' and p.type = 'type2' and p.ID < 40 limit 5",
+  };
+
+  private Cache cache;
+  private Region region;
+  private QueryService queryService;
+  private LookupObserver observer;
+
+  @Before
+  public void setUp() throws Exception {
+    this.cache = new CacheFactory().set(MCAST_PORT, "0").create();
+    this.region = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("portfolios");
+    this.queryService = this.cache.getQueryService();
+    for (int i = 0; i < 300; i++) {
+      this.region.put(i, new Portfolio(i));
+    }
+    this.observer = new LookupObserver();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    QueryObserverHolder.reset();
+    this.cache.close();
+  }
+
+  @Test
+  public void testResultsAreTheSameWithCompositeIndex() throws Exception {
+    List<Set> expected = new ArrayList<Set>();
+    for (String query : QUERIES) {
+      expected.add(execute(query));
+    }
+    Index index = this.queryService.createIndex("statusTypeID", "p.status, p.type, p.ID", "/portfolios p");
+    assertTrue(index instanceof CompositeRangeIndex);
+
+    QueryObserverHolder.setInstance(this.observer);
+    for (int i = 0; i < QUERIES.length; i++) {
+      this.observer.lookups.clear();
+      Set actual = execute(QUERIES[i]);
+      if (QUERIES[i].contains("limit")) {
+        assertEquals(5, actual.size());
+        assertTrue(expected.get(i).containsAll(actual));
+      } else {
+        assertEquals(QUERIES[i], expected.get(i), actual);
+      }
+      assertEquals(QUERIES[i], 1, this.observer.lookups.size());
+      assertTrue(this.observer.lookups.get(0) instanceof CompositeKey.Range);
+    }
+  }
+
+  @Test
+  public void testIndexIsMaintained() throws Exception {
+    this.queryService.createIndex("statusType", "p.status, p.type", "/portfolios p");
+    String query = "select p.ID from /portfolios p where p.status = 'active' and p.type = 'type0'";
+    assertEquals(50, execute(query).size());
+    for (int i = 0; i < 300; i += 6) {
+      this.region.destroy(i);
+    }
+    assertEquals(0, execute(query).size());
+    this.region.put(1, new Portfolio(6));
+    assertEquals(1, execute(query).size());
+  }
+
+  @Test
+  public void testIndexIsNotUsedWithoutConditionOnFirstField() throws Exception {
+    this.queryService.createIndex("statusType", "p.status, p.type", "/portfolios p");
+    QueryObserverHolder.setInstance(this.observer);
+    String query = "select p.ID from /portfolios p where p.type = 'type0' and p.ID > 10";
+    assertEquals(96, execute(query).size());
+    assertTrue(this.observer.lookups.isEmpty());
+  }
+
+  @Test
+  public void testBindParameters() throws Exception {
+    this.queryService.createIndex("statusTypeID", "p.status, p.type, p.ID", "/portfolios p");
+    QueryObserverHolder.setInstance(this.observer);
+    SelectResults results = (SelectResults)this.queryService.newQuery(
+        "select p.ID from /portfolios p where p.status = $1 and p.type = $2 and p.ID > $3")
+        .execute(new Object[] { "active", "type1", 200 });
+    // the IDs from 202 to 298 that are 4 more than a multiple of 6
+    assertEquals(17, results.size());
+    assertEquals(1, this.observer.lookups.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testHashIndexIsNotSupported() throws Exception {
+    this.queryService.createHashIndex("statusType", "p.status, p.type", "/portfolios p");
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testAsynchronousMaintenanceIsNotSupported() throws Exception {
+    RegionFactory rf = this.cache.createRegionFactory(RegionShortcut.REPLICATE);
+    rf.setIndexMaintenanceSynchronous(false);
+    rf.create("asyncPortfolios");
+    this.queryService.createIndex("statusType", "p.status, p.type", "/asyncPortfolios p");
+  }
+
+  private Set execute(String query) throws Exception {
+    return new HashSet(((SelectResults)this.queryService.newQuery(query).execute()).asList());
+  }
+
+  private static class LookupObserver extends QueryObserverAdapter {
+    final List lookups = new ArrayList();
+
+    @Override
+    public void beforeIndexLookup(Index index, int oper, Object key) {
+      this.lookups.add(key);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class KeyDistributionJUnitTest {
+
+  @Test
+  public void testUniformIntegerKeys() {
+    KeyDistribution.Builder builder = new KeyDistribution.Builder(1000, 0);
+    for (int i = 0; i < 1000; i++) {
+      builder.addKey(i, 1);
+    }
+    KeyDistribution distribution = builder.build();
+    assertEquals(1000, distribution.getNumKeys());
+    assertEquals(1000, distribution.getNumValues());
+    assertTrue(distribution.getNumBuckets() <= 2 * KeyDistribution.NUM_BUCKETS);
+
+    assertEquals(0, distribution.estimate(-5, TOK_LT));
+    assertEquals(1000, distribution.estimate(-5, TOK_GT));
+    assertEquals(1000, distribution.estimate(2000, TOK_LE));
+    assertEquals(0, distribution.estimate(2000, TOK_GE));
+    assertEstimate(250, distribution.estimate(250, TOK_LT));
+    assertEstimate(900, distribution.estimate(99.5d, TOK_GT));
+  }
+
+  @Test
+  public void testSkewedKeys() {
+    KeyDistribution.Builder builder = new KeyDistribution.Builder(1100, 0);
+    builder.addKey(0, 1000);
+    for (int i = 1; i <= 100; i++) {
+      builder.addKey(i, 1);
+    }
+    KeyDistribution distribution = builder.build();
+    assertEquals(101, distribution.getNumKeys());
+    assertEquals(1000, distribution.estimate(0, TOK_LE));
+    assertEquals(0, distribution.estimate(0, TOK_LT));
+    assertEquals(100, distribution.estimate(0, TOK_GT));
+    assertEquals(1100, distribution.estimate(0, TOK_GE));
+  }
+
+  @Test
+  public void testEqualKeysFromSeveralPartsAreCombined() {
+    KeyDistribution.Builder builder = new KeyDistribution.Builder(4, 0);
+    builder.addKey(1, 1);
+    builder.addKey(1L, 2);
+    builder.addKey(2, 1);
+    KeyDistribution distribution = builder.build();
+    assertEquals(2, distribution.getNumKeys());
+    assertEquals(3, distribution.estimate(1, TOK_LE));
+  }
+
+  @Test
+  public void testNullAndUndefinedKeysAreLeftOut() {
+    KeyDistribution.Builder builder = new KeyDistribution.Builder(10, 0);
+    builder.addKey(IndexManager.NULL, 5);
+    builder.addKey(QueryService.UNDEFINED, 5);
+    builder.addKey("a", 1);
+    builder.addKey("b", 1);
+    KeyDistribution distribution = builder.build();
+    assertEquals(2, distribution.getNumKeys());
+    assertEquals(2, distribution.getNumValues());
+    assertEquals(2, distribution.estimate("a", TOK_GE));
+    assertEquals(0, distribution.estimate("c", TOK_GT));
+  }
+
+  @Test
+  public void testEmpty() {
+    KeyDistribution distribution = new KeyDistribution.Builder(0, 0).build();
+    assertEquals(0, distribution.getNumBuckets());
+    assertEquals(0, distribution.estimate(1, TOK_LT));
+    assertEquals(0, distribution.estimate(1, TOK_GE));
+  }
+
+  @Test
+  public void testIsStale() {
+    KeyDistribution.Builder builder = new KeyDistribution.Builder(5000, 300);
+    for (int i = 0; i < 5000; i++) {
+      builder.addKey(i, 1);
+    }
+    KeyDistribution distribution = builder.build();
+    assertFalse(distribution.isStale(300));
+    assertFalse(distribution.isStale(800));
+    assertTrue(distribution.isStale(801));
+  }
+
+  private void assertEstimate(int expected, int actual) {
+    assertTrue("expected about " + expected + " but was " + actual,
+        Math.abs(expected - actual) <= expected / 20 + 1);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import com.gemstone.gemfire.cache.query.internal.index.IndexStore.IndexStoreEntry;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class NumericIndexStoreJUnitTest {
+
+  Region region;
+  GemFireCacheImpl cache;
+  InternalIndexStatistics mockStats;
+  NumericIndexStore store;
+  GemFireCacheImpl actualInstance;
+
+  @Before
+  public void setup() {
+    region = mock(LocalRegion.class);
+    cache = mock(GemFireCacheImpl.class);
+    actualInstance = GemFireCacheImpl.setInstanceForTests(cache);
+    mockStats = mock(AbstractIndex.InternalIndexStatistics.class);
+    store = new NumericIndexStore(region, mockStats);
+    store.setIndexOnValues(true);
+  }
+
+  @After
+  public void teardown() {
+    GemFireCacheImpl.setInstanceForTests(actualInstance);
+  }
+
+  @Test
+  public void testIteratorMergesSegmentAndWriteBufferInKeyOrder() throws Exception {
+    for (int i = 0; i < 20; i += 2) {
+      store.addMapping(i, createRegionEntry(i));
+    }
+    store.mergeWriteBuffer();
+    for (int i = 1; i < 20; i += 2) {
+      store.addMapping(i, createRegionEntry(i));
+    }
+    assertEquals(range(0, 20), keysOf(store.iterator(null)));
+    assertEquals(reverse(range(0, 20)), keysOf(store.descendingIterator(null)));
+  }
+
+  @Test
+  public void testRangeBoundsAreAppliedToSegment() throws Exception {
+    addEntries(0, 10);
+    store.mergeWriteBuffer();
+    assertEquals(range(1, 7), keysOf(store.iterator(1, true, 6, true, null)));
+    assertEquals(range(2, 6), keysOf(store.iterator(1, false, 6, false, null)));
+    assertEquals(range(0, 6), keysOf(store.iterator(null, true, 6, false, null)));
+    assertEquals(range(8, 10), keysOf(store.iterator(8, true, null)));
+    assertEquals(reverse(range(2, 6)), keysOf(store.descendingIterator(1, false, 6, false, null)));
+    assertEquals(reverse(range(9, 10)), keysOf(store.descendingIterator(8, false, null)));
+  }
+
+  @Test
+  public void testRangeBoundOfAnotherNumericType() throws Exception {
+    addEntries(0, 10);
+    store.mergeWriteBuffer();
+    assertEquals(range(3, 10), keysOf(store.iterator(2.5d, true, null)));
+    assertEquals(range(0, 5), keysOf(store.iterator(null, true, 5L, false, null)));
+    assertEquals(1, numObjectsIterated(store.get(4L)));
+  }
+
+  @Test
+  public void testGetAndSizeCountEntriesInSegmentAndWriteBuffer() throws Exception {
+    store.addMapping(1, createRegionEntry(1));
+    store.addMapping(1, createRegionEntry(2));
+    store.mergeWriteBuffer();
+    store.addMapping(1, createRegionEntry(3));
+    store.addMapping(2, createRegionEntry(4));
+    assertEquals(3, numObjectsIterated(store.get(1)));
+    assertEquals(3, store.size(1));
+    assertEquals(1, store.size(2));
+    assertEquals(0, store.size(5));
+  }
+
+  @Test
+  public void testRemoveMappingFromSegment() throws Exception {
+    RegionEntry[] entries = addEntries(0, 10);
+    store.mergeWriteBuffer();
+    store.removeMapping(3, entries[3]);
+    store.removeMapping(4, entries[4]);
+    assertEquals(Arrays.asList(0, 1, 2, 5, 6, 7, 8, 9), keysOf(store.iterator(null)));
+    assertEquals(0, store.size(3));
+
+    store.mergeWriteBuffer();
+    store.addMapping(10, createRegionEntry(10));
+    store.mergeWriteBuffer();
+    assertEquals(Arrays.asList(0, 1, 2, 5, 6, 7, 8, 9, 10), keysOf(store.iterator(null)));
+  }
+
+  @Test
+  public void testRemoveMappingProvidedTheWrongKey() throws Exception {
+    RegionEntry[] entries = addEntries(0, 3);
+    store.mergeWriteBuffer();
+    store.removeMapping(0, entries[1]);
+    assertEquals(Arrays.asList(0, 2), keysOf(store.iterator(null)));
+  }
+
+  @Test
+  public void testUpdateMappingMovesEntryOutOfSegment() throws Exception {
+    RegionEntry[] entries = addEntries(0, 5);
+    store.mergeWriteBuffer();
+    store.updateMapping(7, 2, entries[2], null);
+    assertEquals(Arrays.asList(0, 1, 3, 4, 7), keysOf(store.iterator(null)));
+  }
+
+  @Test
+  public void testKeysToRemoveAreSkippedInEveryPart() throws Exception {
+    addEntries(0, 5);
+    store.mergeWriteBuffer();
+    store.addMapping(2, createRegionEntry(2));
+    store.addMapping(3, createRegionEntry(3));
+    Set keysToRemove = new HashSet();
+    keysToRemove.add(2);
+    keysToRemove.add(3);
+    assertEquals(Arrays.asList(0, 1, 4), keysOf(store.iterator(keysToRemove)));
+  }
+
+  @Test
+  public void testKeysOfOtherTypesAreNotStoredInSegment() throws Exception {
+    addEntries(0, 3);
+    store.addMapping(QueryService.UNDEFINED, createRegionEntry(10));
+    store.addMapping(IndexManager.NULL, createRegionEntry(11));
+    store.addMapping(5L, createRegionEntry(5L));
+    store.mergeWriteBuffer();
+    assertEquals(1, numObjectsIterated(store.get(QueryService.UNDEFINED)));
+    assertEquals(1, numObjectsIterated(store.get(IndexManager.NULL)));
+    // NULL and UNDEFINED are not part of ranges
+    assertEquals(Arrays.asList(0, 1, 2, 5L), keysOf(store.iterator(null)));
+  }
+
+  @Test
+  public void testDoubleKeys() throws Exception {
+    store.addMapping(2.5d, createRegionEntry(1));
+    store.addMapping(-1.0d, createRegionEntry(2));
+    store.mergeWriteBuffer();
+    store.addMapping(0.5d, createRegionEntry(3));
+    assertEquals(Arrays.asList(-1.0d, 0.5d, 2.5d), keysOf(store.iterator(null)));
+    assertEquals(Arrays.asList(0.5d, 2.5d), keysOf(store.iterator(0, false, null)));
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    addEntries(0, 5);
+    store.mergeWriteBuffer();
+    store.addMapping(6, createRegionEntry(6));
+    store.clear();
+    assertEquals(0, numObjectsIterated(store.iterator(null)));
+    assertEquals(0, store.size());
+  }
+
+  private RegionEntry[] addEntries(int from, int to) throws Exception {
+    RegionEntry[] entries = new RegionEntry[to];
+    for (int i = from; i < to; i++) {
+      entries[i] = createRegionEntry(i);
+      store.addMapping(i, entries[i]);
+    }
+    return entries;
+  }
+
+  private List range(int from, int to) {
+    List keys = new ArrayList();
+    for (int i = from; i < to; i++) {
+      keys.add(i);
+    }
+    return keys;
+  }
+
+  private List reverse(List keys) {
+    List reversed = new ArrayList(keys);
+    java.util.Collections.reverse(reversed);
+    return reversed;
+  }
+
+  private List keysOf(Iterator<IndexStoreEntry> iterator) {
+    List keys = new ArrayList();
+    while (iterator.hasNext()) {
+      keys.add(iterator.next().getDeserializedKey());
+    }
+    return keys;
+  }
+
+  private int numObjectsIterated(Iterator iterator) {
+    int count = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      count++;
+    }
+    return count;
+  }
+
+  private RegionEntry createRegionEntry(Object key) {
+    RegionEntry mockEntry = mock(RegionEntry.class);
+    when(mockEntry.getValue(any())).thenReturn(new Object());
+    when(mockEntry.getKey()).thenReturn(key);
+    return mockEntry;
+  }
+}
@@ -18,7 +18,10 @@ package com.gemstone.gemfire.cache.query.partitioned;
 
 import static org.junit.Assert.fail;
 
+import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -29,9 +32,11 @@ import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.cache.query.Query;
 import com.gemstone.gemfire.cache.query.SelectResults;
 import com.gemstone.gemfire.cache.query.data.PortfolioData;
+import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
 import com.gemstone.gemfire.internal.Assert;
 import com.gemstone.gemfire.internal.cache.PRQueryProcessor;
 import com.gemstone.gemfire.internal.cache.PartitionedRegionTestHelper;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
 
 /**
@@ -149,6 +154,75 @@ public class PRQueryNumThreadsJUnitTest
     }
   }
 
+  @Test
+  public void testLimitAndCountQueries() throws Exception
+  {
+    Region region = PartitionedRegionTestHelper.createPartitionedRegion(
+        regionName, "100", 0);
+    PortfolioData[] portfolios = new PortfolioData[100];
+    for (int j = 0; j < 100; j++) {
+      portfolios[j] = new PortfolioData(j);
+    }
+    PRQueryProcessor.TEST_NUM_THREADS = 10;
+    try {
+      populateData(region, portfolios);
+
+      Query query = region.getCache().getQueryService().newQuery(
+          "select * from /" + region.getName() + " p where p.ID >= 10 limit 7");
+      SelectResults sr = (SelectResults)query.execute();
+      Assert.assertTrue(sr.size() == 7);
+
+      query = region.getCache().getQueryService().newQuery(
+          "select count(*) from /" + region.getName() + " p where p.ID >= 10");
+      sr = (SelectResults)query.execute();
+      Assert.assertTrue(((Integer)sr.asList().get(0)).intValue() == 90);
+    } finally {
+      PRQueryProcessor.TEST_NUM_THREADS = 0;
+      region.close();
+    }
+  }
+
+  @Test
+  public void testPoolThreadsReadPdxLikeTheQueryThread() throws Exception
+  {
+    Region region = PartitionedRegionTestHelper.createPartitionedRegion(
+        regionName, "100", 0);
+    ThreadRecorder[] recorders = new ThreadRecorder[100];
+    for (int j = 0; j < 100; j++) {
+      recorders[j] = new ThreadRecorder();
+    }
+    PRQueryProcessor.TEST_NUM_THREADS = 10;
+    try {
+      populateData(region, recorders);
+
+      // DefaultQuery.execute reads PDX serialized in the thread that executes the query
+      Query query = region.getCache().getQueryService().newQuery(
+          "select * from /" + region.getName() + " p where p.isReadingPdxSerialized()");
+      SelectResults sr = (SelectResults)query.execute();
+      Assert.assertTrue(sr.size() == 100);
+      Assert.assertTrue(ThreadRecorder.threadGroups.size() == 100);
+      for (ThreadGroup group : ThreadRecorder.threadGroups) {
+        Assert.assertTrue(group instanceof LoggingThreadGroup, group);
+      }
+    } finally {
+      PRQueryProcessor.TEST_NUM_THREADS = 0;
+      ThreadRecorder.threadGroups.clear();
+      region.close();
+    }
+  }
+
+  /**
+   * Records the thread group of the threads that evaluate it in a query.
+   */
+  public static class ThreadRecorder implements Serializable {
+    static final Queue<ThreadGroup> threadGroups = new ConcurrentLinkedQueue<ThreadGroup>();
+
+    public boolean isReadingPdxSerialized() {
+      threadGroups.add(Thread.currentThread().getThreadGroup());
+      return DefaultQuery.getPdxReadSerialized();
+    }
+  }
+
   /**
    * Populates the region with the Objects stores in the data Object array.
    * 
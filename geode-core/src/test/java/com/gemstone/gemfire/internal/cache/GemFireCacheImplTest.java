@@ -64,4 +64,20 @@ public class GemFireCacheImplTest {
       gfc.close();
     }
   }
+
+  @Test
+  public void indexTasksAreRejectedOnceTheCacheIsClosed() throws Exception {
+    InternalDistributedSystem ds = Fakes.distributedSystem();
+    CacheConfig cc = new CacheConfig();
+    TypeRegistry typeRegistry = mock(TypeRegistry.class);
+    GemFireCacheImpl gfc = GemFireCacheImpl.createWithAsyncEventListeners(ds, cc, typeRegistry);
+    try {
+      final CountDownLatch ran = new CountDownLatch(1);
+      assertTrue(gfc.executeIndexTask(() -> ran.countDown()));
+      assertTrue(ran.await(90, TimeUnit.SECONDS));
+    } finally {
+      gfc.close();
+    }
+    assertFalse(gfc.executeIndexTask(() -> fail("ran after close")));
+  }
 }
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.DMStats;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+/**
+ * Tests how InitialImageFlowControl resizes the window of chunks in flight
+ * and accounts for them when the image is aborted.
+ */
+@Category(UnitTest.class)
+public class InitialImageFlowControlJUnitTest {
+
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private DMStats stats;
+  private InternalDistributedMember target;
+  private FakeClockFlowControl control;
+  private int minPermits;
+
+  @Before
+  public void setUp() throws Exception {
+    DM dm = mock(DM.class);
+    this.stats = mock(DMStats.class);
+    when(dm.getStats()).thenReturn(this.stats);
+    when(dm.getConfig()).thenReturn(mock(DistributionConfig.class));
+    when(dm.getCancelCriterion()).thenReturn(mock(CancelCriterion.class));
+    this.target = mock(InternalDistributedMember.class);
+    this.control = new FakeClockFlowControl(dm, this.target);
+    this.minPermits = InitialImageOperation.CHUNK_PERMITS;
+  }
+
+  @Test
+  public void windowDoesNotGrowWhileThereArePermitsLeft() throws Exception {
+    this.control.acquirePermit();
+    this.control.now = MILLIS;
+    this.control.releasePermit();
+
+    assertEquals(this.minPermits, this.control.getMaxPermits());
+    assertEquals(this.minPermits, this.control.getAvailablePermits());
+  }
+
+  @Test
+  public void windowGrowsWhenFullAndShrinksWhenChunksQueueUp() throws Exception {
+    growWindow();
+    assertEquals(this.minPermits + 1, this.control.getMaxPermits());
+    // the waiting chunk took one of the two permits released
+    assertEquals(1, this.control.getAvailablePermits());
+    assertEquals(this.minPermits, inFlight());
+
+    // the next oldest chunk was sent at 0 and takes more than 3 times the
+    // shortest round trip
+    this.control.now = 10 * MILLIS;
+    this.control.releasePermit();
+
+    assertEquals(this.minPermits, this.control.getMaxPermits());
+    assertEquals(1, this.control.getAvailablePermits());
+    assertEquals(this.minPermits - 1, inFlight());
+  }
+
+  @Test
+  public void windowDoesNotShrinkBelowTheInitialPermits() throws Exception {
+    this.control.acquirePermit();
+    this.control.acquirePermit();
+    this.control.now = MILLIS;
+    this.control.releasePermit();
+    this.control.now = 10 * MILLIS;
+    this.control.releasePermit();
+
+    assertEquals(this.minPermits, this.control.getMaxPermits());
+    assertEquals(this.minPermits, this.control.getAvailablePermits());
+  }
+
+  @Test
+  public void abortAccountsForTheChunksInFlightAfterResizes() throws Exception {
+    growWindow();
+    this.control.now = 10 * MILLIS;
+    this.control.releasePermit();
+
+    this.control.memberDeparted(this.target, true);
+    // a chunk acknowledged after the abort was already counted out by it
+    this.control.now = 11 * MILLIS;
+    this.control.releasePermit();
+
+    // every chunk counted as in flight is counted back out once
+    ArgumentCaptor<Integer> changes = ArgumentCaptor.forClass(Integer.class);
+    verify(this.stats, atLeastOnce()).incInitialImageMessagesInFlight(changes.capture());
+    int sum = 0;
+    for (int change : changes.getAllValues()) {
+      sum += change;
+    }
+    assertEquals(0, sum);
+
+    // and the provider no longer waits for permits
+    this.control.acquirePermit();
+  }
+
+  /**
+   * Sends minPermits chunks at time 0, has one more wait for a permit and
+   * acknowledges the first chunk after 1 ms, which grows the window by one.
+   */
+  private void growWindow() throws Exception {
+    for (int i = 0; i < this.minPermits; i++) {
+      this.control.acquirePermit();
+    }
+    assertEquals(0, this.control.getAvailablePermits());
+
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        control.acquirePermit();
+      }
+    });
+    waiter.start();
+    Awaitility.await().atMost(30, TimeUnit.SECONDS).until(() ->
+        waiter.getState() == Thread.State.WAITING
+        || waiter.getState() == Thread.State.TIMED_WAITING);
+
+    this.control.now = MILLIS;
+    this.control.releasePermit();
+    waiter.join(30000);
+    assertFalse(waiter.isAlive());
+  }
+
+  private int inFlight() {
+    return this.control.getMaxPermits() - this.control.getAvailablePermits();
+  }
+
+  private static class FakeClockFlowControl extends InitialImageFlowControl {
+    volatile long now;
+
+    FakeClockFlowControl(DM dm, InternalDistributedMember target) {
+      super(dm, target);
+    }
+
+    @Override
+    long nanoTime() {
+      return this.now;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.DataInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.internal.HeapDataOutputStream;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocatorImpl;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.gemfire.internal.util.ObjectIntProcedure;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that the off-heap values an initial image sends from are released
+ * once their chunk has been sent, and when the image is aborted.
+ */
+@Category(IntegrationTest.class)
+public class InitialImageOffHeapJUnitTest {
+
+  private static final int NUM_ENTRIES = 100;
+  private static final int CHUNK_SIZE = 1024;
+
+  private GemFireCacheImpl cache;
+  private DistributedRegion region;
+  private InitialImageFlowControl flowControl;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(LOCATORS, "");
+    props.setProperty(OFF_HEAP_MEMORY_SIZE, "2m");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.region = (DistributedRegion) this.cache.createRegionFactory(RegionShortcut.REPLICATE)
+        .setOffHeap(true).create("region");
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      this.region.put(i, value(i));
+    }
+    this.flowControl = mock(InitialImageFlowControl.class);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try {
+      this.cache.close();
+    } finally {
+      MemoryAllocatorImpl.freeOffHeapMemory();
+    }
+  }
+
+  @Test
+  public void testValuesAreSentFromOffHeapAndReleased() throws Exception {
+    final int[] numSent = new int[1];
+    boolean finished = new InitialImageOperation.RequestImageMessage().chunkEntries(this.region,
+        CHUNK_SIZE, true, null, null, this.flowControl, new ObjectIntProcedure() {
+          @Override
+          public boolean executeWith(Object a, int b) {
+            for (Object o : (List) a) {
+              InitialImageOperation.Entry entry = (InitialImageOperation.Entry) o;
+              // the entry and the region both hold the value
+              assertRetained(entry, 2);
+              assertSentValue(entry);
+              numSent[0]++;
+            }
+            // a value destroyed while its chunk is sent is freed by the release
+            region.destroy(((InitialImageOperation.Entry) ((List) a).get(0)).key);
+            return true;
+          }
+        });
+
+    assertTrue(finished);
+    assertEquals(NUM_ENTRIES, numSent[0]);
+    assertRegionHoldsTheOnlyReferences();
+    OffHeapTestUtil.checkOrphans();
+  }
+
+  @Test
+  public void testValuesAreReleasedWhenTheImageIsAborted() throws Exception {
+    final int[] numChunks = new int[1];
+    boolean finished = new InitialImageOperation.RequestImageMessage().chunkEntries(this.region,
+        CHUNK_SIZE, true, null, null, this.flowControl, new ObjectIntProcedure() {
+          @Override
+          public boolean executeWith(Object a, int b) {
+            for (Object o : (List) a) {
+              assertRetained((InitialImageOperation.Entry) o, 2);
+            }
+            numChunks[0]++;
+            // the recipient went away
+            return false;
+          }
+        });
+
+    assertFalse(finished);
+    assertEquals(1, numChunks[0]);
+    assertRegionHoldsTheOnlyReferences();
+    OffHeapTestUtil.checkOrphans();
+  }
+
+  @Test
+  public void testValuesAreReleasedWhenSendingAChunkFails() throws Exception {
+    try {
+      new InitialImageOperation.RequestImageMessage().chunkEntries(this.region,
+          CHUNK_SIZE, true, null, null, this.flowControl, new ObjectIntProcedure() {
+            @Override
+            public boolean executeWith(Object a, int b) {
+              throw new IllegalStateException("send failed");
+            }
+          });
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+
+    assertRegionHoldsTheOnlyReferences();
+    OffHeapTestUtil.checkOrphans();
+  }
+
+  private static Object value(int i) {
+    if (i % 2 == 0) {
+      byte[] bytes = new byte[100];
+      Arrays.fill(bytes, (byte) i);
+      return bytes;
+    }
+    char[] chars = new char[100];
+    Arrays.fill(chars, (char) ('a' + i % 26));
+    return new String(chars);
+  }
+
+  private static void assertRetained(InitialImageOperation.Entry entry, int refCount) {
+    assertTrue(entry.value instanceof StoredObject);
+    assertEquals(refCount, ((StoredObject) entry.value).getRefCount());
+  }
+
+  /**
+   * Checks that the entry is received with the value of its key.
+   */
+  private static void assertSentValue(InitialImageOperation.Entry entry) {
+    try {
+      HeapDataOutputStream out = new HeapDataOutputStream(Version.CURRENT);
+      entry.toData(out);
+      InitialImageOperation.Entry received = new InitialImageOperation.Entry();
+      received.fromData(new DataInputStream(out.getInputStream()));
+
+      Object expected = value((Integer) entry.key);
+      if (received.isSerialized()) {
+        assertEquals(expected, BlobHelper.deserializeBlob((byte[]) received.value));
+      } else {
+        assertArrayEquals((byte[]) expected, (byte[]) received.value);
+      }
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private void assertRegionHoldsTheOnlyReferences() {
+    for (Object key : this.region.keySet()) {
+      Object value = this.region.getRegionEntry(key)._getValue();
+      assertTrue(value instanceof StoredObject);
+      assertEquals(1, ((StoredObject) value).getRefCount());
+    }
+  }
+}
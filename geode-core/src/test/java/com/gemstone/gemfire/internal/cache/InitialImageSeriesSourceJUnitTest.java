@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.cache.InitialImageOperation.SeriesSource;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+/**
+ * Tests the sharing of a region iterator by the series of an initial image.
+ */
+@Category(UnitTest.class)
+public class InitialImageSeriesSourceJUnitTest {
+
+  @Test
+  public void testEachEntryGoesToOneSeries() throws Exception {
+    List<Integer> entries = new ArrayList<Integer>();
+    for (int i = 0; i < 100; i++) {
+      entries.add(i);
+    }
+    SeriesSource source = new SeriesSource(entries.iterator());
+    Iterator series0 = source.newSeriesIterator();
+    Iterator series1 = source.newSeriesIterator();
+
+    Set<Object> seen = new HashSet<Object>();
+    int count0 = 0;
+    int count1 = 0;
+    while (series0.hasNext() || series1.hasNext()) {
+      if (series0.hasNext()) {
+        assertTrue(seen.add(series0.next()));
+        count0++;
+      }
+      if (series1.hasNext()) {
+        assertTrue(seen.add(series1.next()));
+        count1++;
+      }
+    }
+    assertEquals(100, seen.size());
+    assertEquals(50, count0);
+    assertEquals(50, count1);
+  }
+
+  @Test
+  public void testHasNextClaimsOneEntry() throws Exception {
+    List<Integer> entries = new ArrayList<Integer>();
+    entries.add(1);
+    SeriesSource source = new SeriesSource(entries.iterator());
+    Iterator series0 = source.newSeriesIterator();
+    Iterator series1 = source.newSeriesIterator();
+
+    assertTrue(series0.hasNext());
+    assertTrue(series0.hasNext());
+    assertFalse(series1.hasNext());
+    assertEquals(1, series0.next());
+    assertFalse(series0.hasNext());
+  }
+
+  @Test
+  public void testStopEndsAllSeries() throws Exception {
+    List<Integer> entries = new ArrayList<Integer>();
+    for (int i = 0; i < 10; i++) {
+      entries.add(i);
+    }
+    SeriesSource source = new SeriesSource(entries.iterator());
+    Iterator series0 = source.newSeriesIterator();
+    Iterator series1 = source.newSeriesIterator();
+
+    assertEquals(0, series0.next());
+    assertTrue(series1.hasNext());
+    source.stop();
+    // an entry that was already taken is still returned
+    assertEquals(1, series1.next());
+    assertFalse(series0.hasNext());
+    assertFalse(series1.hasNext());
+    try {
+      series0.next();
+      fail("expected NoSuchElementException");
+    } catch (NoSuchElementException expected) {
+    }
+  }
+}
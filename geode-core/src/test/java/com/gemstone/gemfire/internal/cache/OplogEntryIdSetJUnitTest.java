@@ -75,4 +75,23 @@ public class OplogEntryIdSetJUnitTest {
     s.add(Long.MIN_VALUE);
     assertEquals(true, s.contains(Long.MIN_VALUE));
   }
+
+  @Test
+  public void testAddAll() {
+    OplogEntryIdSet s1 = new OplogEntryIdSet();
+    s1.add(1);
+    s1.add(0x00000000FFFFFFFFL + 1);
+    OplogEntryIdSet s2 = new OplogEntryIdSet();
+    s2.add(1);
+    s2.add(2);
+    s2.add(Long.MAX_VALUE);
+
+    s1.addAll(s2);
+    assertEquals(4, s1.size());
+    assertEquals(true, s1.contains(1));
+    assertEquals(true, s1.contains(2));
+    assertEquals(true, s1.contains(0x00000000FFFFFFFFL + 1));
+    assertEquals(true, s1.contains(Long.MAX_VALUE));
+    assertEquals(3, s2.size());
+  }
 }
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.DataPolicy;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests synchronous oplog writes with group commit enabled.
+ */
+@Category(IntegrationTest.class)
+public class OplogGroupCommitJUnitTest extends DiskRegionTestingBase {
+
+  private static final int THREADS = 8;
+  private static final int OPS_PER_THREAD = 500;
+
+  @Override
+  protected final void preSetUp() throws Exception {
+    System.setProperty(DiskStoreImpl.GROUP_COMMIT_PROPERTY_NAME, "true");
+  }
+
+  @Override
+  protected final void postTearDown() throws Exception {
+    System.clearProperty(DiskStoreImpl.GROUP_COMMIT_PROPERTY_NAME);
+  }
+
+  @Test
+  public void testConcurrentWritesAreRecovered() throws Exception {
+    final Region region = createRegion();
+    DiskStoreImpl diskStore = ((LocalRegion) region).getDiskStore();
+    assertTrue(diskStore.GROUP_COMMIT);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() {
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+              String key = thread + "-" + i;
+              region.put(key, "A");
+              region.put(key, "B");
+              if (i % 2 == 0) {
+                region.destroy(key);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // every create, update and destroy is a synchronous write
+    long expectedWrites = THREADS * OPS_PER_THREAD * 2 + THREADS * OPS_PER_THREAD / 2;
+    DiskStoreStats stats = diskStore.getStats();
+    assertEquals(expectedWrites, stats.getGroupCommitWrites());
+    assertTrue(stats.getGroupCommits() > 0);
+    assertTrue(stats.getGroupCommits() <= stats.getGroupCommitWrites());
+
+    cache.close();
+    cache = createCache();
+    Region recovered = createRegion();
+    assertEquals(THREADS * OPS_PER_THREAD / 2, recovered.size());
+    for (int t = 0; t < THREADS; t++) {
+      for (int i = 0; i < OPS_PER_THREAD; i++) {
+        String key = t + "-" + i;
+        assertEquals(i % 2 == 0 ? null : "B", recovered.get(key));
+      }
+    }
+  }
+
+  @Test
+  public void testAsyncWritesDoNotUseGroupCommit() {
+    Region region = cache.createRegionFactory()
+        .setDiskStoreName(createDiskStore().getName())
+        .setDiskSynchronous(false)
+        .setDataPolicy(DataPolicy.PERSISTENT_REPLICATE).create("asyncRegion");
+    region.put("key", "value");
+    assertEquals(0, ((LocalRegion) region).getDiskStore().getStats().getGroupCommitWrites());
+  }
+
+  private Region createRegion() {
+    return cache.createRegionFactory()
+        .setDiskStoreName(createDiskStore().getName())
+        .setDataPolicy(DataPolicy.PERSISTENT_REPLICATE).create("regionName");
+  }
+
+  private DiskStoreImpl createDiskStore() {
+    DiskStoreImpl diskStore = (DiskStoreImpl) cache.findDiskStore("store");
+    if (diskStore == null) {
+      diskStore = (DiskStoreImpl) cache.createDiskStoreFactory()
+          .setMaxOplogSize(1)
+          .setDiskDirs(dirs)
+          .create("store");
+    }
+    return diskStore;
+  }
+}
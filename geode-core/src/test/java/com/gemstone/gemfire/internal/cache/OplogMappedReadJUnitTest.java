@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.DataPolicy;
+import com.gemstone.gemfire.cache.EvictionAction;
+import com.gemstone.gemfire.cache.EvictionAttributes;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.internal.lang.SystemUtils;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests faulting values in from oplogs whose crf has been mapped into memory.
+ */
+@Category(IntegrationTest.class)
+public class OplogMappedReadJUnitTest extends DiskRegionTestingBase {
+
+  private static final int ENTRIES = 2000;
+  private static final int VALUE_SIZE = 1024;
+
+  @Override
+  protected final void preSetUp() throws Exception {
+    System.setProperty(DiskStoreImpl.MMAP_READS_PROPERTY_NAME, "true");
+  }
+
+  @Override
+  protected final void postTearDown() throws Exception {
+    System.clearProperty(DiskStoreImpl.MMAP_READS_PROPERTY_NAME);
+  }
+
+  @Test
+  public void testFaultInFromMappedOplogs() {
+    Region region = createOverflowRegion();
+    for (int i = 0; i < ENTRIES; i++) {
+      region.put(i, createValue(i));
+    }
+    for (int i = 0; i < ENTRIES; i++) {
+      assertTrue(Arrays.equals(createValue(i), (byte[]) region.get(i)));
+    }
+
+    Oplog[] oplogs = ((LocalRegion) region).getDiskStore().persistentOplogs.getAllOplogs();
+    assertTrue(oplogs.length > 1);
+    boolean mapped = false;
+    for (Oplog oplog : oplogs) {
+      if (oplog == ((LocalRegion) region).getDiskStore().persistentOplogs.getChild()) {
+        // the active oplog is still being appended to so it is never mapped
+        assertFalse(oplog.isCrfMapped());
+      } else if (oplog.isCrfMapped()) {
+        mapped = true;
+      }
+    }
+    assertEquals(!SystemUtils.isWindows(), mapped);
+  }
+
+  @Test
+  public void testValuesRecoveredFromMappedOplogs() {
+    Region region = createOverflowRegion();
+    for (int i = 0; i < ENTRIES; i++) {
+      region.put(i, createValue(i));
+    }
+    cache.close();
+    cache = createCache();
+    region = createOverflowRegion();
+    assertEquals(ENTRIES, region.size());
+    for (int i = 0; i < ENTRIES; i++) {
+      assertTrue(Arrays.equals(createValue(i), (byte[]) region.get(i)));
+    }
+  }
+
+  @Test
+  public void testMappingsAreUnmappedWhenClosed() {
+    Region region = createOverflowRegion();
+    for (int i = 0; i < ENTRIES; i++) {
+      region.put(i, createValue(i));
+    }
+    for (int i = 0; i < ENTRIES; i++) {
+      region.get(i);
+    }
+
+    List<Oplog.MappedCrf> mappings = new ArrayList<Oplog.MappedCrf>();
+    for (Oplog oplog : ((LocalRegion) region).getDiskStore().persistentOplogs.getAllOplogs()) {
+      if (oplog.getCrfMap() != null) {
+        mappings.add(oplog.getCrfMap());
+      }
+    }
+    assertEquals(!SystemUtils.isWindows(), !mappings.isEmpty());
+
+    // a read that is still in progress keeps its mapping until it is done
+    Oplog.MappedCrf inUse = null;
+    if (!mappings.isEmpty()) {
+      inUse = mappings.get(0);
+      assertTrue(inUse.retain());
+    }
+    cache.close();
+    for (Oplog.MappedCrf mapping : mappings) {
+      assertEquals(mapping != inUse, mapping.isUnmapped());
+    }
+    if (inUse != null) {
+      inUse.release();
+      assertTrue(inUse.isUnmapped());
+      assertFalse(inUse.retain());
+    }
+  }
+
+  @Test
+  public void testMappingsCountAsOpenOplogs() {
+    Region region = createOverflowRegion();
+    // enough entries to fill more oplogs than are kept open
+    int entries = (DiskStoreImpl.MAX_OPEN_INACTIVE_OPLOGS + 4) * 1024;
+    for (int i = 0; i < entries; i++) {
+      region.put(i, createValue(i));
+    }
+    for (int i = 0; i < entries; i++) {
+      assertTrue(Arrays.equals(createValue(i), (byte[]) region.get(i)));
+    }
+
+    PersistentOplogSet oplogSet = ((LocalRegion) region).getDiskStore().persistentOplogs;
+    int mapped = 0;
+    for (Oplog oplog : oplogSet.getAllOplogs()) {
+      if (oplog.isCrfMapped()) {
+        assertTrue(oplog.isRAFOpen());
+        mapped++;
+      }
+    }
+    assertTrue("mapped " + mapped + " oplogs", mapped <= DiskStoreImpl.MAX_OPEN_INACTIVE_OPLOGS);
+    assertTrue(oplogSet.inactiveOpenCount.get() <= DiskStoreImpl.MAX_OPEN_INACTIVE_OPLOGS);
+  }
+
+  private Region createOverflowRegion() {
+    if (cache.findDiskStore("store") == null) {
+      cache.createDiskStoreFactory()
+          .setMaxOplogSize(1)
+          .setDiskDirs(dirs)
+          .create("store");
+    }
+    return cache.createRegionFactory()
+        .setDiskStoreName("store")
+        .setDataPolicy(DataPolicy.PERSISTENT_REPLICATE)
+        .setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(1, EvictionAction.OVERFLOW_TO_DISK))
+        .create("regionName");
+  }
+
+  private static byte[] createValue(int i) {
+    byte[] value = new byte[VALUE_SIZE];
+    Arrays.fill(value, (byte) i);
+    return value;
+  }
+}
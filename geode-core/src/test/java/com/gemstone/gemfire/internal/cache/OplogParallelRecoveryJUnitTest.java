@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.DataPolicy;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests recovering a disk store whose oplogs are read by several threads.
+ */
+@Category(IntegrationTest.class)
+public class OplogParallelRecoveryJUnitTest extends DiskRegionTestingBase {
+
+  private static final int ENTRIES = 3000;
+  private static final int VALUE_SIZE = 1024;
+
+  @Override
+  protected final void postTearDown() throws Exception {
+    System.clearProperty(DiskStoreImpl.RECOVERY_THREADS_PROPERTY_NAME);
+  }
+
+  @Test
+  public void testParallelRecovery() throws Exception {
+    recoverWithThreads(4);
+  }
+
+  @Test
+  public void testSequentialRecovery() throws Exception {
+    recoverWithThreads(1);
+  }
+
+  private void recoverWithThreads(int threads) throws Exception {
+    Region region = createRegion();
+    for (int i = 0; i < ENTRIES; i++) {
+      region.put(i, new byte[VALUE_SIZE]);
+    }
+    // destroys and updates land in later oplogs than the creates they replace
+    for (int i = 0; i < ENTRIES; i += 3) {
+      region.destroy(i);
+    }
+    for (int i = 1; i < ENTRIES; i += 3) {
+      region.put(i, new byte[] { (byte) i });
+    }
+    assertTrue(countCrfs() > 2);
+
+    cache.close();
+    System.setProperty(DiskStoreImpl.RECOVERY_THREADS_PROPERTY_NAME, String.valueOf(threads));
+    cache = createCache();
+    Region recovered = createRegion();
+    DiskStoreImpl diskStore = ((LocalRegion) recovered).getDiskStore();
+    assertEquals(threads, diskStore.RECOVERY_THREADS);
+
+    assertEquals(ENTRIES - (ENTRIES + 2) / 3, recovered.size());
+    for (int i = 0; i < ENTRIES; i++) {
+      byte[] value = (byte[]) recovered.get(i);
+      switch (i % 3) {
+      case 0:
+        assertNull(value);
+        break;
+      case 1:
+        assertArrayEquals(new byte[] { (byte) i }, value);
+        break;
+      default:
+        assertEquals(VALUE_SIZE, value.length);
+      }
+    }
+
+    DiskStoreStats stats = diskStore.getStats();
+    assertEquals(0, stats.getDrfsToRecover());
+    assertEquals(0, stats.getCrfsToRecover());
+    if (threads == 1) {
+      assertEquals(0, stats.getRecoveryReadAheadBytes());
+    }
+  }
+
+  private int countCrfs() {
+    int count = 0;
+    for (File dir : dirs) {
+      for (String name : dir.list()) {
+        if (name.endsWith(Oplog.CRF_FILE_EXT)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private Region createRegion() {
+    DiskStoreImpl diskStore = (DiskStoreImpl) cache.findDiskStore("store");
+    if (diskStore == null) {
+      diskStore = (DiskStoreImpl) cache.createDiskStoreFactory()
+          .setMaxOplogSize(1)
+          .setAutoCompact(false)
+          .setDiskDirs(dirs)
+          .create("store");
+    }
+    return cache.createRegionFactory()
+        .setDiskStoreName(diskStore.getName())
+        .setDataPolicy(DataPolicy.PERSISTENT_REPLICATE).create("regionName");
+  }
+}
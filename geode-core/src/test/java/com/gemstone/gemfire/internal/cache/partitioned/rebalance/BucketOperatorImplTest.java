@@ -126,6 +126,23 @@ public class BucketOperatorImplTest {
     verify(completion, times(1)).onFailure();
   }
 
+  @Test
+  public void createBucketShouldGoThroughRecoveryScheduler() {
+    BucketRecoveryScheduler scheduler = mock(BucketRecoveryScheduler.class);
+    doReturn(scheduler).when(rebalanceOp).getRecoveryScheduler();
+    doReturn(0).when(rebalanceOp).getBucketRedundancy(bucketId);
+    doReturn(true).when(rebalanceOp).createRedundantBucketForRegion(targetMember, bucketId);
+    colocatedRegionBytes.put("region1", 100L);
+    colocatedRegionBytes.put("region2", 50L);
+
+    operator.createRedundantBucket(targetMember, bucketId, colocatedRegionBytes, completion);
+
+    verify(scheduler, times(1)).acquire(0, 150L);
+    verify(scheduler, times(1)).release();
+    verify(rebalanceOp, times(1)).bucketRecovered(150L);
+    verify(completion, times(1)).onSuccess();
+  }
+
   @Test
   public void removeBucketShouldDelegateToParRegRebalanceOpRemoveRedundantBucketForRegion() {
     doReturn(true).when(rebalanceOp).removeRedundantBucketForRegion(targetMember, bucketId);
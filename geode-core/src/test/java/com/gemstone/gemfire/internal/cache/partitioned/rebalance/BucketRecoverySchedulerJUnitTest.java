@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.partitioned.rebalance;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+/**
+ * Tests the admission of redundant bucket creations by the
+ * {@link BucketRecoveryScheduler}.
+ */
+@Category(UnitTest.class)
+public class BucketRecoverySchedulerJUnitTest {
+
+  private final CancelCriterion cancelCriterion = mock(CancelCriterion.class);
+
+  @Test
+  public void testParallelLimit() throws Exception {
+    final BucketRecoveryScheduler scheduler = new BucketRecoveryScheduler(cancelCriterion, 2, 0, 0);
+    scheduler.acquire(1, 0);
+    scheduler.acquire(1, 0);
+    assertEquals(2, scheduler.getInProgress());
+
+    Thread waiter = new Thread() {
+      public void run() {
+        scheduler.acquire(1, 0);
+      }
+    };
+    waiter.start();
+    waitForWaiters(scheduler, 1);
+    assertEquals(2, scheduler.getInProgress());
+
+    scheduler.release();
+    waiter.join(30000);
+    assertFalse(waiter.isAlive());
+    assertEquals(2, scheduler.getInProgress());
+    assertEquals(0, scheduler.getWaiting());
+  }
+
+  @Test
+  public void testRiskiestBucketStartsFirst() throws Exception {
+    final BucketRecoveryScheduler scheduler = new BucketRecoveryScheduler(cancelCriterion, 1, 0, 0);
+    final List<Integer> started = new CopyOnWriteArrayList<Integer>();
+    scheduler.acquire(0, 0);
+
+    Thread safer = startWaiter(scheduler, 1, started);
+    waitForWaiters(scheduler, 1);
+    Thread riskier = startWaiter(scheduler, 0, started);
+    waitForWaiters(scheduler, 2);
+
+    scheduler.release();
+    riskier.join(30000);
+    assertEquals(1, started.size());
+    assertEquals(0, (int) started.get(0));
+
+    scheduler.release();
+    safer.join(30000);
+    assertEquals(2, started.size());
+    assertEquals(1, (int) started.get(1));
+  }
+
+  @Test
+  public void testBytesArePaced() throws Exception {
+    BucketRecoveryScheduler scheduler = new BucketRecoveryScheduler(cancelCriterion, 10, 1000, 0);
+    long start = System.nanoTime();
+    // the first bucket reserves 200 milliseconds at 1000 bytes per second
+    scheduler.acquire(0, 200);
+    scheduler.acquire(0, 200);
+    long elapsedMs = (System.nanoTime() - start) / 1000000;
+    assertTrue("second bucket started after " + elapsedMs + " ms", elapsedMs >= 150);
+    assertEquals(2, scheduler.getInProgress());
+  }
+
+  private Thread startWaiter(final BucketRecoveryScheduler scheduler, final int redundancy,
+      final List<Integer> started) {
+    Thread thread = new Thread() {
+      public void run() {
+        scheduler.acquire(redundancy, 0);
+        started.add(redundancy);
+      }
+    };
+    thread.start();
+    return thread;
+  }
+
+  private void waitForWaiters(BucketRecoveryScheduler scheduler, int waiting) throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (scheduler.getWaiting() < waiting) {
+      assertTrue("timed out waiting for " + waiting + " waiters", System.currentTimeMillis() < end);
+      Thread.sleep(10);
+    }
+  }
+}
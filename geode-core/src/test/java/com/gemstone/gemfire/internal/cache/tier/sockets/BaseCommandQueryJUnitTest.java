@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.types.CollectionType;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+/**
+ * Tests how BaseCommandQuery splits query results into chunks.
+ */
+@Category(UnitTest.class)
+public class BaseCommandQueryJUnitTest {
+
+  private static final int CHUNK = BaseCommand.maximumChunkSize;
+
+  private ServerConnection servConn;
+  private ChunkedMessage queryResponseMsg;
+  private CollectionType collectionType;
+
+  @Before
+  public void setUp() throws Exception {
+    this.servConn = mock(ServerConnection.class);
+    this.queryResponseMsg = mock(ChunkedMessage.class);
+    when(this.servConn.getQueryResponseMessage()).thenReturn(this.queryResponseMsg);
+    this.collectionType = mock(CollectionType.class);
+  }
+
+  @Test
+  public void objectArrayResultsLargerThanAChunkAreSentInChunks() throws Exception {
+    List<Integer> rows = rows(2 * CHUNK + CHUNK / 2);
+
+    BaseCommandQuery.sendResultsAsObjectArray(selectResults(rows), 3, this.servConn,
+        false, this.collectionType, "query", null, false, true);
+
+    List<Object> chunks = sentChunks(3);
+    assertEquals(CHUNK, ((Object[])chunks.get(0)).length);
+    assertEquals(CHUNK, ((Object[])chunks.get(1)).length);
+    assertEquals(CHUNK / 2, ((Object[])chunks.get(2)).length);
+    List<Object> received = new ArrayList<Object>();
+    for (Object chunk : chunks) {
+      for (Object row : (Object[])chunk) {
+        received.add(row);
+      }
+    }
+    assertEquals(rows, received);
+  }
+
+  @Test
+  public void resultsFillingTheLastChunkDoNotSendAnEmptyChunk() throws Exception {
+    BaseCommandQuery.sendResultsAsObjectArray(selectResults(rows(2 * CHUNK)), 2, this.servConn,
+        false, this.collectionType, "query", null, false, true);
+
+    List<Object> chunks = sentChunks(2);
+    assertEquals(CHUNK, ((Object[])chunks.get(1)).length);
+  }
+
+  @Test
+  public void emptyResultsAreSentAsOneLastChunk() throws Exception {
+    BaseCommandQuery.sendResultsAsObjectArray(selectResults(rows(0)), 1, this.servConn,
+        false, this.collectionType, "query", null, false, true);
+
+    List<Object> chunks = sentChunks(1);
+    assertEquals(0, ((Object[])chunks.get(0)).length);
+  }
+
+  @Test
+  public void objectPartListResultsLargerThanAChunkAreSentInChunks() throws Exception {
+    List<Integer> rows = rows(CHUNK + 1);
+
+    BaseCommandQuery.sendResultsAsObjectPartList(2, this.servConn, rows, false,
+        this.collectionType, "query", null, false, true);
+
+    List<Object> chunks = sentChunks(2);
+    assertEquals(CHUNK, ((ObjectPartList)chunks.get(0)).size());
+    assertEquals(1, ((ObjectPartList)chunks.get(1)).size());
+    assertEquals(rows.get(CHUNK), ((ObjectPartList)chunks.get(1)).getObjectsForTest().get(0));
+  }
+
+  /**
+   * Returns the chunks written to the query response message after checking
+   * that there were the given number of them and that only the last one was
+   * marked as the last chunk.
+   */
+  private List<Object> sentChunks(int expectedChunks) throws Exception {
+    verify(this.queryResponseMsg, times(expectedChunks)).sendChunk(this.servConn);
+
+    ArgumentCaptor<Boolean> lastChunk = ArgumentCaptor.forClass(Boolean.class);
+    verify(this.queryResponseMsg, times(expectedChunks)).setLastChunk(lastChunk.capture());
+    for (int i = 0; i < expectedChunks; i++) {
+      assertEquals(i == expectedChunks - 1, lastChunk.getAllValues().get(i));
+    }
+
+    // each chunk is the collection type followed by the rows
+    ArgumentCaptor<Object> parts = ArgumentCaptor.forClass(Object.class);
+    verify(this.queryResponseMsg, times(2 * expectedChunks)).addObjPart(parts.capture(), anyBoolean());
+    List<Object> chunks = new ArrayList<Object>();
+    for (int i = 0; i < expectedChunks; i++) {
+      assertSame(this.collectionType, parts.getAllValues().get(2 * i));
+      chunks.add(parts.getAllValues().get(2 * i + 1));
+    }
+    return chunks;
+  }
+
+  private static List<Integer> rows(int count) {
+    List<Integer> rows = new ArrayList<Integer>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(i);
+    }
+    return rows;
+  }
+
+  private static SelectResults selectResults(List<Integer> rows) {
+    SelectResults results = mock(SelectResults.class);
+    when(results.iterator()).thenReturn(rows.iterator());
+    return results;
+  }
+}
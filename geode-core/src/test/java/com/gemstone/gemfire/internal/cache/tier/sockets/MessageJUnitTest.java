@@ -19,14 +19,17 @@ package com.gemstone.gemfire.internal.cache.tier.sockets;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayOutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.tier.MessageType;
 import com.gemstone.gemfire.test.junit.categories.UnitTest;
 
 @Category(UnitTest.class)
@@ -120,6 +123,82 @@ public class MessageJUnitTest {
     verify(mockPart1, times(2)).clear();
   }
 
+  @Test
+  public void intAndLongPartsCanBeReset() {
+    Part part = new Part();
+    part.setInt(1);
+    assertEquals(1, part.getInt());
+    part.setInt(-2);
+    assertEquals(-2, part.getInt());
+    part.setLong(3L);
+    assertEquals(3L, part.getLong());
+    part.setLong(Long.MIN_VALUE);
+    assertEquals(Long.MIN_VALUE, part.getLong());
+  }
+
+  @Test
+  public void prefetchHeaderReportsWhetherTheNextMessageHasArrived() throws Exception {
+    SocketChannel mockChannel = mock(SocketChannel.class);
+    when(mockSocket.getChannel()).thenReturn(mockChannel);
+    message.setComms(mockServerConnection, mockSocket, msgBuffer, mockStats);
+
+    when(mockChannel.read(any(ByteBuffer.class))).thenReturn(0);
+    assertFalse(message.prefetchHeader());
+
+    when(mockChannel.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+      ByteBuffer bb = (ByteBuffer)invocation.getArguments()[0];
+      bb.putInt(MessageType.PING);
+      return 4;
+    });
+    assertTrue(message.prefetchHeader());
+    verify(mockStats).incReceivedBytes(4);
+
+    when(mockChannel.read(any(ByteBuffer.class))).thenReturn(-1);
+    assertTrue(message.prefetchHeader());
+  }
+
+  @Test
+  public void prefetchHeaderWithoutChannelReturnsFalse() throws Exception {
+    assertFalse(message.prefetchHeader());
+  }
+
+  @Test
+  public void recvContinuesAfterAPrefetchedPartialHeader() throws Exception {
+    // write a message the way a client sends it
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Message sent = new Message(1, Version.CURRENT);
+    sent.setComms(mock(Socket.class), null, out, ByteBuffer.allocate(1000), null);
+    sent.setMessageType(MessageType.PING);
+    sent.setTransactionId(7);
+    sent.addStringPart("hello");
+    sent.send();
+    final ByteBuffer wire = ByteBuffer.wrap(out.toByteArray());
+
+    SocketChannel mockChannel = mock(SocketChannel.class);
+    when(mockSocket.getChannel()).thenReturn(mockChannel);
+    message.setComms(mockServerConnection, mockSocket, msgBuffer, mockStats);
+    when(mockChannel.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+      ByteBuffer dst = (ByteBuffer)invocation.getArguments()[0];
+      int count = Math.min(dst.remaining(), wire.remaining());
+      for (int i = 0; i < count; i++) {
+        dst.put(wire.get());
+      }
+      return count;
+    });
+
+    // only part of the header has arrived when the prefetch runs
+    wire.limit(6);
+    assertTrue(message.prefetchHeader());
+    wire.limit(wire.capacity());
+
+    message.recv();
+    assertEquals(MessageType.PING, message.getMessageType());
+    assertEquals(7, message.getTransactionId());
+    assertEquals(1, message.getNumberOfParts());
+    assertEquals("hello", message.getPart(0).getString());
+    assertFalse(wire.hasRemaining());
+  }
+
   // TODO many more tests are needed
 
 }
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets.command;
+
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.*;
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.internal.cache.EventID;
+import com.gemstone.gemfire.internal.cache.EventIDHolder;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.VersionTagHolder;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests the reuse of the holders that the get and put commands take from
+ * their ServerConnection.
+ */
+@Category(IntegrationTest.class)
+public class Get70JUnitTest {
+
+  private Cache cache;
+  private Region<Object, Object> region;
+
+  @Before
+  public void setUp() throws Exception {
+    this.cache = new CacheFactory().set(MCAST_PORT, "0").set(LOCATORS, "").create();
+    this.region = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("region");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.close();
+  }
+
+  @Test
+  public void testEntryAndHolderAreReused() throws Exception {
+    this.region.put("key1", new byte[] { 1 });
+    this.region.put("key2", "value2");
+    Get70 command = (Get70) Get70.getCommand();
+    VersionTagHolder versionHolder = new VersionTagHolder();
+    Get70.Entry entry = new Get70.Entry();
+
+    Get70.Entry result = command.getEntryRetained(this.region, "key1", null, null, versionHolder, entry);
+    assertSame(entry, result);
+    assertArrayEquals(new byte[] { 1 }, (byte[]) result.value);
+    assertFalse(result.isObject);
+    assertFalse(result.keyNotPresent);
+    assertNotNull(result.versionTag);
+
+    versionHolder.reset();
+    result = command.getEntryRetained(this.region, "key2", null, null, versionHolder, entry);
+    assertSame(entry, result);
+    assertTrue(result.isObject);
+    assertFalse(result.keyNotPresent);
+  }
+
+  @Test
+  public void testResetClearsTheVersionTagOfThePreviousGet() throws Exception {
+    this.region.put("key1", "value1");
+    Get70 command = (Get70) Get70.getCommand();
+    VersionTagHolder versionHolder = new VersionTagHolder();
+    Get70.Entry entry = new Get70.Entry();
+
+    command.getEntryRetained(this.region, "key1", null, null, versionHolder, entry);
+    assertNotNull(entry.versionTag);
+
+    // a get of a missing key does not set a version tag of its own
+    versionHolder.reset();
+    command.getEntryRetained(this.region, "missing", null, null, versionHolder, entry);
+    assertNull(entry.value);
+    assertTrue(entry.keyNotPresent);
+    assertNull(entry.versionTag);
+  }
+
+  @Test
+  public void testEventIDHolderReset() throws Exception {
+    this.region.put("key1", "value1");
+    Get70.Entry entry = ((Get70) Get70.getCommand()).getEntryRetained(this.region, "key1", null, null,
+        new VersionTagHolder(), new Get70.Entry());
+    EventIDHolder holder = new EventIDHolder(new EventID(new byte[] { 1 }, 1, 1));
+    holder.setRegion((LocalRegion) this.region);
+    holder.setVersionTag(entry.versionTag);
+    holder.setPossibleDuplicate(true);
+    holder.isConcurrencyConflict(true);
+
+    EventID next = new EventID(new byte[] { 1 }, 1, 2);
+    holder.reset(next);
+    assertSame(next, holder.getEventId());
+    assertNull(holder.getRegion());
+    assertNull(holder.getVersionTag());
+    assertFalse(holder.isPossibleDuplicate());
+    assertFalse(holder.isConcurrencyConflict());
+  }
+}
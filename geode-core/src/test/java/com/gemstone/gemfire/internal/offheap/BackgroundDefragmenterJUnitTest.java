@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class BackgroundDefragmenterJUnitTest {
+
+  private static final int SLAB_SIZE = 4 * 1024 * 1024;
+
+  private MemoryAllocatorImpl ma;
+
+  @Before
+  public void setUp() throws Exception {
+    this.ma = MemoryAllocatorImpl.createForUnitTest(new NullOutOfOffHeapMemoryListener(), new NullOffHeapMemoryStats(), new SlabImpl[] {new SlabImpl(SLAB_SIZE)});
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    MemoryAllocatorImpl.freeOffHeapMemory();
+    System.clearProperty(BackgroundDefragmenter.THRESHOLD_PROPERTY);
+    System.clearProperty(BackgroundDefragmenter.INTERVAL_PROPERTY);
+  }
+
+  @Test
+  public void isNotStartedByDefault() {
+    assertNull(BackgroundDefragmenter.start(this.ma));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void thresholdOver100IsRejected() {
+    new BackgroundDefragmenter(this.ma, 101, 1000);
+  }
+
+  @Test
+  public void doesNothingWhenFreeMemoryIsInFragments() {
+    BackgroundDefragmenter defragmenter = new BackgroundDefragmenter(this.ma, 50, 1000);
+    allocateAndFree(100, 100);
+
+    assertFalse(defragmenter.defragmentIfNeeded());
+  }
+
+  @Test
+  public void defragmentsOnceThresholdIsReached() {
+    BackgroundDefragmenter defragmenter = new BackgroundDefragmenter(this.ma, 50, 1000);
+    // fill most of memory and free it so most of the free memory is in free chunks
+    allocateAndFree(3 * 1024 * 1024 / 128, 100);
+    FreeListManager freeList = this.ma.getFreeListManager();
+    assertTrue(freeList.getFragmentedFreeMemory() * 100 / freeList.getFreeMemory() >= 50);
+
+    assertTrue(defragmenter.defragmentIfNeeded());
+
+    assertEquals(0, freeList.getFragmentedFreeMemory());
+    assertFalse(defragmenter.defragmentIfNeeded());
+  }
+
+  @Test
+  public void doesNotRepeatDefragmentationThatMergedNothing() {
+    BackgroundDefragmenter defragmenter = new BackgroundDefragmenter(this.ma, 50, 1000);
+    // free every other chunk so that none of the free chunks are adjacent
+    List<StoredObject> chunks = new ArrayList<StoredObject>();
+    for (int i = 0; i < 3 * 1024 * 1024 / 128; i++) {
+      chunks.add(this.ma.allocate(100));
+    }
+    for (int i = 0; i < chunks.size(); i += 2) {
+      chunks.get(i).release();
+    }
+    // use up the rest of the fragment so all of the free memory is in free chunks
+    this.ma.allocate(this.ma.getFreeListManager().getFragmentList().get(0).freeSpace() - OffHeapStoredObject.HEADER_SIZE);
+
+    assertTrue(defragmenter.defragmentIfNeeded());
+    assertFalse(defragmenter.defragmentIfNeeded());
+  }
+
+  @Test
+  public void startedDefragmenterIsStoppedWhenMemoryIsFreed() throws Exception {
+    System.setProperty(BackgroundDefragmenter.THRESHOLD_PROPERTY, "50");
+    System.setProperty(BackgroundDefragmenter.INTERVAL_PROPERTY, "10");
+    MemoryAllocatorImpl.freeOffHeapMemory();
+    this.ma = MemoryAllocatorImpl.createForUnitTest(new NullOutOfOffHeapMemoryListener(), new NullOffHeapMemoryStats(), new SlabImpl[] {new SlabImpl(SLAB_SIZE)});
+    allocateAndFree(3 * 1024 * 1024 / 128, 100);
+
+    FreeListManager freeList = this.ma.getFreeListManager();
+    long end = System.currentTimeMillis() + 30000;
+    while (freeList.getFragmentedFreeMemory() != 0 && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, freeList.getFragmentedFreeMemory());
+  }
+
+  private void allocateAndFree(int count, int size) {
+    List<StoredObject> chunks = new ArrayList<StoredObject>();
+    for (int i = 0; i < count; i++) {
+      chunks.add(this.ma.allocate(size));
+    }
+    for (StoredObject chunk : chunks) {
+      chunk.release();
+    }
+  }
+}
@@ -65,6 +65,10 @@ public class FreeListManagerTest {
   private void setUpSingleSlabManager() {
     setUpSingleSlabManager(DEFAULT_SLAB_SIZE);
   }
+  private void setUpThreadLocalManager(int threadLocalBufferSize) {
+    Slab slab = new SlabImpl(DEFAULT_SLAB_SIZE);
+    this.freeListManager = new TestableFreeListManager(ma, new Slab[] {slab}, 0, threadLocalBufferSize);
+  }
   private void setUpSingleSlabManager(int slabSize) {
     Slab slab = new SlabImpl(slabSize);
     this.freeListManager = createFreeListManager(ma, new Slab[] {slab});
@@ -239,6 +243,203 @@ public class FreeListManagerTest {
     assertThat(this.freeListManager.getFreeFragmentMemory()).isZero();
   }
   
+  @Test
+  public void threadLocalAllocateCarvesBufferFromFragment() {
+    setUpThreadLocalManager(64 * 1024);
+
+    OffHeapStoredObject c = this.freeListManager.allocate(10);
+
+    validateChunkSizes(c, 10);
+    assertThat(this.freeListManager.getFragmentList().get(0).freeSpace()).isEqualTo(DEFAULT_SLAB_SIZE - 64 * 1024);
+    assertThat(this.freeListManager.getFreeFragmentMemory()).isEqualTo(DEFAULT_SLAB_SIZE - c.getSize());
+    verify(this.stats, times(1)).incThreadLocalBufferRefills();
+    verify(this.stats, times(1)).incThreadLocalAllocations(0);
+  }
+
+  @Test
+  public void threadLocalFreeIsReusedBySameThread() {
+    setUpThreadLocalManager(64 * 1024);
+    OffHeapStoredObject c = this.freeListManager.allocate(200);
+    long addr = c.getAddress();
+
+    OffHeapStoredObject.release(addr, this.freeListManager);
+    OffHeapStoredObject c2 = this.freeListManager.allocate(200);
+
+    assertThat(c2.getAddress()).isEqualTo(addr);
+    validateChunkSizes(c2, 200);
+    verify(this.stats, times(1)).incThreadLocalFrees(FreeListManager.getThreadLocalSizeClass(c.getSize()));
+    verify(this.stats, times(2)).incThreadLocalAllocations(FreeListManager.getThreadLocalSizeClass(c.getSize()));
+  }
+
+  @Test
+  public void threadLocalFreesAreReturnedInBatches() {
+    setUpThreadLocalManager(64 * 1024);
+    int count = 2 * FreeListManager.THREAD_LOCAL_FREE_BATCH;
+    List<OffHeapStoredObject> chunks = new ArrayList<OffHeapStoredObject>();
+    for (int i = 0; i < count; i++) {
+      chunks.add(this.freeListManager.allocate(24));
+    }
+    int chunkSize = chunks.get(0).getSize();
+
+    for (OffHeapStoredObject c : chunks) {
+      OffHeapStoredObject.release(c.getAddress(), this.freeListManager);
+    }
+
+    verify(this.stats, times(1)).incThreadLocalFreeFlushes();
+    assertThat(this.freeListManager.getFreeTinyMemory()).isEqualTo(count * chunkSize);
+    assertThat(this.freeListManager.getUsedMemory()).isZero();
+  }
+
+  @Test
+  public void largeAllocationsDoNotUseThreadLocalBuffer() {
+    setUpThreadLocalManager(64 * 1024);
+
+    OffHeapStoredObject c = this.freeListManager.allocate(FreeListManager.MAX_THREAD_LOCAL);
+
+    validateChunkSizes(c, FreeListManager.MAX_THREAD_LOCAL);
+    verify(this.stats, never()).incThreadLocalBufferRefills();
+  }
+
+  @Test
+  public void threadLocalChunksAreLiveChunks() {
+    setUpThreadLocalManager(64 * 1024);
+    OffHeapStoredObject c1 = this.freeListManager.allocate(10);
+    OffHeapStoredObject c2 = this.freeListManager.allocate(100);
+    OffHeapStoredObject c3 = this.freeListManager.allocate(FreeListManager.MAX_THREAD_LOCAL);
+
+    assertThat(this.freeListManager.getLiveChunks()).containsOnly(c1, c2, c3);
+  }
+
+  @Test
+  public void defragmentCollectsThreadLocalMemory() {
+    setUpThreadLocalManager(64 * 1024);
+    List<OffHeapStoredObject> chunks = new ArrayList<OffHeapStoredObject>();
+    for (int i = 0; i < 1000; i++) {
+      chunks.add(this.freeListManager.allocate(i % 500 + 1));
+    }
+    for (OffHeapStoredObject c : chunks) {
+      OffHeapStoredObject.release(c.getAddress(), this.freeListManager);
+    }
+
+    assertThat(this.freeListManager.doDefragment(DEFAULT_SLAB_SIZE)).isTrue();
+
+    assertThat(this.freeListManager.getFragmentList()).hasSize(1);
+    assertThat(this.freeListManager.getFreeFragmentMemory()).isEqualTo(DEFAULT_SLAB_SIZE);
+    assertThat(this.freeListManager.getFreeTinyMemory()).isZero();
+
+    // the thread must notice its buffer was taken and carve a new one
+    OffHeapStoredObject c = this.freeListManager.allocate(10);
+    validateChunkSizes(c, 10);
+    assertThat(this.freeListManager.getLiveChunks()).containsOnly(c);
+  }
+
+  @Test
+  public void concurrentThreadLocalAllocateAndFree() throws Exception {
+    setUpThreadLocalManager(64 * 1024);
+    final int threadCount = 8;
+    final AtomicReferenceArray<Throwable> failures = new AtomicReferenceArray<Throwable>(threadCount);
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final int id = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            List<OffHeapStoredObject> chunks = new ArrayList<OffHeapStoredObject>();
+            for (int i = 0; i < 10000; i++) {
+              chunks.add(freeListManager.allocate(i % 300 + 1));
+              if (chunks.size() > 100) {
+                for (OffHeapStoredObject c : chunks) {
+                  OffHeapStoredObject.release(c.getAddress(), freeListManager);
+                }
+                chunks.clear();
+              }
+            }
+            for (OffHeapStoredObject c : chunks) {
+              OffHeapStoredObject.release(c.getAddress(), freeListManager);
+            }
+          } catch (Throwable e) {
+            failures.set(id, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int t = 0; t < threadCount; t++) {
+      assertThat(failures.get(t)).isNull();
+    }
+
+    assertThat(this.freeListManager.getUsedMemory()).isZero();
+    assertThat(this.freeListManager.doDefragment(DEFAULT_SLAB_SIZE)).isTrue();
+    assertThat(this.freeListManager.getFreeFragmentMemory()).isEqualTo(DEFAULT_SLAB_SIZE);
+  }
+
+  @Test
+  public void backgroundDefragmentMergesAdjacentFreeChunksIntoFragment() {
+    setUpSingleSlabManager();
+    List<OffHeapStoredObject> chunks = new ArrayList<OffHeapStoredObject>();
+    for (int i = 0; i < 1000; i++) {
+      chunks.add(this.freeListManager.allocate(100));
+    }
+    int usedSize = 1000 * chunks.get(0).getSize();
+    for (OffHeapStoredObject c : chunks) {
+      OffHeapStoredObject.release(c.getAddress(), this.freeListManager);
+    }
+    assertThat(this.freeListManager.getFragmentedFreeMemory()).isEqualTo(usedSize);
+
+    assertThat(this.freeListManager.backgroundDefragment(Integer.MAX_VALUE)).isEqualTo(999);
+
+    assertThat(this.freeListManager.getFreeTinyMemory()).isZero();
+    assertThat(this.freeListManager.getFragmentedFreeMemory()).isZero();
+    assertThat(this.freeListManager.getFragmentList()).hasSize(2);
+    // the fragment allocations were being carved from was left alone
+    assertThat(this.freeListManager.getFragmentList().get(0).freeSpace()).isEqualTo(DEFAULT_SLAB_SIZE - usedSize);
+    assertThat(this.freeListManager.getFragmentList().get(1).freeSpace()).isEqualTo(usedSize);
+    verify(this.stats, times(1)).endBackgroundDefragmentation(anyLong(), eq(999L));
+    verify(this.stats, times(1)).setFragments(2);
+  }
+
+  @Test
+  public void backgroundDefragmentTakesNearlyUsedUpFragments() {
+    setUpSingleSlabManager(128 * 1024);
+    List<OffHeapStoredObject> chunks = new ArrayList<OffHeapStoredObject>();
+    for (int i = 0; i < 100; i++) {
+      chunks.add(this.freeListManager.allocate(1000));
+    }
+    for (OffHeapStoredObject c : chunks) {
+      OffHeapStoredObject.release(c.getAddress(), this.freeListManager);
+    }
+
+    assertThat(this.freeListManager.backgroundDefragment(Integer.MAX_VALUE)).isEqualTo(100);
+
+    assertThat(this.freeListManager.getFragmentList()).hasSize(1);
+    assertThat(this.freeListManager.getFragmentList().get(0).freeSpace()).isEqualTo(128 * 1024);
+    OffHeapStoredObject c = this.freeListManager.allocate(100 * 1024);
+    validateChunkSizes(c, 100 * 1024);
+  }
+
+  @Test
+  public void backgroundDefragmentReturnsSmallMergedChunksToFreeLists() {
+    setUpSingleSlabManager();
+    OffHeapStoredObject c1 = this.freeListManager.allocate(100);
+    OffHeapStoredObject c2 = this.freeListManager.allocate(100);
+    OffHeapStoredObject c3 = this.freeListManager.allocate(100);
+    int mergedSize = c1.getSize() + c2.getSize();
+    OffHeapStoredObject.release(c1.getAddress(), this.freeListManager);
+    OffHeapStoredObject.release(c2.getAddress(), this.freeListManager);
+
+    assertThat(this.freeListManager.backgroundDefragment(Integer.MAX_VALUE)).isEqualTo(1);
+
+    assertThat(this.freeListManager.getFragmentList()).hasSize(1);
+    assertThat(this.freeListManager.getFreeTinyMemory()).isEqualTo(mergedSize);
+    OffHeapStoredObject c4 = this.freeListManager.allocate(mergedSize - OffHeapStoredObject.HEADER_SIZE);
+    assertThat(c4.getAddress()).isEqualTo(c1.getAddress());
+    assertThat(this.freeListManager.getLiveChunks()).containsOnly(c3, c4);
+  }
+
   private int computeExpectedSize(int dataSize) {
     return ((dataSize + OffHeapStoredObject.HEADER_SIZE + 7) / 8) * 8;
   }
@@ -907,7 +1108,11 @@ public class FreeListManagerTest {
     }
 
     public TestableFreeListManager(MemoryAllocatorImpl ma, Slab[] slabs, int maxCombine) {
-      super(ma, slabs);
+      this(ma, slabs, maxCombine, 0);
+    }
+
+    public TestableFreeListManager(MemoryAllocatorImpl ma, Slab[] slabs, int maxCombine, int threadLocalBufferSize) {
+      super(ma, slabs, threadLocalBufferSize);
       this.maxCombine = maxCombine;
     }
 
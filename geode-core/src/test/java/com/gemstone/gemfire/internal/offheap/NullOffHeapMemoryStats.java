@@ -91,6 +91,60 @@ public class NullOffHeapMemoryStats implements OffHeapMemoryStats {
     return 0;
   }
   @Override
+  public void incThreadLocalAllocations(int sizeClass) {
+  }
+  @Override
+  public long getThreadLocalAllocations(int sizeClass) {
+    return 0;
+  }
+  @Override
+  public void incThreadLocalFrees(int sizeClass) {
+  }
+  @Override
+  public long getThreadLocalFrees(int sizeClass) {
+    return 0;
+  }
+  @Override
+  public void incThreadLocalBufferRefills() {
+  }
+  @Override
+  public long getThreadLocalBufferRefills() {
+    return 0;
+  }
+  @Override
+  public void incThreadLocalFreeFlushes() {
+  }
+  @Override
+  public long getThreadLocalFreeFlushes() {
+    return 0;
+  }
+  @Override
+  public long startBackgroundDefragmentation() {
+    return 0;
+  }
+  @Override
+  public void endBackgroundDefragmentation(long start, long coalescedChunks) {
+  }
+  @Override
+  public int getBackgroundDefragmentations() {
+    return 0;
+  }
+  @Override
+  public long getBackgroundDefragmentationTime() {
+    return 0;
+  }
+  @Override
+  public long getCoalescedChunks() {
+    return 0;
+  }
+  @Override
+  public void setFragmentedFreeMemory(long value) {
+  }
+  @Override
+  public long getFragmentedFreeMemory() {
+    return 0;
+  }
+  @Override
   public Statistics getStats() {
     return null;
   }
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.LOCATORS;
+import static com.gemstone.gemfire.distributed.ConfigurationProperties.MCAST_PORT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.distributed.ConfigurationProperties;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.OffHeapKeyRegionEntry;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.cache.VMThinRegionEntryOffHeapObjectKey;
+import com.gemstone.gemfire.internal.cache.VMThinRegionEntryOffHeapSerializedKey;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+@Category(IntegrationTest.class)
+public class OffHeapRegionKeyJUnitTest {
+  private static final String KEY = "a key that is too long to be inlined";
+
+  private boolean savedOffHeapRegionKeys;
+  private GemFireCacheImpl gfc;
+
+  @Before
+  public void setUp() {
+    this.savedOffHeapRegionKeys = OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS;
+    OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS = true;
+    Properties props = new Properties();
+    props.setProperty(LOCATORS, "");
+    props.setProperty(MCAST_PORT, "0");
+    props.setProperty(ConfigurationProperties.OFF_HEAP_MEMORY_SIZE, "1m");
+    this.gfc = (GemFireCacheImpl) new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() {
+    try {
+      this.gfc.close();
+    } finally {
+      OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS = this.savedOffHeapRegionKeys;
+    }
+  }
+
+  private LocalRegion createRegion() {
+    Region r = this.gfc.createRegionFactory(RegionShortcut.LOCAL).setConcurrencyChecksEnabled(false).setOffHeap(true).create("offHeapKeyRegion");
+    return (LocalRegion) r;
+  }
+
+  @Test
+  public void keyIsStoredOffHeapOnceTheEntryIsInTheMap() {
+    LocalRegion r = createRegion();
+    long usedBefore = MemoryAllocatorImpl.getAllocator().getUsedMemory();
+    r.create(KEY, null);
+    RegionEntry re = r.getRegionEntry(KEY);
+    assertTrue("expected serialized key entry but was " + re.getClass(), re instanceof VMThinRegionEntryOffHeapSerializedKey);
+    OffHeapKeyRegionEntry ohre = (OffHeapKeyRegionEntry) re;
+    assertTrue(OffHeapRegionEntryHelper.isOffHeap(ohre.getKeyAddress()));
+    assertNull(ohre.getHeapKey());
+    assertEquals(KEY, re.getKey());
+    assertTrue(r.containsKey(KEY));
+    assertTrue(r.keySet().contains(KEY));
+    assertTrue(MemoryAllocatorImpl.getAllocator().getUsedMemory() > usedBefore);
+  }
+
+  @Test
+  public void destroyCopiesKeyToHeapAndFreesIt() {
+    LocalRegion r = createRegion();
+    long usedBefore = MemoryAllocatorImpl.getAllocator().getUsedMemory();
+    r.put(KEY, "value");
+    OffHeapKeyRegionEntry re = (OffHeapKeyRegionEntry) r.getRegionEntry(KEY);
+    r.destroy(KEY);
+    assertFalse(r.containsKey(KEY));
+    assertEquals(0L, re.getKeyAddress());
+    assertEquals(KEY, re.getKey());
+    assertEquals(usedBefore, MemoryAllocatorImpl.getAllocator().getUsedMemory());
+  }
+
+  @Test
+  public void smallKeysAreEncodedInTheKeyAddress() {
+    LocalRegion r = createRegion();
+    Object key = Short.valueOf((short) 7);
+    r.create(key, null);
+    OffHeapKeyRegionEntry re = (OffHeapKeyRegionEntry) r.getRegionEntry(key);
+    assertFalse(OffHeapRegionEntryHelper.isOffHeap(re.getKeyAddress()));
+    assertTrue(re.getKeyAddress() != 0L);
+    assertEquals(key, re.getKey());
+    assertTrue(r.containsKey(Short.valueOf((short) 7)));
+    assertFalse(r.containsKey(Short.valueOf((short) 8)));
+  }
+
+  @Test
+  public void lookupsDoNotDeserializeTheKey() {
+    LocalRegion r = createRegion();
+    r.put(new CountingKey(1), "value");
+    OffHeapKeyRegionEntry re = (OffHeapKeyRegionEntry) r.getRegionEntry(new CountingKey(1));
+    assertTrue(OffHeapRegionEntryHelper.isOffHeap(re.getKeyAddress()));
+
+    CountingKey.deserializations.set(0);
+    assertTrue(r.containsKey(new CountingKey(1)));
+    assertEquals("value", r.get(new CountingKey(1)));
+    assertTrue(re.isKeyEqual(new CountingKey(1)));
+    assertEquals(0, CountingKey.deserializations.get());
+
+    // a key with other bytes is only equal if its deserialized form is
+    assertFalse(re.isKeyEqual(new CountingKey(2)));
+    assertEquals(1, CountingKey.deserializations.get());
+    assertFalse(re.isKeyEqual(KEY));
+    assertEquals(1, CountingKey.deserializations.get());
+  }
+
+  @Test
+  public void keysThatCanNotBeSerializedStayOnTheHeap() {
+    LocalRegion r = createRegion();
+    Object key = new Object();
+    r.create(key, null);
+    OffHeapKeyRegionEntry re = (OffHeapKeyRegionEntry) r.getRegionEntry(key);
+    assertEquals(0L, re.getKeyAddress());
+    assertTrue(key == re.getKey());
+  }
+
+  @Test
+  public void keysAreNotStoredOffHeapByDefault() {
+    OffHeapRegionEntryHelper.OFF_HEAP_REGION_KEYS = false;
+    LocalRegion r = createRegion();
+    r.create(KEY, null);
+    RegionEntry re = r.getRegionEntry(KEY);
+    assertTrue("expected object key entry but was " + re.getClass(), re instanceof VMThinRegionEntryOffHeapObjectKey);
+  }
+
+  public static class CountingKey implements DataSerializable {
+    static final AtomicInteger deserializations = new AtomicInteger();
+
+    private int id;
+
+    public CountingKey() {
+    }
+
+    CountingKey(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public void toData(DataOutput out) throws IOException {
+      out.writeInt(this.id);
+    }
+
+    @Override
+    public void fromData(DataInput in) throws IOException {
+      this.id = in.readInt();
+      deserializations.incrementAndGet();
+    }
+
+    @Override
+    public int hashCode() {
+      return this.id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CountingKey && ((CountingKey) o).id == this.id;
+    }
+  }
+}
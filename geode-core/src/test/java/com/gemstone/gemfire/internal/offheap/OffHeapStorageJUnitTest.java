@@ -116,6 +116,35 @@ public class OffHeapStorageJUnitTest {
     }
   }
 
+  @Test
+  public void testCalcThreadLocalBufferSize() {
+    assertEquals(0, OffHeapStorage.calcThreadLocalBufferSize());
+    try {
+      System.setProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY, "0");
+      assertEquals(0, OffHeapStorage.calcThreadLocalBufferSize());
+      System.setProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY, "65536");
+      assertEquals(65536, OffHeapStorage.calcThreadLocalBufferSize());
+      System.setProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY, "65539");
+      assertEquals(65536, OffHeapStorage.calcThreadLocalBufferSize());
+      System.setProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY, "1m");
+      assertEquals(1024 * 1024, OffHeapStorage.calcThreadLocalBufferSize());
+      System.setProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY, "100");
+      try {
+        OffHeapStorage.calcThreadLocalBufferSize();
+        fail("expected IllegalArgumentException");
+      } catch (IllegalArgumentException expected) {
+      }
+      System.setProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY, "2g");
+      try {
+        OffHeapStorage.calcThreadLocalBufferSize();
+        fail("expected IllegalArgumentException");
+      } catch (IllegalArgumentException expected) {
+      }
+    } finally {
+      System.clearProperty(OffHeapStorage.THREAD_LOCAL_BUFFER_SIZE_PROPERTY);
+    }
+  }
+
   @Test
   public void createOffHeapStorageReturnsNullIfForceLocator() {
     System.setProperty(InternalLocator.FORCE_LOCATOR_DM_TYPE, "true");
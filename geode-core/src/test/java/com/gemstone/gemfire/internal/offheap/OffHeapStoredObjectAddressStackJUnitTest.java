@@ -108,6 +108,28 @@ public class OffHeapStoredObjectAddressStackJUnitTest {
     }
   }
 
+  @Test
+  public void offerAllPushesChainOnTop() {
+    SlabImpl slab = new SlabImpl(1024);
+    try {
+      MemoryAllocatorImpl ma = MemoryAllocatorImpl.createForUnitTest(new NullOutOfOffHeapMemoryListener(), new NullOffHeapMemoryStats(), new SlabImpl[]{slab});
+      OffHeapStoredObject chunk = (OffHeapStoredObject) ma.allocate(100);
+      OffHeapStoredObject chain1 = (OffHeapStoredObject) ma.allocate(100);
+      OffHeapStoredObject chain2 = (OffHeapStoredObject) ma.allocate(100);
+      OffHeapStoredObject.setNext(chain1.getAddress(), chain2.getAddress());
+
+      OffHeapStoredObjectAddressStack stack = new OffHeapStoredObjectAddressStack();
+      stack.offer(chunk.getAddress());
+      stack.offerAll(chain1.getAddress(), chain2.getAddress());
+      assertEquals(chain1.getAddress(), stack.poll());
+      assertEquals(chain2.getAddress(), stack.poll());
+      assertEquals(chunk.getAddress(), stack.poll());
+      assertEquals(true, stack.isEmpty());
+    } finally {
+      MemoryAllocatorImpl.freeOffHeapMemory();
+    }
+  }
+
   @Test
   public void stackWithChunkTopEqualsAddress() {
     SlabImpl slab = new SlabImpl(1024);
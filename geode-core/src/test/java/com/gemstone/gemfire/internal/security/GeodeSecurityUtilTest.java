@@ -19,6 +19,9 @@ package com.gemstone.gemfire.internal.security;
 
 import static org.assertj.core.api.Java6Assertions.*;
 
+import java.util.Properties;
+
+import org.junit.After;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
@@ -29,6 +32,11 @@ import com.gemstone.gemfire.test.junit.categories.UnitTest;
 @Category({ UnitTest.class, SecurityTest.class })
 public class GeodeSecurityUtilTest {
 
+  @After
+  public void tearDown() {
+    GeodeSecurityUtil.close();
+  }
+
   @Test
   public void testGetObject(){
     String string = GeodeSecurityUtil.getObjectOfType(String.class.getName(), String.class);
@@ -45,4 +53,19 @@ public class GeodeSecurityUtilTest {
 
     assertThatThrownBy(() -> GeodeSecurityUtil.getObjectOfType("  ", String.class)).isInstanceOf(GemFireSecurityException.class);
   }
+
+  @Test
+  public void keyIsNotConvertedToStringWhenNotSecured() {
+    GeodeSecurityUtil.initSecurity(new Properties());
+    Object key = new Object() {
+      @Override
+      public String toString() {
+        throw new AssertionError("toString should not be called");
+      }
+    };
+
+    GeodeSecurityUtil.authorizeRegionRead("region", key);
+    GeodeSecurityUtil.authorizeRegionWrite("region", key);
+    GeodeSecurityUtil.authorizeRegionManage("region", key);
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.AttributesFactory;
+import com.gemstone.gemfire.cache.DataPolicy;
+import com.gemstone.gemfire.cache.EntryEvent;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.Scope;
+import com.gemstone.gemfire.cache.util.CacheListenerAdapter;
+import com.gemstone.gemfire.test.dunit.Host;
+import com.gemstone.gemfire.test.dunit.Invoke;
+import com.gemstone.gemfire.test.dunit.VM;
+import com.gemstone.gemfire.test.dunit.cache.internal.JUnit4CacheTestCase;
+import com.gemstone.gemfire.test.junit.categories.DistributedTest;
+
+/**
+ * Tests the delivery of messages sent on shared ordered connections with
+ * p2p.batchSends on.
+ */
+@Category(DistributedTest.class)
+public class BatchSendsDUnitTest extends JUnit4CacheTestCase {
+
+  private static final String REGION_NAME = "batchSends";
+  private static final int NUM_UPDATES = 1000;
+
+  /** the values of the updates received by the listener, in order */
+  private static final List<Object> receivedValues = new ArrayList<Object>();
+
+  // the connections have to be created with batch sends on, so the tests
+  // do not use the distributed system of previous tests
+  @Override
+  public final void preSetUp() throws Exception {
+    disconnectAllFromDS();
+    Invoke.invokeInEveryVM(() -> setBatchSends(true, 50));
+    setBatchSends(true, 50);
+  }
+
+  @Override
+  public final void postTearDownCacheTestCase() throws Exception {
+    disconnectAllFromDS();
+    Invoke.invokeInEveryVM(() -> setBatchSends(false, 50));
+    setBatchSends(false, 50);
+  }
+
+  @Test
+  public void testBatchedMessagesAreDeliveredInOrder() throws Exception {
+    VM vm0 = Host.getHost(0).getVM(0);
+    vm0.invoke(() -> createRegion(true));
+    Region<String, Integer> region = createRegion(false);
+
+    // no-ack updates are batched unless the batch gets half full
+    for (int i = 0; i < NUM_UPDATES; i++) {
+      region.put("key", i);
+    }
+
+    vm0.invoke(() -> awaitReceivedValues(NUM_UPDATES));
+  }
+
+  @Test
+  public void testBatchIsFlushedWhenTheConnectionIsClosed() throws Exception {
+    VM vm0 = Host.getHost(0).getVM(0);
+    vm0.invoke(() -> createRegion(true));
+    Region<String, Integer> region = createRegion(false);
+
+    // only closing the connection writes the batch now
+    setBatchSends(true, (int) TimeUnit.MINUTES.toMillis(10));
+    for (int i = 0; i < NUM_UPDATES; i++) {
+      region.put("key", i);
+    }
+    disconnectFromDS();
+
+    vm0.invoke(() -> awaitReceivedValues(NUM_UPDATES));
+  }
+
+  private static void setBatchSends(boolean batchSends, int flushMs) {
+    Connection.BATCH_SENDS = batchSends;
+    Connection.BATCH_FLUSH_MS = flushMs;
+    synchronized (receivedValues) {
+      receivedValues.clear();
+    }
+  }
+
+  private Region<String, Integer> createRegion(boolean addListener) {
+    AttributesFactory<String, Integer> factory = new AttributesFactory<String, Integer>();
+    factory.setScope(Scope.DISTRIBUTED_NO_ACK);
+    factory.setDataPolicy(DataPolicy.REPLICATE);
+    if (addListener) {
+      factory.addCacheListener(new CacheListenerAdapter<String, Integer>() {
+        @Override
+        public void afterCreate(EntryEvent<String, Integer> event) {
+          record(event);
+        }
+
+        @Override
+        public void afterUpdate(EntryEvent<String, Integer> event) {
+          record(event);
+        }
+
+        private void record(EntryEvent<String, Integer> event) {
+          synchronized (receivedValues) {
+            receivedValues.add(event.getNewValue());
+          }
+        }
+      });
+    }
+    return getCache().createRegion(REGION_NAME, factory.create());
+  }
+
+  private static void awaitReceivedValues(int numValues) {
+    Awaitility.await().atMost(60, TimeUnit.SECONDS).until(() -> {
+      synchronized (receivedValues) {
+        return receivedValues.size() >= numValues;
+      }
+    });
+    synchronized (receivedValues) {
+      assertEquals(numValues, receivedValues.size());
+      for (int i = 0; i < numValues; i++) {
+        assertEquals(i, receivedValues.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+/**
+ * Tests how ConnectionTable spreads the threads that share sockets over
+ * several shared ordered connections to a member.
+ */
+@Category(UnitTest.class)
+public class ConnectionTableJUnitTest {
+
+  private TCPConduit conduit;
+  private InternalDistributedMember member;
+
+  @Before
+  public void setUp() throws Exception {
+    this.conduit = mock(TCPConduit.class);
+    DM dm = mock(DM.class);
+    InternalDistributedSystem system = mock(InternalDistributedSystem.class);
+    when(this.conduit.getDM()).thenReturn(dm);
+    when(dm.getSystem()).thenReturn(system);
+    when(system.isShareSockets()).thenReturn(true);
+    this.member = mock(InternalDistributedMember.class);
+  }
+
+  @Test
+  public void threadsUseTheFirstConnectionWhenThereIsOnlyOne() throws Exception {
+    ConnectionTable table = ConnectionTable.create(this.conduit, 1);
+
+    for (long threadId = 0; threadId < 10; threadId++) {
+      assertEquals(0, table.getOrderedLane(threadId));
+    }
+  }
+
+  @Test
+  public void threadsAreSpreadOverAllTheConnections() throws Exception {
+    ConnectionTable table = ConnectionTable.create(this.conduit, 4);
+
+    Set<Integer> lanes = new HashSet<Integer>();
+    for (long threadId = 0; threadId < 100; threadId++) {
+      int lane = table.getOrderedLane(threadId);
+      assertTrue(lane >= 0 && lane < 4);
+      // a thread always gets the same connection so its messages stay in order
+      assertEquals(lane, table.getOrderedLane(threadId));
+      lanes.add(lane);
+    }
+    assertEquals(4, lanes.size());
+  }
+
+  @Test
+  public void sharedOrderedConnectionsAreNotInTheStateWhenThereIsOnlyOne() throws Exception {
+    ConnectionTable table = ConnectionTable.create(this.conduit, 1);
+    table.addOrderedConnectionForTest(this.member, 0, connection(1, 10));
+
+    Map<Long, Long> state = new HashMap<Long, Long>();
+    table.getThreadOwnedOrderedConnectionState(this.member, state);
+
+    assertTrue(state.isEmpty());
+  }
+
+  @Test
+  public void allSharedOrderedConnectionsAreInTheStateWhenThereAreSeveral() throws Exception {
+    ConnectionTable table = ConnectionTable.create(this.conduit, 3);
+    table.addOrderedConnectionForTest(this.member, 0, connection(1, 10));
+    table.addOrderedConnectionForTest(this.member, 2, connection(3, 30));
+
+    Map<Long, Long> state = new HashMap<Long, Long>();
+    table.getThreadOwnedOrderedConnectionState(this.member, state);
+
+    // the messages of other threads may arrive on any of them
+    assertEquals(2, state.size());
+    assertEquals(Long.valueOf(10), state.get(Long.valueOf(1)));
+    assertEquals(Long.valueOf(30), state.get(Long.valueOf(3)));
+  }
+
+  private static Connection connection(long uniqueId, long messagesSent) {
+    Connection connection = mock(Connection.class);
+    when(connection.getUniqueId()).thenReturn(uniqueId);
+    when(connection.getMessagesSent()).thenReturn(messagesSent);
+    return connection;
+  }
+}